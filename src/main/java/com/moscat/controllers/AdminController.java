@@ -3,8 +3,10 @@ package com.moscat.controllers;
 import com.moscat.models.User;
 import com.moscat.utils.Constants;
 import com.moscat.utils.DatabaseManager;
+import com.moscat.utils.Money;
 import com.moscat.utils.PasswordHasher;
 import com.moscat.utils.DateUtils;
+import com.moscat.utils.TimeRange;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -393,7 +395,7 @@ public class AdminController {
             try (PreparedStatement stmt = conn.prepareStatement("SELECT SUM(savings_balance) FROM members")) {
                 ResultSet rs = stmt.executeQuery();
                 if (rs.next()) {
-                    stats.totalSavingsBalance = rs.getDouble(1);
+                    stats.totalSavingsBalance = Money.toDouble(Money.getCents(rs, 1));
                 }
             }
             
@@ -401,7 +403,7 @@ public class AdminController {
             try (PreparedStatement stmt = conn.prepareStatement("SELECT SUM(interest_earned) FROM members")) {
                 ResultSet rs = stmt.executeQuery();
                 if (rs.next()) {
-                    stats.totalInterestEarned = rs.getDouble(1);
+                    stats.totalInterestEarned = Money.toDouble(Money.getCents(rs, 1));
                 }
             }
             
@@ -410,7 +412,7 @@ public class AdminController {
                 stmt.setString(1, Constants.LOAN_ACTIVE);
                 ResultSet rs = stmt.executeQuery();
                 if (rs.next()) {
-                    stats.totalLoanBalance = rs.getDouble(1);
+                    stats.totalLoanBalance = Money.toDouble(Money.getCents(rs, 1));
                 }
             }
             
@@ -424,8 +426,10 @@ public class AdminController {
             }
             
             // Get today's transaction count
+            TimeRange today = TimeRange.today();
             try (PreparedStatement stmt = conn.prepareStatement(
-                    "SELECT COUNT(*) FROM transactions WHERE DATE(transaction_date) = CURRENT_DATE()")) {
+                    "SELECT COUNT(*) FROM transactions WHERE " + today.predicate("transaction_date"))) {
+                today.bind(stmt, 1);
                 ResultSet rs = stmt.executeQuery();
                 if (rs.next()) {
                     stats.todayTransactionCount = rs.getInt(1);
@@ -434,10 +438,11 @@ public class AdminController {
             
             // Get today's transaction total
             try (PreparedStatement stmt = conn.prepareStatement(
-                    "SELECT SUM(amount) FROM transactions WHERE DATE(transaction_date) = CURRENT_DATE()")) {
+                    "SELECT SUM(amount) FROM transactions WHERE " + today.predicate("transaction_date"))) {
+                today.bind(stmt, 1);
                 ResultSet rs = stmt.executeQuery();
                 if (rs.next()) {
-                    stats.todayTransactionTotal = rs.getDouble(1);
+                    stats.todayTransactionTotal = Money.toDouble(Money.getCents(rs, 1));
                 }
             }
             
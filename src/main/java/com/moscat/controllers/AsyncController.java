@@ -0,0 +1,159 @@
+package com.moscat.controllers;
+
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+import com.moscat.models.Member;
+import com.moscat.utils.DbExecutor;
+import com.moscat.utils.TimeRange;
+import com.moscat.utils.UnitOfWork;
+
+/**
+ * Asynchronous facade over the controllers for use from Swing views.
+ * 
+ * Every method runs its database work on DbExecutor and returns immediately; views
+ * must apply results on the Event Dispatch Thread (for example with
+ * SwingUtilities.invokeLater inside a completion callback). Cancel a returned future
+ * to stop the work at its next step.
+ */
+public class AsyncController {
+    
+    /**
+     * Loads the figures shown on the dashboard summary cards, sharing one connection
+     * 
+     * @return Future completed with the dashboard summary
+     */
+    public static CompletableFuture<DashboardSummary> loadDashboardSummary() {
+        return DbExecutor.submit("loadDashboardSummary", context ->
+                UnitOfWork.execute("loadDashboardSummary", conn -> {
+                    DashboardSummary summary = new DashboardSummary();
+                    summary.memberCount = MemberController.getMemberCount();
+                    summary.totalSavingsBalance = MemberController.getTotalSavingsBalance();
+                    summary.activeLoanCount = TransactionController.getActiveLoanCount();
+                    summary.dormantAccountCount = DormantAccountController.getDormantAccountCount();
+                    return summary;
+                }));
+    }
+    
+    /**
+     * Looks up a member by member number
+     * 
+     * @param memberNumber The member number
+     * @return Future completed with the member, or null if not found
+     */
+    public static CompletableFuture<Member> findMemberByNumber(String memberNumber) {
+        return DbExecutor.submit("findMemberByNumber", context -> MemberController.getMemberByNumber(memberNumber));
+    }
+    
+    /**
+     * Loads the data for a member report
+     * 
+     * @param memberNumber The member number
+     * @param listener Progress listener, or null
+     * @return Future completed with the report data; its member is null if not found
+     */
+    public static CompletableFuture<ReportController.MemberReportData> loadMemberReport(String memberNumber,
+            DbExecutor.ProgressListener listener) {
+        return DbExecutor.submit("loadMemberReport", context -> {
+            Member member = MemberController.getMemberByNumber(memberNumber);
+            context.checkCancelled();
+            return ReportController.loadMemberReport(member, context);
+        }, listener);
+    }
+    
+    /**
+     * Loads the data for a daily transaction report
+     * 
+     * @param date Date string (yyyy-MM-dd)
+     * @param listener Progress listener, or null
+     * @return Future completed with the report data
+     */
+    public static CompletableFuture<ReportController.DailyReportData> loadDailyTransactionReport(String date,
+            DbExecutor.ProgressListener listener) {
+        return DbExecutor.submit("loadDailyTransactionReport",
+                context -> ReportController.loadDailyTransactionReport(date, context), listener);
+    }
+    
+    /**
+     * Loads the data for a monthly transaction report
+     * 
+     * @param year Year
+     * @param month Month (1-12)
+     * @param listener Progress listener, or null
+     * @return Future completed with the report data
+     */
+    public static CompletableFuture<ReportController.MonthlyReportData> loadMonthlyTransactionReport(int year,
+            int month, DbExecutor.ProgressListener listener) {
+        return DbExecutor.submit("loadMonthlyTransactionReport",
+                context -> ReportController.loadMonthlyTransactionReport(year, month, context), listener);
+    }
+    
+    /**
+     * Loads the data for a savings summary report
+     * 
+     * @param reportType Type of savings report
+     * @param period Time period (for interest reports)
+     * @param listener Progress listener, or null
+     * @return Future completed with the report data
+     */
+    public static CompletableFuture<ReportController.SavingsReportData> loadSavingsSummaryReport(String reportType,
+            String period, DbExecutor.ProgressListener listener) {
+        return DbExecutor.submit("loadSavingsSummaryReport",
+                context -> ReportController.loadSavingsSummaryReport(reportType, period, context), listener);
+    }
+    
+    /**
+     * Loads one page of a member's transaction history, newest first
+     * 
+     * @param memberId The member ID
+     * @param after Cursor of the previous page, or null for the first page
+     * @param pageSize Maximum number of transactions in the page
+     * @return Future completed with the page; it fails if the page could not be loaded
+     */
+    public static CompletableFuture<TransactionController.Page> loadTransactionPage(int memberId,
+            TransactionController.Cursor after, int pageSize) {
+        return DbExecutor.submit("loadTransactionPage", context -> {
+            TransactionController.Page page = TransactionController.getMemberTransactionPage(memberId, after, pageSize);
+            if (page == null) {
+                throw new IllegalStateException("Transaction history could not be loaded");
+            }
+            return page;
+        });
+    }
+    
+    /**
+     * Exports transactions to CSV straight from the database, reporting the rows written
+     * 
+     * @param range The transaction dates to export, or null for all transactions
+     * @param file The CSV file to write
+     * @param gzip Whether to gzip the file
+     * @param listener Progress listener, or null
+     * @return Future completed with the export result; cancel it to stop the export and
+     *         keep any previous file
+     */
+    public static CompletableFuture<CsvExporter.Result> exportTransactions(TimeRange range, Path file, boolean gzip,
+            DbExecutor.ProgressListener listener) {
+        return DbExecutor.submit("exportTransactions", context -> {
+            context.progress(0, -1, "Exporting transactions");
+            CsvExporter.Result result = CsvExporter.exportTransactions(range, file, gzip, rows -> {
+                context.progress((int) Math.min(rows, Integer.MAX_VALUE), -1, "Exported " + rows + " rows");
+                return !context.isCancelled();
+            });
+            if (result == null) {
+                throw new IllegalStateException("Transactions could not be exported to " + file);
+            }
+            context.checkCancelled();
+            return result;
+        }, listener);
+    }
+    
+    /**
+     * Figures shown on the dashboard summary cards
+     */
+    public static class DashboardSummary {
+        public int memberCount;
+        public double totalSavingsBalance;
+        public int activeLoanCount;
+        public int dormantAccountCount;
+    }
+}
\ No newline at end of file
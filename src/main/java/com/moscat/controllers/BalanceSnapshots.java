@@ -0,0 +1,385 @@
+package com.moscat.controllers;
+
+import com.moscat.utils.DatabaseManager;
+import com.moscat.utils.DateUtils;
+import com.moscat.utils.Money;
+import com.moscat.utils.TimeRange;
+import com.moscat.utils.UnitOfWork;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Month-end savings balance snapshots and the historical balance queries built on them.
+ * 
+ * takeMonthEndSnapshots() writes one row per member for every closed month the member has
+ * no snapshot for yet: the closing balance, the interest earned and the number of
+ * transactions of that month. Each month starts from the member's previous closing balance,
+ * so the job only reads one month of transactions per month it writes. A balance as of any
+ * day is then the closing balance of the nearest earlier month-end plus the member's
+ * transactions after it.
+ * 
+ * Balances are derived from savings postings: deposits and interest add, withdrawals
+ * subtract. A posting dated in a month that already has snapshots drops that member's
+ * snapshots of that month and all later ones; the next job run writes them again.
+ */
+public final class BalanceSnapshots {
+    
+    /**
+     * Signed effect of a transaction row on the savings balance
+     */
+    static final String SIGNED_AMOUNT = "CASE WHEN transaction_type IN ('SAVINGS_DEPOSIT', 'INTEREST_EARNED') "
+            + "THEN amount WHEN transaction_type = 'SAVINGS_WITHDRAWAL' THEN -amount ELSE 0 END";
+    
+    /**
+     * Transaction types that change the savings balance, as an SQL IN list
+     */
+    static final String SAVINGS_TYPES = "'SAVINGS_DEPOSIT', 'SAVINGS_WITHDRAWAL', 'INTEREST_EARNED'";
+    
+    /**
+     * Gets the signed effect of a transaction on the savings balance, the Java form of
+     * SIGNED_AMOUNT
+     * 
+     * @param transactionType The transaction type
+     * @param amountCents The transaction amount in centavos
+     * @return The change to the savings balance in centavos
+     */
+    static long signedAmountCents(String transactionType, long amountCents) {
+        if ("SAVINGS_DEPOSIT".equals(transactionType) || "INTEREST_EARNED".equals(transactionType)) {
+            return amountCents;
+        }
+        if ("SAVINGS_WITHDRAWAL".equals(transactionType)) {
+            return -amountCents;
+        }
+        return 0;
+    }
+    
+    private static final String SNAPSHOT_SQL = "INSERT INTO member_balance_snapshots (member_id, period_end, "
+            + "closing_balance, interest_earned, transaction_count) "
+            + "SELECT m.id, ?, COALESCE(p.closing_balance, 0) + COALESCE(t.net_amount, 0), "
+            + "COALESCE(t.interest_earned, 0), COALESCE(t.transaction_count, 0) "
+            + "FROM members m "
+            + "LEFT JOIN member_balance_snapshots p ON p.member_id = m.id AND p.period_end = ? "
+            + "LEFT JOIN (SELECT member_id, SUM(" + SIGNED_AMOUNT + ") AS net_amount, "
+            + "SUM(CASE WHEN transaction_type = 'INTEREST_EARNED' THEN amount ELSE 0 END) AS interest_earned, "
+            + "COUNT(*) AS transaction_count FROM %s WHERE %s GROUP BY member_id) t "
+            + "ON t.member_id = m.id "
+            // Members without this month, continuing from last month or starting fresh
+            + "WHERE NOT EXISTS (SELECT 1 FROM member_balance_snapshots s WHERE s.member_id = m.id AND s.period_end = ?) "
+            + "AND (p.member_id IS NOT NULL OR NOT EXISTS (SELECT 1 FROM member_balance_snapshots s "
+            + "WHERE s.member_id = m.id AND s.period_end < ?))";
+    
+    // The month after which some member's snapshots stop
+    private static final String FIRST_GAP_SQL = "SELECT MIN(last_period_end) FROM (SELECT MAX(period_end) "
+            + "AS last_period_end FROM member_balance_snapshots GROUP BY member_id)";
+    
+    // The first transaction of a member who has no snapshots, e.g. after a back-dated import
+    private static final String FIRST_UNSNAPSHOTTED_SQL = "SELECT MIN((SELECT MIN(t.transaction_date) FROM %s t "
+            + "WHERE t.member_id = m.id)) FROM members m "
+            + "WHERE NOT EXISTS (SELECT 1 FROM member_balance_snapshots s WHERE s.member_id = m.id)";
+    
+    private BalanceSnapshots() {
+    }
+    
+    /**
+     * Writes the missing snapshots of every closed month, oldest first. The first run
+     * covers the whole history back to the earliest transaction; later runs also refill
+     * the months of members whose snapshots a back-dated posting dropped. Each month
+     * commits on its own, so an interrupted run resumes where it stopped.
+     * 
+     * @return The number of months snapshotted
+     */
+    public static int takeMonthEndSnapshots() {
+        YearMonth lastClosed = YearMonth.now().minusMonths(1);
+        int months = 0;
+        try {
+            YearMonth month = getFirstMissingMonth();
+            while (month != null && !month.isAfter(lastClosed)) {
+                int members = snapshotMonth(month);
+                System.out.println("Balance snapshots for " + month + ": " + members + " members");
+                months++;
+                month = month.plusMonths(1);
+            }
+        } catch (SQLException e) {
+            System.err.println("Error taking balance snapshots: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return months;
+    }
+    
+    /**
+     * Gets the first month some member is missing a snapshot for
+     * 
+     * @return The month after the earliest point where a member's snapshots stop, or the
+     *         month of the first transaction of a member without snapshots if earlier; the
+     *         month of the earliest transaction if there are no snapshots; null if there
+     *         are no transactions
+     * @throws SQLException If a database error occurs
+     */
+    private static YearMonth getFirstMissingMonth() throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            YearMonth first = null;
+            try (PreparedStatement stmt = conn.prepareStatement(FIRST_GAP_SQL);
+                 ResultSet rs = stmt.executeQuery()) {
+                if (rs.next() && rs.getDate(1) != null) {
+                    first = YearMonth.from(rs.getDate(1).toLocalDate()).plusMonths(1);
+                }
+            }
+            
+            String query = first != null
+                    ? String.format(FIRST_UNSNAPSHOTTED_SQL, TransactionArchive.source(null))
+                    : "SELECT MIN(transaction_date) FROM " + TransactionArchive.source(null);
+            try (PreparedStatement stmt = conn.prepareStatement(query);
+                 ResultSet rs = stmt.executeQuery()) {
+                if (rs.next() && rs.getTimestamp(1) != null) {
+                    YearMonth unsnapshotted = YearMonth.from(rs.getTimestamp(1).toLocalDateTime());
+                    if (first == null || unsnapshotted.isBefore(first)) {
+                        first = unsnapshotted;
+                    }
+                }
+            }
+            return first;
+        }
+    }
+    
+    /**
+     * Writes the missing snapshots of one month from the members' previous month. A member
+     * gets a snapshot if it has one for the previous month, or no snapshot before this
+     * month at all; a member with a gap before this month waits for the gap to be filled.
+     * 
+     * @param month The month; members without a previous snapshot must have no
+     *        transactions before it
+     * @return The number of members snapshotted
+     * @throws SQLException If a database error occurs
+     */
+    private static int snapshotMonth(YearMonth month) throws SQLException {
+        TimeRange range = TimeRange.ofMonth(month);
+        return UnitOfWork.execute("balanceSnapshot", conn -> {
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    String.format(SNAPSHOT_SQL, TransactionArchive.source(range.getStart()),
+                            range.predicate("transaction_date")))) {
+                Date periodEnd = DateUtils.toSqlDate(month.atEndOfMonth());
+                stmt.setDate(1, periodEnd);
+                stmt.setDate(2, DateUtils.toSqlDate(month.minusMonths(1).atEndOfMonth()));
+                int index = range.bind(stmt, 3);
+                stmt.setDate(index++, periodEnd);
+                stmt.setDate(index, periodEnd);
+                return stmt.executeUpdate();
+            }
+        });
+    }
+    
+    /**
+     * Drops the snapshots of the posted members that a posting dated on a given day makes
+     * stale. Runs on the posting's connection, so the snapshots stay if the posting rolls
+     * back. Postings dated in the current month never touch a snapshot and cost nothing here.
+     * 
+     * @param conn The connection of the posting's unit of work
+     * @param day The earliest transaction day of the posting
+     * @param memberIds The members of the back-dated rows
+     * @throws SQLException If the snapshots cannot be dropped
+     */
+    static void invalidateFrom(Connection conn, LocalDate day, Collection<Integer> memberIds) throws SQLException {
+        if (memberIds.isEmpty() || !day.isBefore(YearMonth.now().atDay(1))) {
+            return;
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "DELETE FROM member_balance_snapshots WHERE period_end >= ? AND member_id = ANY(?)")) {
+            stmt.setDate(1, DateUtils.toSqlDate(YearMonth.from(day).atEndOfMonth()));
+            stmt.setArray(2, conn.createArrayOf("INTEGER", memberIds.toArray()));
+            stmt.executeUpdate();
+        }
+    }
+    
+    /**
+     * Gets a member's savings balance at the end of a day
+     * 
+     * @param memberId The member ID
+     * @param day The day
+     * @return The balance in centavos
+     * @throws SQLException If a database error occurs
+     */
+    public static long getBalanceAsOfCents(int memberId, LocalDate day) throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            return balanceAsOf(conn, memberId, day);
+        }
+    }
+    
+    /**
+     * Gets a member's opening balance for a statement period
+     * 
+     * @param memberId The member ID
+     * @param firstDay The first day of the period
+     * @return The balance at the end of the day before, in centavos
+     * @throws SQLException If a database error occurs
+     */
+    public static long getOpeningBalanceCents(int memberId, LocalDate firstDay) throws SQLException {
+        return getBalanceAsOfCents(memberId, firstDay.minusDays(1));
+    }
+    
+    /**
+     * Gets a member's average daily balance, the mean of the end-of-day balances of every
+     * day in the period
+     * 
+     * @param memberId The member ID
+     * @param firstDay The first day, inclusive
+     * @param lastDay The last day, inclusive
+     * @return The average balance in centavos
+     * @throws SQLException If a database error occurs
+     */
+    public static long getAverageDailyBalanceCents(int memberId, LocalDate firstDay, LocalDate lastDay)
+            throws SQLException {
+        if (lastDay.isBefore(firstDay)) {
+            throw new IllegalArgumentException("Last day " + lastDay + " is before first day " + firstDay);
+        }
+        TimeRange period = TimeRange.ofDays(firstDay, lastDay);
+        
+        try (Connection conn = DatabaseManager.getConnection()) {
+            long balance = balanceAsOf(conn, memberId, firstDay.minusDays(1));
+            long balanceDays = 0;
+            LocalDate day = firstDay;
+            
+            String sql = "SELECT transaction_date, " + SIGNED_AMOUNT + " AS signed_amount FROM "
+                    + TransactionArchive.source(period.getStart()) + " WHERE member_id = ? AND " + period.predicate("transaction_date")
+                    + " ORDER BY transaction_date";
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setInt(1, memberId);
+                period.bind(stmt, 2);
+                
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        LocalDate postedOn = rs.getTimestamp("transaction_date").toLocalDateTime().toLocalDate();
+                        // The balance so far held at the end of every day before this posting
+                        balanceDays = Money.add(balanceDays,
+                                Money.multiply(balance, ChronoUnit.DAYS.between(day, postedOn)));
+                        day = postedOn;
+                        balance = Money.add(balance, Money.getCents(rs, "signed_amount"));
+                    }
+                }
+            }
+            
+            balanceDays = Money.add(balanceDays, Money.multiply(balance, ChronoUnit.DAYS.between(day, lastDay) + 1));
+            return Money.fraction(balanceDays, 1, ChronoUnit.DAYS.between(firstDay, lastDay) + 1);
+        }
+    }
+    
+    /**
+     * Gets the month-end snapshots of a member
+     * 
+     * @param memberId The member ID
+     * @param from The first month, inclusive
+     * @param to The last month, inclusive
+     * @return The snapshots, oldest first; months not yet snapshotted are absent
+     * @throws SQLException If a database error occurs
+     */
+    public static List<Snapshot> getSnapshots(int memberId, YearMonth from, YearMonth to) throws SQLException {
+        List<Snapshot> snapshots = new ArrayList<>();
+        String sql = "SELECT period_end, closing_balance, interest_earned, transaction_count "
+                + "FROM member_balance_snapshots WHERE member_id = ? AND period_end >= ? AND period_end <= ? "
+                + "ORDER BY period_end";
+        
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, memberId);
+            stmt.setDate(2, DateUtils.toSqlDate(from.atEndOfMonth()));
+            stmt.setDate(3, DateUtils.toSqlDate(to.atEndOfMonth()));
+            
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Snapshot snapshot = new Snapshot();
+                    snapshot.memberId = memberId;
+                    snapshot.month = YearMonth.from(rs.getDate("period_end").toLocalDate());
+                    snapshot.closingBalanceCents = Money.getCents(rs, "closing_balance");
+                    snapshot.interestEarnedCents = Money.getCents(rs, "interest_earned");
+                    snapshot.transactionCount = rs.getInt("transaction_count");
+                    snapshots.add(snapshot);
+                }
+            }
+        }
+        
+        return snapshots;
+    }
+    
+    /**
+     * Seeks the nearest snapshot at or before a day and replays the transactions after it
+     */
+    private static long balanceAsOf(Connection conn, int memberId, LocalDate day) throws SQLException {
+        long balance = 0;
+        LocalDate replayFrom = null;
+        
+        String seek = "SELECT period_end, closing_balance FROM member_balance_snapshots "
+                + "WHERE member_id = ? AND period_end <= ? ORDER BY period_end DESC LIMIT 1";
+        try (PreparedStatement stmt = conn.prepareStatement(seek)) {
+            stmt.setInt(1, memberId);
+            stmt.setDate(2, DateUtils.toSqlDate(day));
+            
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    Date periodEnd = rs.getDate("period_end");
+                    balance = Money.getCents(rs, "closing_balance");
+                    replayFrom = periodEnd.toLocalDate().plusDays(1);
+                }
+            }
+        }
+        
+        // Without a snapshot the whole history up to the day is replayed
+        String source = TransactionArchive.source(replayFrom != null ? replayFrom.atStartOfDay() : null);
+        String replay = "SELECT SUM(" + SIGNED_AMOUNT + ") FROM " + source + " WHERE member_id = ? "
+                + (replayFrom != null ? "AND transaction_date >= ? " : "") + "AND transaction_date < ?";
+        try (PreparedStatement stmt = conn.prepareStatement(replay)) {
+            int index = 1;
+            stmt.setInt(index++, memberId);
+            if (replayFrom != null) {
+                stmt.setTimestamp(index++, Timestamp.valueOf(replayFrom.atStartOfDay()));
+            }
+            stmt.setTimestamp(index, Timestamp.valueOf(day.plusDays(1).atStartOfDay()));
+            
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    balance = Money.add(balance, Money.getCents(rs, 1));
+                }
+            }
+        }
+        
+        return balance;
+    }
+    
+    /**
+     * Month-end job entry point for a scheduler; snapshots every closed month not yet done
+     * 
+     * @param args Not used
+     */
+    public static void main(String[] args) {
+        DatabaseManager.getInstance().initializeDatabase();
+        int months = takeMonthEndSnapshots();
+        System.out.println("Snapshotted " + months + (months == 1 ? " month" : " months"));
+    }
+    
+    /**
+     * Closing figures of one member for one month
+     */
+    public static class Snapshot {
+        public int memberId;
+        public YearMonth month;
+        public long closingBalanceCents;
+        public long interestEarnedCents;
+        public int transactionCount;
+        
+        @Override
+        public String toString() {
+            return String.format("member=%d month=%s closing=%s interest=%s transactions=%d",
+                    memberId, month, Money.format(closingBalanceCents), Money.format(interestEarnedCents),
+                    transactionCount);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,205 @@
+package com.moscat.controllers;
+
+import com.moscat.utils.CsvWriter;
+import com.moscat.utils.DatabaseManager;
+import com.moscat.utils.DateUtils;
+import com.moscat.utils.JdbcStreams;
+import com.moscat.utils.TimeRange;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Exports transactions and members to CSV straight from a database cursor.
+ * 
+ * Rows are read through JdbcStreams and written through CsvWriter one at a time, so an
+ * export of any size runs in constant memory. The file is written next to its target as
+ * name.part and renamed when complete; a failed or cancelled export leaves the previous
+ * file untouched. The progress callback runs every moscat.export.progressRows rows
+ * (default 10000) and once at the end, and can cancel the export.
+ */
+public final class CsvExporter {
+    
+    private static final int PROGRESS_ROWS = Integer.getInteger("moscat.export.progressRows", 10000);
+    
+    private static final String[] TRANSACTION_COLUMNS = {
+        "id", "reference_number", "transaction_date", "member_id", "account_id", "transaction_type",
+        "amount", "running_balance", "description", "processed_by"
+    };
+    
+    private static final String[] MEMBER_COLUMNS = {
+        "id", "member_number", "last_name", "first_name", "middle_name", "birthdate", "present_address",
+        "contact_number", "email_address", "employment_status", "savings_balance", "interest_earned",
+        "join_date", "last_activity_date", "status"
+    };
+    
+    private CsvExporter() {
+    }
+    
+    /**
+     * Receives export progress
+     */
+    public interface Progress {
+        /**
+         * Called as rows are written
+         * 
+         * @param rows The number of data rows written so far
+         * @return False to cancel the export
+         */
+        boolean rowsWritten(long rows);
+    }
+    
+    /**
+     * Exports transactions in date order
+     * 
+     * @param range The transaction dates to export, or null for all transactions
+     * @param file The CSV file to write
+     * @param gzip Whether to gzip the file
+     * @param progress Receives progress, or null
+     * @return The export result, or null if it failed
+     */
+    public static Result exportTransactions(TimeRange range, Path file, boolean gzip, Progress progress) {
+        String source;
+        try {
+            source = TransactionArchive.source(range != null ? range.getStart() : null);
+        } catch (SQLException e) {
+            System.err.println("Error exporting transactions: " + e.getMessage());
+            e.printStackTrace();
+            return null;
+        }
+        String sql = "SELECT " + String.join(", ", TRANSACTION_COLUMNS) + " FROM " + source
+                + (range != null ? " WHERE " + range.predicate("transaction_date") : "")
+                + " ORDER BY transaction_date, id";
+        return export(sql, range, TRANSACTION_COLUMNS, file, gzip, progress);
+    }
+    
+    /**
+     * Exports members in ID order
+     * 
+     * @param joined The join dates to export, or null for all members
+     * @param file The CSV file to write
+     * @param gzip Whether to gzip the file
+     * @param progress Receives progress, or null
+     * @return The export result, or null if it failed
+     */
+    public static Result exportMembers(TimeRange joined, Path file, boolean gzip, Progress progress) {
+        String sql = "SELECT " + String.join(", ", MEMBER_COLUMNS) + " FROM members"
+                + (joined != null ? " WHERE " + joined.predicate("join_date") : "")
+                + " ORDER BY id";
+        return export(sql, joined, MEMBER_COLUMNS, file, gzip, progress);
+    }
+    
+    private static Result export(String sql, TimeRange range, String[] columns, Path file, boolean gzip,
+            Progress progress) {
+        long started = System.nanoTime();
+        Result result = new Result();
+        result.file = file;
+        Path part = file.resolveSibling(file.getFileName() + ".part");
+        
+        try {
+            try (CsvWriter writer = CsvWriter.open(part, gzip)) {
+                writer.writeRow(columns);
+                String[] row = new String[columns.length];
+                result.rows = JdbcStreams.forEach(sql, range != null ? stmt -> range.bind(stmt, 1) : null, rs -> {
+                    for (int i = 0; i < row.length; i++) {
+                        row[i] = rs.getString(i + 1);
+                    }
+                    return row;
+                }, values -> {
+                    try {
+                        writer.writeRow(values);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    long written = writer.getRowCount() - 1;
+                    if (progress != null && written % PROGRESS_ROWS == 0 && !progress.rowsWritten(written)) {
+                        throw new CancellationException();
+                    }
+                });
+                result.bytes = writer.getByteCount();
+            }
+            Files.move(part, file, StandardCopyOption.REPLACE_EXISTING);
+            if (progress != null) {
+                progress.rowsWritten(result.rows);
+            }
+        } catch (CancellationException e) {
+            result.cancelled = true;
+            deleteQuietly(part);
+        } catch (SQLException | IOException | UncheckedIOException e) {
+            System.err.println("Error exporting to " + file + ": " + e.getMessage());
+            e.printStackTrace();
+            deleteQuietly(part);
+            return null;
+        }
+        
+        result.elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+        return result;
+    }
+    
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            System.err.println("Error deleting " + path + ": " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Export tool. The file is gzipped if its name ends with .gz.
+     * 
+     * <pre>
+     * CsvExporter transactions|members file [firstDay lastDay]
+     * </pre>
+     * 
+     * @param args What to export, the file and an optional range of days (yyyy-MM-dd)
+     */
+    public static void main(String[] args) {
+        if ((args.length != 2 && args.length != 4)
+                || (!"transactions".equals(args[0]) && !"members".equals(args[0]))) {
+            System.err.println("Usage: CsvExporter transactions|members file [firstDay lastDay]");
+            System.exit(2);
+        }
+        
+        DatabaseManager.getInstance().initializeDatabase();
+        Path file = Paths.get(args[1]);
+        boolean gzip = args[1].endsWith(".gz");
+        TimeRange range = args.length == 4
+                ? TimeRange.ofDays(DateUtils.parseLocalDate(args[2]), DateUtils.parseLocalDate(args[3]))
+                : null;
+        Progress progress = rows -> {
+            System.out.println("Exported " + rows + " rows");
+            return true;
+        };
+        
+        Result result = "transactions".equals(args[0])
+                ? exportTransactions(range, file, gzip, progress)
+                : exportMembers(range, file, gzip, progress);
+        if (result == null) {
+            System.exit(1);
+        }
+        System.out.println("Export complete: " + result);
+    }
+    
+    /**
+     * Outcome of an export
+     */
+    public static class Result {
+        public Path file;
+        public long rows;
+        public long bytes;
+        public boolean cancelled;
+        public long elapsedMillis;
+        
+        @Override
+        public String toString() {
+            return String.format("file=%s rows=%d bytes=%d cancelled=%b elapsed=%dms",
+                    file, rows, bytes, cancelled, elapsedMillis);
+        }
+    }
+}
\ No newline at end of file
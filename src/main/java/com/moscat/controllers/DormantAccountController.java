@@ -14,6 +14,7 @@ import com.moscat.models.DormantAccount;
 import com.moscat.models.Member;
 import com.moscat.utils.Constants;
 import com.moscat.utils.DatabaseManager;
+import com.moscat.utils.UnitOfWork;
 
 /**
  * Controller for dormant account-related operations
@@ -78,14 +79,10 @@ public class DormantAccountController {
      * @return True if successful, false otherwise
      */
     public static boolean markAccountAsDormant(int memberId) {
-        try (Connection conn = DatabaseManager.getInstance().getConnection()) {
-            // Start a transaction
-            conn.setAutoCommit(false);
-            
-            try {
+        try {
+            return UnitOfWork.execute("markAccountAsDormant", conn -> {
                 // Update member status
                 if (!MemberController.setMemberDormant(memberId)) {
-                    conn.rollback();
                     return false;
                 }
                 
@@ -111,24 +108,13 @@ public class DormantAccountController {
                     stmt.setString(4, Constants.STATUS_DORMANT);
                     stmt.setBoolean(5, false);
                     
-                    int rowsAffected = stmt.executeUpdate();
-                    if (rowsAffected <= 0) {
-                        conn.rollback();
-                        return false;
+                    if (stmt.executeUpdate() <= 0) {
+                        throw new SQLException("Dormant account record of member " + memberId + " was not created");
                     }
                 }
                 
-                // Commit the transaction
-                conn.commit();
                 return true;
-            } catch (Exception e) {
-                // Rollback in case of an error
-                conn.rollback();
-                throw e;
-            } finally {
-                // Restore auto-commit
-                conn.setAutoCommit(true);
-            }
+            });
         } catch (SQLException e) {
             System.err.println("Error marking account as dormant: " + e.getMessage());
             e.printStackTrace();
@@ -143,14 +129,10 @@ public class DormantAccountController {
      * @return True if successful, false otherwise
      */
     public static boolean reactivateDormantAccount(int memberId) {
-        try (Connection conn = DatabaseManager.getInstance().getConnection()) {
-            // Start a transaction
-            conn.setAutoCommit(false);
-            
-            try {
+        try {
+            return UnitOfWork.execute("reactivateDormantAccount", conn -> {
                 // Update member status
                 if (!MemberController.reactivateMember(memberId)) {
-                    conn.rollback();
                     return false;
                 }
                 
@@ -159,24 +141,13 @@ public class DormantAccountController {
                 try (PreparedStatement stmt = conn.prepareStatement(updateQuery)) {
                     stmt.setInt(1, memberId);
                     
-                    int rowsAffected = stmt.executeUpdate();
-                    if (rowsAffected <= 0) {
-                        conn.rollback();
-                        return false;
+                    if (stmt.executeUpdate() <= 0) {
+                        throw new SQLException("Member " + memberId + " has no dormant account record");
                     }
                 }
                 
-                // Commit the transaction
-                conn.commit();
                 return true;
-            } catch (Exception e) {
-                // Rollback in case of an error
-                conn.rollback();
-                throw e;
-            } finally {
-                // Restore auto-commit
-                conn.setAutoCommit(true);
-            }
+            });
         } catch (SQLException e) {
             System.err.println("Error reactivating dormant account: " + e.getMessage());
             e.printStackTrace();
@@ -0,0 +1,539 @@
+package com.moscat.controllers;
+
+import com.moscat.models.Transaction;
+import com.moscat.utils.AccountLocks;
+import com.moscat.utils.CsvReader;
+import com.moscat.utils.DatabaseManager;
+import com.moscat.utils.DateUtils;
+import com.moscat.utils.Money;
+import com.moscat.utils.UnitOfWork;
+import com.moscat.utils.ValidationUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+/**
+ * Bulk import of legacy passbook and ledger history.
+ * 
+ * The file is read once and cut into chunks of moscat.import.parseRows lines (default
+ * 10000), which are parsed and validated in parallel on moscat.import.parallelism threads
+ * (default: the number of processors, at most 4) while reading goes on. Nothing is
+ * written unless every row is valid. The rows are then sorted by member, date and line
+ * and recorded through TransactionController.recordTransactions, so they are batched and
+ * reach the daily totals, balance snapshots and posting journal like any other posting.
+ * Their running balances are not computed here: recording back-dated rows recomputes the
+ * member's running balances from the first of them, which also brings the member's later
+ * rows up to date, and a member whose rows are all dated today is recomputed explicitly.
+ * 
+ * Rows are committed in chunks of about moscat.import.commitRows rows (default 5000) that
+ * always hold whole members. The import_checkpoints row of the file is updated in the same
+ * database transaction, so an interrupted import run again on the same file resumes after
+ * the last committed member. A file that changed since its checkpoint is refused.
+ * 
+ * members.savings_balance is not changed; LedgerReconciliation reports members whose
+ * stored balance disagrees with the imported ledger.
+ */
+public final class HistoryImporter {
+    
+    private static final int PARSE_ROWS = Integer.getInteger("moscat.import.parseRows", 10000);
+    private static final int COMMIT_ROWS = Integer.getInteger("moscat.import.commitRows", 5000);
+    private static final int PARALLELISM = Integer.getInteger("moscat.import.parallelism",
+            Math.min(Runtime.getRuntime().availableProcessors(), 4));
+    
+    private static final Set<String> TYPES = new HashSet<>(Arrays.asList("SAVINGS_DEPOSIT", "SAVINGS_WITHDRAWAL",
+            "INTEREST_EARNED", "LOAN_DISBURSEMENT", "LOAN_PAYMENT"));
+    
+    // Width of transactions.reference_number
+    private static final int MAX_REFERENCE_LENGTH = 50;
+    
+    private static final String PROCESSED_BY = "import";
+    
+    /**
+     * Input file layouts
+     */
+    public enum Format {
+        /**
+         * RFC 4180 CSV with a header line and the columns member_number, transaction_date,
+         * transaction_type, amount, reference_number, description. Quoted fields must not
+         * span lines.
+         */
+        CSV,
+        
+        /**
+         * Fixed-width lines, columns 1-based: member number 1-20, date 21-39, type 40-59,
+         * amount 60-74, reference number 75-94, description from 95 to the end of the line
+         */
+        FIXED_WIDTH
+    }
+    
+    // Start and end offsets of the fixed-width fields
+    private static final int[][] FIXED_FIELDS = { { 0, 20 }, { 20, 39 }, { 39, 59 }, { 59, 74 }, { 74, 94 } };
+    
+    private HistoryImporter() {
+    }
+    
+    /**
+     * Imports a history file, resuming from its checkpoint if an earlier run was interrupted
+     * 
+     * @param file The file to import
+     * @param format The file layout
+     * @return The import result, with the invalid rows if any were found and nothing was
+     *         imported; null if the import failed
+     */
+    public static Result importFile(Path file, Format format) {
+        long started = System.nanoTime();
+        Result result = new Result();
+        result.file = file;
+        String sourceName = file.toAbsolutePath().normalize().toString();
+        
+        try {
+            String checksum = checksum(file);
+            List<Row> rows = parse(file, format, result);
+            result.parseMillis = (System.nanoTime() - started) / 1_000_000;
+            if (!result.errors.isEmpty()) {
+                return result;
+            }
+            
+            resolveMembers(rows, result);
+            if (!result.errors.isEmpty()) {
+                return result;
+            }
+            rows.sort(Comparator.comparingInt((Row r) -> r.memberId)
+                    .thenComparing(r -> r.transactionDate)
+                    .thenComparingLong(r -> r.lineNumber));
+            
+            int committed = readCheckpoint(sourceName, checksum, rows.size());
+            if (committed > 0 && committed < rows.size()
+                    && rows.get(committed - 1).memberId == rows.get(committed).memberId) {
+                throw new SQLException("Checkpoint of " + sourceName + " does not end at a member boundary");
+            }
+            result.rowsResumed = committed;
+            
+            long insertStarted = System.nanoTime();
+            int from = committed;
+            while (from < rows.size()) {
+                int to = chunkEnd(rows, from);
+                commitChunk(sourceName, checksum, rows, from, to);
+                result.rowsImported += to - from;
+                result.chunks++;
+                from = to;
+            }
+            result.insertMillis = (System.nanoTime() - insertStarted) / 1_000_000;
+        } catch (IOException | SQLException e) {
+            System.err.println("Error importing " + file + ": " + e.getMessage());
+            e.printStackTrace();
+            return null;
+        }
+        
+        result.elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+        return result;
+    }
+    
+    /**
+     * Reads the file and parses its lines in parallel
+     */
+    private static List<Row> parse(Path file, Format format, Result result) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(PARALLELISM);
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            List<Future<Chunk>> parsed = new ArrayList<>();
+            List<String> lines = new ArrayList<>(PARSE_ROWS);
+            long firstLine = 1;
+            long lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (format == Format.CSV && lineNumber == 1) {
+                    firstLine = 2;
+                    continue; // header
+                }
+                lines.add(line);
+                if (lines.size() == PARSE_ROWS) {
+                    parsed.add(submit(pool, lines, firstLine, format));
+                    firstLine += lines.size();
+                    lines = new ArrayList<>(PARSE_ROWS);
+                }
+            }
+            if (!lines.isEmpty()) {
+                parsed.add(submit(pool, lines, firstLine, format));
+            }
+            
+            List<Row> rows = new ArrayList<>();
+            for (Future<Chunk> future : parsed) {
+                Chunk chunk = future.get();
+                rows.addAll(chunk.rows);
+                result.errors.addAll(chunk.errors);
+            }
+            result.rowsRead = rows.size() + result.errors.size();
+            return rows;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Import interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Error parsing " + file + ": " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    private static Future<Chunk> submit(ForkJoinPool pool, List<String> lines, long firstLine, Format format) {
+        return pool.submit(() -> {
+            Chunk chunk = new Chunk();
+            for (int i = 0; i < lines.size(); i++) {
+                long lineNumber = firstLine + i;
+                String line = lines.get(i);
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                try {
+                    String[] fields = format == Format.CSV ? splitCsv(line) : splitFixedWidth(line);
+                    chunk.rows.add(toRow(lineNumber, fields));
+                } catch (IllegalArgumentException | DateTimeParseException e) {
+                    chunk.errors.add("Line " + lineNumber + ": " + e.getMessage());
+                }
+            }
+            return chunk;
+        });
+    }
+    
+    /**
+     * Splits one CSV line into member number, date, type, amount, reference and description
+     */
+    private static String[] splitCsv(String line) {
+        List<String> fields = CsvReader.splitLine(line);
+        if (fields.size() < 4 || fields.size() > 6) {
+            throw new IllegalArgumentException("Expected 4 to 6 fields but found " + fields.size());
+        }
+        String[] row = new String[6];
+        for (int i = 0; i < fields.size(); i++) {
+            row[i] = fields.get(i);
+        }
+        return row;
+    }
+    
+    private static String[] splitFixedWidth(String line) {
+        if (line.length() < FIXED_FIELDS[3][1]) {
+            throw new IllegalArgumentException("Line is shorter than " + FIXED_FIELDS[3][1] + " characters");
+        }
+        String[] row = new String[6];
+        for (int i = 0; i < FIXED_FIELDS.length; i++) {
+            int end = Math.min(FIXED_FIELDS[i][1], line.length());
+            row[i] = FIXED_FIELDS[i][0] < end ? line.substring(FIXED_FIELDS[i][0], end) : null;
+        }
+        row[5] = line.length() > FIXED_FIELDS[4][1] ? line.substring(FIXED_FIELDS[4][1]) : null;
+        return row;
+    }
+    
+    /**
+     * Validates the fields of one line
+     */
+    private static Row toRow(long lineNumber, String[] fields) {
+        Row row = new Row();
+        row.lineNumber = lineNumber;
+        
+        row.memberNumber = trimToNull(fields[0]);
+        if (!ValidationUtils.isNotEmpty(row.memberNumber)) {
+            throw new IllegalArgumentException("Member number is required");
+        }
+        
+        String date = trimToNull(fields[1]);
+        if (!ValidationUtils.isNotEmpty(date)) {
+            throw new IllegalArgumentException("Transaction date is required");
+        }
+        row.transactionDate = date.length() == 10
+                ? DateUtils.parseLocalDate(date).atStartOfDay()
+                : DateUtils.parseLocalDateTime(date);
+        if (row.transactionDate.isAfter(LocalDateTime.now())) {
+            throw new IllegalArgumentException("Transaction date " + date + " is in the future");
+        }
+        
+        row.transactionType = trimToNull(fields[2]);
+        if (!TYPES.contains(row.transactionType)) {
+            throw new IllegalArgumentException("Unknown transaction type " + row.transactionType);
+        }
+        
+        row.amountCents = Money.parse(fields[3]);
+        if (row.amountCents <= 0) {
+            throw new IllegalArgumentException("Amount must be positive");
+        }
+        
+        row.referenceNumber = trimToNull(fields[4]);
+        if (row.referenceNumber != null && row.referenceNumber.length() > MAX_REFERENCE_LENGTH) {
+            throw new IllegalArgumentException("Reference number is longer than " + MAX_REFERENCE_LENGTH
+                    + " characters");
+        }
+        row.description = trimToNull(fields[5]);
+        return row;
+    }
+    
+    private static String trimToNull(String value) {
+        if (value == null) {
+            return null;
+        }
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+    
+    /**
+     * Sets the member ID of every row from its member number
+     */
+    private static void resolveMembers(List<Row> rows, Result result) throws SQLException {
+        Map<String, Integer> members = new HashMap<>();
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(
+                     "SELECT id, member_number FROM members WHERE member_number IS NOT NULL");
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                members.put(rs.getString("member_number"), rs.getInt("id"));
+            }
+        }
+        
+        Set<Integer> distinct = new HashSet<>();
+        for (Row row : rows) {
+            Integer memberId = members.get(row.memberNumber);
+            if (memberId == null) {
+                result.errors.add("Line " + row.lineNumber + ": Unknown member number " + row.memberNumber);
+            } else {
+                row.memberId = memberId;
+                distinct.add(memberId);
+            }
+        }
+        result.members = distinct.size();
+    }
+    
+    /**
+     * Gets the end of the commit chunk starting at from, extended to the end of the
+     * member it reaches
+     */
+    private static int chunkEnd(List<Row> rows, int from) {
+        int to = Math.min(from + COMMIT_ROWS, rows.size());
+        while (to < rows.size() && rows.get(to).memberId == rows.get(to - 1).memberId) {
+            to++;
+        }
+        return to;
+    }
+    
+    /**
+     * Records rows [from, to) with running balances and moves the checkpoint past them,
+     * in one database transaction. The chunk's members are locked for the whole unit, so
+     * no teller posting interleaves with the balance recompute.
+     */
+    private static void commitChunk(String sourceName, String checksum, List<Row> rows, int from, int to)
+            throws SQLException {
+        List<Transaction> transactions = new ArrayList<>(to - from);
+        Set<Integer> memberIds = new HashSet<>();
+        // First row of each member that recordTransactions does not treat as back-dated
+        Map<Integer, LocalDateTime> datedToday = new LinkedHashMap<>();
+        LocalDateTime today = LocalDate.now().atStartOfDay();
+        for (int i = from; i < to; i++) {
+            Row row = rows.get(i);
+            if ((i == from || row.memberId != rows.get(i - 1).memberId) && !row.transactionDate.isBefore(today)) {
+                datedToday.put(row.memberId, row.transactionDate);
+            }
+            
+            Transaction transaction = new Transaction();
+            transaction.setMemberId(row.memberId);
+            transaction.setTransactionType(row.transactionType);
+            transaction.setAmountCents(row.amountCents);
+            transaction.setTransactionDate(row.transactionDate);
+            transaction.setReferenceNumber(row.referenceNumber);
+            transaction.setDescription(row.description);
+            transaction.setProcessedBy(PROCESSED_BY);
+            transactions.add(transaction);
+            memberIds.add(row.memberId);
+        }
+        
+        UnitOfWork.execute("importHistory", conn -> {
+            AccountLocks.lockAll(memberIds);
+            
+            // One lookup for the savings accounts of every member in the chunk
+            Map<Integer, Integer> accounts = new HashMap<>();
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "SELECT member_id, id FROM savings_accounts WHERE member_id = ANY(?)")) {
+                stmt.setArray(1, conn.createArrayOf("INTEGER", memberIds.toArray()));
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        accounts.put(rs.getInt("member_id"), rs.getInt("id"));
+                    }
+                }
+            }
+            for (Transaction transaction : transactions) {
+                transaction.setAccountId(accounts.getOrDefault(transaction.getMemberId(), 0));
+            }
+            
+            TransactionController.BatchResult batch = TransactionController.recordTransactions(transactions);
+            if (!batch.isSuccessful()) {
+                TransactionController.RowFailure first = batch.failures.get(0);
+                throw new SQLException("Chunk rolled back, " + batch.failures.size() + " rows failed; first: line "
+                        + rows.get(from + first.index).lineNumber + ": " + first.message);
+            }
+            for (Map.Entry<Integer, LocalDateTime> entry : datedToday.entrySet()) {
+                RunningBalances.recompute(conn, entry.getKey(), entry.getValue(), TransactionArchive.HOT);
+            }
+            
+            String sql = "UPDATE import_checkpoints SET rows_committed = ?, updated_at = CURRENT_TIMESTAMP "
+                    + "WHERE source_name = ? AND source_checksum = ? AND rows_committed = ?";
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setInt(1, to);
+                stmt.setString(2, sourceName);
+                stmt.setString(3, checksum);
+                stmt.setInt(4, from);
+                if (stmt.executeUpdate() != 1) {
+                    throw new SQLException("Checkpoint of " + sourceName + " was moved by another import");
+                }
+            }
+            return null;
+        });
+    }
+    
+    /**
+     * Gets the number of rows already committed from this file, creating its checkpoint
+     * on the first run
+     */
+    private static int readCheckpoint(String sourceName, String checksum, int totalRows) throws SQLException {
+        return UnitOfWork.execute("readImportCheckpoint", conn -> {
+            String select = "SELECT source_checksum, rows_committed FROM import_checkpoints WHERE source_name = ? "
+                    + "FOR UPDATE";
+            try (PreparedStatement stmt = conn.prepareStatement(select)) {
+                stmt.setString(1, sourceName);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        if (!checksum.equals(rs.getString("source_checksum"))) {
+                            throw new SQLException(sourceName + " changed since its last import; "
+                                    + "remove its row from import_checkpoints to import it as a new file");
+                        }
+                        return rs.getInt("rows_committed");
+                    }
+                }
+            }
+            
+            String insert = "INSERT INTO import_checkpoints (source_name, source_checksum, total_rows, rows_committed) "
+                    + "VALUES (?, ?, ?, 0)";
+            try (PreparedStatement stmt = conn.prepareStatement(insert)) {
+                stmt.setString(1, sourceName);
+                stmt.setString(2, checksum);
+                stmt.setInt(3, totalRows);
+                stmt.executeUpdate();
+            }
+            return 0;
+        });
+    }
+    
+    private static String checksum(Path file) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                crc.update(buffer, 0, read);
+            }
+        }
+        return String.format("%08x%08x", Files.size(file), crc.getValue());
+    }
+    
+    /**
+     * Import tool. Files ending in .csv are read as CSV, others as fixed-width.
+     * 
+     * @param args The file to import
+     */
+    public static void main(String[] args) {
+        if (args.length != 1) {
+            System.err.println("Usage: HistoryImporter file");
+            System.exit(2);
+        }
+        
+        DatabaseManager.getInstance().initializeDatabase();
+        Path file = Paths.get(args[0]);
+        Format format = args[0].toLowerCase().endsWith(".csv") ? Format.CSV : Format.FIXED_WIDTH;
+        Result result = importFile(file, format);
+        if (result == null) {
+            System.exit(1);
+        }
+        if (!result.errors.isEmpty()) {
+            System.err.println(result.errors.size() + " invalid rows, nothing imported:");
+            for (String error : result.errors.subList(0, Math.min(result.errors.size(), 50))) {
+                System.err.println("  " + error);
+            }
+            System.exit(1);
+        }
+        System.out.println("Import complete: " + result);
+    }
+    
+    /**
+     * One parsed line
+     */
+    private static final class Row {
+        private long lineNumber;
+        private String memberNumber;
+        private int memberId;
+        private LocalDateTime transactionDate;
+        private String transactionType;
+        private long amountCents;
+        private String referenceNumber;
+        private String description;
+    }
+    
+    /**
+     * Rows and errors of one parsed chunk of lines
+     */
+    private static final class Chunk {
+        private final List<Row> rows = new ArrayList<>();
+        private final List<String> errors = new ArrayList<>();
+    }
+    
+    /**
+     * Outcome of an import
+     */
+    public static class Result {
+        public Path file;
+        public long rowsRead;
+        public int members;
+        public long rowsResumed;
+        public long rowsImported;
+        public int chunks;
+        public List<String> errors = new ArrayList<>();
+        public long parseMillis;
+        public long insertMillis;
+        public long elapsedMillis;
+        
+        /**
+         * Gets the insert throughput
+         * 
+         * @return Rows imported per second, 0 if none were
+         */
+        public long getRowsPerSecond() {
+            return insertMillis > 0 ? rowsImported * 1000 / insertMillis : 0;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("file=%s rows=%d members=%d resumed=%d imported=%d chunks=%d errors=%d "
+                    + "parse=%dms insert=%dms (%d rows/s) elapsed=%dms", file, rowsRead, members, rowsResumed,
+                    rowsImported, chunks, errors.size(), parseMillis, insertMillis, getRowsPerSecond(), elapsedMillis);
+        }
+    }
+}
\ No newline at end of file
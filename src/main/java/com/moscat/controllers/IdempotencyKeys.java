@@ -0,0 +1,205 @@
+package com.moscat.controllers;
+
+import com.moscat.models.Transaction;
+import com.moscat.utils.BloomFilter;
+import com.moscat.utils.DatabaseManager;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Recognizes retried postings by their client-supplied idempotency key.
+ * 
+ * The unique index on transactions.idempotency_key is the source of truth. A Bloom filter
+ * of every key committed so far lets a first attempt skip the database lookup, and a
+ * bounded LRU of recent keys (moscat.idempotency.cacheSize, default 10000) maps a retry
+ * straight to its original transaction. The filter is sized by moscat.idempotency.expectedKeys
+ * (default 1000000) and loaded from the database on first use.
+ * 
+ * A key committed by another terminal is not in this filter. Its posting then fails on the
+ * unique index, markSuspect() adds the key, and the next attempt finds the original.
+ * 
+ * TransactionArchive moves rows with their keys into transactions_archive, which the hot
+ * table's unique index does not cover. Lookups and the filter load therefore read
+ * all_transactions, so a retry of an archived posting still finds its original. What is
+ * left uncovered is a key another terminal committed after this process loaded its filter
+ * and that was archived before being retried here; archiving only moves rows older than
+ * moscat.archive.horizonMonths, far beyond any client retry window.
+ */
+public final class IdempotencyKeys {
+    
+    /**
+     * Longest accepted key, matching the column size
+     */
+    public static final int MAX_KEY_LENGTH = 64;
+    
+    private static final int CACHE_SIZE = Integer.getInteger("moscat.idempotency.cacheSize", 10000);
+    
+    private static final BloomFilter FILTER = new BloomFilter(
+            Long.getLong("moscat.idempotency.expectedKeys", 1_000_000L), 0.01);
+    
+    private static final Map<String, Integer> RECENT = new LinkedHashMap<String, Integer>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+    
+    private static final AtomicLong LOOKUPS = new AtomicLong();
+    private static final AtomicLong FILTER_SKIPS = new AtomicLong();
+    private static final AtomicLong CACHE_HITS = new AtomicLong();
+    private static final AtomicLong DATABASE_LOOKUPS = new AtomicLong();
+    private static final AtomicLong DUPLICATES = new AtomicLong();
+    
+    private static volatile boolean loaded;
+    
+    private IdempotencyKeys() {
+    }
+    
+    /**
+     * Finds the transaction already recorded under a key
+     * 
+     * @param key The idempotency key, or null
+     * @return The original transaction, or null if the key has not been used
+     * @throws SQLException If the lookup fails
+     */
+    public static Transaction findOriginal(String key) throws SQLException {
+        if (key == null) {
+            return null;
+        }
+        LOOKUPS.incrementAndGet();
+        ensureLoaded();
+        
+        Integer transactionId;
+        synchronized (RECENT) {
+            transactionId = RECENT.get(key);
+        }
+        if (transactionId != null) {
+            Transaction original = TransactionController.getTransactionById(transactionId);
+            if (original != null) {
+                CACHE_HITS.incrementAndGet();
+                DUPLICATES.incrementAndGet();
+                return original;
+            }
+        }
+        
+        if (!FILTER.mightContain(key)) {
+            FILTER_SKIPS.incrementAndGet();
+            return null;
+        }
+        
+        DATABASE_LOOKUPS.incrementAndGet();
+        Transaction original = null;
+        try (Connection conn = DatabaseManager.getConnection()) {
+            String query = "SELECT * FROM " + TransactionArchive.ALL + " WHERE idempotency_key = ?";
+            try (PreparedStatement stmt = conn.prepareStatement(query)) {
+                stmt.setString(1, key);
+                
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        original = TransactionController.mapResultSetToTransaction(rs);
+                    }
+                }
+            }
+        }
+        
+        if (original != null) {
+            DUPLICATES.incrementAndGet();
+            remember(key, original.getId());
+        }
+        return original;
+    }
+    
+    /**
+     * Records that a key was committed; call once the transaction has committed
+     * 
+     * @param key The idempotency key
+     * @param transactionId The ID of the transaction recorded under the key
+     */
+    static void remember(String key, int transactionId) {
+        FILTER.add(key);
+        if (transactionId > 0) {
+            synchronized (RECENT) {
+                RECENT.put(key, transactionId);
+            }
+        }
+    }
+    
+    /**
+     * Makes the next lookup of a key go to the database, e.g. after an insert with the
+     * key failed because another terminal may have used it
+     * 
+     * @param key The idempotency key
+     */
+    static void markSuspect(String key) {
+        if (key != null) {
+            FILTER.add(key);
+        }
+    }
+    
+    private static void ensureLoaded() throws SQLException {
+        if (loaded) {
+            return;
+        }
+        synchronized (IdempotencyKeys.class) {
+            if (loaded) {
+                return;
+            }
+            try (Connection conn = DatabaseManager.getConnection()) {
+                String query = "SELECT idempotency_key FROM " + TransactionArchive.ALL
+                        + " WHERE idempotency_key IS NOT NULL";
+                try (PreparedStatement stmt = conn.prepareStatement(query)) {
+                    stmt.setFetchSize(1000);
+                    
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            FILTER.add(rs.getString(1));
+                        }
+                    }
+                }
+            }
+            loaded = true;
+        }
+    }
+    
+    /**
+     * Gets the lookup statistics
+     * 
+     * @return Snapshot of lookup counts by path
+     */
+    public static Statistics getStatistics() {
+        Statistics stats = new Statistics();
+        stats.lookups = LOOKUPS.get();
+        stats.filterSkips = FILTER_SKIPS.get();
+        stats.cacheHits = CACHE_HITS.get();
+        stats.databaseLookups = DATABASE_LOOKUPS.get();
+        stats.duplicates = DUPLICATES.get();
+        synchronized (RECENT) {
+            stats.cachedKeys = RECENT.size();
+        }
+        return stats;
+    }
+    
+    /**
+     * Snapshot of idempotency key statistics
+     */
+    public static class Statistics {
+        public long lookups;
+        public long filterSkips;
+        public long cacheHits;
+        public long databaseLookups;
+        public long duplicates;
+        public int cachedKeys;
+        
+        @Override
+        public String toString() {
+            return String.format("lookups=%d filterSkips=%d cacheHits=%d databaseLookups=%d duplicates=%d cached=%d",
+                    lookups, filterSkips, cacheHits, databaseLookups, duplicates, cachedKeys);
+        }
+    }
+}
@@ -12,14 +12,21 @@ import java.util.List;
 
 import com.moscat.models.InterestSetting;
 import com.moscat.models.Member;
+import com.moscat.models.Transaction;
+import com.moscat.utils.AccountLocks;
 import com.moscat.utils.Constants;
 import com.moscat.utils.DatabaseManager;
+import com.moscat.utils.Money;
+import com.moscat.utils.UnitOfWork;
 
 /**
  * Controller for interest-related operations
  */
 public class InterestController {
     
+    // Members credited per database transaction during an interest run
+    private static final int CHUNK_SIZE = Integer.getInteger("moscat.interest.chunkSize", 500);
+    
     /**
      * Creates a new interest rate setting
      * 
@@ -39,7 +46,7 @@ public class InterestController {
             
             try (PreparedStatement stmt = conn.prepareStatement(query)) {
                 stmt.setDouble(1, interestSetting.getInterestRate());
-                stmt.setDouble(2, interestSetting.getMinimumBalanceRequired());
+                Money.setCents(stmt, 2, interestSetting.getMinimumBalanceRequiredCents());
                 stmt.setString(3, interestSetting.getComputationBasis());
                 stmt.setDate(4, java.sql.Date.valueOf(interestSetting.getEffectiveDate()));
                 stmt.setString(5, interestSetting.getReasonForChange());
@@ -118,43 +125,130 @@ public class InterestController {
     }
     
     /**
-     * Calculates interest for all qualifying members
+     * Calculates interest for all qualifying members. Members are credited in chunks of
+     * ascending member ID, each chunk in its own database transaction, so deposits and
+     * withdrawals wait for one chunk instead of the whole run. If a chunk fails, it is
+     * rolled back and the run stops; the chunks before it stay credited.
      * 
      * @param processedBy Username of the user processing the interest
      * @return The number of members who received interest
      */
     public static int calculateInterestForAllMembers(String processedBy) {
-        int count = 0;
+        // Get current interest setting
+        InterestSetting currentSetting = getCurrentInterestSetting();
+        String description = getInterestDescription(currentSetting);
         
-        try (Connection conn = DatabaseManager.getInstance().getConnection()) {
-            // Get current interest setting
-            InterestSetting currentSetting = getCurrentInterestSetting();
+        int credited = 0;
+        int lastMemberId = 0;
+        try {
+            List<Integer> memberIds;
+            while (!(memberIds = getActiveMemberIds(lastMemberId)).isEmpty()) {
+                List<Integer> chunk = memberIds;
+                credited += UnitOfWork.execute("calculateInterestForAllMembers",
+                        conn -> creditChunk(conn, chunk, currentSetting, description, processedBy));
+                lastMemberId = chunk.get(chunk.size() - 1);
+            }
+            return credited;
+        } catch (SQLException e) {
+            System.err.println("Error calculating interest after " + credited + " members: " + e.getMessage());
+            e.printStackTrace();
+            return credited;
+        }
+    }
+    
+    /**
+     * Gets the next chunk of active members with a savings account
+     * 
+     * @param afterMemberId The last member ID of the previous chunk, or 0
+     * @return Up to CHUNK_SIZE member IDs in ascending order
+     * @throws SQLException If a database error occurs
+     */
+    private static List<Integer> getActiveMemberIds(int afterMemberId) throws SQLException {
+        List<Integer> memberIds = new ArrayList<>(CHUNK_SIZE);
+        String query = "SELECT member_id FROM savings_accounts WHERE member_id > ? "
+                + "AND member_id IN (SELECT id FROM members WHERE status = ?) ORDER BY member_id LIMIT ?";
+        
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setInt(1, afterMemberId);
+            stmt.setString(2, Constants.STATUS_ACTIVE);
+            stmt.setInt(3, CHUNK_SIZE);
             
-            // Get all active members
-            String query = "SELECT * FROM members WHERE status = ?";
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    memberIds.add(rs.getInt("member_id"));
+                }
+            }
+        }
+        return memberIds;
+    }
+    
+    /**
+     * Credits interest to one chunk of members. The account locks are taken first, in stripe
+     * order, and the balances are then read FOR UPDATE, as PostingPipeline does, so a
+     * concurrent posting cannot change a balance between reading and crediting it.
+     * 
+     * @param conn The connection of the current unit of work
+     * @param memberIds The member IDs of the chunk
+     * @param setting The interest setting
+     * @param description The transaction description
+     * @param processedBy Username of the user processing the interest
+     * @return The number of members who received interest
+     * @throws SQLException If a lock could not be taken or the chunk could not be credited
+     */
+    private static int creditChunk(Connection conn, List<Integer> memberIds, InterestSetting setting,
+            String description, String processedBy) throws SQLException {
+        AccountLocks.lockAll(memberIds);
+        
+        List<Transaction> postings = new ArrayList<>(memberIds.size());
+        // A member deactivated since the chunk was read is skipped
+        String query = "SELECT id, member_id, savings_balance FROM savings_accounts WHERE member_id = ANY(?) "
+                + "AND member_id IN (SELECT id FROM members WHERE status = ?) ORDER BY member_id FOR UPDATE";
+        String updateQuery = "UPDATE savings_accounts SET savings_balance = ? WHERE id = ?";
+        
+        try (PreparedStatement stmt = conn.prepareStatement(query);
+             PreparedStatement updateStmt = conn.prepareStatement(updateQuery)) {
+            stmt.setArray(1, conn.createArrayOf("INTEGER", memberIds.toArray()));
+            stmt.setString(2, Constants.STATUS_ACTIVE);
             
-            try (PreparedStatement stmt = conn.prepareStatement(query)) {
-                stmt.setString(1, Constants.STATUS_ACTIVE);
-                
-                try (ResultSet rs = stmt.executeQuery()) {
-                    while (rs.next()) {
-                        Member member = new Member();
-                        member.setId(rs.getInt("id"));
-                        member.setSavingsBalance(rs.getDouble("savings_balance"));
-                        
-                        // Calculate interest for this member
-                        if (calculateInterestForMember(member, currentSetting, processedBy)) {
-                            count++;
-                        }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    long balance = Money.getCents(rs, "savings_balance");
+                    if (!setting.qualifiesForInterestCents(balance)) {
+                        continue;
                     }
+                    
+                    long interestAmount = setting.calculateInterestCents(balance);
+                    long newBalance = Money.add(balance, interestAmount);
+                    int accountId = rs.getInt("id");
+                    
+                    Money.setCents(updateStmt, 1, newBalance);
+                    updateStmt.setInt(2, accountId);
+                    updateStmt.addBatch();
+                    
+                    Transaction transaction = new Transaction();
+                    transaction.setMemberId(rs.getInt("member_id"));
+                    transaction.setAccountId(accountId);
+                    transaction.setTransactionType("INTEREST_EARNED");
+                    transaction.setAmountCents(interestAmount);
+                    transaction.setRunningBalanceCents(newBalance);
+                    transaction.setDescription(description);
+                    transaction.setProcessedBy(processedBy);
+                    postings.add(transaction);
                 }
             }
-        } catch (SQLException e) {
-            System.err.println("Error calculating interest: " + e.getMessage());
-            e.printStackTrace();
+            if (!postings.isEmpty()) {
+                updateStmt.executeBatch();
+            }
         }
         
-        return count;
+        TransactionController.BatchResult result = TransactionController.recordTransactions(postings);
+        if (!result.isSuccessful()) {
+            // Balances were credited for every posting, so keep neither
+            throw new SQLException("Could not record interest posting, " + result.failures.size()
+                    + " rows failed; first: " + result.failures.get(0));
+        }
+        return result.recordedCount;
     }
     
     /**
@@ -167,22 +261,33 @@ public class InterestController {
      */
     public static boolean calculateInterestForMember(Member member, InterestSetting interestSetting, String processedBy) {
         // Check if balance qualifies for interest
-        if (!interestSetting.qualifiesForInterest(member.getSavingsBalance())) {
+        if (!interestSetting.qualifiesForInterestCents(member.getSavingsBalanceCents())) {
             return false;
         }
         
-        // Calculate interest amount
-        double interestAmount = interestSetting.calculateInterest(member.getSavingsBalance());
+        // Calculate interest amount, rounded to the centavo
+        long interestAmount = interestSetting.calculateInterestCents(member.getSavingsBalanceCents());
         
         // Record the interest transaction
-        String description = String.format("Interest at %.2f%% (%s)", 
-                interestSetting.getInterestRate(), 
-                interestSetting.getComputationBasis());
+        String description = getInterestDescription(interestSetting);
         
-        int transactionId = TransactionController.recordInterest(member.getId(), interestAmount, description, processedBy);
+        int transactionId = TransactionController.recordInterest(member.getId(), Money.toDouble(interestAmount),
+                description, processedBy);
         return transactionId > 0;
     }
     
+    /**
+     * Gets the description of interest transactions posted under a setting
+     * 
+     * @param interestSetting The interest setting
+     * @return The transaction description
+     */
+    private static String getInterestDescription(InterestSetting interestSetting) {
+        return String.format("Interest at %.2f%% (%s)", 
+                interestSetting.getInterestRate(), 
+                interestSetting.getComputationBasis());
+    }
+    
     /**
      * Extracts an InterestSetting object from a ResultSet
      * 
@@ -194,7 +299,7 @@ public class InterestController {
         InterestSetting setting = new InterestSetting();
         setting.setId(rs.getInt("id"));
         setting.setInterestRate(rs.getDouble("interest_rate"));
-        setting.setMinimumBalanceRequired(rs.getDouble("minimum_balance_required"));
+        setting.setMinimumBalanceRequiredCents(Money.getCents(rs, "minimum_balance_required"));
         setting.setComputationBasis(rs.getString("computation_basis"));
         setting.setEffectiveDate(rs.getDate("effective_date").toLocalDate());
         setting.setReasonForChange(rs.getString("reason_for_change"));
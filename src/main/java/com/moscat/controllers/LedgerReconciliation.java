@@ -0,0 +1,353 @@
+package com.moscat.controllers;
+
+import com.moscat.utils.CsvWriter;
+import com.moscat.utils.DatabaseManager;
+import com.moscat.utils.JdbcStreams;
+import com.moscat.utils.Money;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Checks that every member's stored savings balances agree with the transaction ledger.
+ * 
+ * For each member the signed sum of savings transactions (deposits and interest add,
+ * withdrawals subtract) is compared with members.savings_balance, with the running_balance
+ * of the latest savings transaction and with the total of the member's savings_accounts
+ * rows. Every mismatch is written to a CSV discrepancy report.
+ * 
+ * The member id range is split in halves on a fork/join pool until a range spans at most
+ * moscat.reconcile.rangeSize ids (default 1000). Each range reads its members, its account
+ * totals and then its transactions in one forward-only pass in index order, so every
+ * transaction is read exactly once and no range holds more than its own members in memory.
+ * The pool has moscat.reconcile.parallelism threads (default: the number of processors, at
+ * most 4), each holding one pooled connection at a time.
+ */
+public final class LedgerReconciliation {
+    
+    private static final int RANGE_SIZE = Integer.getInteger("moscat.reconcile.rangeSize", 1000);
+    private static final int PARALLELISM = Integer.getInteger("moscat.reconcile.parallelism",
+            Math.min(Runtime.getRuntime().availableProcessors(), 4));
+    
+    private static final String MEMBERS_SQL = "SELECT id, member_number, savings_balance FROM members "
+            + "WHERE id >= ? AND id < ?";
+    
+    private static final String ACCOUNTS_SQL = "SELECT member_id, SUM(savings_balance) AS balance FROM savings_accounts "
+            + "WHERE member_id >= ? AND member_id < ? GROUP BY member_id";
+    
+    // Newest first per member, matching idx_transactions_member_date_id, so the first row
+    // of each member carries the latest running balance; %s is the table or archive view
+    private static final String TRANSACTIONS_SQL = "SELECT member_id, running_balance, "
+            + BalanceSnapshots.SIGNED_AMOUNT + " AS signed_amount FROM %s "
+            + "WHERE member_id >= ? AND member_id < ? AND transaction_type IN (" + BalanceSnapshots.SAVINGS_TYPES + ") "
+            + "ORDER BY member_id, transaction_date DESC, id DESC";
+    
+    /**
+     * Member balance does not equal the signed sum of the member's transactions
+     */
+    public static final String CHECK_LEDGER = "MEMBER_VS_LEDGER";
+    
+    /**
+     * Member balance does not equal the running balance of the latest transaction
+     */
+    public static final String CHECK_RUNNING_BALANCE = "MEMBER_VS_RUNNING_BALANCE";
+    
+    /**
+     * Savings account total does not equal the signed sum of the member's transactions
+     */
+    public static final String CHECK_ACCOUNTS = "ACCOUNTS_VS_LEDGER";
+    
+    private LedgerReconciliation() {
+    }
+    
+    /**
+     * Reconciles all members and writes the discrepancy report
+     * 
+     * @param reportFile The CSV file to write; an existing file is replaced
+     * @return The reconciliation result, or null if it could not run
+     */
+    public static Result reconcile(Path reportFile) {
+        long started = System.nanoTime();
+        Result result;
+        try {
+            result = reconcileAll();
+        } catch (SQLException e) {
+            System.err.println("Error reconciling ledger: " + e.getMessage());
+            e.printStackTrace();
+            return null;
+        }
+        
+        result.discrepancies.sort(Comparator.comparingInt((Discrepancy d) -> d.memberId).thenComparing(d -> d.check));
+        try {
+            writeReport(reportFile, result.discrepancies);
+        } catch (IOException e) {
+            System.err.println("Error writing reconciliation report: " + e.getMessage());
+            e.printStackTrace();
+            return null;
+        }
+        
+        result.elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+        return result;
+    }
+    
+    private static Result reconcileAll() throws SQLException {
+        int minId;
+        int maxId;
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT MIN(id), MAX(id) FROM members");
+             ResultSet rs = stmt.executeQuery()) {
+            if (!rs.next() || rs.getObject(1) == null) {
+                return new Result();
+            }
+            minId = rs.getInt(1);
+            maxId = rs.getInt(2);
+        }
+        
+        ForkJoinPool pool = new ForkJoinPool(PARALLELISM);
+        try {
+            String source = TransactionArchive.source(null);
+            return pool.invoke(new RangeTask(minId, maxId + 1, String.format(TRANSACTIONS_SQL, source)));
+        } catch (IllegalStateException e) {
+            // RangeTask wraps SQLExceptions so they can cross the pool, which may wrap them again
+            for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+                if (cause instanceof SQLException) {
+                    throw (SQLException) cause;
+                }
+            }
+            throw e;
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    /**
+     * Reconciles the members with IDs in [from, to)
+     */
+    private static class RangeTask extends RecursiveTask<Result> {
+        private static final long serialVersionUID = 1L;
+        
+        private final int from;
+        private final int to;
+        private final String transactionsSql;
+        
+        RangeTask(int from, int to, String transactionsSql) {
+            this.from = from;
+            this.to = to;
+            this.transactionsSql = transactionsSql;
+        }
+        
+        @Override
+        protected Result compute() {
+            if ((long) to - from > RANGE_SIZE) {
+                int middle = (int) (((long) from + to) >>> 1);
+                RangeTask left = new RangeTask(from, middle, transactionsSql);
+                left.fork();
+                Result right = new RangeTask(middle, to, transactionsSql).compute();
+                return left.join().merge(right);
+            }
+            try {
+                return reconcileRange(from, to, transactionsSql);
+            } catch (SQLException e) {
+                throw new IllegalStateException("Error reconciling members " + from + " to " + (to - 1)
+                        + ": " + e.getMessage(), e);
+            }
+        }
+    }
+    
+    /**
+     * Reconciles one range of member IDs
+     * 
+     * @param from The first member ID, inclusive
+     * @param to The last member ID, exclusive
+     * @param transactionsSql TRANSACTIONS_SQL for the hot table or the archive view
+     * @return The result for the range
+     * @throws SQLException If a query fails
+     */
+    private static Result reconcileRange(int from, int to, String transactionsSql) throws SQLException {
+        JdbcStreams.Binder range = stmt -> {
+            stmt.setInt(1, from);
+            stmt.setInt(2, to);
+        };
+        
+        Map<Integer, MemberLedger> members = new HashMap<>();
+        JdbcStreams.forEach(MEMBERS_SQL, range, rs -> {
+            MemberLedger member = new MemberLedger();
+            member.memberId = rs.getInt("id");
+            member.memberNumber = rs.getString("member_number");
+            member.memberBalance = Money.getCents(rs, "savings_balance");
+            return member;
+        }, member -> members.put(member.memberId, member));
+        
+        Result result = new Result();
+        if (members.isEmpty()) {
+            return result;
+        }
+        
+        JdbcStreams.forEach(ACCOUNTS_SQL, range, rs -> new Row(rs.getInt("member_id"), Money.getCents(rs, "balance"), 0),
+                row -> {
+                    MemberLedger member = members.get(row.memberId);
+                    if (member != null) {
+                        member.accountBalance = row.amount;
+                    }
+                });
+        
+        result.transactionsRead = JdbcStreams.forEach(transactionsSql, range,
+                rs -> new Row(rs.getInt("member_id"), Money.getCents(rs, "signed_amount"),
+                        Money.getCents(rs, "running_balance")),
+                row -> {
+                    MemberLedger member = members.get(row.memberId);
+                    if (member == null) {
+                        return;
+                    }
+                    if (member.transactionCount == 0) {
+                        member.latestRunningBalance = row.runningBalance;
+                    }
+                    member.ledgerBalance = Money.add(member.ledgerBalance, row.amount);
+                    member.transactionCount++;
+                });
+        
+        for (MemberLedger member : members.values()) {
+            result.membersChecked++;
+            member.check(result.discrepancies);
+        }
+        return result;
+    }
+    
+    private static void writeReport(Path reportFile, List<Discrepancy> discrepancies) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(reportFile, StandardCharsets.UTF_8)) {
+            writer.write("member_id,member_number,check,expected,actual,difference");
+            writer.newLine();
+            for (Discrepancy d : discrepancies) {
+                writer.write(d.memberId + "," + CsvWriter.quote(d.memberNumber) + "," + d.check + ","
+                        + Money.toBigDecimal(d.expectedCents).toPlainString() + ","
+                        + Money.toBigDecimal(d.actualCents).toPlainString() + ","
+                        + Money.toBigDecimal(d.getDifferenceCents()).toPlainString());
+                writer.newLine();
+            }
+        }
+    }
+    
+    /**
+     * An account total or transaction row of one member
+     */
+    private static class Row {
+        private final int memberId;
+        private final long amount;
+        private final long runningBalance;
+        
+        Row(int memberId, long amount, long runningBalance) {
+            this.memberId = memberId;
+            this.amount = amount;
+            this.runningBalance = runningBalance;
+        }
+    }
+    
+    /**
+     * Balances of one member collected during a range pass
+     */
+    private static class MemberLedger {
+        private int memberId;
+        private String memberNumber;
+        private long memberBalance;
+        private Long accountBalance;
+        private long ledgerBalance;
+        private long latestRunningBalance;
+        private long transactionCount;
+        
+        void check(List<Discrepancy> discrepancies) {
+            if (memberBalance != ledgerBalance) {
+                discrepancies.add(new Discrepancy(memberId, memberNumber, CHECK_LEDGER, ledgerBalance, memberBalance));
+            }
+            if (transactionCount > 0 && memberBalance != latestRunningBalance) {
+                discrepancies.add(new Discrepancy(memberId, memberNumber, CHECK_RUNNING_BALANCE,
+                        latestRunningBalance, memberBalance));
+            }
+            if (accountBalance != null && accountBalance != ledgerBalance) {
+                discrepancies.add(new Discrepancy(memberId, memberNumber, CHECK_ACCOUNTS, ledgerBalance,
+                        accountBalance));
+            }
+        }
+    }
+    
+    /**
+     * One balance that disagrees with the ledger
+     */
+    public static class Discrepancy {
+        public final int memberId;
+        public final String memberNumber;
+        public final String check;
+        public final long expectedCents;
+        public final long actualCents;
+        
+        Discrepancy(int memberId, String memberNumber, String check, long expectedCents, long actualCents) {
+            this.memberId = memberId;
+            this.memberNumber = memberNumber;
+            this.check = check;
+            this.expectedCents = expectedCents;
+            this.actualCents = actualCents;
+        }
+        
+        public long getDifferenceCents() {
+            return Money.subtract(actualCents, expectedCents);
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("member=%d %s expected=%s actual=%s", memberId, check,
+                    Money.format(expectedCents), Money.format(actualCents));
+        }
+    }
+    
+    /**
+     * Outcome of a reconciliation run
+     */
+    public static class Result {
+        public long membersChecked;
+        public long transactionsRead;
+        public long elapsedMillis;
+        public final List<Discrepancy> discrepancies = new ArrayList<>();
+        
+        Result merge(Result other) {
+            membersChecked += other.membersChecked;
+            transactionsRead += other.transactionsRead;
+            discrepancies.addAll(other.discrepancies);
+            return this;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("members=%d transactions=%d discrepancies=%d elapsed=%dms",
+                    membersChecked, transactionsRead, discrepancies.size(), elapsedMillis);
+        }
+    }
+    
+    /**
+     * Command line entry point
+     * 
+     * @param args The report file, default reconciliation.csv
+     */
+    public static void main(String[] args) {
+        Path reportFile = Paths.get(args.length > 0 ? args[0] : "reconciliation.csv");
+        DatabaseManager.getInstance().initializeDatabase();
+        Result result = reconcile(reportFile);
+        if (result == null) {
+            System.exit(1);
+        }
+        System.out.println(result + ", report written to " + reportFile);
+    }
+}
\ No newline at end of file
@@ -15,6 +15,8 @@ import com.moscat.models.LoanAmortization;
 import com.moscat.models.Member;
 import com.moscat.utils.Constants;
 import com.moscat.utils.DatabaseManager;
+import com.moscat.utils.Money;
+import com.moscat.utils.UnitOfWork;
 
 /**
  * Controller for loan-related operations
@@ -45,12 +47,12 @@ public class LoanController {
                 try (PreparedStatement stmt = conn.prepareStatement(insertLoanQuery, PreparedStatement.RETURN_GENERATED_KEYS)) {
                     stmt.setInt(1, loan.getMemberId());
                     stmt.setString(2, loan.getLoanType());
-                    stmt.setDouble(3, loan.getLoanAmount());
+                    Money.setCents(stmt, 3, loan.getLoanAmountCents());
                     stmt.setDouble(4, loan.getInterestRate());
-                    stmt.setDouble(5, loan.getPreviousLoanBalance());
-                    stmt.setDouble(6, loan.getDeductions());
-                    stmt.setDouble(7, loan.getRlpf());
-                    stmt.setDouble(8, loan.getNetProceeds());
+                    Money.setCents(stmt, 5, loan.getPreviousLoanBalanceCents());
+                    Money.setCents(stmt, 6, loan.getDeductionsCents());
+                    Money.setCents(stmt, 7, loan.getRlpfCents());
+                    Money.setCents(stmt, 8, loan.getNetProceedsCents());
                     stmt.setInt(9, loan.getTermMonths());
                     stmt.setTimestamp(10, Timestamp.valueOf(LocalDateTime.now()));
                     stmt.setString(11, Constants.LOAN_STATUS_PENDING);
@@ -87,10 +89,10 @@ public class LoanController {
                         stmt.setInt(1, loanId);
                         stmt.setInt(2, amortization.getPaymentNumber());
                         stmt.setDate(3, java.sql.Date.valueOf(amortization.getPaymentDate()));
-                        stmt.setDouble(4, amortization.getPrincipalAmount());
-                        stmt.setDouble(5, amortization.getInterestAmount());
-                        stmt.setDouble(6, amortization.getTotalPayment());
-                        stmt.setDouble(7, amortization.getRemainingBalance());
+                        Money.setCents(stmt, 4, amortization.getPrincipalAmountCents());
+                        Money.setCents(stmt, 5, amortization.getInterestAmountCents());
+                        Money.setCents(stmt, 6, amortization.getTotalPaymentCents());
+                        Money.setCents(stmt, 7, amortization.getRemainingBalanceCents());
                         stmt.setString(8, Constants.PAYMENT_STATUS_UNPAID);
                         
                         stmt.addBatch();
@@ -177,18 +179,16 @@ public class LoanController {
     }
     
     /**
-     * Releases a loan (disburses funds)
+     * Releases a loan (disburses funds). The status change and the deposit of
+     * the net proceeds run in one unit of work and commit together.
      * 
      * @param loanId The loan ID
      * @param processedBy The username of the user who released the loan
      * @return True if successful, false otherwise
      */
     public static boolean releaseLoan(int loanId, String processedBy) {
-        try (Connection conn = DatabaseManager.getInstance().getConnection()) {
-            // Start a transaction
-            conn.setAutoCommit(false);
-            
-            try {
+        try {
+            return UnitOfWork.execute("releaseLoan", conn -> {
                 // Get the loan
                 Loan loan = getLoanById(loanId);
                 if (loan == null || !Constants.LOAN_STATUS_APPROVED.equals(loan.getStatus())) {
@@ -207,10 +207,8 @@ public class LoanController {
                     stmt.setString(1, Constants.LOAN_STATUS_ACTIVE);
                     stmt.setInt(2, loanId);
                     
-                    int rowsAffected = stmt.executeUpdate();
-                    if (rowsAffected <= 0) {
-                        conn.rollback();
-                        return false;
+                    if (stmt.executeUpdate() <= 0) {
+                        throw new SQLException("Loan " + loanId + " was not activated");
                     }
                 }
                 
@@ -219,21 +217,11 @@ public class LoanController {
                 String description = String.format("Loan Release: %s (ID: %d)", loan.getLoanType(), loanId);
                 
                 if (!TransactionController.processDeposit(loan.getMemberId(), netProceeds, description, processedBy)) {
-                    conn.rollback();
-                    return false;
+                    throw new SQLException("Net proceeds of loan " + loanId + " were not deposited");
                 }
                 
-                // Commit the transaction
-                conn.commit();
                 return true;
-            } catch (Exception e) {
-                // Rollback in case of an error
-                conn.rollback();
-                throw e;
-            } finally {
-                // Restore auto-commit
-                conn.setAutoCommit(true);
-            }
+            });
         } catch (SQLException e) {
             System.err.println("Error releasing loan: " + e.getMessage());
             e.printStackTrace();
@@ -242,7 +230,8 @@ public class LoanController {
     }
     
     /**
-     * Records a loan payment
+     * Records a loan payment. The amortization update, the withdrawal and the
+     * loan status change run in one unit of work and commit together.
      * 
      * @param loanId The loan ID
      * @param amortizationId The amortization ID
@@ -251,11 +240,8 @@ public class LoanController {
      * @return True if successful, false otherwise
      */
     public static boolean recordLoanPayment(int loanId, int amortizationId, double amount, String processedBy) {
-        try (Connection conn = DatabaseManager.getInstance().getConnection()) {
-            // Start a transaction
-            conn.setAutoCommit(false);
-            
-            try {
+        try {
+            return UnitOfWork.execute("recordLoanPayment", conn -> {
                 // Get the loan
                 Loan loan = getLoanById(loanId);
                 if (loan == null || !isActive(loan)) {
@@ -278,7 +264,6 @@ public class LoanController {
                 if (amount < amortization.getTotalPayment()) {
                     // Partial payment
                     // TODO: Implement partial payment logic if needed
-                    conn.rollback();
                     return false;
                 }
                 
@@ -289,10 +274,8 @@ public class LoanController {
                     stmt.setDate(2, java.sql.Date.valueOf(LocalDate.now()));
                     stmt.setInt(3, amortizationId);
                     
-                    int rowsAffected = stmt.executeUpdate();
-                    if (rowsAffected <= 0) {
-                        conn.rollback();
-                        return false;
+                    if (stmt.executeUpdate() <= 0) {
+                        throw new SQLException("Amortization " + amortizationId + " was not marked paid");
                     }
                 }
                 
@@ -301,8 +284,7 @@ public class LoanController {
                         loan.getLoanType(), loanId, amortization.getPaymentNumber());
                 
                 if (!TransactionController.processWithdrawal(loan.getMemberId(), amount, description, processedBy)) {
-                    conn.rollback();
-                    return false;
+                    throw new SQLException("Payment of loan " + loanId + " was not withdrawn from savings");
                 }
                 
                 // Check if loan is fully paid
@@ -319,17 +301,8 @@ public class LoanController {
                     }
                 }
                 
-                // Commit the transaction
-                conn.commit();
                 return true;
-            } catch (Exception e) {
-                // Rollback in case of an error
-                conn.rollback();
-                throw e;
-            } finally {
-                // Restore auto-commit
-                conn.setAutoCommit(true);
-            }
+            });
         } catch (SQLException e) {
             System.err.println("Error recording loan payment: " + e.getMessage());
             e.printStackTrace();
@@ -355,7 +328,7 @@ public class LoanController {
                 
                 try (ResultSet rs = stmt.executeQuery()) {
                     if (rs.next()) {
-                        amountDue = rs.getDouble(1);
+                        amountDue = Money.toDouble(Money.getCents(rs, 1));
                     }
                 }
             }
@@ -384,7 +357,7 @@ public class LoanController {
                 
                 try (ResultSet rs = stmt.executeQuery()) {
                     if (rs.next()) {
-                        return rs.getDouble(1);
+                        return Money.toDouble(Money.getCents(rs, 1));
                     }
                 }
             }
@@ -624,12 +597,12 @@ public class LoanController {
         loan.setId(rs.getInt("id"));
         loan.setMemberId(rs.getInt("member_id"));
         loan.setLoanType(rs.getString("loan_type"));
-        loan.setLoanAmount(rs.getDouble("loan_amount"));
+        loan.setLoanAmountCents(Money.getCents(rs, "loan_amount"));
         loan.setInterestRate(rs.getDouble("interest_rate"));
-        loan.setPreviousLoanBalance(rs.getDouble("previous_loan_balance"));
-        loan.setDeductions(rs.getDouble("deductions"));
-        loan.setRlpf(rs.getDouble("rlpf"));
-        loan.setNetProceeds(rs.getDouble("net_proceeds"));
+        loan.setPreviousLoanBalanceCents(Money.getCents(rs, "previous_loan_balance"));
+        loan.setDeductionsCents(Money.getCents(rs, "deductions"));
+        loan.setRlpfCents(Money.getCents(rs, "rlpf"));
+        loan.setNetProceedsCents(Money.getCents(rs, "net_proceeds"));
         loan.setTermMonths(rs.getInt("term_months"));
         
         Timestamp applicationDate = rs.getTimestamp("application_date");
@@ -665,10 +638,10 @@ public class LoanController {
             amortization.setPaymentDate(paymentDate.toLocalDate());
         }
         
-        amortization.setPrincipalAmount(rs.getDouble("principal_amount"));
-        amortization.setInterestAmount(rs.getDouble("interest_amount"));
-        amortization.setTotalPayment(rs.getDouble("total_payment"));
-        amortization.setRemainingBalance(rs.getDouble("remaining_balance"));
+        amortization.setPrincipalAmountCents(Money.getCents(rs, "principal_amount"));
+        amortization.setInterestAmountCents(Money.getCents(rs, "interest_amount"));
+        amortization.setTotalPaymentCents(Money.getCents(rs, "total_payment"));
+        amortization.setRemainingBalanceCents(Money.getCents(rs, "remaining_balance"));
         amortization.setPaymentStatus(rs.getString("payment_status"));
         
         java.sql.Date actualPaymentDate = rs.getDate("actual_payment_date");
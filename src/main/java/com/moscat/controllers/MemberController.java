@@ -9,71 +9,102 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import com.moscat.models.Member;
 import com.moscat.utils.Constants;
 import com.moscat.utils.DatabaseManager;
+import com.moscat.utils.JdbcStreams;
+import com.moscat.utils.Money;
+import com.moscat.utils.UnitOfWork;
 
 /**
  * Controller for member-related operations
  */
 public class MemberController {
     
+    private static final String ALL_MEMBERS_SQL = "SELECT * FROM members ORDER BY last_name, first_name";
+    
     /**
-     * Creates a new member
+     * Creates a new member together with the member's savings account. Both rows
+     * are inserted in one unit of work and commit together.
      * 
-     * @param member The member to create
+     * @param member The member to create; its ID is set on success
      * @return True if successful, false otherwise
      */
     public static boolean createMember(Member member) {
-        try (Connection conn = DatabaseManager.getInstance().getConnection()) {
-            // Generate a unique member number if not provided
-            if (member.getMemberNumber() == null || member.getMemberNumber().isEmpty()) {
-                member.setMemberNumber(generateMemberNumber());
-            }
-            
-            // Set join date to current date if not provided
-            if (member.getJoinDate() == null) {
-                member.setJoinDate(new java.util.Date());
-            }
-            
-            // Set last activity date to join date if not provided
-            if (member.getLastActivityDate() == null) {
-                member.setLastActivityDate(member.getJoinDate());
-            }
-            
-            String query = "INSERT INTO members "
-                    + "(member_number, first_name, middle_name, last_name, age, birthdate, present_address, permanent_address, "
-                    + "contact_number, email_address, employer, employment_status, gross_monthly_income, average_net_monthly_income, "
-                    + "join_date, last_activity_date, created_at, updated_at, status) "
-                    + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
-            
-            try (PreparedStatement stmt = conn.prepareStatement(query)) {
-                stmt.setString(1, member.getMemberNumber());
-                stmt.setString(2, member.getFirstName());
-                stmt.setString(3, member.getMiddleName());
-                stmt.setString(4, member.getLastName());
-                stmt.setInt(5, member.getAge());
-                stmt.setDate(6, java.sql.Date.valueOf(member.getBirthdate()));
-                stmt.setString(7, member.getPresentAddress());
-                stmt.setString(8, member.getPermanentAddress());
-                stmt.setString(9, member.getContactNumber());
-                stmt.setString(10, member.getEmailAddress());
-                stmt.setString(11, member.getEmployer());
-                stmt.setString(12, member.getEmploymentStatus());
-                stmt.setDouble(13, member.getGrossMonthlyIncome());
-                stmt.setDouble(14, member.getAverageNetMonthlyIncome());
-                stmt.setDate(15, new java.sql.Date(member.getJoinDate().getTime()));
-                stmt.setDate(16, new java.sql.Date(member.getLastActivityDate().getTime()));
+        try {
+            return UnitOfWork.execute("createMember", conn -> {
+                // Generate a unique member number if not provided
+                if (member.getMemberNumber() == null || member.getMemberNumber().isEmpty()) {
+                    member.setMemberNumber(generateMemberNumber());
+                }
                 
-                LocalDateTime now = LocalDateTime.now();
-                stmt.setTimestamp(17, Timestamp.valueOf(now));
-                stmt.setTimestamp(18, Timestamp.valueOf(now));
-                stmt.setString(19, Constants.STATUS_ACTIVE);
+                // Set join date to current date if not provided
+                if (member.getJoinDate() == null) {
+                    member.setJoinDate(new java.util.Date());
+                }
                 
-                int rowsAffected = stmt.executeUpdate();
-                return rowsAffected > 0;
-            }
+                // Set last activity date to join date if not provided
+                if (member.getLastActivityDate() == null) {
+                    member.setLastActivityDate(member.getJoinDate());
+                }
+                
+                String query = "INSERT INTO members "
+                        + "(member_number, first_name, middle_name, last_name, age, birthdate, present_address, permanent_address, "
+                        + "contact_number, email_address, employer, employment_status, gross_monthly_income, average_net_monthly_income, "
+                        + "join_date, last_activity_date, created_at, updated_at, status) "
+                        + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+                
+                try (PreparedStatement stmt = conn.prepareStatement(query, PreparedStatement.RETURN_GENERATED_KEYS)) {
+                    stmt.setString(1, member.getMemberNumber());
+                    stmt.setString(2, member.getFirstName());
+                    stmt.setString(3, member.getMiddleName());
+                    stmt.setString(4, member.getLastName());
+                    stmt.setInt(5, member.getAge());
+                    stmt.setDate(6, java.sql.Date.valueOf(member.getBirthdate()));
+                    stmt.setString(7, member.getPresentAddress());
+                    stmt.setString(8, member.getPermanentAddress());
+                    stmt.setString(9, member.getContactNumber());
+                    stmt.setString(10, member.getEmailAddress());
+                    stmt.setString(11, member.getEmployer());
+                    stmt.setString(12, member.getEmploymentStatus());
+                    Money.setCents(stmt, 13, member.getGrossMonthlyIncomeCents());
+                    Money.setCents(stmt, 14, member.getAverageNetMonthlyIncomeCents());
+                    stmt.setDate(15, new java.sql.Date(member.getJoinDate().getTime()));
+                    stmt.setDate(16, new java.sql.Date(member.getLastActivityDate().getTime()));
+                    
+                    LocalDateTime now = LocalDateTime.now();
+                    stmt.setTimestamp(17, Timestamp.valueOf(now));
+                    stmt.setTimestamp(18, Timestamp.valueOf(now));
+                    stmt.setString(19, Constants.STATUS_ACTIVE);
+                    
+                    if (stmt.executeUpdate() <= 0) {
+                        return false;
+                    }
+                    try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
+                        if (!generatedKeys.next()) {
+                            throw new SQLException("No ID generated for member " + member.getMemberNumber());
+                        }
+                        member.setId(generatedKeys.getInt(1));
+                    }
+                }
+                
+                // Open the savings account postings are applied to, as V3 does for existing members
+                String accountQuery = "INSERT INTO savings_accounts "
+                        + "(member_id, account_number, savings_balance, interest_earned, status, open_date, last_activity_date) "
+                        + "VALUES (?, ?, 0, 0, ?, ?, ?)";
+                try (PreparedStatement stmt = conn.prepareStatement(accountQuery)) {
+                    stmt.setInt(1, member.getId());
+                    stmt.setString(2, member.getMemberNumber());
+                    stmt.setString(3, Constants.ACCOUNT_ACTIVE);
+                    stmt.setDate(4, new java.sql.Date(member.getJoinDate().getTime()));
+                    stmt.setDate(5, new java.sql.Date(member.getLastActivityDate().getTime()));
+                    stmt.executeUpdate();
+                }
+                return true;
+            });
         } catch (SQLException e) {
             System.err.println("Error creating member: " + e.getMessage());
             e.printStackTrace();
@@ -130,8 +161,8 @@ public class MemberController {
                 stmt.setString(10, member.getEmailAddress());
                 stmt.setString(11, member.getEmployer());
                 stmt.setString(12, member.getEmploymentStatus());
-                stmt.setDouble(13, member.getGrossMonthlyIncome());
-                stmt.setDouble(14, member.getAverageNetMonthlyIncome());
+                Money.setCents(stmt, 13, member.getGrossMonthlyIncomeCents());
+                Money.setCents(stmt, 14, member.getAverageNetMonthlyIncomeCents());
                 
                 // Set join date to current date if not provided
                 if (member.getJoinDate() == null) {
@@ -194,16 +225,8 @@ public class MemberController {
     public static List<Member> getAllMembers() {
         List<Member> members = new ArrayList<>();
         
-        try (Connection conn = DatabaseManager.getInstance().getConnection()) {
-            String query = "SELECT * FROM members ORDER BY last_name, first_name";
-            
-            try (PreparedStatement stmt = conn.prepareStatement(query);
-                 ResultSet rs = stmt.executeQuery()) {
-                
-                while (rs.next()) {
-                    members.add(extractMemberFromResultSet(rs));
-                }
-            }
+        try {
+            forEachMember(members::add);
         } catch (SQLException e) {
             System.err.println("Error getting members: " + e.getMessage());
             e.printStackTrace();
@@ -212,6 +235,28 @@ public class MemberController {
         return members;
     }
     
+    /**
+     * Passes every member to a consumer without holding all members in memory
+     * 
+     * @param consumer Receives each member, ordered by last name and first name
+     * @return The number of members passed to the consumer
+     * @throws SQLException If the query fails
+     */
+    public static long forEachMember(Consumer<? super Member> consumer) throws SQLException {
+        return JdbcStreams.forEach(ALL_MEMBERS_SQL, null, MemberController::extractMemberFromResultSet, consumer);
+    }
+    
+    /**
+     * Streams every member without holding all members in memory. The stream holds a
+     * database connection; close it with try-with-resources.
+     * 
+     * @return Stream of members, ordered by last name and first name
+     * @throws SQLException If the query fails
+     */
+    public static Stream<Member> streamAllMembers() throws SQLException {
+        return JdbcStreams.stream(ALL_MEMBERS_SQL, null, MemberController::extractMemberFromResultSet);
+    }
+    
     /**
      * Gets dormant members
      * 
@@ -252,7 +297,7 @@ public class MemberController {
             String query = "UPDATE members SET savings_balance = ?, updated_at = ? WHERE id = ?";
             
             try (PreparedStatement stmt = conn.prepareStatement(query)) {
-                stmt.setDouble(1, newBalance);
+                Money.setCents(stmt, 1, Money.ofDouble(newBalance));
                 stmt.setTimestamp(2, Timestamp.valueOf(LocalDateTime.now()));
                 stmt.setInt(3, memberId);
                 
@@ -278,7 +323,7 @@ public class MemberController {
             String query = "UPDATE members SET interest_earned = interest_earned + ?, updated_at = ? WHERE id = ?";
             
             try (PreparedStatement stmt = conn.prepareStatement(query)) {
-                stmt.setDouble(1, additionalInterest);
+                Money.setCents(stmt, 1, Money.ofDouble(additionalInterest));
                 stmt.setTimestamp(2, Timestamp.valueOf(LocalDateTime.now()));
                 stmt.setInt(3, memberId);
                 
@@ -329,7 +374,7 @@ public class MemberController {
                  ResultSet rs = stmt.executeQuery()) {
                 
                 if (rs.next()) {
-                    return rs.getDouble(1);
+                    return Money.toDouble(Money.getCents(rs, 1));
                 }
             }
         } catch (SQLException e) {
@@ -620,10 +665,10 @@ public class MemberController {
         member.setEmailAddress(rs.getString("email_address"));
         member.setEmployer(rs.getString("employer"));
         member.setEmploymentStatus(rs.getString("employment_status"));
-        member.setGrossMonthlyIncome(rs.getDouble("gross_monthly_income"));
-        member.setAverageNetMonthlyIncome(rs.getDouble("average_net_monthly_income"));
-        member.setSavingsBalance(rs.getDouble("savings_balance"));
-        member.setInterestEarned(rs.getDouble("interest_earned"));
+        member.setGrossMonthlyIncomeCents(Money.getCents(rs, "gross_monthly_income"));
+        member.setAverageNetMonthlyIncomeCents(Money.getCents(rs, "average_net_monthly_income"));
+        member.setSavingsBalanceCents(Money.getCents(rs, "savings_balance"));
+        member.setInterestEarnedCents(Money.getCents(rs, "interest_earned"));
         
         Timestamp createdAt = rs.getTimestamp("created_at");
         if (createdAt != null) {
@@ -0,0 +1,559 @@
+package com.moscat.controllers;
+
+import com.moscat.models.Transaction;
+import com.moscat.utils.Constants;
+import com.moscat.utils.CsvReader;
+import com.moscat.utils.CsvWriter;
+import com.moscat.utils.DatabaseManager;
+import com.moscat.utils.Money;
+import com.moscat.utils.UnitOfWork;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Posts an employer's payroll remittance file: savings deposits and loan installments
+ * deducted from members' pay.
+ * 
+ * The file is CSV with a header line and the columns member_number, type (SAVINGS or
+ * LOAN), amount, loan_id and reference; loan_id may be empty when the member has one
+ * active loan. Members, active loans, unpaid installments and lines already posted by an
+ * earlier run are each looked up with one query for the whole file. A loan line must
+ * cover a whole number of the loan's next unpaid installments; it marks them paid, records
+ * a LOAN_PAYMENT transaction and closes the loan when nothing is left unpaid. Savings lines
+ * are applied through PostingPipeline in the same unit of work.
+ * 
+ * Lines are applied in chunks of moscat.remittance.chunkSize (default 500), each in one
+ * database transaction. Lines that cannot be matched, and the lines of a chunk that rolled
+ * back, are written to an exceptions file. Every line is posted under an idempotency key
+ * derived from the file contents and line number, so running the same file again posts
+ * only what was not posted before.
+ */
+public final class PayrollRemittance {
+    
+    private static final int CHUNK_SIZE = Integer.getInteger("moscat.remittance.chunkSize", 500);
+    
+    private static final String SAVINGS = "SAVINGS";
+    private static final String LOAN = "LOAN";
+    
+    private PayrollRemittance() {
+    }
+    
+    /**
+     * Posts a remittance file
+     * 
+     * @param file The remittance file
+     * @param exceptionsFile The CSV file that receives lines that were not posted
+     * @param processedBy The username of the processor
+     * @return The run result, or null if the file could not be read or the lookups failed
+     */
+    public static Result process(Path file, Path exceptionsFile, String processedBy) {
+        long started = System.nanoTime();
+        Result result = new Result();
+        List<Line> exceptions = new ArrayList<>();
+        
+        try {
+            String keyPrefix = "PR" + checksum(file) + "-";
+            List<Line> lines = parse(file, keyPrefix, exceptions);
+            result.linesRead = lines.size() + exceptions.size();
+            long parsed = System.nanoTime();
+            result.parseMillis = (parsed - started) / 1_000_000;
+            
+            List<Line> ready = resolve(lines, exceptions, result);
+            long resolved = System.nanoTime();
+            result.resolveMillis = (resolved - parsed) / 1_000_000;
+            
+            for (int from = 0; from < ready.size(); from += CHUNK_SIZE) {
+                List<Line> chunk = ready.subList(from, Math.min(from + CHUNK_SIZE, ready.size()));
+                applyChunk(chunk, processedBy, exceptions, result);
+                result.chunks++;
+            }
+            long applied = System.nanoTime();
+            result.applyMillis = (applied - resolved) / 1_000_000;
+            
+            exceptions.sort((a, b) -> Long.compare(a.lineNumber, b.lineNumber));
+            writeExceptions(exceptionsFile, exceptions);
+            result.exceptions = exceptions.size();
+            result.reportMillis = (System.nanoTime() - applied) / 1_000_000;
+        } catch (IOException | SQLException e) {
+            System.err.println("Error processing remittance " + file + ": " + e.getMessage());
+            e.printStackTrace();
+            return null;
+        }
+        
+        result.elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+        return result;
+    }
+    
+    private static List<Line> parse(Path file, String keyPrefix, List<Line> exceptions) throws IOException {
+        List<Line> lines = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            long lineNumber = 0;
+            String text;
+            while ((text = reader.readLine()) != null) {
+                lineNumber++;
+                if (lineNumber == 1 || text.trim().isEmpty()) {
+                    continue; // header
+                }
+                Line line = new Line();
+                line.lineNumber = lineNumber;
+                line.idempotencyKey = keyPrefix + lineNumber;
+                try {
+                    List<String> fields = CsvReader.splitLine(text);
+                    line.memberNumber = field(fields, 0);
+                    line.type = field(fields, 1) != null ? field(fields, 1).toUpperCase() : null;
+                    line.amountText = field(fields, 2);
+                    String loanId = field(fields, 3);
+                    line.reference = field(fields, 4);
+                    if (line.memberNumber == null) {
+                        throw new IllegalArgumentException("Member number is required");
+                    }
+                    if (!SAVINGS.equals(line.type) && !LOAN.equals(line.type)) {
+                        throw new IllegalArgumentException("Type must be SAVINGS or LOAN");
+                    }
+                    line.amountCents = Money.parse(line.amountText);
+                    if (line.amountCents <= 0) {
+                        throw new IllegalArgumentException("Amount must be positive");
+                    }
+                    line.loanId = loanId != null ? Integer.parseInt(loanId) : 0;
+                    lines.add(line);
+                } catch (IllegalArgumentException e) {
+                    // NumberFormatException included
+                    line.reason = e.getMessage();
+                    exceptions.add(line);
+                }
+            }
+        }
+        return lines;
+    }
+    
+    private static String field(List<String> fields, int index) {
+        if (index >= fields.size()) {
+            return null;
+        }
+        String value = fields.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+    
+    /**
+     * Matches every line to its member, loan and installments with one query per table
+     * 
+     * @return The lines to post, in file order
+     */
+    private static List<Line> resolve(List<Line> lines, List<Line> exceptions, Result result) throws SQLException {
+        List<Line> ready = new ArrayList<>(lines.size());
+        try (Connection conn = DatabaseManager.getConnection()) {
+            Set<String> memberNumbers = new LinkedHashSet<>();
+            Set<String> keys = new HashSet<>();
+            for (Line line : lines) {
+                memberNumbers.add(line.memberNumber);
+                keys.add(line.idempotencyKey);
+            }
+            
+            Map<String, Integer> members = new HashMap<>();
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "SELECT id, member_number FROM members WHERE member_number = ANY(?)")) {
+                stmt.setArray(1, conn.createArrayOf("VARCHAR", memberNumbers.toArray()));
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        members.put(rs.getString("member_number"), rs.getInt("id"));
+                    }
+                }
+            }
+            
+            // Keys of lines posted by an earlier run of the same file, archived or not
+            Set<String> posted = new HashSet<>();
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "SELECT idempotency_key FROM " + TransactionArchive.ALL + " WHERE idempotency_key = ANY(?)")) {
+                stmt.setArray(1, conn.createArrayOf("VARCHAR", keys.toArray()));
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        posted.add(rs.getString(1));
+                    }
+                }
+            }
+            
+            Map<Integer, List<Integer>> activeLoans = new HashMap<>();
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "SELECT id, member_id FROM loans WHERE status = ? AND member_id = ANY(?) ORDER BY id")) {
+                stmt.setString(1, Constants.LOAN_ACTIVE);
+                stmt.setArray(2, integerArray(conn, members.values()));
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        activeLoans.computeIfAbsent(rs.getInt("member_id"), k -> new ArrayList<>()).add(rs.getInt("id"));
+                    }
+                }
+            }
+            
+            Set<Integer> loanIds = new HashSet<>();
+            for (List<Integer> ids : activeLoans.values()) {
+                loanIds.addAll(ids);
+            }
+            Map<Integer, Deque<Installment>> unpaid = new HashMap<>();
+            try (PreparedStatement stmt = conn.prepareStatement("SELECT id, loan_id, payment_number, total_payment "
+                    + "FROM loan_amortization WHERE payment_status = ? AND loan_id = ANY(?) "
+                    + "ORDER BY loan_id, payment_number")) {
+                stmt.setString(1, Constants.PAYMENT_STATUS_UNPAID);
+                stmt.setArray(2, integerArray(conn, loanIds));
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        unpaid.computeIfAbsent(rs.getInt("loan_id"), k -> new ArrayDeque<>()).add(new Installment(
+                                rs.getInt("id"), rs.getInt("payment_number"), Money.getCents(rs, "total_payment")));
+                    }
+                }
+            }
+            
+            for (Line line : lines) {
+                Integer memberId = members.get(line.memberNumber);
+                if (memberId == null) {
+                    line.reason = "Unknown member number";
+                } else if (posted.contains(line.idempotencyKey)) {
+                    result.alreadyPosted++;
+                    continue;
+                } else {
+                    line.memberId = memberId;
+                    if (LOAN.equals(line.type)) {
+                        line.reason = matchInstallments(line, activeLoans.get(memberId), unpaid);
+                    }
+                }
+                if (line.reason != null) {
+                    exceptions.add(line);
+                } else {
+                    ready.add(line);
+                }
+            }
+        }
+        return ready;
+    }
+    
+    /**
+     * Takes the installments a loan line pays off the front of its loan's unpaid queue
+     * 
+     * @return Why the line cannot be posted, or null if it matched
+     */
+    private static String matchInstallments(Line line, List<Integer> loans, Map<Integer, Deque<Installment>> unpaid) {
+        if (loans == null || loans.isEmpty()) {
+            return "Member has no active loan";
+        }
+        if (line.loanId == 0) {
+            if (loans.size() > 1) {
+                return "Member has " + loans.size() + " active loans; loan_id is required";
+            }
+            line.loanId = loans.get(0);
+        } else if (!loans.contains(line.loanId)) {
+            return "Loan " + line.loanId + " is not an active loan of this member";
+        }
+        
+        Deque<Installment> queue = unpaid.get(line.loanId);
+        if (queue == null || queue.isEmpty()) {
+            return "Loan " + line.loanId + " has no unpaid installment";
+        }
+        long covered = 0;
+        for (Installment installment : queue) {
+            if (covered + installment.totalCents > line.amountCents) {
+                break;
+            }
+            covered += installment.totalCents;
+            line.installments.add(installment);
+        }
+        if (covered != line.amountCents) {
+            line.installments.clear();
+            return "Amount does not cover a whole number of installments; next installment due is "
+                    + Money.toBigDecimal(queue.peekFirst().totalCents).toPlainString();
+        }
+        for (int i = 0; i < line.installments.size(); i++) {
+            queue.removeFirst();
+        }
+        return null;
+    }
+    
+    /**
+     * Posts one chunk of lines in one database transaction
+     */
+    private static void applyChunk(List<Line> chunk, String processedBy, List<Line> exceptions, Result result) {
+        List<Line> deposits = new ArrayList<>();
+        List<Line> payments = new ArrayList<>();
+        for (Line line : chunk) {
+            (SAVINGS.equals(line.type) ? deposits : payments).add(line);
+        }
+        
+        List<Line> rejected = new ArrayList<>();
+        try {
+            Result applied = UnitOfWork.execute("applyRemittance", conn -> {
+                Result outcome = new Result();
+                rejected.clear();
+                applyDeposits(deposits, processedBy, rejected, outcome);
+                applyLoanPayments(conn, payments, processedBy, outcome);
+                return outcome;
+            });
+            result.add(applied);
+            exceptions.addAll(rejected);
+        } catch (SQLException e) {
+            System.err.println("Error applying remittance chunk: " + e.getMessage());
+            for (Line line : chunk) {
+                line.reason = "Chunk rolled back: " + e.getMessage();
+                exceptions.add(line);
+            }
+        }
+    }
+    
+    private static void applyDeposits(List<Line> deposits, String processedBy, List<Line> rejected, Result outcome)
+            throws SQLException {
+        if (deposits.isEmpty()) {
+            return;
+        }
+        List<PostingPipeline.Posting> postings = new ArrayList<>(deposits.size());
+        for (Line line : deposits) {
+            postings.add(PostingPipeline.Posting.deposit(line.memberId, line.amountCents,
+                    description("Payroll savings deduction", line), processedBy)
+                    .withIdempotencyKey(line.idempotencyKey));
+        }
+        // Joins the current unit of work
+        List<Transaction> transactions = PostingPipeline.applyBatch(postings);
+        for (int i = 0; i < deposits.size(); i++) {
+            Line line = deposits.get(i);
+            if (transactions.get(i) == null) {
+                line.reason = "Member has no savings account";
+                rejected.add(line);
+            } else {
+                outcome.depositsPosted++;
+                outcome.depositedCents += line.amountCents;
+            }
+        }
+    }
+    
+    private static void applyLoanPayments(Connection conn, List<Line> payments, String processedBy, Result outcome)
+            throws SQLException {
+        if (payments.isEmpty()) {
+            return;
+        }
+        LocalDate today = LocalDate.now();
+        String markPaid = "UPDATE loan_amortization SET payment_status = ?, actual_payment_date = ? "
+                + "WHERE id = ? AND payment_status = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(markPaid)) {
+            for (Line line : payments) {
+                for (Installment installment : line.installments) {
+                    stmt.setString(1, Constants.PAYMENT_STATUS_PAID);
+                    stmt.setDate(2, java.sql.Date.valueOf(today));
+                    stmt.setInt(3, installment.id);
+                    stmt.setString(4, Constants.PAYMENT_STATUS_UNPAID);
+                    stmt.addBatch();
+                }
+            }
+            for (int count : stmt.executeBatch()) {
+                if (count != 1) {
+                    throw new SQLException("An installment was paid by another terminal during the run");
+                }
+            }
+        }
+        
+        // The savings balance is unchanged; it is recorded as the running balance
+        Set<Integer> memberIds = new HashSet<>();
+        Set<Integer> loanIds = new HashSet<>();
+        for (Line line : payments) {
+            memberIds.add(line.memberId);
+            loanIds.add(line.loanId);
+        }
+        Map<Integer, long[]> accounts = new HashMap<>();
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT member_id, id, savings_balance FROM savings_accounts WHERE member_id = ANY(?)")) {
+            stmt.setArray(1, integerArray(conn, memberIds));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    accounts.put(rs.getInt("member_id"), new long[] { rs.getInt("id"),
+                            Money.getCents(rs, "savings_balance") });
+                }
+            }
+        }
+        
+        LocalDateTime now = LocalDateTime.now();
+        List<Transaction> transactions = new ArrayList<>(payments.size());
+        for (Line line : payments) {
+            long[] account = accounts.get(line.memberId);
+            Installment first = line.installments.get(0);
+            Installment last = line.installments.get(line.installments.size() - 1);
+            String installments = first == last ? "#" + first.paymentNumber
+                    : "#" + first.paymentNumber + "-#" + last.paymentNumber;
+            
+            Transaction transaction = new Transaction();
+            transaction.setMemberId(line.memberId);
+            transaction.setAccountId(account != null ? (int) account[0] : 0);
+            transaction.setTransactionType("LOAN_PAYMENT");
+            transaction.setAmountCents(line.amountCents);
+            transaction.setRunningBalanceCents(account != null ? account[1] : 0);
+            transaction.setTransactionDate(now);
+            transaction.setDescription(description("Payroll loan payment: loan " + line.loanId + ", payment "
+                    + installments, line));
+            transaction.setProcessedBy(processedBy);
+            transaction.setIdempotencyKey(line.idempotencyKey);
+            transactions.add(transaction);
+            
+            outcome.loanPaymentsPosted++;
+            outcome.loanPaidCents += line.amountCents;
+            outcome.installmentsPaid += line.installments.size();
+        }
+        TransactionController.BatchResult batch = TransactionController.recordTransactions(transactions);
+        if (!batch.isSuccessful()) {
+            throw new SQLException("Could not record loan payment: " + batch.failures.get(0));
+        }
+        
+        String close = "UPDATE loans SET status = ? WHERE id = ANY(?) AND status = ? AND NOT EXISTS "
+                + "(SELECT 1 FROM loan_amortization a WHERE a.loan_id = loans.id AND a.payment_status <> ?)";
+        try (PreparedStatement stmt = conn.prepareStatement(close)) {
+            stmt.setString(1, Constants.LOAN_PAID);
+            stmt.setArray(2, integerArray(conn, loanIds));
+            stmt.setString(3, Constants.LOAN_ACTIVE);
+            stmt.setString(4, Constants.PAYMENT_STATUS_PAID);
+            outcome.loansClosed += stmt.executeUpdate();
+        }
+    }
+    
+    private static Array integerArray(Connection conn, Collection<Integer> ids) throws SQLException {
+        return conn.createArrayOf("INTEGER", ids.toArray());
+    }
+    
+    private static String description(String text, Line line) {
+        return line.reference != null ? text + " (" + line.reference + ")" : text;
+    }
+    
+    private static void writeExceptions(Path exceptionsFile, List<Line> exceptions) throws IOException {
+        try (CsvWriter writer = CsvWriter.open(exceptionsFile, false)) {
+            writer.writeRow("line_number", "member_number", "type", "amount", "loan_id", "reference", "reason");
+            for (Line line : exceptions) {
+                writer.writeRow(String.valueOf(line.lineNumber), line.memberNumber, line.type, line.amountText,
+                        line.loanId != 0 ? String.valueOf(line.loanId) : null, line.reference, line.reason);
+            }
+        }
+    }
+    
+    private static String checksum(Path file) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                crc.update(buffer, 0, read);
+            }
+        }
+        return String.format("%08x", crc.getValue());
+    }
+    
+    /**
+     * Remittance batch entry point
+     * 
+     * @param args The remittance file and optionally the exceptions file, default
+     *        file.exceptions.csv
+     */
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: PayrollRemittance file [exceptionsFile]");
+            System.exit(2);
+        }
+        
+        DatabaseManager.getInstance().initializeDatabase();
+        Path file = Paths.get(args[0]);
+        Path exceptionsFile = Paths.get(args.length > 1 ? args[1] : args[0] + ".exceptions.csv");
+        Result result = process(file, exceptionsFile, "payroll");
+        if (result == null) {
+            System.exit(1);
+        }
+        System.out.println("Remittance posted: " + result);
+        if (result.exceptions > 0) {
+            System.out.println(result.exceptions + " lines not posted, see " + exceptionsFile);
+        }
+    }
+    
+    /**
+     * One line of the remittance file
+     */
+    private static final class Line {
+        private long lineNumber;
+        private String memberNumber;
+        private String type;
+        private String amountText;
+        private long amountCents;
+        private int loanId;
+        private String reference;
+        private String idempotencyKey;
+        private int memberId;
+        private final List<Installment> installments = new ArrayList<>();
+        private String reason;
+    }
+    
+    /**
+     * An unpaid loan_amortization row
+     */
+    private static final class Installment {
+        private final int id;
+        private final int paymentNumber;
+        private final long totalCents;
+        
+        Installment(int id, int paymentNumber, long totalCents) {
+            this.id = id;
+            this.paymentNumber = paymentNumber;
+            this.totalCents = totalCents;
+        }
+    }
+    
+    /**
+     * Outcome of a remittance run
+     */
+    public static class Result {
+        public long linesRead;
+        public long depositsPosted;
+        public long depositedCents;
+        public long loanPaymentsPosted;
+        public long loanPaidCents;
+        public long installmentsPaid;
+        public long loansClosed;
+        public long alreadyPosted;
+        public long exceptions;
+        public int chunks;
+        public long parseMillis;
+        public long resolveMillis;
+        public long applyMillis;
+        public long reportMillis;
+        public long elapsedMillis;
+        
+        private void add(Result chunk) {
+            depositsPosted += chunk.depositsPosted;
+            depositedCents += chunk.depositedCents;
+            loanPaymentsPosted += chunk.loanPaymentsPosted;
+            loanPaidCents += chunk.loanPaidCents;
+            installmentsPaid += chunk.installmentsPaid;
+            loansClosed += chunk.loansClosed;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("lines=%d deposits=%d (%s) loanPayments=%d (%s) installments=%d loansClosed=%d "
+                    + "alreadyPosted=%d exceptions=%d chunks=%d parse=%dms resolve=%dms apply=%dms report=%dms "
+                    + "elapsed=%dms", linesRead, depositsPosted, Money.format(depositedCents), loanPaymentsPosted,
+                    Money.format(loanPaidCents), installmentsPaid, loansClosed, alreadyPosted, exceptions, chunks,
+                    parseMillis, resolveMillis, applyMillis, reportMillis, elapsedMillis);
+        }
+    }
+}
\ No newline at end of file
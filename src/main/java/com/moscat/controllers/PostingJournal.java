@@ -0,0 +1,614 @@
+package com.moscat.controllers;
+
+import com.moscat.models.Transaction;
+import com.moscat.utils.DatabaseManager;
+import com.moscat.utils.Money;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary journal of committed postings, for replay and for feeding other
+ * systems.
+ * 
+ * Every transaction recorded through TransactionController is appended once its database
+ * transaction has committed, so the journal never holds a rolled-back posting. Records are
+ * RECORD_SIZE bytes with their own CRC32 and are written into memory-mapped segment files
+ * (journal-0000000001.seg, ...) of moscat.journal.segmentRecords records each (default
+ * 65536) in moscat.journal.dir (default data/journal). A full segment is sealed with its
+ * record count and a CRC32 over all its records. On restart, the tail of the open segment
+ * is scanned and appending resumes after the last intact record, so a torn write is
+ * overwritten.
+ * 
+ * moscat.journal.fsync sets when mapped pages are forced to disk: "commit" after every
+ * append, "interval" every moscat.journal.fsyncIntervalMs (default 200), or "os" only when
+ * a segment is sealed. A crash between the database commit and the append, or before the
+ * next force, can drop the newest postings from the journal; the database stays the
+ * source of truth. Set moscat.journal.enabled=false to turn the journal off.
+ * 
+ * Only the process that has the database file open writes the journal: the SERVER node, or
+ * in EMBEDDED mode the process that opened the file first. CLIENT terminals, and EMBEDDED
+ * processes that reach the file through AUTO_SERVER, do not journal, so postings made there
+ * are in the database but not in the journal. The writer also holds an exclusive lock on
+ * journal.lock in the journal directory; a process that cannot get it does not journal.
+ * Ownership is decided on the first append and kept until the process exits.
+ * 
+ * Descriptions and the processing user are not journaled, to keep records fixed-width.
+ */
+public final class PostingJournal {
+    
+    /**
+     * Size of one record in bytes
+     */
+    public static final int RECORD_SIZE = 128;
+    
+    private static final int HEADER_SIZE = 64;
+    private static final int MAGIC = 0x4D534A31; // "MSJ1"
+    private static final int VERSION = 1;
+    
+    private static final int TYPE_BYTES = 20;
+    private static final int REFERENCE_BYTES = 40;
+    private static final int CRC_OFFSET = RECORD_SIZE - 4;
+    
+    private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("moscat.journal.enabled", "true"));
+    private static final Path DIRECTORY = Paths.get(System.getProperty("moscat.journal.dir",
+            System.getProperty("moscat.db.dataDir", "./data") + "/journal"));
+    private static final int SEGMENT_RECORDS = Integer.getInteger("moscat.journal.segmentRecords", 65536);
+    private static final String FSYNC = System.getProperty("moscat.journal.fsync", "interval").trim().toLowerCase();
+    private static final long FSYNC_INTERVAL_MS = Long.getLong("moscat.journal.fsyncIntervalMs", 200L);
+    
+    private static final Object LOCK = new Object();
+    private static final AtomicLong APPENDED = new AtomicLong();
+    private static final AtomicLong FORCES = new AtomicLong();
+    private static final AtomicLong FAILURES = new AtomicLong();
+    
+    // Guarded by LOCK
+    private static Segment current;
+    private static long nextSequence = 1;
+    private static boolean dirty;
+    private static boolean opened;
+    private static boolean standby;
+    private static boolean started;
+    private static FileChannel lockChannel;
+    private static FileLock fileLock;
+    
+    private PostingJournal() {
+    }
+    
+    /**
+     * Appends committed transactions. Call after commit; a failure is logged and counted
+     * but never undoes the posting.
+     * 
+     * @param transactions The committed transactions
+     */
+    static void append(List<Transaction> transactions) {
+        if (!ENABLED || transactions.isEmpty()) {
+            return;
+        }
+        synchronized (LOCK) {
+            try {
+                if (!open()) {
+                    return;
+                }
+                ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+                for (Transaction transaction : transactions) {
+                    if (current.count == current.capacity) {
+                        roll();
+                    }
+                    encode(record, nextSequence, transaction);
+                    current.buffer.position(HEADER_SIZE + current.count * RECORD_SIZE);
+                    current.buffer.put(record.array());
+                    current.count++;
+                    nextSequence++;
+                }
+                APPENDED.addAndGet(transactions.size());
+                dirty = true;
+                if ("commit".equals(FSYNC)) {
+                    force();
+                }
+            } catch (IOException | RuntimeException e) {
+                FAILURES.incrementAndGet();
+                System.err.println("Error appending to posting journal: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+    }
+    
+    /**
+     * Opens the newest segment on first use and finds where appending resumes
+     * 
+     * @return true if this process writes the journal
+     */
+    private static boolean open() throws IOException {
+        if (opened) {
+            return true;
+        }
+        if (standby) {
+            return false;
+        }
+        if (!DatabaseManager.ownsDatabase()) {
+            standby = true;
+            System.out.println("Posting journal is not written here: the database is open in another process");
+            return false;
+        }
+        Files.createDirectories(DIRECTORY);
+        if (!lock()) {
+            standby = true;
+            System.err.println("Posting journal " + DIRECTORY + " is locked by another process");
+            return false;
+        }
+        List<Path> segments = listSegments();
+        if (segments.isEmpty()) {
+            current = Segment.create(segmentPath(1), 1, 1, SEGMENT_RECORDS);
+        } else {
+            Segment last = Segment.open(segments.get(segments.size() - 1), true);
+            if (last.sealed) {
+                long next = last.firstSequence + last.count;
+                long index = last.index + 1;
+                last.close();
+                current = Segment.create(segmentPath(index), index, next, SEGMENT_RECORDS);
+            } else {
+                current = last;
+                current.count = current.scanIntactRecords();
+            }
+        }
+        nextSequence = current.firstSequence + current.count;
+        opened = true;
+        
+        // A close() followed by an append opens the journal again; start these only once
+        if (started) {
+            return true;
+        }
+        started = true;
+        if ("interval".equals(FSYNC)) {
+            ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "moscat-journal-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(PostingJournal::flush, FSYNC_INTERVAL_MS, FSYNC_INTERVAL_MS,
+                    TimeUnit.MILLISECONDS);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(PostingJournal::close, "moscat-journal-close"));
+        return true;
+    }
+    
+    /**
+     * Takes the exclusive journal lock
+     * 
+     * @return false if another process holds it
+     */
+    private static boolean lock() throws IOException {
+        FileChannel channel = FileChannel.open(DIRECTORY.resolve("journal.lock"), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE);
+        FileLock acquired;
+        try {
+            acquired = channel.tryLock();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        if (acquired == null) {
+            channel.close();
+            return false;
+        }
+        lockChannel = channel;
+        fileLock = acquired;
+        return true;
+    }
+    
+    /**
+     * Seals the full segment and starts the next one
+     */
+    private static void roll() throws IOException {
+        current.seal();
+        FORCES.incrementAndGet();
+        long index = current.index + 1;
+        long first = current.firstSequence + current.count;
+        current.close();
+        current = Segment.create(segmentPath(index), index, first, SEGMENT_RECORDS);
+    }
+    
+    private static void force() {
+        current.buffer.force();
+        FORCES.incrementAndGet();
+        dirty = false;
+    }
+    
+    /**
+     * Forces appended records to disk if any were appended since the last force
+     */
+    public static void flush() {
+        synchronized (LOCK) {
+            if (opened && dirty) {
+                try {
+                    force();
+                } catch (RuntimeException e) {
+                    FAILURES.incrementAndGet();
+                    System.err.println("Error forcing posting journal: " + e.getMessage());
+                }
+            }
+        }
+    }
+    
+    /**
+     * Forces and closes the open segment and releases the journal lock; the next append
+     * opens it again
+     */
+    public static void close() {
+        synchronized (LOCK) {
+            if (!opened) {
+                return;
+            }
+            try {
+                force();
+                current.close();
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Error closing posting journal: " + e.getMessage());
+            }
+            try {
+                fileLock.release();
+                lockChannel.close();
+            } catch (IOException e) {
+                System.err.println("Error releasing posting journal lock: " + e.getMessage());
+            }
+            current = null;
+            fileLock = null;
+            lockChannel = null;
+            opened = false;
+        }
+    }
+    
+    private static void encode(ByteBuffer record, long sequence, Transaction transaction) {
+        record.clear();
+        record.putLong(sequence);
+        record.putInt(transaction.getId());
+        record.putInt(transaction.getMemberId());
+        record.putInt(transaction.getAccountId());
+        record.putInt(transaction.getTransactionBy());
+        record.putLong(transaction.getAmountCents());
+        record.putLong(transaction.getRunningBalanceCents());
+        LocalDateTime date = transaction.getTransactionDate();
+        // Wall-clock time as recorded in the database, not an instant
+        record.putLong(date != null ? date.toInstant(ZoneOffset.UTC).toEpochMilli() : Long.MIN_VALUE);
+        putAscii(record, transaction.getTransactionType(), TYPE_BYTES);
+        putAscii(record, transaction.getReferenceNumber(), REFERENCE_BYTES);
+        while (record.position() < CRC_OFFSET) {
+            record.put((byte) 0);
+        }
+        record.putInt(crc(record.array(), 0, CRC_OFFSET));
+    }
+    
+    private static void putAscii(ByteBuffer record, String value, int width) {
+        byte[] bytes = value != null ? value.getBytes(StandardCharsets.US_ASCII) : new byte[0];
+        int length = Math.min(bytes.length, width);
+        record.put(bytes, 0, length);
+        for (int i = length; i < width; i++) {
+            record.put((byte) 0);
+        }
+    }
+    
+    private static String getAscii(ByteBuffer record, int width) {
+        byte[] bytes = new byte[width];
+        record.get(bytes);
+        int length = 0;
+        while (length < width && bytes[length] != 0) {
+            length++;
+        }
+        return length > 0 ? new String(bytes, 0, length, StandardCharsets.US_ASCII) : null;
+    }
+    
+    private static int crc(byte[] bytes, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+    
+    private static Path segmentPath(long index) {
+        return DIRECTORY.resolve(String.format("journal-%010d.seg", index));
+    }
+    
+    private static List<Path> listSegments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        if (!Files.isDirectory(DIRECTORY)) {
+            return segments;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(DIRECTORY, "journal-*.seg")) {
+            for (Path path : stream) {
+                segments.add(path);
+            }
+        }
+        // Zero-padded names sort in segment order
+        Collections.sort(segments);
+        return segments;
+    }
+    
+    /**
+     * Reads the records of a range of segments in order, checking every record CRC and
+     * the CRC of every sealed segment. The open segment is read up to its last intact record.
+     * 
+     * @param firstSegment The first segment index, inclusive
+     * @param lastSegment The last segment index, inclusive
+     * @param consumer Receives each record
+     * @return The number of records read
+     * @throws IOException If a segment cannot be read or fails its checksum
+     */
+    public static long replay(long firstSegment, long lastSegment, Consumer<? super Record> consumer)
+            throws IOException {
+        // Appends made before the replay are visible in the files
+        flush();
+        long count = 0;
+        for (Path path : listSegments()) {
+            try (Segment segment = Segment.open(path, false)) {
+                if (segment.index < firstSegment || segment.index > lastSegment) {
+                    continue;
+                }
+                int records = segment.sealed ? segment.count : segment.scanIntactRecords();
+                if (segment.sealed) {
+                    segment.verifySeal();
+                }
+                byte[] bytes = new byte[RECORD_SIZE];
+                for (int i = 0; i < records; i++) {
+                    segment.buffer.position(HEADER_SIZE + i * RECORD_SIZE);
+                    segment.buffer.get(bytes);
+                    Record record = decode(bytes);
+                    if (record == null || record.sequence != segment.firstSequence + i) {
+                        throw new IOException("Corrupt record " + i + " in " + path);
+                    }
+                    consumer.accept(record);
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+    
+    private static Record decode(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        if (buffer.getInt(CRC_OFFSET) != crc(bytes, 0, CRC_OFFSET)) {
+            return null;
+        }
+        Record record = new Record();
+        record.sequence = buffer.getLong();
+        record.transactionId = buffer.getInt();
+        record.memberId = buffer.getInt();
+        record.accountId = buffer.getInt();
+        record.transactionBy = buffer.getInt();
+        record.amountCents = buffer.getLong();
+        record.runningBalanceCents = buffer.getLong();
+        long millis = buffer.getLong();
+        record.transactionDate = millis != Long.MIN_VALUE
+                ? LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000L),
+                        (int) Math.floorMod(millis, 1000L) * 1_000_000, ZoneOffset.UTC)
+                : null;
+        record.transactionType = getAscii(buffer, TYPE_BYTES);
+        record.referenceNumber = getAscii(buffer, REFERENCE_BYTES);
+        return record;
+    }
+    
+    /**
+     * Gets the journal statistics
+     * 
+     * @return Snapshot of append counts
+     */
+    public static Statistics getStatistics() {
+        Statistics stats = new Statistics();
+        stats.appended = APPENDED.get();
+        stats.forces = FORCES.get();
+        stats.failures = FAILURES.get();
+        synchronized (LOCK) {
+            stats.nextSequence = opened ? nextSequence : 0;
+        }
+        return stats;
+    }
+    
+    /**
+     * Replay tool.
+     * 
+     * <pre>
+     * PostingJournal verify                      check every segment and record checksum
+     * PostingJournal balances [first [last]]     print each member's savings balance change
+     *                                            over a segment range as CSV
+     * </pre>
+     * 
+     * @param args The command and optional segment range
+     */
+    public static void main(String[] args) throws IOException {
+        String command = args.length > 0 ? args[0] : "verify";
+        long first = args.length > 1 ? Long.parseLong(args[1]) : 1;
+        long last = args.length > 2 ? Long.parseLong(args[2]) : Long.MAX_VALUE;
+        
+        if ("verify".equals(command)) {
+            long started = System.nanoTime();
+            long records = replay(first, last, record -> { });
+            System.out.println("Verified " + records + " records in "
+                    + (System.nanoTime() - started) / 1_000_000 + " ms");
+        } else if ("balances".equals(command)) {
+            Map<Integer, Long> balances = new TreeMap<>();
+            replay(first, last, record -> balances.merge(record.memberId, record.getBalanceEffectCents(), Long::sum));
+            System.out.println("member_id,balance_change");
+            for (Map.Entry<Integer, Long> entry : balances.entrySet()) {
+                System.out.println(entry.getKey() + "," + Money.toBigDecimal(entry.getValue()).toPlainString());
+            }
+        } else {
+            System.err.println("Usage: PostingJournal verify|balances [firstSegment [lastSegment]]");
+            System.exit(2);
+        }
+    }
+    
+    /**
+     * One journaled posting
+     */
+    public static class Record {
+        public long sequence;
+        public int transactionId;
+        public int memberId;
+        public int accountId;
+        public int transactionBy;
+        public long amountCents;
+        public long runningBalanceCents;
+        public LocalDateTime transactionDate;
+        public String transactionType;
+        public String referenceNumber;
+        
+        /**
+         * Gets the change this posting made to the savings balance, by the same rule as
+         * the balance snapshots: deposits and interest add, withdrawals subtract
+         * 
+         * @return The signed amount in centavos, 0 for other types
+         */
+        public long getBalanceEffectCents() {
+            return BalanceSnapshots.signedAmountCents(transactionType, amountCents);
+        }
+    }
+    
+    /**
+     * Snapshot of journal statistics
+     */
+    public static class Statistics {
+        public long appended;
+        public long forces;
+        public long failures;
+        public long nextSequence;
+        
+        @Override
+        public String toString() {
+            return String.format("appended=%d forces=%d failures=%d nextSequence=%d",
+                    appended, forces, failures, nextSequence);
+        }
+    }
+    
+    /**
+     * A mapped segment file
+     */
+    private static final class Segment implements AutoCloseable {
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private final long index;
+        private final long firstSequence;
+        private final int capacity;
+        private final boolean sealed;
+        private int count;
+        
+        private Segment(FileChannel channel, MappedByteBuffer buffer, long index, long firstSequence, int capacity,
+                boolean sealed, int count) {
+            this.channel = channel;
+            this.buffer = buffer;
+            this.index = index;
+            this.firstSequence = firstSequence;
+            this.capacity = capacity;
+            this.sealed = sealed;
+            this.count = count;
+        }
+        
+        static Segment create(Path path, long index, long firstSequence, int capacity) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    HEADER_SIZE + (long) capacity * RECORD_SIZE);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(8, RECORD_SIZE);
+            buffer.putInt(12, capacity);
+            buffer.putLong(16, index);
+            buffer.putLong(24, firstSequence);
+            buffer.putInt(32, 0);
+            buffer.putInt(36, 0);
+            buffer.force();
+            return new Segment(channel, buffer, index, firstSequence, capacity, false, 0);
+        }
+        
+        static Segment open(Path path, boolean writable) throws IOException {
+            FileChannel channel = writable
+                    ? FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                    : FileChannel.open(path, StandardOpenOption.READ);
+            try {
+                MappedByteBuffer buffer = channel.map(
+                        writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (channel.size() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+                    throw new IOException(path + " is not a posting journal segment");
+                }
+                if (buffer.getInt(4) != VERSION || buffer.getInt(8) != RECORD_SIZE) {
+                    throw new IOException(path + " has unsupported version " + buffer.getInt(4));
+                }
+                int capacity = buffer.getInt(12);
+                if (channel.size() < HEADER_SIZE + (long) capacity * RECORD_SIZE) {
+                    throw new IOException(path + " is truncated");
+                }
+                return new Segment(channel, buffer, buffer.getLong(16), buffer.getLong(24), capacity,
+                        buffer.getInt(36) == 1, buffer.getInt(32));
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+        
+        /**
+         * Counts the records from the start of the segment up to the first torn or
+         * unwritten one
+         */
+        int scanIntactRecords() {
+            byte[] bytes = new byte[RECORD_SIZE];
+            int intact = 0;
+            while (intact < capacity) {
+                buffer.position(HEADER_SIZE + intact * RECORD_SIZE);
+                buffer.get(bytes);
+                Record record = decode(bytes);
+                if (record == null || record.sequence != firstSequence + intact) {
+                    break;
+                }
+                intact++;
+            }
+            return intact;
+        }
+        
+        void seal() {
+            buffer.putInt(32, count);
+            buffer.putInt(40, recordsCrc());
+            buffer.putInt(36, 1);
+            buffer.force();
+        }
+        
+        void verifySeal() throws IOException {
+            if (buffer.getInt(40) != recordsCrc()) {
+                throw new IOException("Checksum mismatch in sealed journal segment " + index);
+            }
+        }
+        
+        private int recordsCrc() {
+            CRC32 crc = new CRC32();
+            ByteBuffer records = buffer.duplicate();
+            records.position(HEADER_SIZE);
+            records.limit(HEADER_SIZE + count * RECORD_SIZE);
+            crc.update(records);
+            return (int) crc.getValue();
+        }
+        
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,496 @@
+package com.moscat.controllers;
+
+import com.moscat.models.Transaction;
+import com.moscat.utils.AccountLocks;
+import com.moscat.utils.Money;
+import com.moscat.utils.UnitOfWork;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single-writer pipeline that applies savings postings with group commit.
+ * 
+ * Tellers submit postings and get a future back. One writer thread drains the queue
+ * and applies up to moscat.posting.maxBatch postings (default 64) in one database
+ * transaction with one commit. After the first posting arrives it waits up to
+ * moscat.posting.maxLingerMs (default 2) for more. If a batch fails, its postings are
+ * retried one at a time, so one bad posting does not fail the others. Each batch takes
+ * the AccountLocks of its members and reads balances FOR UPDATE, so postings made
+ * outside the pipeline cannot interleave with it. A posting with an idempotency key that
+ * was already recorded changes no balance and completes with the original transaction. A posting made while a UnitOfWork is
+ * active is applied inline, so it joins the caller's transaction.
+ * Set moscat.posting.pipeline=false to apply every posting inline.
+ */
+public final class PostingPipeline {
+    
+    private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("moscat.posting.pipeline", "true"));
+    private static final int MAX_BATCH = Math.max(1, Integer.getInteger("moscat.posting.maxBatch", 64));
+    private static final long MAX_LINGER_NANOS = TimeUnit.MILLISECONDS.toNanos(
+            Long.getLong("moscat.posting.maxLingerMs", 2L));
+    private static final int QUEUE_SIZE = Integer.getInteger("moscat.posting.queueSize", 10000);
+    
+    private static final String SELECT_ACCOUNT_SQL = "SELECT id, savings_balance FROM savings_accounts WHERE member_id = ? FOR UPDATE";
+    private static final String UPDATE_BALANCE_SQL = "UPDATE savings_accounts SET savings_balance = ? WHERE id = ?";
+    
+    private static final BlockingQueue<Pending> QUEUE = new LinkedBlockingQueue<>(QUEUE_SIZE);
+    
+    private static final AtomicLong SUBMITTED = new AtomicLong();
+    private static final AtomicLong POSTED = new AtomicLong();
+    private static final AtomicLong REJECTED = new AtomicLong();
+    private static final AtomicLong FAILED = new AtomicLong();
+    private static final AtomicLong BATCHES = new AtomicLong();
+    private static final AtomicLong RETRIED_BATCHES = new AtomicLong();
+    
+    private static Thread writer;
+    
+    private PostingPipeline() {
+    }
+    
+    /**
+     * Applies a posting and waits until it is committed
+     * 
+     * @param posting The posting
+     * @return The recorded transaction, or null if the account does not exist or has insufficient balance
+     * @throws SQLException If the posting could not be applied
+     */
+    public static Transaction post(Posting posting) throws SQLException {
+        if (!ENABLED || UnitOfWork.isActive()) {
+            return applyBatch(Collections.singletonList(posting)).get(0);
+        }
+        
+        try {
+            return submit(posting).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for posting to commit", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            throw new SQLException("Posting failed: " + cause.getMessage(), cause);
+        }
+    }
+    
+    /**
+     * Submits a posting to the writer thread
+     * 
+     * @param posting The posting
+     * @return A future completed with the recorded transaction once committed, or with null if
+     *         the account does not exist or has insufficient balance
+     */
+    public static CompletableFuture<Transaction> submit(Posting posting) {
+        SUBMITTED.incrementAndGet();
+        Pending pending = new Pending(posting);
+        if (!ENABLED) {
+            process(Collections.singletonList(pending));
+            return pending.future;
+        }
+        
+        ensureWriterStarted();
+        if (!QUEUE.offer(pending)) {
+            FAILED.incrementAndGet();
+            pending.future.completeExceptionally(new RejectedExecutionException("Posting queue is full"));
+        }
+        return pending.future;
+    }
+    
+    private static synchronized void ensureWriterStarted() {
+        if (writer == null) {
+            writer = new Thread(PostingPipeline::drain, "moscat-posting-writer");
+            writer.setDaemon(true);
+            writer.start();
+        }
+    }
+    
+    /**
+     * Writer loop: collects a batch, lingering briefly for more postings, and applies it
+     */
+    private static void drain() {
+        List<Pending> batch = new ArrayList<>(MAX_BATCH);
+        while (true) {
+            try {
+                batch.add(QUEUE.take());
+                QUEUE.drainTo(batch, MAX_BATCH - batch.size());
+                
+                long deadline = System.nanoTime() + MAX_LINGER_NANOS;
+                while (batch.size() < MAX_BATCH) {
+                    long remaining = deadline - System.nanoTime();
+                    Pending next = remaining > 0 ? QUEUE.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    QUEUE.drainTo(batch, MAX_BATCH - batch.size());
+                }
+                
+                process(batch);
+            } catch (InterruptedException e) {
+                // The writer runs for the life of the application
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                System.err.println("Error in posting writer: " + e.getMessage());
+                e.printStackTrace();
+                for (Pending pending : batch) {
+                    pending.future.completeExceptionally(e);
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+    
+    /**
+     * Applies a batch and completes its futures, retrying postings one by one if the batch fails
+     * 
+     * @param batch The pending postings
+     */
+    private static void process(List<Pending> batch) {
+        List<Posting> postings = new ArrayList<>(batch.size());
+        for (Pending pending : batch) {
+            postings.add(pending.posting);
+        }
+        
+        try {
+            complete(batch, applyBatch(postings));
+            BATCHES.incrementAndGet();
+            return;
+        } catch (SQLException | RuntimeException e) {
+            if (batch.size() == 1) {
+                fail(batch.get(0), e);
+                return;
+            }
+            System.err.println("Error applying posting batch of " + batch.size() + ", retrying singly: " + e.getMessage());
+            RETRIED_BATCHES.incrementAndGet();
+        }
+        
+        for (Pending pending : batch) {
+            try {
+                complete(Collections.singletonList(pending), applyBatch(Collections.singletonList(pending.posting)));
+                BATCHES.incrementAndGet();
+            } catch (SQLException | RuntimeException e) {
+                fail(pending, e);
+            }
+        }
+    }
+    
+    private static void complete(List<Pending> batch, List<Transaction> results) {
+        for (int i = 0; i < batch.size(); i++) {
+            Transaction result = results.get(i);
+            if (result != null) {
+                POSTED.incrementAndGet();
+            } else {
+                REJECTED.incrementAndGet();
+            }
+            batch.get(i).future.complete(result);
+        }
+    }
+    
+    private static void fail(Pending pending, Exception e) {
+        FAILED.incrementAndGet();
+        System.err.println("Error applying posting for member " + pending.posting.memberId + ": " + e.getMessage());
+        pending.future.completeExceptionally(e);
+    }
+    
+    /**
+     * Applies postings in one unit of work: reads each account once, applies the postings
+     * in order, writes each changed balance once and records the transactions in one batch
+     * 
+     * @param postings The postings
+     * @return The recorded transaction per posting (the original one for a repeated idempotency
+     *         key), or null where the posting was rejected
+     * @throws SQLException If the batch could not be applied; nothing is committed
+     */
+    static List<Transaction> applyBatch(List<Posting> postings) throws SQLException {
+        try {
+            return UnitOfWork.execute("applyPostings", conn -> applyPostings(conn, postings));
+        } catch (SQLException | RuntimeException e) {
+            // The key may have been used by another terminal; make the retry look it up
+            for (Posting posting : postings) {
+                IdempotencyKeys.markSuspect(posting.idempotencyKey);
+            }
+            throw e;
+        }
+    }
+    
+    private static List<Transaction> applyPostings(Connection conn, List<Posting> postings) throws SQLException {
+        Map<Integer, Account> accounts = loadAccounts(conn, postings);
+        List<Transaction> results = new ArrayList<>(postings.size());
+        List<Transaction> recorded = new ArrayList<>(postings.size());
+        Map<String, Transaction> keyed = new HashMap<>();
+        LocalDateTime now = LocalDateTime.now();
+        
+        for (Posting posting : postings) {
+            if (posting.idempotencyKey != null) {
+                // Checked under the account lock, so a concurrent retry cannot slip past
+                Transaction original = keyed.get(posting.idempotencyKey);
+                if (original == null) {
+                    original = IdempotencyKeys.findOriginal(posting.idempotencyKey);
+                }
+                if (original != null) {
+                    results.add(original);
+                    continue;
+                }
+            }
+            
+            Account account = accounts.get(posting.memberId);
+            if (account == null || (!posting.credit && account.balance < posting.amountCents)) {
+                results.add(null);
+                continue;
+            }
+            
+            account.balance = posting.credit
+                    ? Money.add(account.balance, posting.amountCents)
+                    : Money.subtract(account.balance, posting.amountCents);
+            account.changed = true;
+            
+            Transaction transaction = new Transaction();
+            transaction.setMemberId(posting.memberId);
+            transaction.setAccountId(account.id);
+            transaction.setTransactionType(posting.transactionType);
+            transaction.setAmountCents(posting.amountCents);
+            transaction.setRunningBalanceCents(account.balance);
+            transaction.setDescription(posting.description);
+            transaction.setProcessedBy(posting.processedBy);
+            transaction.setTransactionDate(now);
+            transaction.setIdempotencyKey(posting.idempotencyKey);
+            if (posting.idempotencyKey != null) {
+                keyed.put(posting.idempotencyKey, transaction);
+            }
+            results.add(transaction);
+            recorded.add(transaction);
+        }
+        
+        updateBalances(conn, accounts);
+        
+        TransactionController.BatchResult batch = TransactionController.recordTransactions(recorded);
+        if (!batch.isSuccessful()) {
+            throw new SQLException("Could not record posting: " + batch.failures.get(0));
+        }
+        return results;
+    }
+    
+    private static Map<Integer, Account> loadAccounts(Connection conn, List<Posting> postings) throws SQLException {
+        List<Integer> memberIds = new ArrayList<>(postings.size());
+        for (Posting posting : postings) {
+            memberIds.add(posting.memberId);
+        }
+        AccountLocks.lockAll(memberIds);
+        
+        Map<Integer, Account> accounts = new LinkedHashMap<>();
+        try (PreparedStatement stmt = conn.prepareStatement(SELECT_ACCOUNT_SQL)) {
+            for (Posting posting : postings) {
+                if (accounts.containsKey(posting.memberId)) {
+                    continue;
+                }
+                stmt.setInt(1, posting.memberId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    accounts.put(posting.memberId, rs.next()
+                            ? new Account(rs.getInt("id"), Money.getCents(rs, "savings_balance"))
+                            : null);
+                }
+            }
+        }
+        return accounts;
+    }
+    
+    private static void updateBalances(Connection conn, Map<Integer, Account> accounts) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(UPDATE_BALANCE_SQL)) {
+            boolean any = false;
+            for (Account account : accounts.values()) {
+                if (account != null && account.changed) {
+                    Money.setCents(stmt, 1, account.balance);
+                    stmt.setInt(2, account.id);
+                    stmt.addBatch();
+                    any = true;
+                }
+            }
+            if (any) {
+                stmt.executeBatch();
+            }
+        }
+    }
+    
+    /**
+     * Gets the pipeline statistics
+     * 
+     * @return Snapshot of posting and batch counts
+     */
+    public static Statistics getStatistics() {
+        Statistics stats = new Statistics();
+        stats.queued = QUEUE.size();
+        stats.submitted = SUBMITTED.get();
+        stats.posted = POSTED.get();
+        stats.rejected = REJECTED.get();
+        stats.failed = FAILED.get();
+        stats.batches = BATCHES.get();
+        stats.retriedBatches = RETRIED_BATCHES.get();
+        return stats;
+    }
+    
+    /**
+     * A credit or debit to a member's savings account
+     */
+    public static class Posting {
+        private final int memberId;
+        private final String transactionType;
+        private final long amountCents;
+        private final boolean credit;
+        private final String description;
+        private final String processedBy;
+        private final String idempotencyKey;
+        
+        private Posting(int memberId, String transactionType, long amountCents, boolean credit,
+                String description, String processedBy, String idempotencyKey) {
+            this.memberId = memberId;
+            this.transactionType = transactionType;
+            this.amountCents = amountCents;
+            this.credit = credit;
+            this.description = description;
+            this.processedBy = processedBy;
+            this.idempotencyKey = idempotencyKey;
+        }
+        
+        /**
+         * Creates a deposit posting
+         * 
+         * @param memberId The member ID
+         * @param amountCents The amount in centavos
+         * @param description The transaction description
+         * @param processedBy The username of the processor
+         * @return The posting
+         */
+        public static Posting deposit(int memberId, long amountCents, String description, String processedBy) {
+            return new Posting(memberId, "SAVINGS_DEPOSIT", amountCents, true, description, processedBy, null);
+        }
+        
+        /**
+         * Creates a withdrawal posting; it is rejected if the balance is insufficient
+         * 
+         * @param memberId The member ID
+         * @param amountCents The amount in centavos
+         * @param description The transaction description
+         * @param processedBy The username of the processor
+         * @return The posting
+         */
+        public static Posting withdrawal(int memberId, long amountCents, String description, String processedBy) {
+            return new Posting(memberId, "SAVINGS_WITHDRAWAL", amountCents, false, description, processedBy, null);
+        }
+        
+        /**
+         * Creates an interest posting
+         * 
+         * @param memberId The member ID
+         * @param amountCents The amount in centavos
+         * @param description The transaction description
+         * @param processedBy The username of the processor
+         * @return The posting
+         */
+        public static Posting interest(int memberId, long amountCents, String description, String processedBy) {
+            return new Posting(memberId, "INTEREST_EARNED", amountCents, true, description, processedBy, null);
+        }
+        
+        /**
+         * Returns a copy of this posting that is recorded only once per key
+         * 
+         * @param key Client-supplied idempotency key, at most 64 characters, or null
+         * @return The keyed posting
+         */
+        public Posting withIdempotencyKey(String key) {
+            if (key != null && key.length() > IdempotencyKeys.MAX_KEY_LENGTH) {
+                throw new IllegalArgumentException("Idempotency key is longer than "
+                        + IdempotencyKeys.MAX_KEY_LENGTH + " characters");
+            }
+            return new Posting(memberId, transactionType, amountCents, credit, description, processedBy, key);
+        }
+        
+        public int getMemberId() {
+            return memberId;
+        }
+        
+        public String getTransactionType() {
+            return transactionType;
+        }
+        
+        public long getAmountCents() {
+            return amountCents;
+        }
+        
+        public String getIdempotencyKey() {
+            return idempotencyKey;
+        }
+    }
+    
+    /**
+     * A submitted posting waiting for the writer
+     */
+    private static class Pending {
+        private final Posting posting;
+        private final CompletableFuture<Transaction> future = new CompletableFuture<>();
+        
+        Pending(Posting posting) {
+            this.posting = posting;
+        }
+    }
+    
+    /**
+     * A savings account row touched by a batch
+     */
+    private static class Account {
+        private final int id;
+        private long balance;
+        private boolean changed;
+        
+        Account(int id, long balance) {
+            this.id = id;
+            this.balance = balance;
+        }
+    }
+    
+    /**
+     * Snapshot of posting pipeline statistics
+     */
+    public static class Statistics {
+        public int queued;
+        public long submitted;
+        public long posted;
+        public long rejected;
+        public long failed;
+        public long batches;
+        public long retriedBatches;
+        
+        /**
+         * Gets the average number of postings committed per batch
+         * 
+         * @return Average batch size
+         */
+        public double getAverageBatchSize() {
+            return batches == 0 ? 0.0 : (double) (posted + rejected) / batches;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("queued=%d submitted=%d posted=%d rejected=%d failed=%d batches=%d "
+                    + "retried=%d avgBatch=%.1f", queued, submitted, posted, rejected, failed, batches,
+                    retriedBatches, getAverageBatchSize());
+        }
+    }
+}
@@ -6,6 +6,8 @@ import com.moscat.models.Transaction;
 import com.moscat.models.User;
 import com.moscat.utils.Constants;
 import com.moscat.utils.DateUtils;
+import com.moscat.utils.DbExecutor;
+import com.moscat.utils.Money;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
@@ -16,6 +18,8 @@ import java.io.FileOutputStream;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -31,6 +35,48 @@ public class ReportController {
      * @return JPanel containing report
      */
     public static JPanel generateMemberReport(Member member) {
+        return buildMemberReport(loadMemberReport(member, DbExecutor.TaskContext.none()));
+    }
+    
+    /**
+     * Loads the data for a member report. Does not touch Swing components, so it
+     * can run off the Event Dispatch Thread.
+     * 
+     * @param member Member to report on
+     * @param context Progress and cancellation hooks
+     * @return The report data
+     */
+    public static MemberReportData loadMemberReport(Member member, DbExecutor.TaskContext context) {
+        MemberReportData data = new MemberReportData();
+        data.member = member;
+        if (member == null) {
+            return data;
+        }
+        
+        // Get savings accounts for member
+        context.progress(0, 2, "Loading savings accounts");
+        java.util.Map<String, Object> accountData = MemberController.getMemberSavingsAccounts(member.getId());
+        data.accounts.add(SavingsAccount.fromMap(accountData));
+        
+        // Get recent transactions for member's accounts
+        context.progress(1, 2, "Loading recent transactions");
+        for (SavingsAccount account : data.accounts) {
+            context.checkCancelled();
+            data.recentTransactions.put(account, TransactionController.getAccountTransactions(account.getId(), 5));
+        }
+        
+        context.progress(2, 2, "Done");
+        return data;
+    }
+    
+    /**
+     * Builds a member report panel from loaded data. Must run on the Event Dispatch Thread.
+     * 
+     * @param data The report data
+     * @return JPanel containing report
+     */
+    public static JPanel buildMemberReport(MemberReportData data) {
+        Member member = data.member;
         if (member == null) {
             JPanel errorPanel = new JPanel();
             errorPanel.add(new JLabel("Error: Member not found"));
@@ -82,10 +128,7 @@ public class ReportController {
         addLabelPair(detailsPanel, "Join Date:", DateUtils.formatDateForDisplay(member.getJoinDate()), gbc, 13);
         addLabelPair(detailsPanel, "Last Activity Date:", DateUtils.formatDateForDisplay(member.getLastActivityDate()), gbc, 14);
         
-        // Get savings accounts for member
-        java.util.Map<String, Object> accountData = MemberController.getMemberSavingsAccounts(member.getId());
-        List<SavingsAccount> accounts = new java.util.ArrayList<>();
-        accounts.add(SavingsAccount.fromMap(accountData));
+        List<SavingsAccount> accounts = data.accounts;
         
         // Create account summary panel
         JPanel accountsPanel = new JPanel(new BorderLayout());
@@ -146,7 +189,7 @@ public class ReportController {
             
             // Add transaction data (last 10 transactions)
             for (SavingsAccount account : accounts) {
-                List<Transaction> transactions = TransactionController.getAccountTransactions(account.getId(), 5);
+                List<Transaction> transactions = data.recentTransactions.get(account);
                 for (Transaction transaction : transactions) {
                     Object[] rowData = {
                         DateUtils.formatDateForDisplay(transaction.getTransactionDate()),
@@ -193,6 +236,58 @@ public class ReportController {
      * @return JPanel containing report
      */
     public static JPanel generateDailyTransactionReport(String date) {
+        return buildDailyTransactionReport(loadDailyTransactionReport(date, DbExecutor.TaskContext.none()));
+    }
+    
+    /**
+     * Loads the data for a daily transaction report. Does not touch Swing components,
+     * so it can run off the Event Dispatch Thread.
+     * 
+     * @param date Date string (yyyy-MM-dd)
+     * @param context Progress and cancellation hooks
+     * @return The report data
+     */
+    public static DailyReportData loadDailyTransactionReport(String date, DbExecutor.TaskContext context) {
+        DailyReportData data = new DailyReportData();
+        data.date = date;
+        
+        context.progress(0, -1, "Loading transaction summary");
+        data.summaries = TransactionController.getDailyTransactionSummary(date);
+        context.checkCancelled();
+        
+        context.progress(0, -1, "Loading transactions");
+        data.transactions = TransactionController.getTransactionsByDateRange(date, date);
+        context.checkCancelled();
+        
+        // Look up each account once, not once per transaction
+        int done = 0;
+        int total = data.transactions.size();
+        for (Transaction transaction : data.transactions) {
+            int accountId = transaction.getAccountId();
+            if (!data.accountNumbers.containsKey(accountId)) {
+                context.checkCancelled();
+                SavingsAccount account = SavingsController.getAccountById(accountId);
+                data.accountNumbers.put(accountId, account != null ? account.getAccountNumber() : "N/A");
+            }
+            done++;
+            if (done % 100 == 0) {
+                context.progress(done, total, "Resolving accounts");
+            }
+        }
+        
+        context.progress(total, total, "Done");
+        return data;
+    }
+    
+    /**
+     * Builds a daily transaction report panel from loaded data. Must run on the
+     * Event Dispatch Thread.
+     * 
+     * @param data The report data
+     * @return JPanel containing report
+     */
+    public static JPanel buildDailyTransactionReport(DailyReportData data) {
+        String date = data.date;
         JPanel reportPanel = new JPanel();
         reportPanel.setLayout(new BorderLayout());
         reportPanel.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
@@ -209,8 +304,7 @@ public class ReportController {
         headerPanel.add(titleLabel, BorderLayout.WEST);
         headerPanel.add(dateLabel, BorderLayout.EAST);
         
-        // Get transaction summaries
-        List<com.moscat.models.TransactionSummary> summaries = TransactionController.getDailyTransactionSummary(date);
+        List<com.moscat.models.TransactionSummary> summaries = data.summaries;
         
         // Create summary panel
         JPanel summaryPanel = new JPanel(new BorderLayout());
@@ -228,18 +322,18 @@ public class ReportController {
         };
         
         // Add summary data
-        double grandTotal = 0;
+        long grandTotal = 0;
         for (com.moscat.models.TransactionSummary summary : summaries) {
             Object[] rowData = {
                 summary.getTransactionTypeDisplay(),
-                String.format("₱%.2f", summary.getTotalAmount())
+                "₱" + Money.format(summary.getTotalAmountCents())
             };
             summaryModel.addRow(rowData);
-            grandTotal += summary.getTotalAmount();
+            grandTotal = Money.add(grandTotal, summary.getTotalAmountCents());
         }
         
         // Add grand total
-        Object[] totalRow = {"GRAND TOTAL", String.format("₱%.2f", grandTotal)};
+        Object[] totalRow = {"GRAND TOTAL", "₱" + Money.format(grandTotal)};
         summaryModel.addRow(totalRow);
         
         JTable summaryTable = new JTable(summaryModel);
@@ -249,8 +343,7 @@ public class ReportController {
         
         summaryPanel.add(new JScrollPane(summaryTable), BorderLayout.CENTER);
         
-        // Get transactions for the day
-        List<Transaction> transactions = TransactionController.getTransactionsByDateRange(date, date);
+        List<Transaction> transactions = data.transactions;
         
         // Create transactions panel
         JPanel transactionsPanel = new JPanel(new BorderLayout());
@@ -273,8 +366,7 @@ public class ReportController {
             // Add transaction data
             SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm:ss");
             for (Transaction transaction : transactions) {
-                SavingsAccount account = SavingsController.getAccountById(transaction.getAccountId());
-                String accountNumber = account != null ? account.getAccountNumber() : "N/A";
+                String accountNumber = data.accountNumbers.get(transaction.getAccountId());
                 
                 User user = null; // We'll implement getUserById later
                 String userName = "System";
@@ -324,6 +416,42 @@ public class ReportController {
      * @return JPanel containing report
      */
     public static JPanel generateMonthlyTransactionReport(int year, int month) {
+        return buildMonthlyTransactionReport(loadMonthlyTransactionReport(year, month, DbExecutor.TaskContext.none()));
+    }
+    
+    /**
+     * Loads the data for a monthly transaction report. Does not touch Swing components,
+     * so it can run off the Event Dispatch Thread.
+     * 
+     * @param year Year
+     * @param month Month (1-12)
+     * @param context Progress and cancellation hooks
+     * @return The report data
+     */
+    public static MonthlyReportData loadMonthlyTransactionReport(int year, int month, DbExecutor.TaskContext context) {
+        MonthlyReportData data = new MonthlyReportData();
+        data.year = year;
+        data.month = month;
+        
+        // Read from the daily totals, at most one row per day and type
+        context.progress(0, -1, "Loading transaction summary");
+        data.summaries = TransactionController.getMonthlyTransactionSummary(year, month);
+        context.checkCancelled();
+        
+        context.progress(1, 1, "Done");
+        return data;
+    }
+    
+    /**
+     * Builds a monthly transaction report panel from loaded data. Must run on the
+     * Event Dispatch Thread.
+     * 
+     * @param data The report data
+     * @return JPanel containing report
+     */
+    public static JPanel buildMonthlyTransactionReport(MonthlyReportData data) {
+        int year = data.year;
+        int month = data.month;
         JPanel reportPanel = new JPanel();
         reportPanel.setLayout(new BorderLayout());
         reportPanel.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
@@ -346,17 +474,49 @@ public class ReportController {
         headerPanel.add(titleLabel, BorderLayout.WEST);
         headerPanel.add(dateLabel, BorderLayout.EAST);
         
-        // Get month summary
-        // NOTE: We need to implement getMonthlyTransactionSummary in TransactionController
-        // This is a placeholder until we implement that method
+        List<com.moscat.models.TransactionSummary> summaries = data.summaries;
+        
         JPanel summaryPanel = new JPanel(new BorderLayout());
         summaryPanel.setBorder(BorderFactory.createCompoundBorder(
                 BorderFactory.createTitledBorder("Monthly Summary"),
                 BorderFactory.createEmptyBorder(10, 10, 10, 10)));
         
-        // For now, just show a message
-        JLabel placeholderLabel = new JLabel("Monthly transaction summary will be displayed here.");
-        summaryPanel.add(placeholderLabel, BorderLayout.CENTER);
+        // Create table model
+        String[] summaryColumns = {"Transaction Type", "Count", "Total Amount", "Smallest", "Largest"};
+        DefaultTableModel summaryModel = new DefaultTableModel(summaryColumns, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        
+        // Add summary data
+        long grandTotal = 0;
+        int grandCount = 0;
+        for (com.moscat.models.TransactionSummary summary : summaries) {
+            boolean any = summary.getCount() > 0;
+            Object[] rowData = {
+                summary.getTransactionTypeDisplay(),
+                summary.getCount(),
+                "₱" + Money.format(summary.getTotalAmountCents()),
+                any ? "₱" + Money.format(summary.getMinAmountCents()) : "-",
+                any ? "₱" + Money.format(summary.getMaxAmountCents()) : "-"
+            };
+            summaryModel.addRow(rowData);
+            grandTotal = Money.add(grandTotal, summary.getTotalAmountCents());
+            grandCount += summary.getCount();
+        }
+        
+        // Add grand total
+        Object[] totalRow = {"GRAND TOTAL", grandCount, "₱" + Money.format(grandTotal), "", ""};
+        summaryModel.addRow(totalRow);
+        
+        JTable summaryTable = new JTable(summaryModel);
+        summaryTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        summaryTable.setRowHeight(25);
+        summaryTable.getTableHeader().setReorderingAllowed(false);
+        
+        summaryPanel.add(new JScrollPane(summaryTable), BorderLayout.CENTER);
         
         // Combine panels
         JPanel contentPanel = new JPanel();
@@ -418,6 +578,76 @@ public class ReportController {
      * @return JPanel containing report
      */
     public static JPanel generateSavingsSummaryReport(String reportType, String period) {
+        return buildSavingsSummaryReport(loadSavingsSummaryReport(reportType, period, DbExecutor.TaskContext.none()));
+    }
+    
+    /**
+     * Loads the data for a savings summary report. Does not touch Swing components,
+     * so it can run off the Event Dispatch Thread.
+     * 
+     * @param reportType Type of savings report
+     * @param period Time period (for interest reports)
+     * @param context Progress and cancellation hooks
+     * @return The report data
+     */
+    public static SavingsReportData loadSavingsSummaryReport(String reportType, String period,
+            DbExecutor.TaskContext context) {
+        SavingsReportData data = new SavingsReportData();
+        data.reportType = reportType;
+        data.period = period;
+        
+        context.progress(0, -1, "Loading members");
+        List<Member> members = MemberController.getActiveMembers();
+        for (Member member : members) {
+            data.memberNames.put(member.getId(), member.getFullName());
+        }
+        
+        // Get relevant accounts based on report type
+        int done = 0;
+        for (Member member : members) {
+            context.checkCancelled();
+            Map<String, Object> accountData = MemberController.getMemberSavingsAccounts(member.getId());
+            
+            @SuppressWarnings("unchecked")
+            List<SavingsAccount> memberAccounts = (List<SavingsAccount>) accountData.get("accounts");
+            
+            if (memberAccounts != null) {
+                for (SavingsAccount account : memberAccounts) {
+                    if (reportType.equals("All Accounts") || 
+                            (reportType.equals("Active Accounts") && account.isActive()) ||
+                            (reportType.equals("Dormant Accounts") && account.isDormant()) ||
+                            reportType.equals("Interest Earnings")) {
+                        data.accounts.add(account);
+                    }
+                }
+            }
+            
+            done++;
+            context.progress(done, members.size(), "Loading accounts");
+        }
+        
+        // Resolve owners that were not in the active member list
+        for (SavingsAccount account : data.accounts) {
+            if (!data.memberNames.containsKey(account.getMemberId())) {
+                context.checkCancelled();
+                Member member = MemberController.getMemberById(account.getMemberId());
+                data.memberNames.put(account.getMemberId(), member != null ? member.getFullName() : null);
+            }
+        }
+        
+        return data;
+    }
+    
+    /**
+     * Builds a savings summary report panel from loaded data. Must run on the
+     * Event Dispatch Thread.
+     * 
+     * @param data The report data
+     * @return JPanel containing report
+     */
+    public static JPanel buildSavingsSummaryReport(SavingsReportData data) {
+        String reportType = data.reportType;
+        String period = data.period;
         JPanel reportPanel = new JPanel();
         reportPanel.setLayout(new BorderLayout());
         reportPanel.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
@@ -443,27 +673,7 @@ public class ReportController {
         JPanel contentPanel = new JPanel();
         contentPanel.setLayout(new BoxLayout(contentPanel, BoxLayout.Y_AXIS));
         
-        List<Member> members = MemberController.getActiveMembers();
-        List<SavingsAccount> accounts = new ArrayList<>();
-        
-        // Get relevant accounts based on report type
-        for (Member member : members) {
-            Map<String, Object> accountData = MemberController.getMemberSavingsAccounts(member.getId());
-            
-            @SuppressWarnings("unchecked")
-            List<SavingsAccount> memberAccounts = (List<SavingsAccount>) accountData.get("accounts");
-            
-            if (memberAccounts != null) {
-                for (SavingsAccount account : memberAccounts) {
-                    if (reportType.equals("All Accounts") || 
-                            (reportType.equals("Active Accounts") && account.isActive()) ||
-                            (reportType.equals("Dormant Accounts") && account.isDormant()) ||
-                            reportType.equals("Interest Earnings")) {
-                        accounts.add(account);
-                    }
-                }
-            }
-        }
+        List<SavingsAccount> accounts = data.accounts;
         
         // Create report content based on report type
         if (accounts.isEmpty()) {
@@ -480,24 +690,24 @@ public class ReportController {
                 }
             };
             
-            double totalBalance = 0;
-            double totalInterest = 0;
+            long totalBalance = 0;
+            long totalInterest = 0;
             
             // Add account data
             for (SavingsAccount account : accounts) {
-                Member member = MemberController.getMemberById(account.getMemberId());
-                if (member != null) {
+                String memberName = data.memberNames.get(account.getMemberId());
+                if (memberName != null) {
                     Object[] rowData = {
                         account.getAccountNumber(),
-                        member.getFullName(),
+                        memberName,
                         String.format("₱%.2f", account.getBalance()),
                         String.format("₱%.2f", account.getInterestEarned()),
                         account.getStatus()
                     };
                     model.addRow(rowData);
                     
-                    totalBalance += account.getBalance();
-                    totalInterest += account.getInterestEarned();
+                    totalBalance = Money.add(totalBalance, account.getBalanceCents());
+                    totalInterest = Money.add(totalInterest, account.getInterestEarnedCents());
                 }
             }
             
@@ -505,8 +715,8 @@ public class ReportController {
             Object[] totalRow = {
                 "TOTALS",
                 "(" + accounts.size() + " accounts)",
-                String.format("₱%.2f", totalBalance),
-                String.format("₱%.2f", totalInterest),
+                "₱" + Money.format(totalBalance),
+                "₱" + Money.format(totalInterest),
                 ""
             };
             model.addRow(totalRow);
@@ -620,4 +830,42 @@ public class ReportController {
                 return transactionType;
         }
     }
+    
+    /**
+     * Data for a member report
+     */
+    public static class MemberReportData {
+        public Member member;
+        public List<SavingsAccount> accounts = new ArrayList<>();
+        public Map<SavingsAccount, List<Transaction>> recentTransactions = new LinkedHashMap<>();
+    }
+    
+    /**
+     * Data for a daily transaction report
+     */
+    public static class DailyReportData {
+        public String date;
+        public List<com.moscat.models.TransactionSummary> summaries = new ArrayList<>();
+        public List<Transaction> transactions = new ArrayList<>();
+        public Map<Integer, String> accountNumbers = new HashMap<>();
+    }
+    
+    /**
+     * Data for a monthly transaction report
+     */
+    public static class MonthlyReportData {
+        public int year;
+        public int month;
+        public List<com.moscat.models.TransactionSummary> summaries = new ArrayList<>();
+    }
+    
+    /**
+     * Data for a savings summary report
+     */
+    public static class SavingsReportData {
+        public String reportType;
+        public String period;
+        public List<SavingsAccount> accounts = new ArrayList<>();
+        public Map<Integer, String> memberNames = new HashMap<>();
+    }
 }
\ No newline at end of file
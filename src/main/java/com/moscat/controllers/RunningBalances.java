@@ -0,0 +1,245 @@
+package com.moscat.controllers;
+
+import com.moscat.utils.AccountLocks;
+import com.moscat.utils.DatabaseManager;
+import com.moscat.utils.DateUtils;
+import com.moscat.utils.Money;
+import com.moscat.utils.UnitOfWork;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Recomputes transactions.running_balance after back-dated postings.
+ * 
+ * running_balance is set once, when a row is inserted. A row dated before a member's
+ * existing rows leaves the running balance of every later row stale. recompute() takes
+ * the running balance of the member's last row before the insertion point and rewrites
+ * only the rows from that point on, with one MERGE over a window sum of the signed
+ * amounts in (transaction_date, id) order. Rows whose balance is already right are not
+ * written. TransactionController calls it in the posting's own database transaction for
+ * every member that gets a row dated before today.
+ * 
+ * repairAll() finds, with one window query over the ledger, the first row of each member
+ * whose running balance does not follow from the row before it (or from zero, for the
+ * member's first row), and repairs the tails of those members in parallel on
+ * moscat.balance.parallelism threads (default: the number of processors, at most 4), each
+ * member in its own database transaction under its account lock.
+ */
+public final class RunningBalances {
+    
+    private static final int PARALLELISM = Integer.getInteger("moscat.balance.parallelism",
+            Math.min(Runtime.getRuntime().availableProcessors(), 4));
+    
+    // %s is the hot or the archive table
+    private static final String ANCHOR_SQL = "SELECT running_balance FROM %s "
+            + "WHERE member_id = ? AND transaction_date < ? ORDER BY transaction_date DESC, id DESC LIMIT 1";
+    
+    // %s are the target table and the table or archive view the window reads
+    private static final String RECOMPUTE_SQL = "MERGE INTO %s t USING ("
+            + "SELECT id, CAST(? AS DECIMAL(15,2)) + SUM(" + BalanceSnapshots.SIGNED_AMOUNT + ") "
+            + "OVER (ORDER BY transaction_date, id ROWS BETWEEN UNBOUNDED PRECEDING AND CURRENT ROW) AS balance "
+            + "FROM %s WHERE member_id = ? AND transaction_date >= ?) s ON t.id = s.id "
+            + "WHEN MATCHED AND t.running_balance <> s.balance THEN UPDATE SET running_balance = s.balance";
+    
+    // First row of each member whose running balance does not follow from the row before it;
+    // a member's first row follows from a zero balance
+    private static final String BREAKS_SQL = "SELECT member_id, MIN(transaction_date) AS broken_from FROM ("
+            + "SELECT member_id, transaction_date, running_balance, " + BalanceSnapshots.SIGNED_AMOUNT
+            + " AS signed_amount, COALESCE(LAG(running_balance) OVER (PARTITION BY member_id "
+            + "ORDER BY transaction_date, id), 0) AS previous_balance FROM %s) r "
+            + "WHERE running_balance <> previous_balance + signed_amount "
+            + "GROUP BY member_id ORDER BY member_id";
+    
+    private RunningBalances() {
+    }
+    
+    /**
+     * Recomputes a member's running balances from a point in time
+     * 
+     * @param memberId The member ID
+     * @param from The date of the earliest row to recompute
+     * @return The number of rows whose running balance changed
+     * @throws SQLException If the recomputation fails; nothing is changed
+     */
+    public static int recompute(int memberId, LocalDateTime from) throws SQLException {
+        String source = TransactionArchive.source(from);
+        return UnitOfWork.execute("recomputeRunningBalances", conn -> {
+            AccountLocks.lock(memberId);
+            return recompute(conn, memberId, from, source);
+        });
+    }
+    
+    /**
+     * Recomputes a member's running balances from a point in time on the connection of
+     * the current unit of work
+     * 
+     * @param conn The connection of the current unit of work
+     * @param memberId The member ID
+     * @param from The date of the earliest row to recompute
+     * @param source The table or archive view holding every row from the insertion point on
+     * @return The number of rows whose running balance changed
+     * @throws SQLException If the recomputation fails
+     */
+    static int recompute(Connection conn, int memberId, LocalDateTime from, String source) throws SQLException {
+        Timestamp start = Timestamp.valueOf(from);
+        // The row before the insertion point is in the archive only if the hot table has none
+        Long opening = anchor(conn, TransactionArchive.HOT, memberId, start);
+        if (opening == null) {
+            opening = anchor(conn, TransactionArchive.ARCHIVE, memberId, start);
+        }
+        
+        int updated = 0;
+        String[] targets = TransactionArchive.HOT.equals(source)
+                ? new String[] { TransactionArchive.HOT }
+                : new String[] { TransactionArchive.HOT, TransactionArchive.ARCHIVE };
+        for (String target : targets) {
+            try (PreparedStatement stmt = conn.prepareStatement(String.format(RECOMPUTE_SQL, target, source))) {
+                Money.setCents(stmt, 1, opening != null ? opening : 0);
+                stmt.setInt(2, memberId);
+                stmt.setTimestamp(3, start);
+                updated += stmt.executeUpdate();
+            }
+        }
+        return updated;
+    }
+    
+    private static Long anchor(Connection conn, String table, int memberId, Timestamp start) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(String.format(ANCHOR_SQL, table))) {
+            stmt.setInt(1, memberId);
+            stmt.setTimestamp(2, start);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? Money.getCents(rs, 1) : null;
+            }
+        }
+    }
+    
+    /**
+     * Finds every member whose running balances are broken and repairs them from the
+     * first broken row
+     * 
+     * @return The repair result, or null if the ledger could not be scanned
+     */
+    public static Result repairAll() {
+        long started = System.nanoTime();
+        Result result = new Result();
+        
+        Map<Integer, LocalDateTime> breaks = new LinkedHashMap<>();
+        try (Connection conn = DatabaseManager.getConnection()) {
+            String source = TransactionArchive.source(null);
+            try (PreparedStatement stmt = conn.prepareStatement(String.format(BREAKS_SQL, source));
+                 ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    breaks.put(rs.getInt("member_id"), rs.getTimestamp("broken_from").toLocalDateTime());
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Error finding broken running balances: " + e.getMessage());
+            e.printStackTrace();
+            return null;
+        }
+        result.scanMillis = (System.nanoTime() - started) / 1_000_000;
+        result.membersBroken = breaks.size();
+        
+        AtomicInteger repaired = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicLong rows = new AtomicLong();
+        ForkJoinPool pool = new ForkJoinPool(PARALLELISM);
+        try {
+            pool.submit(() -> breaks.entrySet().parallelStream().forEach(entry -> {
+                try {
+                    // The break is at or after the watermark unless the archive holds it
+                    String memberSource = TransactionArchive.source(entry.getValue());
+                    rows.addAndGet(UnitOfWork.execute("repairRunningBalances", conn -> {
+                        // Postings to the member wait, so none lands between the anchor and the rewrite
+                        AccountLocks.lock(entry.getKey());
+                        return recompute(conn, entry.getKey(), entry.getValue(), memberSource);
+                    }));
+                    repaired.incrementAndGet();
+                } catch (SQLException e) {
+                    failed.incrementAndGet();
+                    System.err.println("Error repairing running balances of member " + entry.getKey() + ": "
+                            + e.getMessage());
+                }
+            })).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Running balance repair interrupted");
+        } catch (ExecutionException e) {
+            System.err.println("Error repairing running balances: " + e.getCause().getMessage());
+            e.getCause().printStackTrace();
+        } finally {
+            pool.shutdown();
+        }
+        
+        result.membersRepaired = repaired.get();
+        result.membersFailed = failed.get();
+        result.rowsUpdated = rows.get();
+        result.elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+        return result;
+    }
+    
+    /**
+     * Repair tool. Without arguments every broken member is repaired; with a member ID
+     * and optionally a date (yyyy-MM-dd) that member is recomputed from that date, or
+     * from its first row.
+     * 
+     * @param args Optional member ID and date
+     */
+    public static void main(String[] args) {
+        if (args.length > 2) {
+            System.err.println("Usage: RunningBalances [memberId [fromDay]]");
+            System.exit(2);
+        }
+        
+        DatabaseManager.getInstance().initializeDatabase();
+        if (args.length == 0) {
+            Result result = repairAll();
+            if (result == null) {
+                System.exit(1);
+            }
+            System.out.println("Repaired running balances: " + result);
+            return;
+        }
+        
+        int memberId = Integer.parseInt(args[0]);
+        LocalDateTime from = args.length > 1
+                ? DateUtils.parseLocalDate(args[1]).atStartOfDay()
+                : LocalDateTime.of(1900, 1, 1, 0, 0);
+        try {
+            System.out.println("Updated " + recompute(memberId, from) + " running balances of member " + memberId);
+        } catch (SQLException e) {
+            System.err.println("Error recomputing running balances: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+    
+    /**
+     * Outcome of a bulk repair
+     */
+    public static class Result {
+        public int membersBroken;
+        public int membersRepaired;
+        public int membersFailed;
+        public long rowsUpdated;
+        public long scanMillis;
+        public long elapsedMillis;
+        
+        @Override
+        public String toString() {
+            return String.format("broken=%d repaired=%d failed=%d rows=%d scan=%dms elapsed=%dms",
+                    membersBroken, membersRepaired, membersFailed, rowsUpdated, scanMillis, elapsedMillis);
+        }
+    }
+}
\ No newline at end of file
@@ -3,19 +3,27 @@ package com.moscat.controllers;
 import com.moscat.models.Member;
 import com.moscat.models.SavingsAccount;
 import com.moscat.models.Transaction;
+import com.moscat.utils.AccountLocks;
 import com.moscat.utils.Constants;
 import com.moscat.utils.DatabaseManager;
 import com.moscat.utils.DateUtils;
+import com.moscat.utils.Money;
+import com.moscat.utils.UnitOfWork;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Controller for savings account operations
@@ -79,13 +87,18 @@ public class SavingsController {
      */
     public static List<SavingsAccount> getDormantAccounts() {
         List<SavingsAccount> accounts = new ArrayList<>();
-        List<Member> members = MemberController.getAllMembers();
         
-        for (Member member : members) {
-            SavingsAccount account = SavingsAccount.fromMember(member);
-            if (account.isDormant()) {
-                accounts.add(account);
-            }
+        // Stream the members so only the dormant accounts are held in memory
+        try {
+            MemberController.forEachMember(member -> {
+                SavingsAccount account = SavingsAccount.fromMember(member);
+                if (account.isDormant()) {
+                    accounts.add(account);
+                }
+            });
+        } catch (SQLException e) {
+            System.err.println("Error getting dormant accounts: " + e.getMessage());
+            e.printStackTrace();
         }
         
         return accounts;
@@ -144,8 +157,8 @@ public class SavingsController {
         }
         
         // Transfer savings account data to member
-        member.setSavingsBalance(account.getBalance());
-        member.setInterestEarned(account.getInterestEarned());
+        member.setSavingsBalanceCents(account.getBalanceCents());
+        member.setInterestEarnedCents(account.getInterestEarnedCents());
         member.setStatus(account.getStatus());
         member.setLastActivityDate(account.getLastActivityDate());
         
@@ -165,38 +178,7 @@ public class SavingsController {
         if (amount <= 0) {
             return false;
         }
-        
-        SavingsAccount account = getAccountById(accountId);
-        if (account == null) {
-            return false;
-        }
-        
-        // Update account balance
-        double newBalance = account.getBalance() + amount;
-        account.setBalance(newBalance);
-        account.setLastActivityDate(new Date());
-        
-        // If account was dormant, reactivate it
-        if (account.isDormant()) {
-            account.setStatus(Constants.ACCOUNT_ACTIVE);
-        }
-        
-        // Update the account
-        boolean success = updateAccount(account);
-        if (!success) {
-            return false;
-        }
-        
-        // Record the transaction
-        Transaction transaction = new Transaction();
-        transaction.setAccountId(accountId);
-        transaction.setTransactionType("SAVINGS_DEPOSIT");
-        transaction.setAmount(amount);
-        transaction.setRunningBalance(newBalance);
-        transaction.setDescription(description);
-        transaction.setTransactionBy(transactionBy);
-        
-        return TransactionController.recordTransaction(transaction);
+        return post(accountId, Money.ofDouble(amount), true, description, transactionBy);
     }
     
     /**
@@ -212,38 +194,85 @@ public class SavingsController {
         if (amount <= 0) {
             return false;
         }
-        
-        SavingsAccount account = getAccountById(accountId);
-        if (account == null) {
-            return false;
-        }
-        
-        // Check if sufficient balance
-        if (account.getBalance() < amount) {
-            return false;
-        }
-        
-        // Update account balance
-        double newBalance = account.getBalance() - amount;
-        account.setBalance(newBalance);
-        account.setLastActivityDate(new Date());
-        
-        // Update the account
-        boolean success = updateAccount(account);
-        if (!success) {
+        return post(accountId, Money.ofDouble(amount), false, description, transactionBy);
+    }
+    
+    /**
+     * Applies a deposit or withdrawal to the member balance and records it in one transaction.
+     * The account is locked and its balance read FOR UPDATE, so concurrent postings to the
+     * same account are applied one after the other instead of overwriting each other.
+     * 
+     * @param accountId The account ID (same as the member ID)
+     * @param amountCents The amount in centavos
+     * @param credit True for a deposit, false for a withdrawal
+     * @param description Transaction description
+     * @param transactionBy User ID of the person making the posting
+     * @return True if successful, false if the account does not exist, the balance is insufficient or an error occurred
+     */
+    private static boolean post(int accountId, long amountCents, boolean credit, String description, int transactionBy) {
+        try {
+            return UnitOfWork.execute(credit ? "savingsDeposit" : "savingsWithdrawal", conn -> {
+                AccountLocks.lock(accountId);
+                
+                long balance;
+                String status;
+                String query = "SELECT savings_balance, status FROM members WHERE id = ? FOR UPDATE";
+                try (PreparedStatement stmt = conn.prepareStatement(query)) {
+                    stmt.setInt(1, accountId);
+                    
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        if (!rs.next()) {
+                            return false;
+                        }
+                        balance = Money.getCents(rs, "savings_balance");
+                        status = rs.getString("status");
+                    }
+                }
+                
+                // Check if sufficient balance
+                if (!credit && balance < amountCents) {
+                    return false;
+                }
+                
+                long newBalance = credit ? Money.add(balance, amountCents) : Money.subtract(balance, amountCents);
+                
+                // If account was dormant, a deposit reactivates it
+                if (credit && Constants.ACCOUNT_DORMANT.equals(status)) {
+                    status = Constants.ACCOUNT_ACTIVE;
+                }
+                
+                String updateQuery = "UPDATE members SET savings_balance = ?, status = ?, last_activity_date = ?, "
+                        + "updated_at = ? WHERE id = ?";
+                try (PreparedStatement stmt = conn.prepareStatement(updateQuery)) {
+                    Money.setCents(stmt, 1, newBalance);
+                    stmt.setString(2, status);
+                    stmt.setDate(3, java.sql.Date.valueOf(LocalDate.now()));
+                    stmt.setTimestamp(4, Timestamp.valueOf(LocalDateTime.now()));
+                    stmt.setInt(5, accountId);
+                    stmt.executeUpdate();
+                }
+                
+                // Record the transaction
+                Transaction transaction = new Transaction();
+                transaction.setMemberId(accountId);
+                transaction.setAccountId(accountId);
+                transaction.setTransactionType(credit ? "SAVINGS_DEPOSIT" : "SAVINGS_WITHDRAWAL");
+                transaction.setAmountCents(amountCents);
+                transaction.setRunningBalanceCents(newBalance);
+                transaction.setDescription(description);
+                transaction.setTransactionBy(transactionBy);
+                
+                if (!TransactionController.recordTransaction(transaction)) {
+                    UnitOfWork.setRollbackOnly();
+                    return false;
+                }
+                return true;
+            });
+        } catch (SQLException e) {
+            System.err.println("Error posting to savings account: " + e.getMessage());
+            e.printStackTrace();
             return false;
         }
-        
-        // Record the transaction
-        Transaction transaction = new Transaction();
-        transaction.setAccountId(accountId);
-        transaction.setTransactionType("SAVINGS_WITHDRAWAL");
-        transaction.setAmount(amount);
-        transaction.setRunningBalance(newBalance);
-        transaction.setDescription(description);
-        transaction.setTransactionBy(transactionBy);
-        
-        return TransactionController.recordTransaction(transaction);
     }
     
     /**
@@ -254,44 +283,118 @@ public class SavingsController {
      * @return Map containing success count and total interest applied
      */
     public static Map<String, Object> calculateAndApplyInterest(double interestRatePercentage, int systemUserId) {
-        List<SavingsAccount> activeAccounts = getActiveAccounts();
-        int successCount = 0;
-        double totalInterestApplied = 0;
-        
-        for (SavingsAccount account : activeAccounts) {
-            // Calculate interest on the current balance
-            double interestAmount = account.getBalance() * (interestRatePercentage / 100.0);
-            
-            // Update the interest earned
-            double newInterestEarned = account.getInterestEarned() + interestAmount;
-            account.setInterestEarned(newInterestEarned);
-            
-            // Update the account
-            boolean success = updateAccount(account);
-            if (success) {
-                // Record the interest transaction
-                Transaction transaction = new Transaction();
-                transaction.setAccountId(account.getId());
-                transaction.setTransactionType("INTEREST_EARNED");
-                transaction.setAmount(interestAmount);
-                transaction.setRunningBalance(account.getBalance() + newInterestEarned);
-                transaction.setDescription("Interest earned at " + interestRatePercentage + "% rate");
-                transaction.setTransactionBy(systemUserId);
+        List<Transaction> postings = new ArrayList<>();
+        long[] totalInterestApplied = new long[1];
+        int successCount;
+        
+        try {
+            // Update all accounts and post all interest transactions in one database transaction
+            successCount = UnitOfWork.execute("calculateAndApplyInterest", conn -> {
+                List<SavingsAccount> activeAccounts = lockActiveAccounts(conn);
+                String updateQuery = "UPDATE members SET interest_earned = ?, updated_at = ? WHERE id = ?";
+                Timestamp now = Timestamp.valueOf(LocalDateTime.now());
                 
-                TransactionController.recordTransaction(transaction);
+                try (PreparedStatement stmt = conn.prepareStatement(updateQuery)) {
+                    for (SavingsAccount account : activeAccounts) {
+                        // Calculate interest on the current balance, rounded to the centavo
+                        long interestAmount = Money.percent(account.getBalanceCents(), interestRatePercentage);
+                        
+                        // Update the interest earned
+                        long newInterestEarned = Money.add(account.getInterestEarnedCents(), interestAmount);
+                        account.setInterestEarnedCents(newInterestEarned);
+                        
+                        Money.setCents(stmt, 1, newInterestEarned);
+                        stmt.setTimestamp(2, now);
+                        stmt.setInt(3, account.getMemberId());
+                        stmt.addBatch();
+                        
+                        // Record the interest transaction
+                        Transaction transaction = new Transaction();
+                        transaction.setMemberId(account.getMemberId());
+                        transaction.setAccountId(account.getId());
+                        transaction.setTransactionType("INTEREST_EARNED");
+                        transaction.setAmountCents(interestAmount);
+                        transaction.setRunningBalanceCents(Money.add(account.getBalanceCents(), newInterestEarned));
+                        transaction.setDescription("Interest earned at " + interestRatePercentage + "% rate");
+                        transaction.setTransactionBy(systemUserId);
+                        postings.add(transaction);
+                        
+                        totalInterestApplied[0] = Money.add(totalInterestApplied[0], interestAmount);
+                    }
+                    stmt.executeBatch();
+                }
                 
-                successCount++;
-                totalInterestApplied += interestAmount;
-            }
+                TransactionController.BatchResult batch = TransactionController.recordTransactions(postings);
+                if (!batch.isSuccessful()) {
+                    // Interest was credited for every posting, so keep neither
+                    System.err.println("Error posting interest, " + batch.failures.size() + " rows failed; first: "
+                            + batch.failures.get(0));
+                    UnitOfWork.setRollbackOnly();
+                    return 0;
+                }
+                return batch.recordedCount;
+            });
+        } catch (SQLException e) {
+            System.err.println("Error applying interest: " + e.getMessage());
+            e.printStackTrace();
+            successCount = 0;
         }
         
         Map<String, Object> result = new HashMap<>();
         result.put("successCount", successCount);
-        result.put("totalInterestApplied", totalInterestApplied);
+        result.put("totalInterestApplied", Money.toDouble(successCount > 0 ? totalInterestApplied[0] : 0));
         
         return result;
     }
     
+    /**
+     * Locks the active accounts and reads their balances FOR UPDATE, so a deposit or
+     * withdrawal cannot change a balance between reading it and crediting its interest
+     * 
+     * @param conn The connection of the current unit of work
+     * @return The active accounts, locked until the unit completes
+     * @throws SQLException If a database error occurs or a lock could not be taken in time
+     */
+    private static List<SavingsAccount> lockActiveAccounts(Connection conn) throws SQLException {
+        List<Integer> memberIds = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT id FROM members WHERE status = ?")) {
+            stmt.setString(1, Constants.ACCOUNT_ACTIVE);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    memberIds.add(rs.getInt("id"));
+                }
+            }
+        }
+        AccountLocks.lockAll(memberIds);
+        
+        // Accounts that turned active before the locks were taken are left for the next run
+        Set<Integer> locked = new HashSet<>(memberIds);
+        List<SavingsAccount> accounts = new ArrayList<>(memberIds.size());
+        String query = "SELECT id, member_number, savings_balance, interest_earned, status, last_activity_date "
+                + "FROM members WHERE status = ? ORDER BY id FOR UPDATE";
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setString(1, Constants.ACCOUNT_ACTIVE);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    int memberId = rs.getInt("id");
+                    if (!locked.contains(memberId)) {
+                        continue;
+                    }
+                    SavingsAccount account = new SavingsAccount();
+                    account.setId(memberId);
+                    account.setMemberId(memberId);
+                    account.setAccountNumber(rs.getString("member_number"));
+                    account.setBalanceCents(Money.getCents(rs, "savings_balance"));
+                    account.setInterestEarnedCents(Money.getCents(rs, "interest_earned"));
+                    account.setStatus(rs.getString("status"));
+                    account.setLastActivityDate(rs.getDate("last_activity_date"));
+                    accounts.add(account);
+                }
+            }
+        }
+        return accounts;
+    }
+    
     /**
      * Check and update account status based on last activity date
      * 
@@ -0,0 +1,203 @@
+package com.moscat.controllers;
+
+import com.moscat.utils.DatabaseManager;
+import com.moscat.utils.UnitOfWork;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Moves old transactions from the hot transactions table into transactions_archive and
+ * tells history queries which of the two they need.
+ * 
+ * archive() moves every transaction dated before the first day of the month
+ * moscat.archive.horizonMonths (default 24) months ago, in chunks of moscat.archive.chunkSize
+ * rows (default 5000), each chunk in its own database transaction. Before moving anything
+ * it raises the watermark in transaction_archive_state to that date. A query whose range
+ * starts at or after the watermark reads only the hot table; an older range reads the
+ * all_transactions view, which unions both tables. Because the watermark moves first and
+ * every chunk inserts and deletes in one transaction, a query never misses a row, even
+ * while the archiver runs on another terminal.
+ */
+public final class TransactionArchive {
+    
+    /**
+     * The hot table
+     */
+    static final String HOT = "transactions";
+    
+    /**
+     * The archive table
+     */
+    static final String ARCHIVE = "transactions_archive";
+    
+    /**
+     * View over the hot and the archived transactions
+     */
+    static final String ALL = "all_transactions";
+    
+    private static final String COLUMNS = "id, member_id, account_id, reference_number, transaction_type, amount, "
+            + "running_balance, transaction_date, description, processed_by, transaction_by, idempotency_key";
+    
+    private static final int HORIZON_MONTHS = Integer.getInteger("moscat.archive.horizonMonths", 24);
+    private static final int CHUNK_SIZE = Integer.getInteger("moscat.archive.chunkSize", 5000);
+    
+    private TransactionArchive() {
+    }
+    
+    /**
+     * Gets the archive watermark
+     * 
+     * @return The date before which transactions may be archived, or null if none are
+     * @throws SQLException If a database error occurs
+     */
+    public static LocalDateTime getWatermark() throws SQLException {
+        // A single-row primary key read; not cached, since another terminal may move it
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(
+                     "SELECT archived_before FROM transaction_archive_state WHERE id = 1");
+             ResultSet rs = stmt.executeQuery()) {
+            if (rs.next()) {
+                Timestamp watermark = rs.getTimestamp(1);
+                return watermark != null ? watermark.toLocalDateTime() : null;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Gets the table or view a query must read
+     * 
+     * @param earliest The earliest transaction date the query needs, or null for the
+     *        whole history
+     * @return HOT if the hot table holds every transaction the query needs, ALL otherwise
+     * @throws SQLException If the watermark cannot be read
+     */
+    static String source(LocalDateTime earliest) throws SQLException {
+        LocalDateTime watermark = getWatermark();
+        if (watermark == null || (earliest != null && !earliest.isBefore(watermark))) {
+            return HOT;
+        }
+        return ALL;
+    }
+    
+    /**
+     * Moves every transaction older than the horizon into the archive
+     * 
+     * @return The archiving result, or null if it failed; rows moved before the failure
+     *         stay archived
+     */
+    public static Result archive() {
+        long started = System.nanoTime();
+        Result result = new Result();
+        result.archivedBefore = YearMonth.now().minusMonths(HORIZON_MONTHS).atDay(1).atStartOfDay();
+        Timestamp cutoff = Timestamp.valueOf(result.archivedBefore);
+        
+        try {
+            UnitOfWork.execute("advanceArchiveWatermark", conn -> {
+                String sql = "UPDATE transaction_archive_state SET archived_before = ? "
+                        + "WHERE id = 1 AND (archived_before IS NULL OR archived_before < ?)";
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    stmt.setTimestamp(1, cutoff);
+                    stmt.setTimestamp(2, cutoff);
+                    return stmt.executeUpdate();
+                }
+            });
+            
+            int moved;
+            do {
+                moved = UnitOfWork.execute("archiveTransactions", conn -> moveChunk(conn, cutoff));
+                result.rowsMoved += moved;
+                if (moved > 0) {
+                    result.chunks++;
+                }
+            } while (moved == CHUNK_SIZE);
+        } catch (SQLException e) {
+            System.err.println("Error archiving transactions: " + e.getMessage());
+            e.printStackTrace();
+            return null;
+        }
+        
+        result.elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+        return result;
+    }
+    
+    /**
+     * Moves up to CHUNK_SIZE of the oldest transactions dated before the cutoff
+     * 
+     * @return The number of rows moved
+     */
+    private static int moveChunk(Connection conn, Timestamp cutoff) throws SQLException {
+        List<Integer> ids = new ArrayList<>(CHUNK_SIZE);
+        String select = "SELECT id FROM transactions WHERE transaction_date < ? ORDER BY transaction_date, id LIMIT ?";
+        try (PreparedStatement stmt = conn.prepareStatement(select)) {
+            stmt.setTimestamp(1, cutoff);
+            stmt.setInt(2, CHUNK_SIZE);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getInt(1));
+                }
+            }
+        }
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        
+        Array idArray = conn.createArrayOf("INTEGER", ids.toArray());
+        int inserted;
+        int deleted;
+        String insert = "INSERT INTO " + ARCHIVE + " (" + COLUMNS + ") SELECT " + COLUMNS
+                + " FROM transactions WHERE id = ANY(?)";
+        try (PreparedStatement stmt = conn.prepareStatement(insert)) {
+            stmt.setArray(1, idArray);
+            inserted = stmt.executeUpdate();
+        }
+        try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM transactions WHERE id = ANY(?)")) {
+            stmt.setArray(1, idArray);
+            deleted = stmt.executeUpdate();
+        }
+        if (inserted != deleted) {
+            throw new SQLException("Archived " + inserted + " transactions but deleted " + deleted
+                    + "; chunk rolled back");
+        }
+        return deleted;
+    }
+    
+    /**
+     * Archiving job entry point for a scheduler
+     * 
+     * @param args Not used
+     */
+    public static void main(String[] args) {
+        DatabaseManager.getInstance().initializeDatabase();
+        Result result = archive();
+        if (result == null) {
+            System.exit(1);
+        }
+        System.out.println("Archived transactions: " + result);
+    }
+    
+    /**
+     * Outcome of an archiving run
+     */
+    public static class Result {
+        public LocalDateTime archivedBefore;
+        public long rowsMoved;
+        public int chunks;
+        public long elapsedMillis;
+        
+        @Override
+        public String toString() {
+            return String.format("archivedBefore=%s rows=%d chunks=%d elapsed=%dms",
+                    archivedBefore, rowsMoved, chunks, elapsedMillis);
+        }
+    }
+}
\ No newline at end of file
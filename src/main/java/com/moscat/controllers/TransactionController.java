@@ -2,33 +2,313 @@ package com.moscat.controllers;
 
 import com.moscat.models.Transaction;
 import com.moscat.models.TransactionSummary;
+import com.moscat.utils.CsvWriter;
 import com.moscat.utils.DatabaseManager;
 import com.moscat.utils.DateUtils;
+import com.moscat.utils.JdbcStreams;
+import com.moscat.utils.Money;
+import com.moscat.utils.ReferenceNumberGenerator;
+import com.moscat.utils.TimeRange;
+import com.moscat.utils.UnitOfWork;
 
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.UUID;
 import java.util.Date;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Controller for transaction operations
  */
 public class TransactionController {
     
+    private static final String INSERT_TRANSACTION_SQL = "INSERT INTO transactions (member_id, account_id, "
+            + "reference_number, transaction_type, amount, running_balance, transaction_date, description, "
+            + "processed_by, transaction_by, idempotency_key) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    
+    // Rows per JDBC batch in recordTransactions
+    private static final int BATCH_SIZE = Integer.getInteger("moscat.db.batchSize", 500);
+    
+    // SQLState of a unique constraint violation
+    private static final String DUPLICATE_KEY = "23505";
+    
     /**
-     * Record a new transaction
+     * Record a new transaction. If the transaction carries an idempotency key that was
+     * already recorded, nothing is inserted and the transaction gets the ID and reference
+     * number of the original. The daily totals are updated in the same database transaction,
+     * and the transaction is appended to the posting journal once it commits.
      * 
      * @param transaction The transaction to record
-     * @return True if successful, false otherwise
+     * @return True if successful or already recorded, false if the idempotency key was
+     *         already used for another member or amount, or on error
      */
     public static boolean recordTransaction(Transaction transaction) {
+        String key = transaction.getIdempotencyKey();
+        if (key != null && key.length() > IdempotencyKeys.MAX_KEY_LENGTH) {
+            System.err.println("Error recording transaction: idempotency key is too long");
+            return false;
+        }
+        applyDefaults(transaction);
+        
+        try {
+            return UnitOfWork.execute("recordTransaction", conn -> {
+                Transaction original = IdempotencyKeys.findOriginal(key);
+                if (original != null) {
+                    return adoptOriginal(transaction, original);
+                }
+                
+                try (PreparedStatement stmt = conn.prepareStatement(INSERT_TRANSACTION_SQL,
+                        Statement.RETURN_GENERATED_KEYS)) {
+                    bindTransaction(stmt, transaction);
+                    
+                    int rowsAffected;
+                    try {
+                        rowsAffected = stmt.executeUpdate();
+                    } catch (SQLException e) {
+                        // Another terminal recorded the key first; like a pipeline retry, look it up
+                        if (key == null || !DUPLICATE_KEY.equals(e.getSQLState())) {
+                            throw e;
+                        }
+                        IdempotencyKeys.markSuspect(key);
+                        original = IdempotencyKeys.findOriginal(key);
+                        if (original == null) {
+                            throw e;
+                        }
+                        return adoptOriginal(transaction, original);
+                    }
+                    if (rowsAffected == 0) {
+                        return false;
+                    }
+                    try (ResultSet keys = stmt.getGeneratedKeys()) {
+                        if (keys.next()) {
+                            transaction.setId(keys.getInt(1));
+                        }
+                    }
+                }
+                
+                applyRollups(conn, Collections.singletonList(transaction));
+                
+                if (key != null) {
+                    UnitOfWork.afterCommit(() -> IdempotencyKeys.remember(key, transaction.getId()));
+                }
+                return true;
+            });
+        } catch (SQLException e) {
+            IdempotencyKeys.markSuspect(key);
+            e.printStackTrace();
+            return false;
+        }
+    }
+    
+    /**
+     * Gives a retried transaction the ID and reference number of the one already recorded
+     * under its idempotency key, unless the key was used for another member or amount
+     * 
+     * @param transaction The retried transaction
+     * @param original The transaction recorded under the key
+     * @return True if the original is the same posting, false if the key was reused
+     */
+    private static boolean adoptOriginal(Transaction transaction, Transaction original) {
+        if (original.getMemberId() != transaction.getMemberId()
+                || original.getAmountCents() != transaction.getAmountCents()) {
+            System.err.println("Error recording transaction: idempotency key " + transaction.getIdempotencyKey()
+                    + " was already used for member " + original.getMemberId() + ", amount "
+                    + Money.format(original.getAmountCents()));
+            return false;
+        }
+        transaction.setId(original.getId());
+        transaction.setReferenceNumber(original.getReferenceNumber());
+        return true;
+    }
+    
+    /**
+     * Record many transactions in one database transaction using JDBC batches.
+     * Rows are sent in chunks of moscat.db.batchSize (default 500). A row that fails
+     * validation or is rejected by the database is reported in the result while the
+     * other rows are still recorded; if the batch itself cannot run, nothing is recorded.
+     * Recorded transactions get their generated ID set. The daily totals are updated once
+     * per day and type of the recorded rows, in the same database transaction.
+     * 
+     * @param transactions The transactions to record
+     * @return The number of recorded rows and the rows that failed
+     */
+    public static BatchResult recordTransactions(List<Transaction> transactions) {
+        BatchResult result = new BatchResult();
+        if (transactions == null || transactions.isEmpty()) {
+            return result;
+        }
+        
+        try {
+            UnitOfWork.execute("recordTransactions", conn -> {
+                List<Transaction> recorded = new ArrayList<>(transactions.size());
+                try (PreparedStatement stmt = conn.prepareStatement(INSERT_TRANSACTION_SQL,
+                        Statement.RETURN_GENERATED_KEYS)) {
+                    List<Integer> chunk = new ArrayList<>(BATCH_SIZE);
+                    for (int i = 0; i < transactions.size(); i++) {
+                        Transaction transaction = transactions.get(i);
+                        String problem = validate(transaction);
+                        if (problem != null) {
+                            result.addFailure(i, transaction, problem);
+                            continue;
+                        }
+                        
+                        applyDefaults(transaction);
+                        bindTransaction(stmt, transaction);
+                        stmt.addBatch();
+                        chunk.add(i);
+                        
+                        if (chunk.size() == BATCH_SIZE) {
+                            executeChunk(stmt, transactions, chunk, result, recorded);
+                            chunk.clear();
+                        }
+                    }
+                    if (!chunk.isEmpty()) {
+                        executeChunk(stmt, transactions, chunk, result, recorded);
+                    }
+                }
+                applyRollups(conn, recorded);
+                return null;
+            });
+        } catch (SQLException e) {
+            System.err.println("Error recording transaction batch: " + e.getMessage());
+            e.printStackTrace();
+            // The whole unit rolled back; report every row that was thought recorded
+            result.rollBack(transactions, e.getMessage());
+            for (Transaction transaction : transactions) {
+                if (transaction != null) {
+                    IdempotencyKeys.markSuspect(transaction.getIdempotencyKey());
+                }
+            }
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Executes one chunk of a transaction batch and collects generated keys and failures
+     * 
+     * @param stmt The statement holding the batched rows
+     * @param transactions All transactions of the batch
+     * @param chunk Indexes into transactions of the rows in this chunk, in batch order
+     * @param result The result to update
+     * @param recorded Receives the recorded rows
+     * @throws SQLException If the batch fails as a whole
+     */
+    private static void executeChunk(PreparedStatement stmt, List<Transaction> transactions, List<Integer> chunk,
+            BatchResult result, List<Transaction> recorded) throws SQLException {
+        int[] updateCounts;
+        String error = null;
+        try {
+            updateCounts = stmt.executeBatch();
+        } catch (BatchUpdateException e) {
+            // H2 runs every row and marks the rejected ones; other drivers may stop early
+            updateCounts = e.getUpdateCounts() != null ? e.getUpdateCounts() : new int[0];
+            error = e.getMessage();
+        }
+        
+        try (ResultSet keys = stmt.getGeneratedKeys()) {
+            for (int i = 0; i < chunk.size(); i++) {
+                int index = chunk.get(i);
+                Transaction transaction = transactions.get(index);
+                boolean executed = i < updateCounts.length && updateCounts[i] != Statement.EXECUTE_FAILED;
+                if (!executed) {
+                    result.addFailure(index, transaction, error != null ? error : "Row was not executed");
+                    IdempotencyKeys.markSuspect(transaction.getIdempotencyKey());
+                    continue;
+                }
+                if (keys.next()) {
+                    transaction.setId(keys.getInt(1));
+                }
+                String key = transaction.getIdempotencyKey();
+                if (key != null) {
+                    UnitOfWork.afterCommit(() -> IdempotencyKeys.remember(key, transaction.getId()));
+                }
+                recorded.add(transaction);
+                result.recordedCount++;
+            }
+        }
+        stmt.clearBatch();
+    }
+    
+    /**
+     * Brings the daily totals, the balance snapshots and the running balances of later
+     * rows up to date with recorded rows, on the connection that inserted them, and
+     * journals the rows once they commit
+     * 
+     * @param conn The connection of the current unit of work
+     * @param recorded The recorded rows
+     * @throws SQLException If a rollup cannot be updated
+     */
+    private static void applyRollups(Connection conn, List<Transaction> recorded) throws SQLException {
+        if (recorded.isEmpty()) {
+            return;
+        }
+        TransactionDailyTotals.Delta totals = new TransactionDailyTotals.Delta();
+        // Earliest back-dated row per member; rows dated today follow the existing ones
+        Map<Integer, LocalDateTime> backDated = new TreeMap<>();
+        LocalDateTime today = LocalDate.now().atStartOfDay();
+        for (Transaction transaction : recorded) {
+            totals.add(transaction);
+            if (transaction.getTransactionDate().isBefore(today)) {
+                backDated.merge(transaction.getMemberId(), transaction.getTransactionDate(),
+                        (a, b) -> a.isBefore(b) ? a : b);
+            }
+        }
+        TransactionDailyTotals.apply(conn, totals);
+        
+        if (!backDated.isEmpty()) {
+            BalanceSnapshots.invalidateFrom(conn, totals.getFirstDay(), backDated.keySet());
+            String source = TransactionArchive.source(totals.getFirstDay().atStartOfDay());
+            for (Map.Entry<Integer, LocalDateTime> entry : backDated.entrySet()) {
+                RunningBalances.recompute(conn, entry.getKey(), entry.getValue(), source);
+            }
+        }
+        UnitOfWork.afterCommit(() -> PostingJournal.append(recorded));
+    }
+    
+    /**
+     * Checks that a transaction can be inserted
+     * 
+     * @param transaction The transaction
+     * @return A description of the problem, or null if the transaction is valid
+     */
+    private static String validate(Transaction transaction) {
+        if (transaction == null) {
+            return "Transaction is null";
+        }
+        if (transaction.getTransactionType() == null || transaction.getTransactionType().isEmpty()) {
+            return "Transaction type is required";
+        }
+        if (transaction.getAmountCents() < 0) {
+            return "Amount must not be negative";
+        }
+        if (transaction.getIdempotencyKey() != null
+                && transaction.getIdempotencyKey().length() > IdempotencyKeys.MAX_KEY_LENGTH) {
+            return "Idempotency key is longer than " + IdempotencyKeys.MAX_KEY_LENGTH + " characters";
+        }
+        return null;
+    }
+    
+    /**
+     * Fills in the reference number and date when not provided
+     * 
+     * @param transaction The transaction
+     */
+    private static void applyDefaults(Transaction transaction) {
         // Generate reference number if not provided
         if (transaction.getReferenceNumber() == null || transaction.getReferenceNumber().isEmpty()) {
             transaction.setReferenceNumber(generateReferenceNumber());
@@ -38,34 +318,31 @@ public class TransactionController {
         if (transaction.getTransactionDate() == null) {
             transaction.setTransactionDate(LocalDateTime.now());
         }
-        
-        try (Connection conn = DatabaseManager.getConnection()) {
-            String sql = "INSERT INTO transactions (member_id, account_id, reference_number, transaction_type, " +
-                    "amount, running_balance, transaction_date, description, processed_by, transaction_by) " +
-                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
-            
-            PreparedStatement stmt = conn.prepareStatement(sql);
-            stmt.setInt(1, transaction.getMemberId());
-            stmt.setInt(2, transaction.getAccountId());
-            stmt.setString(3, transaction.getReferenceNumber());
-            stmt.setString(4, transaction.getTransactionType());
-            stmt.setDouble(5, transaction.getAmount());
-            stmt.setDouble(6, transaction.getRunningBalance());
-            stmt.setString(7, DateUtils.formatLocalDateTime(transaction.getTransactionDate()));
-            stmt.setString(8, transaction.getDescription());
-            stmt.setString(9, transaction.getProcessedBy());
-            stmt.setInt(10, transaction.getTransactionBy());
-            
-            int rowsAffected = stmt.executeUpdate();
-            return rowsAffected > 0;
-        } catch (SQLException e) {
-            e.printStackTrace();
-            return false;
-        }
     }
     
     /**
-     * Get a transaction by ID
+     * Binds a transaction to the parameters of INSERT_TRANSACTION_SQL
+     * 
+     * @param stmt The insert statement
+     * @param transaction The transaction
+     * @throws SQLException If a parameter cannot be set
+     */
+    private static void bindTransaction(PreparedStatement stmt, Transaction transaction) throws SQLException {
+        stmt.setInt(1, transaction.getMemberId());
+        stmt.setInt(2, transaction.getAccountId());
+        stmt.setString(3, transaction.getReferenceNumber());
+        stmt.setString(4, transaction.getTransactionType());
+        Money.setCents(stmt, 5, transaction.getAmountCents());
+        Money.setCents(stmt, 6, transaction.getRunningBalanceCents());
+        stmt.setString(7, DateUtils.formatLocalDateTime(transaction.getTransactionDate()));
+        stmt.setString(8, transaction.getDescription());
+        stmt.setString(9, transaction.getProcessedBy());
+        stmt.setInt(10, transaction.getTransactionBy());
+        stmt.setString(11, transaction.getIdempotencyKey());
+    }
+    
+    /**
+     * Get a transaction by ID, looking in the archive if it is not in the hot table
      * 
      * @param transactionId The transaction ID
      * @return The transaction, or null if not found
@@ -73,13 +350,27 @@ public class TransactionController {
     public static Transaction getTransactionById(int transactionId) {
         try (Connection conn = DatabaseManager.getConnection()) {
             String sql = "SELECT * FROM transactions WHERE id = ?";
-            PreparedStatement stmt = conn.prepareStatement(sql);
-            stmt.setInt(1, transactionId);
-            
-            ResultSet rs = stmt.executeQuery();
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setInt(1, transactionId);
+                
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        return mapResultSetToTransaction(rs);
+                    }
+                }
+            }
             
-            if (rs.next()) {
-                return mapResultSetToTransaction(rs);
+            if (TransactionArchive.getWatermark() != null) {
+                sql = "SELECT * FROM " + TransactionArchive.ALL + " WHERE id = ?";
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    stmt.setInt(1, transactionId);
+                    
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        if (rs.next()) {
+                            return mapResultSetToTransaction(rs);
+                        }
+                    }
+                }
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -89,37 +380,130 @@ public class TransactionController {
     }
     
     /**
-     * Get transactions for a specific account
+     * Get transactions for a specific account. The latest transactions are read from the
+     * hot table; the archive is read only when they do not fill the limit.
      * 
      * @param accountId The account ID
      * @param limit The maximum number of transactions to retrieve (0 for all)
-     * @return List of transactions
+     * @return List of transactions, newest first
      */
     public static List<Transaction> getAccountTransactions(int accountId, int limit) {
-        List<Transaction> transactions = new ArrayList<>();
-        
         try (Connection conn = DatabaseManager.getConnection()) {
-            String sql = "SELECT * FROM transactions WHERE account_id = ? ORDER BY transaction_date DESC";
-            if (limit > 0) {
-                sql += " LIMIT ?";
+            LocalDateTime watermark = TransactionArchive.getWatermark();
+            List<Transaction> transactions = readAccountTransactions(conn,
+                    limit > 0 || watermark == null ? TransactionArchive.HOT : TransactionArchive.ALL, accountId, limit);
+            if (limit > 0 && watermark != null && !reachesWatermark(transactions, limit, watermark)) {
+                transactions = readAccountTransactions(conn, TransactionArchive.ALL, accountId, limit);
             }
-            
-            PreparedStatement stmt = conn.prepareStatement(sql);
+            return transactions;
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        
+        return new ArrayList<>();
+    }
+    
+    private static List<Transaction> readAccountTransactions(Connection conn, String source, int accountId, int limit)
+            throws SQLException {
+        List<Transaction> transactions = new ArrayList<>();
+        String sql = "SELECT * FROM " + source + " WHERE account_id = ? ORDER BY transaction_date DESC, id DESC";
+        if (limit > 0) {
+            sql += " LIMIT ?";
+        }
+        
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, accountId);
             if (limit > 0) {
                 stmt.setInt(2, limit);
             }
             
-            ResultSet rs = stmt.executeQuery();
-            
-            while (rs.next()) {
-                transactions.add(mapResultSetToTransaction(rs));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    transactions.add(mapResultSetToTransaction(rs));
+                }
             }
+        }
+        return transactions;
+    }
+    
+    /**
+     * Checks whether the newest rows read from the hot table are final: every archived
+     * transaction is older than the watermark, so none can rank above a full list whose
+     * last row is at or after it
+     * 
+     * @param transactions Rows read newest first
+     * @param wanted The number of rows asked for
+     * @param watermark The archive watermark
+     * @return True if the archive cannot change the rows
+     */
+    private static boolean reachesWatermark(List<Transaction> transactions, int wanted, LocalDateTime watermark) {
+        if (transactions.size() < wanted) {
+            return false;
+        }
+        LocalDateTime oldest = transactions.get(transactions.size() - 1).getTransactionDate();
+        return oldest != null && !oldest.isBefore(watermark);
+    }
+    
+    /**
+     * Get one page of a member's transactions, newest first. Pages are keyed on
+     * (transaction_date, id) rather than an offset, so every page costs the same
+     * however deep into the history it is. Pages are read from the hot table until the
+     * history reaches the archive watermark, and from hot and archived rows after that.
+     * 
+     * @param memberId The member ID
+     * @param after Cursor returned with the previous page, or null for the first page
+     * @param pageSize Maximum number of transactions in the page
+     * @return The page, or null if an error occurred
+     */
+    public static Page getMemberTransactionPage(int memberId, Cursor after, int pageSize) {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            LocalDateTime watermark = TransactionArchive.getWatermark();
+            Page page = readMemberPage(conn, TransactionArchive.HOT, memberId, after, pageSize);
+            if (watermark != null && !(page.hasMore && reachesWatermark(page.transactions, pageSize, watermark))) {
+                page = readMemberPage(conn, TransactionArchive.ALL, memberId, after, pageSize);
+            }
+            return page;
         } catch (SQLException e) {
+            System.err.println("Error loading transaction page: " + e.getMessage());
             e.printStackTrace();
+            return null;
         }
+    }
+    
+    private static Page readMemberPage(Connection conn, String source, int memberId, Cursor after, int pageSize)
+            throws SQLException {
+        String sql = "SELECT * FROM " + source + " WHERE member_id = ?"
+                + (after != null ? " AND transaction_date <= ? AND (transaction_date < ? OR id < ?)" : "")
+                + " ORDER BY transaction_date DESC, id DESC LIMIT ?";
         
-        return transactions;
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            int index = 1;
+            stmt.setInt(index++, memberId);
+            if (after != null) {
+                Timestamp date = Timestamp.valueOf(after.transactionDate);
+                stmt.setTimestamp(index++, date);
+                stmt.setTimestamp(index++, date);
+                stmt.setInt(index++, after.id);
+            }
+            // One extra row tells whether another page follows
+            stmt.setInt(index, pageSize + 1);
+            
+            Page page = new Page();
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    if (page.transactions.size() == pageSize) {
+                        page.hasMore = true;
+                        break;
+                    }
+                    page.transactions.add(mapResultSetToTransaction(rs));
+                    Timestamp date = rs.getTimestamp("transaction_date");
+                    if (date != null) {
+                        page.next = new Cursor(date.toLocalDateTime(), rs.getInt("id"));
+                    }
+                }
+            }
+            return page;
+        }
     }
     
     /**
@@ -130,21 +514,25 @@ public class TransactionController {
      * @return List of transactions
      */
     public static List<Transaction> getTransactionsByDateRange(String startDate, String endDate) {
+        return getTransactionsByDateRange(TimeRange.ofDays(
+                DateUtils.parseLocalDate(startDate), DateUtils.parseLocalDate(endDate)));
+    }
+    
+    /**
+     * Get transactions within a time range. Loads the whole range into memory; use
+     * forEachTransaction or streamTransactions for ranges that may be large.
+     * 
+     * @param range The time range
+     * @return List of transactions, newest first
+     */
+    public static List<Transaction> getTransactionsByDateRange(TimeRange range) {
         List<Transaction> transactions = new ArrayList<>();
         
-        try (Connection conn = DatabaseManager.getConnection()) {
-            String sql = "SELECT * FROM transactions WHERE DATE(transaction_date) BETWEEN ? AND ? " +
-                    "ORDER BY transaction_date DESC";
-            
-            PreparedStatement stmt = conn.prepareStatement(sql);
-            stmt.setString(1, startDate);
-            stmt.setString(2, endDate);
-            
-            ResultSet rs = stmt.executeQuery();
-            
-            while (rs.next()) {
-                transactions.add(mapResultSetToTransaction(rs));
-            }
+        try {
+            String sql = "SELECT * FROM " + TransactionArchive.source(range.getStart()) + " WHERE "
+                    + range.predicate("transaction_date") + " ORDER BY transaction_date DESC";
+            JdbcStreams.forEach(sql, stmt -> range.bind(stmt, 1), TransactionController::mapResultSetToTransaction,
+                    transactions::add);
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -152,6 +540,55 @@ public class TransactionController {
         return transactions;
     }
     
+    /**
+     * Passes each transaction within a time range to a consumer without holding the
+     * range in memory
+     * 
+     * @param range The time range
+     * @param consumer Receives each transaction, oldest first
+     * @return The number of transactions passed to the consumer
+     * @throws SQLException If the query fails
+     */
+    public static long forEachTransaction(TimeRange range, Consumer<? super Transaction> consumer) throws SQLException {
+        return JdbcStreams.forEach(rangeQuery(range), stmt -> range.bind(stmt, 1),
+                TransactionController::mapResultSetToTransaction, consumer);
+    }
+    
+    /**
+     * Streams the transactions within a time range without holding the range in memory.
+     * The stream holds a database connection; close it with try-with-resources.
+     * 
+     * @param range The time range
+     * @return Stream of transactions, oldest first
+     * @throws SQLException If the query fails
+     */
+    public static Stream<Transaction> streamTransactions(TimeRange range) throws SQLException {
+        return JdbcStreams.stream(rangeQuery(range), stmt -> range.bind(stmt, 1),
+                TransactionController::mapResultSetToTransaction);
+    }
+    
+    private static String rangeQuery(TimeRange range) throws SQLException {
+        return "SELECT * FROM " + TransactionArchive.source(range.getStart()) + " WHERE "
+                + range.predicate("transaction_date") + " ORDER BY transaction_date, id";
+    }
+    
+    /**
+     * Passes every transaction of an account to a consumer without holding the history
+     * in memory
+     * 
+     * @param accountId The account ID
+     * @param consumer Receives each transaction, newest first
+     * @return The number of transactions passed to the consumer
+     * @throws SQLException If the query fails
+     */
+    public static long forEachAccountTransaction(int accountId, Consumer<? super Transaction> consumer)
+            throws SQLException {
+        String sql = "SELECT * FROM " + TransactionArchive.source(null)
+                + " WHERE account_id = ? ORDER BY transaction_date DESC, id DESC";
+        return JdbcStreams.forEach(sql, stmt -> stmt.setInt(1, accountId),
+                TransactionController::mapResultSetToTransaction, consumer);
+    }
+    
     /**
      * Get a summary of transactions for a specific date
      * 
@@ -159,41 +596,7 @@ public class TransactionController {
      * @return List of transaction summaries by type
      */
     public static List<TransactionSummary> getDailyTransactionSummary(String date) {
-        Map<String, TransactionSummary> summaries = new HashMap<>();
-        
-        // Initialize with known transaction types
-        summaries.put("SAVINGS_DEPOSIT", new TransactionSummary("SAVINGS_DEPOSIT"));
-        summaries.put("SAVINGS_WITHDRAWAL", new TransactionSummary("SAVINGS_WITHDRAWAL"));
-        summaries.put("INTEREST_EARNED", new TransactionSummary("INTEREST_EARNED"));
-        summaries.put("LOAN_DISBURSEMENT", new TransactionSummary("LOAN_DISBURSEMENT"));
-        summaries.put("LOAN_PAYMENT", new TransactionSummary("LOAN_PAYMENT"));
-        summaries.put("SERVICE_FEE", new TransactionSummary("SERVICE_FEE"));
-        summaries.put("MEMBERSHIP_FEE", new TransactionSummary("MEMBERSHIP_FEE"));
-        summaries.put("PENALTY", new TransactionSummary("PENALTY"));
-        
-        try (Connection conn = DatabaseManager.getConnection()) {
-            String sql = "SELECT transaction_type, SUM(amount) as total_amount, COUNT(*) as count " +
-                    "FROM transactions WHERE DATE(transaction_date) = ? " +
-                    "GROUP BY transaction_type";
-            
-            PreparedStatement stmt = conn.prepareStatement(sql);
-            stmt.setString(1, date);
-            
-            ResultSet rs = stmt.executeQuery();
-            
-            while (rs.next()) {
-                String type = rs.getString("transaction_type");
-                double totalAmount = rs.getDouble("total_amount");
-                int count = rs.getInt("count");
-                
-                TransactionSummary summary = new TransactionSummary(type, totalAmount, count);
-                summaries.put(type, summary);
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        
-        return new ArrayList<>(summaries.values());
+        return getTransactionSummary(TimeRange.ofDay(date));
     }
     
     /**
@@ -204,6 +607,17 @@ public class TransactionController {
      * @return List of transaction summaries by type
      */
     public static List<TransactionSummary> getMonthlyTransactionSummary(int year, int month) {
+        return getTransactionSummary(TimeRange.ofMonth(year, month));
+    }
+    
+    /**
+     * Get a summary of transactions within a time range. Ranges of whole days are read
+     * from the daily totals; other ranges scan the transactions in the range.
+     * 
+     * @param range The time range
+     * @return List of transaction summaries by type
+     */
+    public static List<TransactionSummary> getTransactionSummary(TimeRange range) {
         Map<String, TransactionSummary> summaries = new HashMap<>();
         
         // Initialize with known transaction types
@@ -216,24 +630,37 @@ public class TransactionController {
         summaries.put("MEMBERSHIP_FEE", new TransactionSummary("MEMBERSHIP_FEE"));
         summaries.put("PENALTY", new TransactionSummary("PENALTY"));
         
+        if (range.isWholeDays()) {
+            try {
+                LocalDate lastDay = range.getEnd().toLocalDate().minusDays(1);
+                summaries.putAll(TransactionDailyTotals.getTotals(range.getStart().toLocalDate(), lastDay));
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+            return new ArrayList<>(summaries.values());
+        }
+        
         try (Connection conn = DatabaseManager.getConnection()) {
-            String sql = "SELECT transaction_type, SUM(amount) as total_amount, COUNT(*) as count " +
-                    "FROM transactions WHERE YEAR(transaction_date) = ? AND MONTH(transaction_date) = ? " +
+            String sql = "SELECT transaction_type, SUM(amount) as total_amount, COUNT(*) as count, " +
+                    "MIN(amount) as min_amount, MAX(amount) as max_amount " +
+                    "FROM " + TransactionArchive.source(range.getStart()) + " WHERE " +
+                    range.predicate("transaction_date") + " " +
                     "GROUP BY transaction_type";
             
-            PreparedStatement stmt = conn.prepareStatement(sql);
-            stmt.setInt(1, year);
-            stmt.setInt(2, month);
-            
-            ResultSet rs = stmt.executeQuery();
-            
-            while (rs.next()) {
-                String type = rs.getString("transaction_type");
-                double totalAmount = rs.getDouble("total_amount");
-                int count = rs.getInt("count");
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                range.bind(stmt, 1);
                 
-                TransactionSummary summary = new TransactionSummary(type, totalAmount, count);
-                summaries.put(type, summary);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        String type = rs.getString("transaction_type");
+                        TransactionSummary summary = new TransactionSummary(type);
+                        summary.setTotalAmountCents(Money.getCents(rs, "total_amount"));
+                        summary.setCount(rs.getInt("count"));
+                        summary.setMinAmountCents(Money.getCents(rs, "min_amount"));
+                        summary.setMaxAmountCents(Money.getCents(rs, "max_amount"));
+                        summaries.put(type, summary);
+                    }
+                }
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -248,9 +675,13 @@ public class TransactionController {
      * @return The generated reference number
      */
     private static String generateReferenceNumber() {
-        // Format: "TR" + First 8 characters of UUID (uppercase)
-        String uuid = UUID.randomUUID().toString().substring(0, 8).toUpperCase();
-        return "TR" + uuid;
+        try {
+            return ReferenceNumberGenerator.next();
+        } catch (SQLException e) {
+            System.err.println("Error reserving reference numbers: " + e.getMessage());
+            // Fall back to a full random UUID so the posting is not lost
+            return "TRX" + UUID.randomUUID().toString().replace("-", "").toUpperCase();
+        }
     }
     
     /**
@@ -260,15 +691,15 @@ public class TransactionController {
      * @return The mapped Transaction
      * @throws SQLException If mapping fails
      */
-    private static Transaction mapResultSetToTransaction(ResultSet rs) throws SQLException {
+    static Transaction mapResultSetToTransaction(ResultSet rs) throws SQLException {
         Transaction transaction = new Transaction();
         transaction.setId(rs.getInt("id"));
         transaction.setMemberId(rs.getInt("member_id"));
         transaction.setAccountId(rs.getInt("account_id"));
         transaction.setReferenceNumber(rs.getString("reference_number"));
         transaction.setTransactionType(rs.getString("transaction_type"));
-        transaction.setAmount(rs.getDouble("amount"));
-        transaction.setRunningBalance(rs.getDouble("running_balance"));
+        transaction.setAmountCents(Money.getCents(rs, "amount"));
+        transaction.setRunningBalanceCents(Money.getCents(rs, "running_balance"));
         
         String transactionDateStr = rs.getString("transaction_date");
         if (transactionDateStr != null && !transactionDateStr.isEmpty()) {
@@ -285,6 +716,12 @@ public class TransactionController {
             // Ignore if the column doesn't exist
         }
         
+        try {
+            transaction.setIdempotencyKey(rs.getString("idempotency_key"));
+        } catch (SQLException e) {
+            // Ignore if the column isn't selected
+        }
+        
         return transaction;
     }
     
@@ -352,17 +789,19 @@ public class TransactionController {
      */
     public static boolean hasMemberActivity(int memberId, int days) {
         try (Connection conn = DatabaseManager.getConnection()) {
-            String sql = "SELECT COUNT(*) FROM transactions WHERE member_id = ? AND " +
-                    "transaction_date >= DATE_SUB(NOW(), INTERVAL ? DAY)";
-            
-            PreparedStatement stmt = conn.prepareStatement(sql);
-            stmt.setInt(1, memberId);
-            stmt.setInt(2, days);
+            LocalDateTime since = LocalDateTime.now().minusDays(days);
+            String sql = "SELECT COUNT(*) FROM " + TransactionArchive.source(since)
+                    + " WHERE member_id = ? AND transaction_date >= ?";
             
-            ResultSet rs = stmt.executeQuery();
-            
-            if (rs.next()) {
-                return rs.getInt(1) > 0;
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setInt(1, memberId);
+                stmt.setTimestamp(2, Timestamp.valueOf(since));
+                
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        return rs.getInt(1) > 0;
+                    }
+                }
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -379,17 +818,19 @@ public class TransactionController {
      */
     public static Date getLastTransactionDate(int memberId) {
         try (Connection conn = DatabaseManager.getConnection()) {
-            String sql = "SELECT MAX(transaction_date) FROM transactions WHERE member_id = ?";
-            
-            PreparedStatement stmt = conn.prepareStatement(sql);
-            stmt.setInt(1, memberId);
+            // A member inactive for longer than the archive horizon has only archived rows
+            String sql = "SELECT MAX(transaction_date) FROM " + TransactionArchive.source(null) + " WHERE member_id = ?";
             
-            ResultSet rs = stmt.executeQuery();
-            
-            if (rs.next()) {
-                String dateStr = rs.getString(1);
-                if (dateStr != null) {
-                    return DateUtils.parseDate(dateStr.substring(0, 10)); // Extract date part
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setInt(1, memberId);
+                
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        String dateStr = rs.getString(1);
+                        if (dateStr != null) {
+                            return DateUtils.parseDate(dateStr.substring(0, 10)); // Extract date part
+                        }
+                    }
                 }
             }
         } catch (Exception e) {
@@ -408,11 +849,12 @@ public class TransactionController {
         try (Connection conn = DatabaseManager.getConnection()) {
             String sql = "SELECT COUNT(*) FROM loans WHERE status = 'Active'";
             
-            PreparedStatement stmt = conn.prepareStatement(sql);
-            ResultSet rs = stmt.executeQuery();
-            
-            if (rs.next()) {
-                return rs.getInt(1);
+            try (PreparedStatement stmt = conn.prepareStatement(sql);
+                 ResultSet rs = stmt.executeQuery()) {
+                
+                if (rs.next()) {
+                    return rs.getInt(1);
+                }
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -430,11 +872,12 @@ public class TransactionController {
         try (Connection conn = DatabaseManager.getConnection()) {
             String sql = "SELECT SUM(remaining_balance) FROM loans WHERE status = 'Active'";
             
-            PreparedStatement stmt = conn.prepareStatement(sql);
-            ResultSet rs = stmt.executeQuery();
-            
-            if (rs.next()) {
-                return rs.getDouble(1);
+            try (PreparedStatement stmt = conn.prepareStatement(sql);
+                 ResultSet rs = stmt.executeQuery()) {
+                
+                if (rs.next()) {
+                    return Money.toDouble(Money.getCents(rs, 1));
+                }
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -450,13 +893,17 @@ public class TransactionController {
      */
     public static int getTodayTransactionCount() {
         try (Connection conn = DatabaseManager.getConnection()) {
-            String sql = "SELECT COUNT(*) FROM transactions WHERE DATE(transaction_date) = CURRENT_DATE()";
-            
-            PreparedStatement stmt = conn.prepareStatement(sql);
-            ResultSet rs = stmt.executeQuery();
+            TimeRange today = TimeRange.today();
+            String sql = "SELECT COUNT(*) FROM transactions WHERE " + today.predicate("transaction_date");
             
-            if (rs.next()) {
-                return rs.getInt(1);
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                today.bind(stmt, 1);
+                
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        return rs.getInt(1);
+                    }
+                }
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -472,13 +919,17 @@ public class TransactionController {
      */
     public static double getTodayTransactionTotal() {
         try (Connection conn = DatabaseManager.getConnection()) {
-            String sql = "SELECT SUM(amount) FROM transactions WHERE DATE(transaction_date) = CURRENT_DATE()";
+            TimeRange today = TimeRange.today();
+            String sql = "SELECT SUM(amount) FROM transactions WHERE " + today.predicate("transaction_date");
             
-            PreparedStatement stmt = conn.prepareStatement(sql);
-            ResultSet rs = stmt.executeQuery();
-            
-            if (rs.next()) {
-                return rs.getDouble(1);
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                today.bind(stmt, 1);
+                
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        return Money.toDouble(Money.getCents(rs, 1));
+                    }
+                }
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -504,35 +955,31 @@ public class TransactionController {
     }
     
     /**
-     * Export transactions table to CSV file
+     * Export transactions table to CSV file. Only the rows loaded in the table are
+     * written; CsvExporter exports any date range straight from the database.
      * 
      * @param table The JTable containing transaction data
      * @param filePath The path where to save the CSV file
      * @return True if exported successfully, false otherwise
      */
     public static boolean exportTransactionsToCSV(javax.swing.JTable table, String filePath) {
-        try (java.io.FileWriter writer = new java.io.FileWriter(filePath)) {
+        try (CsvWriter writer = CsvWriter.open(java.nio.file.Paths.get(filePath), false)) {
             // Write header
             int columnCount = table.getColumnCount();
+            String[] row = new String[columnCount];
             for (int i = 0; i < columnCount; i++) {
-                writer.append(table.getColumnName(i));
-                if (i < columnCount - 1) {
-                    writer.append(",");
-                }
+                row[i] = table.getColumnName(i);
             }
-            writer.append("\n");
+            writer.writeRow(row);
             
             // Write data rows
             int rowCount = table.getRowCount();
             for (int i = 0; i < rowCount; i++) {
                 for (int j = 0; j < columnCount; j++) {
                     Object value = table.getValueAt(i, j);
-                    writer.append(value != null ? value.toString().replace(",", ";") : "");
-                    if (j < columnCount - 1) {
-                        writer.append(",");
-                    }
+                    row[j] = value != null ? value.toString() : null;
                 }
-                writer.append("\n");
+                writer.writeRow(row);
             }
             
             return true;
@@ -543,7 +990,7 @@ public class TransactionController {
     }
     
     /**
-     * Process a deposit transaction
+     * Process a deposit transaction through the posting pipeline
      * 
      * @param memberId The member ID
      * @param amount The amount to deposit
@@ -552,102 +999,52 @@ public class TransactionController {
      * @return True if successful, false otherwise
      */
     public static boolean processDeposit(int memberId, double amount, String description, String processedBy) {
-        try (Connection conn = DatabaseManager.getConnection()) {
-            // First get the account ID and current balance
-            String accountQuery = "SELECT id, savings_balance FROM savings_accounts WHERE member_id = ?";
-            PreparedStatement accountStmt = conn.prepareStatement(accountQuery);
-            accountStmt.setInt(1, memberId);
-            
-            ResultSet accountRs = accountStmt.executeQuery();
-            
-            if (accountRs.next()) {
-                int accountId = accountRs.getInt("id");
-                double currentBalance = accountRs.getDouble("savings_balance");
-                double newBalance = currentBalance + amount;
-                
-                // Update the savings balance
-                String updateQuery = "UPDATE savings_accounts SET savings_balance = ? WHERE id = ?";
-                PreparedStatement updateStmt = conn.prepareStatement(updateQuery);
-                updateStmt.setDouble(1, newBalance);
-                updateStmt.setInt(2, accountId);
-                updateStmt.executeUpdate();
-                
-                // Create the transaction record
-                Transaction transaction = new Transaction();
-                transaction.setMemberId(memberId);
-                transaction.setAccountId(accountId);
-                transaction.setTransactionType("SAVINGS_DEPOSIT");
-                transaction.setAmount(amount);
-                transaction.setRunningBalance(newBalance);
-                transaction.setDescription(description);
-                transaction.setProcessedBy(processedBy);
-                transaction.setTransactionDate(LocalDateTime.now());
-                
-                return recordTransaction(transaction);
-            }
-            
-            return false;
-        } catch (SQLException e) {
-            e.printStackTrace();
-            return false;
-        }
+        return processDeposit(memberId, amount, description, processedBy, null);
+    }
+    
+    /**
+     * Process a deposit transaction that is recorded only once per idempotency key
+     * 
+     * @param memberId The member ID
+     * @param amount The amount to deposit
+     * @param description The transaction description
+     * @param processedBy The username of the processor
+     * @param idempotencyKey Client-supplied key identifying this deposit across retries, or null
+     * @return True if successful or already recorded under the key, false otherwise
+     */
+    public static boolean processDeposit(int memberId, double amount, String description, String processedBy,
+            String idempotencyKey) {
+        return post(PostingPipeline.Posting.deposit(memberId, Money.ofDouble(amount), description, processedBy)
+                .withIdempotencyKey(idempotencyKey)) != null;
     }
     
     /**
-     * Process a withdrawal transaction
+     * Process a withdrawal transaction through the posting pipeline
      * 
      * @param memberId The member ID
      * @param amount The amount to withdraw
      * @param description The transaction description
      * @param processedBy The username of the processor
-     * @return True if successful, false otherwise
+     * @return True if successful, false if the account does not exist, the balance is insufficient or an error occurred
      */
     public static boolean processWithdrawal(int memberId, double amount, String description, String processedBy) {
-        try (Connection conn = DatabaseManager.getConnection()) {
-            // First get the account ID and current balance
-            String accountQuery = "SELECT id, savings_balance FROM savings_accounts WHERE member_id = ?";
-            PreparedStatement accountStmt = conn.prepareStatement(accountQuery);
-            accountStmt.setInt(1, memberId);
-            
-            ResultSet accountRs = accountStmt.executeQuery();
-            
-            if (accountRs.next()) {
-                int accountId = accountRs.getInt("id");
-                double currentBalance = accountRs.getDouble("savings_balance");
-                
-                // Check if sufficient balance
-                if (currentBalance < amount) {
-                    return false;
-                }
-                
-                double newBalance = currentBalance - amount;
-                
-                // Update the savings balance
-                String updateQuery = "UPDATE savings_accounts SET savings_balance = ? WHERE id = ?";
-                PreparedStatement updateStmt = conn.prepareStatement(updateQuery);
-                updateStmt.setDouble(1, newBalance);
-                updateStmt.setInt(2, accountId);
-                updateStmt.executeUpdate();
-                
-                // Create the transaction record
-                Transaction transaction = new Transaction();
-                transaction.setMemberId(memberId);
-                transaction.setAccountId(accountId);
-                transaction.setTransactionType("SAVINGS_WITHDRAWAL");
-                transaction.setAmount(amount);
-                transaction.setRunningBalance(newBalance);
-                transaction.setDescription(description);
-                transaction.setProcessedBy(processedBy);
-                transaction.setTransactionDate(LocalDateTime.now());
-                
-                return recordTransaction(transaction);
-            }
-            
-            return false;
-        } catch (SQLException e) {
-            e.printStackTrace();
-            return false;
-        }
+        return processWithdrawal(memberId, amount, description, processedBy, null);
+    }
+    
+    /**
+     * Process a withdrawal transaction that is recorded only once per idempotency key
+     * 
+     * @param memberId The member ID
+     * @param amount The amount to withdraw
+     * @param description The transaction description
+     * @param processedBy The username of the processor
+     * @param idempotencyKey Client-supplied key identifying this withdrawal across retries, or null
+     * @return True if successful or already recorded under the key, false otherwise
+     */
+    public static boolean processWithdrawal(int memberId, double amount, String description, String processedBy,
+            String idempotencyKey) {
+        return post(PostingPipeline.Posting.withdrawal(memberId, Money.ofDouble(amount), description, processedBy)
+                .withIdempotencyKey(idempotencyKey)) != null;
     }
     
     /**
@@ -660,52 +1057,100 @@ public class TransactionController {
      * @return The transaction ID if successful, -1 otherwise
      */
     public static int recordInterest(int memberId, double amount, String description, String processedBy) {
-        try (Connection conn = DatabaseManager.getConnection()) {
-            // First get the account ID and current balance
-            String accountQuery = "SELECT id, savings_balance FROM savings_accounts WHERE member_id = ?";
-            PreparedStatement accountStmt = conn.prepareStatement(accountQuery);
-            accountStmt.setInt(1, memberId);
-            
-            ResultSet accountRs = accountStmt.executeQuery();
-            
-            if (accountRs.next()) {
-                int accountId = accountRs.getInt("id");
-                double currentBalance = accountRs.getDouble("savings_balance");
-                double newBalance = currentBalance + amount;
-                
-                // Update the savings balance
-                String updateQuery = "UPDATE savings_accounts SET savings_balance = ? WHERE id = ?";
-                PreparedStatement updateStmt = conn.prepareStatement(updateQuery);
-                updateStmt.setDouble(1, newBalance);
-                updateStmt.setInt(2, accountId);
-                updateStmt.executeUpdate();
-                
-                // Create the transaction record
-                Transaction transaction = new Transaction();
-                transaction.setMemberId(memberId);
-                transaction.setAccountId(accountId);
-                transaction.setTransactionType("INTEREST_EARNED");
-                transaction.setAmount(amount);
-                transaction.setRunningBalance(newBalance);
-                transaction.setDescription(description);
-                transaction.setProcessedBy(processedBy);
-                transaction.setTransactionDate(LocalDateTime.now());
-                
-                if (recordTransaction(transaction)) {
-                    String idQuery = "SELECT MAX(id) FROM transactions WHERE member_id = ? AND transaction_type = 'INTEREST_EARNED'";
-                    PreparedStatement idStmt = conn.prepareStatement(idQuery);
-                    idStmt.setInt(1, memberId);
-                    
-                    ResultSet idRs = idStmt.executeQuery();
-                    if (idRs.next()) {
-                        return idRs.getInt(1);
-                    }
-                }
-            }
+        Transaction transaction = post(PostingPipeline.Posting.interest(memberId, Money.ofDouble(amount), description, processedBy));
+        return transaction != null ? transaction.getId() : -1;
+    }
+    
+    /**
+     * Applies a posting and waits for it to commit; joins the current unit of work if one is active
+     * 
+     * @param posting The posting
+     * @return The recorded transaction, or null if rejected or an error occurred
+     */
+    private static Transaction post(PostingPipeline.Posting posting) {
+        try {
+            return PostingPipeline.post(posting);
         } catch (SQLException e) {
+            System.err.println("Error posting " + posting.getTransactionType() + ": " + e.getMessage());
             e.printStackTrace();
+            return null;
+        }
+    }
+    
+    /**
+     * Outcome of recordTransactions
+     */
+    public static class BatchResult {
+        public int recordedCount;
+        public List<RowFailure> failures = new ArrayList<>();
+        
+        /**
+         * Checks whether every row was recorded
+         * 
+         * @return True if no row failed, false otherwise
+         */
+        public boolean isSuccessful() {
+            return failures.isEmpty();
+        }
+        
+        private void addFailure(int index, Transaction transaction, String message) {
+            failures.add(new RowFailure(index, transaction, message));
+        }
+        
+        private void rollBack(List<Transaction> transactions, String message) {
+            boolean[] failed = new boolean[transactions.size()];
+            for (RowFailure failure : failures) {
+                failed[failure.index] = true;
+            }
+            for (int i = 0; i < transactions.size(); i++) {
+                if (!failed[i]) {
+                    transactions.get(i).setId(0);
+                    addFailure(i, transactions.get(i), "Batch rolled back: " + message);
+                }
+            }
+            recordedCount = 0;
         }
+    }
+    
+    /**
+     * A transaction that could not be recorded
+     */
+    public static class RowFailure {
+        public final int index;
+        public final Transaction transaction;
+        public final String message;
         
-        return -1;
+        RowFailure(int index, Transaction transaction, String message) {
+            this.index = index;
+            this.transaction = transaction;
+            this.message = message;
+        }
+        
+        @Override
+        public String toString() {
+            return "Row " + index + ": " + message;
+        }
+    }
+    
+    /**
+     * Position after the last transaction of a page, in newest-first order
+     */
+    public static class Cursor {
+        public final LocalDateTime transactionDate;
+        public final int id;
+        
+        public Cursor(LocalDateTime transactionDate, int id) {
+            this.transactionDate = transactionDate;
+            this.id = id;
+        }
+    }
+    
+    /**
+     * One page of transactions from getMemberTransactionPage
+     */
+    public static class Page {
+        public final List<Transaction> transactions = new ArrayList<>();
+        public Cursor next;
+        public boolean hasMore;
     }
 }
\ No newline at end of file
@@ -0,0 +1,269 @@
+package com.moscat.controllers;
+
+import com.moscat.models.Transaction;
+import com.moscat.models.TransactionSummary;
+import com.moscat.utils.DatabaseManager;
+import com.moscat.utils.DateUtils;
+import com.moscat.utils.Money;
+import com.moscat.utils.TimeRange;
+import com.moscat.utils.UnitOfWork;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Maintains transaction_daily_totals, the per-day and per-type rollup of transactions.
+ * 
+ * Every insert into transactions adds its amount to the rollup row of its day and type in
+ * the same database transaction, so the rollup commits or rolls back with the postings.
+ * Summaries over whole days then read at most one row per day and type instead of every
+ * transaction in the range. The V7 migration fills the table from existing transactions;
+ * rebuild() and main() recompute it if it ever drifts, e.g. after transactions were
+ * deleted by hand.
+ */
+public final class TransactionDailyTotals {
+    
+    private static final String MERGE_SQL = "MERGE INTO transaction_daily_totals t "
+            + "USING (VALUES (CAST(? AS DATE), CAST(? AS VARCHAR(20)), CAST(? AS DECIMAL(15,2)), CAST(? AS INT), "
+            + "CAST(? AS DECIMAL(15,2)), CAST(? AS DECIMAL(15,2)))) "
+            + "AS d(summary_date, transaction_type, total_amount, transaction_count, min_amount, max_amount) "
+            + "ON t.summary_date = d.summary_date AND t.transaction_type = d.transaction_type "
+            + "WHEN MATCHED THEN UPDATE SET total_amount = t.total_amount + d.total_amount, "
+            + "transaction_count = t.transaction_count + d.transaction_count, "
+            + "min_amount = LEAST(t.min_amount, d.min_amount), max_amount = GREATEST(t.max_amount, d.max_amount) "
+            + "WHEN NOT MATCHED THEN INSERT (summary_date, transaction_type, total_amount, transaction_count, "
+            + "min_amount, max_amount) VALUES (d.summary_date, d.transaction_type, d.total_amount, "
+            + "d.transaction_count, d.min_amount, d.max_amount)";
+    
+    private static final String REBUILD_SQL = "INSERT INTO transaction_daily_totals (summary_date, transaction_type, "
+            + "total_amount, transaction_count, min_amount, max_amount) "
+            + "SELECT CAST(transaction_date AS DATE), transaction_type, SUM(amount), COUNT(*), MIN(amount), MAX(amount) "
+            + "FROM " + TransactionArchive.ALL;
+    
+    private static final String REBUILD_GROUP_BY = " GROUP BY CAST(transaction_date AS DATE), transaction_type";
+    
+    // SQLState of a unique constraint violation
+    private static final String DUPLICATE_KEY = "23505";
+    
+    private TransactionDailyTotals() {
+    }
+    
+    /**
+     * Adds recorded transactions to the rollup. Must run on the connection that inserted
+     * them, inside the same database transaction.
+     * 
+     * @param conn The connection of the current unit of work
+     * @param delta The recorded transactions, grouped by day and type
+     * @throws SQLException If the rollup cannot be updated
+     */
+    static void apply(Connection conn, Delta delta) throws SQLException {
+        if (delta.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(MERGE_SQL)) {
+            // Rows are updated in key order, so concurrent postings cannot deadlock on them
+            for (Map.Entry<Key, TransactionSummary> entry : delta.totals.entrySet()) {
+                Key key = entry.getKey();
+                TransactionSummary totals = entry.getValue();
+                stmt.setDate(1, DateUtils.toSqlDate(key.date));
+                stmt.setString(2, key.type);
+                Money.setCents(stmt, 3, totals.getTotalAmountCents());
+                stmt.setInt(4, totals.getCount());
+                Money.setCents(stmt, 5, totals.getMinAmountCents());
+                Money.setCents(stmt, 6, totals.getMaxAmountCents());
+                try {
+                    stmt.executeUpdate();
+                } catch (SQLException e) {
+                    // Another terminal inserted the first row of this day and type first;
+                    // the row exists now, so the retry takes the update branch
+                    if (!DUPLICATE_KEY.equals(e.getSQLState())) {
+                        throw e;
+                    }
+                    stmt.executeUpdate();
+                }
+            }
+        }
+    }
+    
+    /**
+     * Gets the totals by transaction type for whole days
+     * 
+     * @param firstDay The first day, inclusive
+     * @param lastDay The last day, inclusive
+     * @return Summaries by transaction type; types without transactions are absent
+     * @throws SQLException If the query fails
+     */
+    public static Map<String, TransactionSummary> getTotals(LocalDate firstDay, LocalDate lastDay)
+            throws SQLException {
+        Map<String, TransactionSummary> summaries = new LinkedHashMap<>();
+        String sql = "SELECT transaction_type, SUM(total_amount) AS total_amount, "
+                + "SUM(transaction_count) AS transaction_count, MIN(min_amount) AS min_amount, "
+                + "MAX(max_amount) AS max_amount FROM transaction_daily_totals "
+                + "WHERE summary_date >= ? AND summary_date <= ? GROUP BY transaction_type";
+        
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setDate(1, DateUtils.toSqlDate(firstDay));
+            stmt.setDate(2, DateUtils.toSqlDate(lastDay));
+            
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    String type = rs.getString("transaction_type");
+                    TransactionSummary summary = new TransactionSummary(type);
+                    summary.setTotalAmountCents(Money.getCents(rs, "total_amount"));
+                    summary.setCount(rs.getInt("transaction_count"));
+                    summary.setMinAmountCents(Money.getCents(rs, "min_amount"));
+                    summary.setMaxAmountCents(Money.getCents(rs, "max_amount"));
+                    summaries.put(type, summary);
+                }
+            }
+        }
+        
+        return summaries;
+    }
+    
+    /**
+     * Recomputes the rollup rows of whole days from the transactions table
+     * 
+     * @param days The days to recompute; must start and end at midnight
+     * @return The number of rollup rows written
+     * @throws SQLException If the rebuild fails; the old rows are then kept
+     */
+    public static int rebuild(TimeRange days) throws SQLException {
+        if (!days.isWholeDays()) {
+            throw new IllegalArgumentException("Daily totals can only be rebuilt for whole days: " + days);
+        }
+        LocalDate firstDay = days.getStart().toLocalDate();
+        LocalDate endDay = days.getEnd().toLocalDate();
+        
+        return UnitOfWork.execute("rebuildDailyTotals", conn -> {
+            String delete = "DELETE FROM transaction_daily_totals WHERE summary_date >= ? AND summary_date < ?";
+            try (PreparedStatement stmt = conn.prepareStatement(delete)) {
+                stmt.setDate(1, DateUtils.toSqlDate(firstDay));
+                stmt.setDate(2, DateUtils.toSqlDate(endDay));
+                stmt.executeUpdate();
+            }
+            
+            String insert = REBUILD_SQL + " WHERE " + days.predicate("transaction_date") + REBUILD_GROUP_BY;
+            try (PreparedStatement stmt = conn.prepareStatement(insert)) {
+                days.bind(stmt, 1);
+                return stmt.executeUpdate();
+            }
+        });
+    }
+    
+    /**
+     * Recomputes the whole rollup from the transactions table
+     * 
+     * @return The number of rollup rows written
+     * @throws SQLException If the rebuild fails; the old rows are then kept
+     */
+    public static int rebuildAll() throws SQLException {
+        return UnitOfWork.execute("rebuildDailyTotals", conn -> {
+            try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM transaction_daily_totals")) {
+                stmt.executeUpdate();
+            }
+            try (PreparedStatement stmt = conn.prepareStatement(REBUILD_SQL + REBUILD_GROUP_BY)) {
+                return stmt.executeUpdate();
+            }
+        });
+    }
+    
+    /**
+     * Backfill tool. Without arguments the whole rollup is rebuilt; with a first and last
+     * day (yyyy-MM-dd) only those days are. Run it while no terminal is posting.
+     * 
+     * @param args Optional first and last day
+     */
+    public static void main(String[] args) {
+        if (args.length != 0 && args.length != 2) {
+            System.err.println("Usage: TransactionDailyTotals [firstDay lastDay]");
+            System.exit(2);
+        }
+        
+        DatabaseManager.getInstance().initializeDatabase();
+        try {
+            int rows;
+            if (args.length == 2) {
+                rows = rebuild(TimeRange.ofDays(DateUtils.parseLocalDate(args[0]), DateUtils.parseLocalDate(args[1])));
+            } else {
+                rows = rebuildAll();
+            }
+            System.out.println("Rebuilt " + rows + " daily total rows");
+        } catch (SQLException e) {
+            System.err.println("Error rebuilding daily totals: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+    
+    /**
+     * Recorded transactions waiting to be added to the rollup, summed by day and type
+     */
+    static final class Delta {
+        private final TreeMap<Key, TransactionSummary> totals = new TreeMap<>();
+        
+        /**
+         * Adds a recorded transaction
+         * 
+         * @param transaction The transaction; its date and type must be set
+         */
+        void add(Transaction transaction) {
+            Key key = new Key(transaction.getTransactionDate().toLocalDate(), transaction.getTransactionType());
+            totals.computeIfAbsent(key, k -> new TransactionSummary(k.type))
+                    .addTransactionCents(transaction.getAmountCents());
+        }
+        
+        boolean isEmpty() {
+            return totals.isEmpty();
+        }
+        
+        /**
+         * Gets the earliest transaction day added
+         * 
+         * @return The day, or null if nothing was added
+         */
+        LocalDate getFirstDay() {
+            return totals.isEmpty() ? null : totals.firstKey().date;
+        }
+    }
+    
+    /**
+     * Primary key of a rollup row
+     */
+    private static final class Key implements Comparable<Key> {
+        private final LocalDate date;
+        private final String type;
+        
+        Key(LocalDate date, String type) {
+            this.date = date;
+            this.type = type;
+        }
+        
+        @Override
+        public int compareTo(Key other) {
+            int byDate = date.compareTo(other.date);
+            return byDate != 0 ? byDate : type.compareTo(other.type);
+        }
+        
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return date.equals(other.date) && type.equals(other.type);
+        }
+        
+        @Override
+        public int hashCode() {
+            return 31 * date.hashCode() + type.hashCode();
+        }
+    }
+}
\ No newline at end of file
@@ -3,13 +3,15 @@ package com.moscat.models;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 
+import com.moscat.utils.Money;
+
 /**
  * Represents an interest rate setting configuration
  */
 public class InterestSetting {
     private int id;
     private double interestRate;
-    private double minimumBalanceRequired;
+    private long minimumBalanceRequired; // Centavos
     private String computationBasis;
     private LocalDate effectiveDate;
     private String reasonForChange;
@@ -40,11 +42,19 @@ public class InterestSetting {
     }
     
     public double getMinimumBalanceRequired() {
-        return minimumBalanceRequired;
+        return Money.toDouble(minimumBalanceRequired);
     }
     
     public void setMinimumBalanceRequired(double minimumBalanceRequired) {
-        this.minimumBalanceRequired = minimumBalanceRequired;
+        this.minimumBalanceRequired = Money.ofDouble(minimumBalanceRequired);
+    }
+    
+    public long getMinimumBalanceRequiredCents() {
+        return minimumBalanceRequired;
+    }
+    
+    public void setMinimumBalanceRequiredCents(long minimumBalanceRequiredCents) {
+        this.minimumBalanceRequired = minimumBalanceRequiredCents;
     }
     
     public String getComputationBasis() {
@@ -121,7 +131,17 @@ public class InterestSetting {
      * @return True if the balance qualifies for interest, false otherwise
      */
     public boolean qualifiesForInterest(double balance) {
-        return balance >= minimumBalanceRequired;
+        return qualifiesForInterestCents(Money.ofDouble(balance));
+    }
+    
+    /**
+     * Check if a member's balance qualifies for interest
+     * 
+     * @param balanceCents The member's balance in centavos
+     * @return True if the balance qualifies for interest, false otherwise
+     */
+    public boolean qualifiesForInterestCents(long balanceCents) {
+        return balanceCents >= minimumBalanceRequired;
     }
     
     /**
@@ -131,14 +151,24 @@ public class InterestSetting {
      * @return The calculated interest amount
      */
     public double calculateInterest(double balance) {
-        if (!qualifiesForInterest(balance)) {
-            return 0.0;
+        return Money.toDouble(calculateInterestCents(Money.ofDouble(balance)));
+    }
+    
+    /**
+     * Calculate interest for a given balance, rounded to the centavo
+     * 
+     * @param balanceCents The balance to calculate interest on, in centavos
+     * @return The calculated interest amount in centavos
+     */
+    public long calculateInterestCents(long balanceCents) {
+        if (!qualifiesForInterestCents(balanceCents)) {
+            return 0;
         }
         
         if ("Daily".equals(computationBasis)) {
-            return balance * (interestRate / 100.0 / 365.0);
+            return Money.percent(balanceCents, interestRate, 365);
         } else { // Monthly
-            return balance * (interestRate / 100.0 / 12.0);
+            return Money.percent(balanceCents, interestRate, 12);
         }
     }
 }
\ No newline at end of file
@@ -5,6 +5,8 @@ import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.moscat.utils.Money;
+
 /**
  * Represents a loan in the system
  */
@@ -12,12 +14,12 @@ public class Loan {
     private int id;
     private int memberId;
     private String loanType;
-    private double loanAmount;
+    private long loanAmount; // Centavos
     private double interestRate;
-    private double previousLoanBalance;
-    private double deductions;
-    private double rlpf; // Risk Loss Provision Fund
-    private double netProceeds;
+    private long previousLoanBalance; // Centavos
+    private long deductions; // Centavos
+    private long rlpf; // Risk Loss Provision Fund, in centavos
+    private long netProceeds; // Centavos
     private int termMonths;
     private LocalDateTime applicationDate;
     private LocalDateTime approvalDate;
@@ -57,11 +59,19 @@ public class Loan {
     }
     
     public double getLoanAmount() {
-        return loanAmount;
+        return Money.toDouble(loanAmount);
     }
     
     public void setLoanAmount(double loanAmount) {
-        this.loanAmount = loanAmount;
+        this.loanAmount = Money.ofDouble(loanAmount);
+    }
+    
+    public long getLoanAmountCents() {
+        return loanAmount;
+    }
+    
+    public void setLoanAmountCents(long loanAmountCents) {
+        this.loanAmount = loanAmountCents;
     }
     
     public double getInterestRate() {
@@ -73,35 +83,67 @@ public class Loan {
     }
     
     public double getPreviousLoanBalance() {
-        return previousLoanBalance;
+        return Money.toDouble(previousLoanBalance);
     }
     
     public void setPreviousLoanBalance(double previousLoanBalance) {
-        this.previousLoanBalance = previousLoanBalance;
+        this.previousLoanBalance = Money.ofDouble(previousLoanBalance);
+    }
+    
+    public long getPreviousLoanBalanceCents() {
+        return previousLoanBalance;
+    }
+    
+    public void setPreviousLoanBalanceCents(long previousLoanBalanceCents) {
+        this.previousLoanBalance = previousLoanBalanceCents;
     }
     
     public double getDeductions() {
-        return deductions;
+        return Money.toDouble(deductions);
     }
     
     public void setDeductions(double deductions) {
-        this.deductions = deductions;
+        this.deductions = Money.ofDouble(deductions);
+    }
+    
+    public long getDeductionsCents() {
+        return deductions;
+    }
+    
+    public void setDeductionsCents(long deductionsCents) {
+        this.deductions = deductionsCents;
     }
     
     public double getRlpf() {
-        return rlpf;
+        return Money.toDouble(rlpf);
     }
     
     public void setRlpf(double rlpf) {
-        this.rlpf = rlpf;
+        this.rlpf = Money.ofDouble(rlpf);
+    }
+    
+    public long getRlpfCents() {
+        return rlpf;
+    }
+    
+    public void setRlpfCents(long rlpfCents) {
+        this.rlpf = rlpfCents;
     }
     
     public double getNetProceeds() {
-        return netProceeds;
+        return Money.toDouble(netProceeds);
     }
     
     public void setNetProceeds(double netProceeds) {
-        this.netProceeds = netProceeds;
+        this.netProceeds = Money.ofDouble(netProceeds);
+    }
+    
+    public long getNetProceedsCents() {
+        return netProceeds;
+    }
+    
+    public void setNetProceedsCents(long netProceedsCents) {
+        this.netProceeds = netProceedsCents;
     }
     
     public int getTermMonths() {
@@ -150,13 +192,22 @@ public class Loan {
      * @return The calculated RLPF value
      */
     public double calculateRLPF() {
+        return Money.toDouble(calculateRLPFCents());
+    }
+    
+    /**
+     * Calculate the RLPF (Risk Loss Provision Fund) for this loan
+     * 
+     * @return The calculated RLPF in centavos
+     */
+    public long calculateRLPFCents() {
         // RLPF = (LoanAmount ÷ 1000) × 1 × Number of Term Months
         // Not applied to Petty Cash or Bonus Loans
         if ("Petty Cash".equals(loanType) || "Bonus".equals(loanType)) {
-            return 0.0;
+            return 0;
         }
         
-        return (loanAmount / 1000.0) * 1 * termMonths;
+        return Money.fraction(loanAmount, termMonths, 1000);
     }
     
     /**
@@ -165,7 +216,16 @@ public class Loan {
      * @return The calculated net proceeds
      */
     public double calculateNetProceeds() {
-        return loanAmount - previousLoanBalance - deductions - rlpf;
+        return Money.toDouble(calculateNetProceedsCents());
+    }
+    
+    /**
+     * Calculate the net proceeds of the loan
+     * 
+     * @return The calculated net proceeds in centavos
+     */
+    public long calculateNetProceedsCents() {
+        return Money.subtract(Money.subtract(Money.subtract(loanAmount, previousLoanBalance), deductions), rlpf);
     }
     
     /**
@@ -173,12 +233,15 @@ public class Loan {
      */
     public void generateAmortizationSchedule() {
         amortizationSchedule.clear();
+        if (termMonths <= 0) {
+            return;
+        }
         
         // Number of years in the term
         double termYears = termMonths / 12.0;
         
         // Annual principal payment
-        double annualPrincipalPayment = loanAmount / termYears;
+        long annualPrincipalPayment = Money.fraction(loanAmount, 12, termMonths);
         
         // Convert monthly value to yearly for the calculation
         LocalDate currentDate = LocalDate.now();
@@ -186,18 +249,18 @@ public class Loan {
         // Generate for each year
         for (int year = 0; year < Math.ceil(termYears); year++) {
             // Calculate remaining principal
-            double remainingPrincipal = loanAmount - (annualPrincipalPayment * year);
+            long remainingPrincipal = Money.subtract(loanAmount, Money.multiply(annualPrincipalPayment, year));
             if (remainingPrincipal < 0) {
                 remainingPrincipal = 0;
             }
             
             // Calculate annual interest
-            double annualInterest = remainingPrincipal * (interestRate / 100);
+            long annualInterest = Money.percent(remainingPrincipal, interestRate);
             
             // Monthly amortization = (annual interest / 12) + (annual principal payment / 12)
-            double monthlyInterest = annualInterest / 12;
-            double monthlyPrincipal = annualPrincipalPayment / 12;
-            double monthlyAmortization = monthlyInterest + monthlyPrincipal;
+            long monthlyInterest = Money.fraction(annualInterest, 1, 12);
+            long monthlyPrincipal = Money.fraction(annualPrincipalPayment, 1, 12);
+            long monthlyAmortization = Money.add(monthlyInterest, monthlyPrincipal);
             
             // Generate monthly amortization entries
             for (int month = 0; month < 12; month++) {
@@ -207,7 +270,7 @@ public class Loan {
                 }
                 
                 LocalDate paymentDate = currentDate.plusMonths((year * 12) + month);
-                double remainingBalance = remainingPrincipal - (monthlyPrincipal * month);
+                long remainingBalance = Money.subtract(remainingPrincipal, Money.multiply(monthlyPrincipal, month));
                 if (remainingBalance < 0) {
                     remainingBalance = 0;
                 }
@@ -215,10 +278,10 @@ public class Loan {
                 LoanAmortization amortization = new LoanAmortization();
                 amortization.setPaymentNumber((year * 12) + month + 1);
                 amortization.setPaymentDate(paymentDate);
-                amortization.setPrincipalAmount(monthlyPrincipal);
-                amortization.setInterestAmount(monthlyInterest);
-                amortization.setTotalPayment(monthlyAmortization);
-                amortization.setRemainingBalance(remainingBalance);
+                amortization.setPrincipalAmountCents(monthlyPrincipal);
+                amortization.setInterestAmountCents(monthlyInterest);
+                amortization.setTotalPaymentCents(monthlyAmortization);
+                amortization.setRemainingBalanceCents(remainingBalance);
                 amortization.setPaymentStatus("Unpaid");
                 
                 amortizationSchedule.add(amortization);
@@ -2,6 +2,8 @@ package com.moscat.models;
 
 import java.time.LocalDate;
 
+import com.moscat.utils.Money;
+
 /**
  * Represents a single amortization payment in a loan repayment schedule
  */
@@ -10,10 +12,10 @@ public class LoanAmortization {
     private int loanId;
     private int paymentNumber;
     private LocalDate paymentDate;
-    private double principalAmount;
-    private double interestAmount;
-    private double totalPayment;
-    private double remainingBalance;
+    private long principalAmount; // Centavos
+    private long interestAmount; // Centavos
+    private long totalPayment; // Centavos
+    private long remainingBalance; // Centavos
     private String paymentStatus;
     private LocalDate actualPaymentDate;
     
@@ -56,35 +58,67 @@ public class LoanAmortization {
     }
     
     public double getPrincipalAmount() {
-        return principalAmount;
+        return Money.toDouble(principalAmount);
     }
     
     public void setPrincipalAmount(double principalAmount) {
-        this.principalAmount = principalAmount;
+        this.principalAmount = Money.ofDouble(principalAmount);
+    }
+    
+    public long getPrincipalAmountCents() {
+        return principalAmount;
+    }
+    
+    public void setPrincipalAmountCents(long principalAmountCents) {
+        this.principalAmount = principalAmountCents;
     }
     
     public double getInterestAmount() {
-        return interestAmount;
+        return Money.toDouble(interestAmount);
     }
     
     public void setInterestAmount(double interestAmount) {
-        this.interestAmount = interestAmount;
+        this.interestAmount = Money.ofDouble(interestAmount);
+    }
+    
+    public long getInterestAmountCents() {
+        return interestAmount;
+    }
+    
+    public void setInterestAmountCents(long interestAmountCents) {
+        this.interestAmount = interestAmountCents;
     }
     
     public double getTotalPayment() {
-        return totalPayment;
+        return Money.toDouble(totalPayment);
     }
     
     public void setTotalPayment(double totalPayment) {
-        this.totalPayment = totalPayment;
+        this.totalPayment = Money.ofDouble(totalPayment);
+    }
+    
+    public long getTotalPaymentCents() {
+        return totalPayment;
+    }
+    
+    public void setTotalPaymentCents(long totalPaymentCents) {
+        this.totalPayment = totalPaymentCents;
     }
     
     public double getRemainingBalance() {
-        return remainingBalance;
+        return Money.toDouble(remainingBalance);
     }
     
     public void setRemainingBalance(double remainingBalance) {
-        this.remainingBalance = remainingBalance;
+        this.remainingBalance = Money.ofDouble(remainingBalance);
+    }
+    
+    public long getRemainingBalanceCents() {
+        return remainingBalance;
+    }
+    
+    public void setRemainingBalanceCents(long remainingBalanceCents) {
+        this.remainingBalance = remainingBalanceCents;
     }
     
     public String getPaymentStatus() {
@@ -141,6 +175,6 @@ public class LoanAmortization {
         }
         
         // Penalty = TotalPayment × PenaltyRate
-        return totalPayment * (penaltyRatePercentage / 100.0);
+        return Money.toDouble(Money.percent(totalPayment, penaltyRatePercentage));
     }
 }
\ No newline at end of file
@@ -4,6 +4,8 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.Date;
 
+import com.moscat.utils.Money;
+
 /**
  * Represents a cooperative member
  */
@@ -21,10 +23,10 @@ public class Member {
     private String emailAddress;
     private String employer;
     private String employmentStatus;
-    private double grossMonthlyIncome;
-    private double averageNetMonthlyIncome;
-    private double savingsBalance;
-    private double interestEarned;
+    private long grossMonthlyIncome; // Centavos
+    private long averageNetMonthlyIncome; // Centavos
+    private long savingsBalance; // Centavos
+    private long interestEarned; // Centavos
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
     private String status;
@@ -33,8 +35,8 @@ public class Member {
     
     // Default constructor
     public Member() {
-        this.savingsBalance = 0.0;
-        this.interestEarned = 0.0;
+        this.savingsBalance = 0;
+        this.interestEarned = 0;
         this.status = "Active";
     }
     
@@ -144,35 +146,67 @@ public class Member {
     }
     
     public double getGrossMonthlyIncome() {
-        return grossMonthlyIncome;
+        return Money.toDouble(grossMonthlyIncome);
     }
     
     public void setGrossMonthlyIncome(double grossMonthlyIncome) {
-        this.grossMonthlyIncome = grossMonthlyIncome;
+        this.grossMonthlyIncome = Money.ofDouble(grossMonthlyIncome);
+    }
+    
+    public long getGrossMonthlyIncomeCents() {
+        return grossMonthlyIncome;
+    }
+    
+    public void setGrossMonthlyIncomeCents(long grossMonthlyIncomeCents) {
+        this.grossMonthlyIncome = grossMonthlyIncomeCents;
     }
     
     public double getAverageNetMonthlyIncome() {
-        return averageNetMonthlyIncome;
+        return Money.toDouble(averageNetMonthlyIncome);
     }
     
     public void setAverageNetMonthlyIncome(double averageNetMonthlyIncome) {
-        this.averageNetMonthlyIncome = averageNetMonthlyIncome;
+        this.averageNetMonthlyIncome = Money.ofDouble(averageNetMonthlyIncome);
+    }
+    
+    public long getAverageNetMonthlyIncomeCents() {
+        return averageNetMonthlyIncome;
+    }
+    
+    public void setAverageNetMonthlyIncomeCents(long averageNetMonthlyIncomeCents) {
+        this.averageNetMonthlyIncome = averageNetMonthlyIncomeCents;
     }
     
     public double getSavingsBalance() {
-        return savingsBalance;
+        return Money.toDouble(savingsBalance);
     }
     
     public void setSavingsBalance(double savingsBalance) {
-        this.savingsBalance = savingsBalance;
+        this.savingsBalance = Money.ofDouble(savingsBalance);
+    }
+    
+    public long getSavingsBalanceCents() {
+        return savingsBalance;
+    }
+    
+    public void setSavingsBalanceCents(long savingsBalanceCents) {
+        this.savingsBalance = savingsBalanceCents;
     }
     
     public double getInterestEarned() {
-        return interestEarned;
+        return Money.toDouble(interestEarned);
     }
     
     public void setInterestEarned(double interestEarned) {
-        this.interestEarned = interestEarned;
+        this.interestEarned = Money.ofDouble(interestEarned);
+    }
+    
+    public long getInterestEarnedCents() {
+        return interestEarned;
+    }
+    
+    public void setInterestEarnedCents(long interestEarnedCents) {
+        this.interestEarned = interestEarnedCents;
     }
     
     public LocalDateTime getCreatedAt() {
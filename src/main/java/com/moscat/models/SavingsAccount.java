@@ -3,6 +3,8 @@ package com.moscat.models;
 import java.time.LocalDateTime;
 import java.util.Date;
 
+import com.moscat.utils.Money;
+
 /**
  * Represents a savings account
  * Note: In this updated model, savings information is stored directly in the Member object,
@@ -12,8 +14,8 @@ public class SavingsAccount {
     private int id;
     private int memberId;
     private String accountNumber;
-    private double balance;
-    private double interestEarned;
+    private long balance; // Centavos
+    private long interestEarned; // Centavos
     private String status;
     private Date lastActivityDate;
     private LocalDateTime createdAt;
@@ -31,8 +33,8 @@ public class SavingsAccount {
         account.setId(member.getId());  // Use member ID as account ID for simplicity
         account.setMemberId(member.getId());
         account.setAccountNumber(member.getMemberNumber());
-        account.setBalance(member.getSavingsBalance());
-        account.setInterestEarned(member.getInterestEarned());
+        account.setBalanceCents(member.getSavingsBalanceCents());
+        account.setInterestEarnedCents(member.getInterestEarnedCents());
         account.setStatus(member.getStatus());
         account.setLastActivityDate(member.getLastActivityDate());
         
@@ -105,19 +107,35 @@ public class SavingsAccount {
     }
     
     public double getBalance() {
-        return balance;
+        return Money.toDouble(balance);
     }
     
     public void setBalance(double balance) {
-        this.balance = balance;
+        this.balance = Money.ofDouble(balance);
+    }
+    
+    public long getBalanceCents() {
+        return balance;
+    }
+    
+    public void setBalanceCents(long balanceCents) {
+        this.balance = balanceCents;
     }
     
     public double getInterestEarned() {
-        return interestEarned;
+        return Money.toDouble(interestEarned);
     }
     
     public void setInterestEarned(double interestEarned) {
-        this.interestEarned = interestEarned;
+        this.interestEarned = Money.ofDouble(interestEarned);
+    }
+    
+    public long getInterestEarnedCents() {
+        return interestEarned;
+    }
+    
+    public void setInterestEarnedCents(long interestEarnedCents) {
+        this.interestEarned = interestEarnedCents;
     }
     
     public String getStatus() {
@@ -158,7 +176,7 @@ public class SavingsAccount {
      * @return The total balance
      */
     public double getTotalBalance() {
-        return balance + interestEarned;
+        return Money.toDouble(Money.add(balance, interestEarned));
     }
     
     /**
@@ -222,8 +240,8 @@ public class SavingsAccount {
         Member member = new Member();
         member.setId(this.memberId);
         member.setMemberNumber(this.accountNumber);
-        member.setSavingsBalance(this.balance);
-        member.setInterestEarned(this.interestEarned);
+        member.setSavingsBalanceCents(this.balance);
+        member.setInterestEarnedCents(this.interestEarned);
         member.setStatus(this.status);
         member.setLastActivityDate(this.lastActivityDate);
         
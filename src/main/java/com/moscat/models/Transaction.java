@@ -2,6 +2,8 @@ package com.moscat.models;
 
 import java.time.LocalDateTime;
 
+import com.moscat.utils.Money;
+
 /**
  * Represents a financial transaction in the system
  */
@@ -11,12 +13,13 @@ public class Transaction {
     private int accountId; // Savings account ID
     private String referenceNumber; // Unique reference number for tracking
     private String transactionType;
-    private double amount;
-    private double runningBalance; // Balance after transaction
+    private long amount; // Centavos
+    private long runningBalance; // Balance after transaction, in centavos
     private LocalDateTime transactionDate;
     private String description;
     private String processedBy;
     private int transactionBy; // User ID of person making the transaction
+    private String idempotencyKey; // Client-supplied key, so a retried posting is recorded once
     
     // Constructor
     public Transaction() {
@@ -49,11 +52,19 @@ public class Transaction {
     }
     
     public double getAmount() {
-        return amount;
+        return Money.toDouble(amount);
     }
     
     public void setAmount(double amount) {
-        this.amount = amount;
+        this.amount = Money.ofDouble(amount);
+    }
+    
+    public long getAmountCents() {
+        return amount;
+    }
+    
+    public void setAmountCents(long amountCents) {
+        this.amount = amountCents;
     }
     
     public LocalDateTime getTransactionDate() {
@@ -97,11 +108,19 @@ public class Transaction {
     }
     
     public double getRunningBalance() {
-        return runningBalance;
+        return Money.toDouble(runningBalance);
     }
     
     public void setRunningBalance(double runningBalance) {
-        this.runningBalance = runningBalance;
+        this.runningBalance = Money.ofDouble(runningBalance);
+    }
+    
+    public long getRunningBalanceCents() {
+        return runningBalance;
+    }
+    
+    public void setRunningBalanceCents(long runningBalanceCents) {
+        this.runningBalance = runningBalanceCents;
     }
     
     public int getTransactionBy() {
@@ -112,6 +131,14 @@ public class Transaction {
         this.transactionBy = transactionBy;
     }
     
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+    
+    public void setIdempotencyKey(String idempotencyKey) {
+        this.idempotencyKey = idempotencyKey;
+    }
+    
     /**
      * Check if this is a deposit transaction
      * 
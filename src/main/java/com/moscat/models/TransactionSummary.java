@@ -1,30 +1,34 @@
 package com.moscat.models;
 
+import com.moscat.utils.Money;
+
 /**
  * Represents a summary of transactions by type
  */
 public class TransactionSummary {
     private String transactionType;
-    private double totalAmount;
+    private long totalAmount; // Centavos, so sums over many rows stay exact
     private int count;
+    private long minAmount; // Smallest and largest single amount, valid when count > 0
+    private long maxAmount;
     
     // Default constructor
     public TransactionSummary() {
-        this.totalAmount = 0.0;
+        this.totalAmount = 0;
         this.count = 0;
     }
     
     // Constructor with transaction type
     public TransactionSummary(String transactionType) {
         this.transactionType = transactionType;
-        this.totalAmount = 0.0;
+        this.totalAmount = 0;
         this.count = 0;
     }
     
     // Constructor with all fields
     public TransactionSummary(String transactionType, double totalAmount, int count) {
         this.transactionType = transactionType;
-        this.totalAmount = totalAmount;
+        this.totalAmount = Money.ofDouble(totalAmount);
         this.count = count;
     }
     
@@ -38,11 +42,19 @@ public class TransactionSummary {
     }
     
     public double getTotalAmount() {
-        return totalAmount;
+        return Money.toDouble(totalAmount);
     }
     
     public void setTotalAmount(double totalAmount) {
-        this.totalAmount = totalAmount;
+        this.totalAmount = Money.ofDouble(totalAmount);
+    }
+    
+    public long getTotalAmountCents() {
+        return totalAmount;
+    }
+    
+    public void setTotalAmountCents(long totalAmountCents) {
+        this.totalAmount = totalAmountCents;
     }
     
     public int getCount() {
@@ -53,13 +65,44 @@ public class TransactionSummary {
         this.count = count;
     }
     
+    public long getMinAmountCents() {
+        return minAmount;
+    }
+    
+    public void setMinAmountCents(long minAmountCents) {
+        this.minAmount = minAmountCents;
+    }
+    
+    public long getMaxAmountCents() {
+        return maxAmount;
+    }
+    
+    public void setMaxAmountCents(long maxAmountCents) {
+        this.maxAmount = maxAmountCents;
+    }
+    
     /**
      * Adds a transaction amount to the summary
      * 
      * @param amount The amount to add
      */
     public void addTransaction(double amount) {
-        this.totalAmount += amount;
+        addTransactionCents(Money.ofDouble(amount));
+    }
+    
+    /**
+     * Adds a transaction amount to the summary
+     * 
+     * @param amountCents The amount to add in centavos
+     */
+    public void addTransactionCents(long amountCents) {
+        if (count == 0 || amountCents < minAmount) {
+            minAmount = amountCents;
+        }
+        if (count == 0 || amountCents > maxAmount) {
+            maxAmount = amountCents;
+        }
+        this.totalAmount = Money.add(this.totalAmount, amountCents);
         this.count++;
     }
     
@@ -122,7 +165,7 @@ public class TransactionSummary {
         if (count == 0) {
             return 0.0;
         }
-        return totalAmount / count;
+        return Money.toDouble(Money.fraction(totalAmount, 1, count));
     }
     
     /**
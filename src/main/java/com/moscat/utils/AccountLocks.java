@@ -0,0 +1,160 @@
+package com.moscat.utils;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Per-account locks that serialize balance updates within this process.
+ * 
+ * Account ids are hashed onto a fixed set of stripes (moscat.db.lockStripes, default 256,
+ * rounded up to a power of two). Postings to the same account queue behind each other,
+ * while postings to different accounts nearly always run in parallel. Locks are taken
+ * inside a unit of work and held until it commits or rolls back, so no other thread can
+ * read a balance that is about to change. When a call needs several accounts, it takes
+ * their stripes in ascending order to avoid deadlocks. A thread that waits longer than
+ * moscat.db.lockTimeoutMs (default 10000) gives up and its unit rolls back.
+ * 
+ * These locks do not protect against other processes sharing the database through the
+ * H2 TCP server. Balance reads also use SELECT ... FOR UPDATE, and H2 holds those row
+ * locks until commit. Set moscat.db.lockStripes=1 to use a single global lock, for
+ * example to compare throughput.
+ */
+public final class AccountLocks {
+    
+    private static final int STRIPES = stripeCount(Integer.getInteger("moscat.db.lockStripes", 256));
+    private static final long TIMEOUT_MILLIS = Long.getLong("moscat.db.lockTimeoutMs", 10000L);
+    
+    private static final ReentrantLock[] LOCKS = createLocks();
+    
+    private static final AtomicLong ACQUIRED = new AtomicLong();
+    private static final AtomicLong CONTENDED = new AtomicLong();
+    private static final AtomicLong TIMEOUTS = new AtomicLong();
+    private static final AtomicLong WAIT_NANOS = new AtomicLong();
+    
+    private AccountLocks() {
+    }
+    
+    private static int stripeCount(int requested) {
+        int count = 1;
+        while (count < requested && count < (1 << 16)) {
+            count <<= 1;
+        }
+        return count;
+    }
+    
+    private static ReentrantLock[] createLocks() {
+        ReentrantLock[] locks = new ReentrantLock[STRIPES];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        return locks;
+    }
+    
+    /**
+     * Locks one account until the current unit of work completes
+     * 
+     * @param accountId The account (or member) ID
+     * @throws SQLException If the lock could not be taken in time
+     * @throws IllegalStateException If no unit of work is active
+     */
+    public static void lock(int accountId) throws SQLException {
+        lockStripes(new int[] { stripe(accountId) });
+    }
+    
+    /**
+     * Locks several accounts until the current unit of work completes, in stripe order
+     * 
+     * @param accountIds The account (or member) IDs; duplicates are allowed
+     * @throws SQLException If the locks could not be taken in time; stripes already taken are
+     *         released when the unit of work rolls back
+     * @throws IllegalStateException If no unit of work is active
+     */
+    public static void lockAll(Collection<Integer> accountIds) throws SQLException {
+        int[] stripes = new int[accountIds.size()];
+        int i = 0;
+        for (int accountId : accountIds) {
+            stripes[i++] = stripe(accountId);
+        }
+        lockStripes(stripes);
+    }
+    
+    private static int stripe(int accountId) {
+        // Spread sequential ids across stripes
+        int h = accountId * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (STRIPES - 1);
+    }
+    
+    private static void lockStripes(int[] stripes) throws SQLException {
+        if (!UnitOfWork.isActive()) {
+            throw new IllegalStateException("Account locks must be taken inside a unit of work");
+        }
+        
+        Arrays.sort(stripes);
+        int previous = -1;
+        for (int stripe : stripes) {
+            if (stripe == previous) {
+                continue;
+            }
+            previous = stripe;
+            acquire(LOCKS[stripe]);
+            UnitOfWork.afterCompletion(LOCKS[stripe]::unlock);
+        }
+    }
+    
+    private static void acquire(ReentrantLock lock) throws SQLException {
+        ACQUIRED.incrementAndGet();
+        if (lock.tryLock()) {
+            return;
+        }
+        
+        CONTENDED.incrementAndGet();
+        long start = System.nanoTime();
+        try {
+            if (!lock.tryLock(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                TIMEOUTS.incrementAndGet();
+                throw new SQLException("Timed out after " + TIMEOUT_MILLIS + "ms waiting for an account lock");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for an account lock", e);
+        } finally {
+            WAIT_NANOS.addAndGet(System.nanoTime() - start);
+        }
+    }
+    
+    /**
+     * Gets the lock statistics
+     * 
+     * @return Snapshot of acquisition, contention and timeout counts
+     */
+    public static Statistics getStatistics() {
+        Statistics stats = new Statistics();
+        stats.stripes = STRIPES;
+        stats.acquired = ACQUIRED.get();
+        stats.contended = CONTENDED.get();
+        stats.timeouts = TIMEOUTS.get();
+        stats.waitMillis = WAIT_NANOS.get() / 1_000_000.0;
+        return stats;
+    }
+    
+    /**
+     * Snapshot of account lock statistics
+     */
+    public static class Statistics {
+        public int stripes;
+        public long acquired;
+        public long contended;
+        public long timeouts;
+        public double waitMillis;
+        
+        @Override
+        public String toString() {
+            return String.format("stripes=%d acquired=%d contended=%d timeouts=%d wait=%.1fms",
+                    stripes, acquired, contended, timeouts, waitMillis);
+        }
+    }
+}
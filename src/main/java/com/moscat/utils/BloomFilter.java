@@ -0,0 +1,115 @@
+package com.moscat.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe Bloom filter over strings.
+ * 
+ * mightContain() never returns false for a key that was added, and returns true for a
+ * key that was not added with roughly the configured false-positive rate as long as no
+ * more than the expected number of keys is added. The filter cannot remove keys.
+ */
+public final class BloomFilter {
+    
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashCount;
+    
+    /**
+     * Creates a filter sized for an expected number of keys and false-positive rate
+     * 
+     * @param expectedKeys Expected number of keys, positive
+     * @param falsePositiveRate Target false-positive rate, between 0 and 1
+     */
+    public BloomFilter(long expectedKeys, double falsePositiveRate) {
+        if (expectedKeys <= 0 || falsePositiveRate <= 0.0 || falsePositiveRate >= 1.0) {
+            throw new IllegalArgumentException("Invalid Bloom filter size: " + expectedKeys + " keys at "
+                    + falsePositiveRate);
+        }
+        double ln2 = Math.log(2);
+        long bits = (long) Math.ceil(-expectedKeys * Math.log(falsePositiveRate) / (ln2 * ln2));
+        int wordCount = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (bits + 63) / 64));
+        this.words = new AtomicLongArray(wordCount);
+        this.bitCount = wordCount * 64L;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedKeys * ln2));
+    }
+    
+    /**
+     * Adds a key
+     * 
+     * @param key The key
+     */
+    public void add(String key) {
+        long hash = hash64(key);
+        long h1 = (int) hash;
+        long h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current;
+            while (((current = words.get(word)) & mask) == 0) {
+                if (words.compareAndSet(word, current, current | mask)) {
+                    break;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Checks whether a key may have been added
+     * 
+     * @param key The key
+     * @return False if the key was certainly not added, true if it probably was
+     */
+    public boolean mightContain(String key) {
+        long hash = hash64(key);
+        long h1 = (int) hash;
+        long h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Gets the size of the filter
+     * 
+     * @return Number of bits
+     */
+    public long getBitCount() {
+        return bitCount;
+    }
+    
+    /**
+     * Gets the number of hash functions
+     * 
+     * @return Number of bits set per key
+     */
+    public int getHashCount() {
+        return hashCount;
+    }
+    
+    /**
+     * 64-bit FNV-1a over the UTF-8 bytes with a final avalanche mix; its two halves
+     * drive the double hashing in add() and mightContain()
+     */
+    private static long hash64(String key) {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        long h = 0xcbf29ce484222325L;
+        for (byte b : bytes) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb3f97ed58e25L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,474 @@
+package com.moscat.utils;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded JDBC connection pool used by DatabaseManager.
+ * 
+ * Connections are leased to callers as proxies: closing the proxy returns the
+ * physical connection to the pool instead of closing it. Statements created
+ * during a lease are closed when the lease ends, so controller methods that
+ * never close their statements do not leak them onto the pooled session.
+ * Statements are instrumented by SqlMetrics.
+ */
+public class ConnectionPool {
+    
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int maxSize;
+    private final int minIdle;
+    private final long waitTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final long maxLifetimeMillis;
+    private final int validationTimeoutSeconds;
+    private final int statementCacheSize;
+    
+    private final Semaphore permits;
+    private final ConcurrentLinkedDeque<PooledConnection> idle = new ConcurrentLinkedDeque<>();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+    
+    // Statistics
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger waiters = new AtomicInteger();
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final AtomicLong leaseCount = new AtomicLong();
+    private final AtomicLong totalLeaseNanos = new AtomicLong();
+    private final AtomicLong maxLeaseNanos = new AtomicLong();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong evictedCount = new AtomicLong();
+    private final AtomicLong validationFailures = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    
+    /**
+     * Creates a new connection pool
+     * 
+     * @param url JDBC URL
+     * @param user Database user
+     * @param password Database password
+     * @param maxSize Maximum number of connections (leased and idle)
+     * @param minIdle Number of idle connections kept by idle eviction
+     * @param waitTimeoutMillis Maximum time a caller waits for a free connection
+     * @param idleTimeoutMillis Idle time after which a connection is evicted
+     * @param maxLifetimeMillis Maximum age of a physical connection
+     * @param statementCacheSize Prepared statements cached per connection (0 disables the cache)
+     */
+    public ConnectionPool(String url, String user, String password, int maxSize, int minIdle,
+            long waitTimeoutMillis, long idleTimeoutMillis, long maxLifetimeMillis, int statementCacheSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Pool size must be positive");
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.maxSize = maxSize;
+        this.minIdle = Math.max(0, Math.min(minIdle, maxSize));
+        this.waitTimeoutMillis = waitTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.maxLifetimeMillis = maxLifetimeMillis;
+        this.validationTimeoutSeconds = 2;
+        this.statementCacheSize = statementCacheSize;
+        this.permits = new Semaphore(maxSize, true);
+        
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "moscat-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1000L, Math.min(idleTimeoutMillis, 30000L));
+        housekeeper.scheduleWithFixedDelay(this::evictIdleConnections, period, period, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Leases a connection from the pool, waiting up to the configured timeout
+     * 
+     * @return A pooled connection; closing it returns it to the pool
+     * @throws SQLException If the pool is closed, the wait times out or a connection cannot be opened
+     */
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        
+        waiters.incrementAndGet();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(waitTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        } finally {
+            waiters.decrementAndGet();
+        }
+        
+        if (!acquired) {
+            timeoutCount.incrementAndGet();
+            throw new SQLException("Timed out after " + waitTimeoutMillis
+                    + " ms waiting for a database connection (pool size " + maxSize + ")");
+        }
+        
+        try {
+            PooledConnection pooled = takeValidConnection();
+            active.incrementAndGet();
+            leaseCount.incrementAndGet();
+            return pooled.lease();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+    
+    /**
+     * Takes an idle connection that passes validation, or opens a new one
+     * 
+     * @return A usable pooled connection
+     * @throws SQLException If a new connection cannot be opened
+     */
+    private PooledConnection takeValidConnection() throws SQLException {
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            if (pooled.isExpired()) {
+                discard(pooled);
+                continue;
+            }
+            if (pooled.isValid(validationTimeoutSeconds)) {
+                return pooled;
+            }
+            validationFailures.incrementAndGet();
+            discard(pooled);
+        }
+        return openConnection();
+    }
+    
+    /**
+     * Opens a new physical connection
+     * 
+     * @return The new pooled connection
+     * @throws SQLException If the connection cannot be opened
+     */
+    private PooledConnection openConnection() throws SQLException {
+        Connection physical = DriverManager.getConnection(url, user, password);
+        totalConnections.incrementAndGet();
+        createdCount.incrementAndGet();
+        return new PooledConnection(physical);
+    }
+    
+    /**
+     * Returns a leased connection to the pool
+     * 
+     * @param pooled The pooled connection
+     * @param leaseNanos How long the connection was leased
+     */
+    private void release(PooledConnection pooled, long leaseNanos) {
+        active.decrementAndGet();
+        totalLeaseNanos.addAndGet(leaseNanos);
+        SqlMetrics.recordLease(leaseNanos);
+        maxLeaseNanos.accumulateAndGet(leaseNanos, Math::max);
+        
+        try {
+            if (closed || pooled.isExpired() || !pooled.reset()) {
+                discard(pooled);
+            } else {
+                idle.offerFirst(pooled);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+    
+    /**
+     * Closes a physical connection and removes it from the pool count
+     * 
+     * @param pooled The pooled connection
+     */
+    private void discard(PooledConnection pooled) {
+        totalConnections.decrementAndGet();
+        try {
+            if (pooled.statementCache != null) {
+                pooled.statementCache.clear();
+            }
+            pooled.physical.close();
+        } catch (SQLException e) {
+            System.err.println("Error closing pooled connection: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Evicts idle connections that exceeded the idle timeout or maximum lifetime,
+     * keeping at least the configured minimum number of idle connections
+     */
+    void evictIdleConnections() {
+        long now = System.currentTimeMillis();
+        int idleCount = idle.size();
+        
+        Iterator<PooledConnection> iterator = idle.descendingIterator();
+        while (iterator.hasNext()) {
+            PooledConnection pooled = iterator.next();
+            boolean expired = pooled.isExpired();
+            boolean idleTooLong = idleCount > minIdle && now - pooled.lastReturnedAt > idleTimeoutMillis;
+            if ((expired || idleTooLong) && idle.removeFirstOccurrence(pooled)) {
+                idleCount--;
+                evictedCount.incrementAndGet();
+                discard(pooled);
+            }
+        }
+    }
+    
+    /**
+     * Closes the pool and all idle connections. Leased connections are closed
+     * when they are returned.
+     */
+    public void shutdown() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            discard(pooled);
+        }
+    }
+    
+    /**
+     * Gets a snapshot of the pool statistics
+     * 
+     * @return The pool statistics
+     */
+    public PoolStatistics getStatistics() {
+        PoolStatistics stats = new PoolStatistics();
+        stats.maxSize = maxSize;
+        stats.active = active.get();
+        stats.idle = idle.size();
+        stats.waiters = waiters.get();
+        stats.totalConnections = totalConnections.get();
+        stats.leaseCount = leaseCount.get();
+        stats.createdCount = createdCount.get();
+        stats.evictedCount = evictedCount.get();
+        stats.validationFailures = validationFailures.get();
+        stats.timeoutCount = timeoutCount.get();
+        stats.maxLeaseMillis = maxLeaseNanos.get() / 1_000_000.0;
+        
+        long completedLeases = leaseCount.get() - stats.active;
+        stats.averageLeaseMillis = completedLeases > 0
+                ? totalLeaseNanos.get() / 1_000_000.0 / completedLeases
+                : 0.0;
+        return stats;
+    }
+    
+    /**
+     * A physical connection owned by the pool
+     */
+    private class PooledConnection {
+        private final Connection physical;
+        private final StatementCache statementCache;
+        private final long createdAt = System.currentTimeMillis();
+        private volatile long lastReturnedAt = createdAt;
+        
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+            this.statementCache = statementCacheSize > 0 ? new StatementCache(physical, statementCacheSize) : null;
+        }
+        
+        boolean isExpired() {
+            return maxLifetimeMillis > 0 && System.currentTimeMillis() - createdAt > maxLifetimeMillis;
+        }
+        
+        boolean isValid(int timeoutSeconds) {
+            try {
+                return !physical.isClosed() && physical.isValid(timeoutSeconds);
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+        
+        /**
+         * Restores the connection to a clean state before it goes back to the pool
+         * 
+         * @return True if the connection can be reused
+         */
+        boolean reset() {
+            try {
+                if (physical.isClosed()) {
+                    return false;
+                }
+                if (!physical.getAutoCommit()) {
+                    physical.rollback();
+                    physical.setAutoCommit(true);
+                }
+                if (physical.isReadOnly()) {
+                    physical.setReadOnly(false);
+                }
+                physical.clearWarnings();
+                lastReturnedAt = System.currentTimeMillis();
+                return true;
+            } catch (SQLException e) {
+                System.err.println("Error resetting pooled connection: " + e.getMessage());
+                return false;
+            }
+        }
+        
+        Connection lease() {
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[] { Connection.class },
+                    new Lease(this));
+        }
+    }
+    
+    /**
+     * Invocation handler for one lease of a pooled connection
+     */
+    private class Lease implements InvocationHandler {
+        private final PooledConnection pooled;
+        private final long leasedAt = System.nanoTime();
+        private final List<Statement> statements = new ArrayList<>();
+        private boolean released;
+        
+        Lease(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+        
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            
+            switch (name) {
+                case "close":
+                    close();
+                    return null;
+                case "isClosed":
+                    return released || pooled.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + pooled.physical + "]";
+                case "unwrap":
+                    if (((Class<?>) args[0]).isInstance(proxy)) {
+                        return proxy;
+                    }
+                    break;
+                default:
+                    break;
+            }
+            
+            if (released) {
+                throw new SQLException("Connection has been returned to the pool");
+            }
+            
+            if ("prepareStatement".equals(name) && pooled.statementCache != null && isCacheable(args)) {
+                int autoGeneratedKeys = args.length == 2 ? (Integer) args[1] : -1;
+                Statement statement = pooled.statementCache.prepare((String) args[0], autoGeneratedKeys);
+                return track(statement, (String) args[0]);
+            }
+            
+            if ("rollback".equals(name)) {
+                SqlMetrics.recordRollback();
+            }
+            
+            try {
+                Object result = method.invoke(pooled.physical, args);
+                if (result instanceof Statement) {
+                    // prepareStatement/prepareCall take the SQL first; createStatement takes none
+                    String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+                    return track((Statement) result, sql);
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+        
+        /**
+         * Tracks a statement so it is closed when the lease ends, wrapping it for
+         * SqlMetrics when instrumentation is enabled. Long leases prune statements
+         * the caller already closed.
+         * 
+         * @return The statement to hand to the caller
+         */
+        private Statement track(Statement statement, String sql) throws SQLException {
+            if (SqlMetrics.isEnabled()) {
+                statement = SqlMetrics.instrument(statement, sql);
+            }
+
+            if (statements.size() >= 256) {
+                Iterator<Statement> iterator = statements.iterator();
+                while (iterator.hasNext()) {
+                    if (iterator.next().isClosed()) {
+                        iterator.remove();
+                    }
+                }
+            }
+            statements.add(statement);
+            return statement;
+        }
+        
+        /**
+         * Only prepareStatement(String) and prepareStatement(String, int autoGeneratedKeys) are cached
+         */
+        private boolean isCacheable(Object[] args) {
+            return args.length == 1 || (args.length == 2 && args[1] instanceof Integer);
+        }
+        
+        private void close() {
+            if (released) {
+                return;
+            }
+            released = true;
+            
+            for (Statement statement : statements) {
+                try {
+                    statement.close();
+                } catch (SQLException e) {
+                    System.err.println("Error closing leaked statement: " + e.getMessage());
+                }
+            }
+            statements.clear();
+            
+            release(pooled, System.nanoTime() - leasedAt);
+        }
+    }
+    
+    /**
+     * Snapshot of connection pool statistics
+     */
+    public static class PoolStatistics {
+        public int maxSize;
+        public int active;
+        public int idle;
+        public int waiters;
+        public int totalConnections;
+        public long leaseCount;
+        public long createdCount;
+        public long evictedCount;
+        public long validationFailures;
+        public long timeoutCount;
+        public double averageLeaseMillis;
+        public double maxLeaseMillis;
+        
+        @Override
+        public String toString() {
+            return String.format("active=%d idle=%d waiters=%d total=%d/%d leases=%d avgLease=%.2fms "
+                    + "maxLease=%.2fms created=%d evicted=%d invalid=%d timeouts=%d",
+                    active, idle, waiters, totalConnections, maxSize, leaseCount, averageLeaseMillis,
+                    maxLeaseMillis, createdCount, evictedCount, validationFailures, timeoutCount);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,54 @@
+package com.moscat.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits RFC 4180 CSV lines, the reading side of CsvWriter.
+ * 
+ * Quoted fields may contain commas and doubled quotes but not line breaks, so every
+ * record is one line and files can be cut into chunks at any line boundary.
+ */
+public final class CsvReader {
+    
+    private CsvReader() {
+    }
+    
+    /**
+     * Splits one line into its fields
+     * 
+     * @param line The line, without its line terminator
+     * @return The unquoted fields
+     * @throws IllegalArgumentException If a quoted field is not terminated
+     */
+    public static List<String> splitLine(String line) {
+        List<String> fields = new ArrayList<>(8);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
\ No newline at end of file
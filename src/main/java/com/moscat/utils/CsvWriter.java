@@ -0,0 +1,184 @@
+package com.moscat.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes RFC 4180 CSV to a file channel through one reused buffer.
+ * 
+ * Fields that contain a comma, a double quote or a line break are quoted, with quotes
+ * doubled; rows end with CRLF. Text is encoded as UTF-8 straight into a direct buffer of
+ * moscat.export.bufferSize bytes (default 64 KiB), which is written to the channel when
+ * full, so memory use does not grow with the number of rows. The output can be gzipped.
+ */
+public final class CsvWriter implements AutoCloseable {
+    
+    private static final int BUFFER_SIZE = Integer.getInteger("moscat.export.bufferSize", 64 * 1024);
+    
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final StringBuilder line = new StringBuilder(256);
+    private long rows;
+    private long bytes;
+    
+    private CsvWriter(WritableByteChannel channel) {
+        this.channel = channel;
+    }
+    
+    /**
+     * Creates or replaces a CSV file
+     * 
+     * @param file The file to write
+     * @param gzip Whether to gzip the output
+     * @return The writer, which must be closed
+     * @throws IOException If the file cannot be opened
+     */
+    public static CsvWriter open(Path file, boolean gzip) throws IOException {
+        FileChannel fileChannel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        if (!gzip) {
+            return new CsvWriter(fileChannel);
+        }
+        try {
+            return new CsvWriter(Channels.newChannel(
+                    new GZIPOutputStream(Channels.newOutputStream(fileChannel), BUFFER_SIZE)));
+        } catch (IOException | RuntimeException e) {
+            fileChannel.close();
+            throw e;
+        }
+    }
+    
+    /**
+     * Writes one row
+     * 
+     * @param fields The fields; null is written as an empty field
+     * @throws IOException If the row cannot be written
+     */
+    public void writeRow(String... fields) throws IOException {
+        line.setLength(0);
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                line.append(',');
+            }
+            appendField(line, fields[i]);
+        }
+        line.append("\r\n");
+        encode(CharBuffer.wrap(line));
+        rows++;
+    }
+    
+    /**
+     * Quotes a field if RFC 4180 requires it
+     * 
+     * @param value The field value, may be null
+     * @return The field as it appears in a row; null becomes an empty string
+     */
+    public static String quote(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (!needsQuotes(value)) {
+            return value;
+        }
+        StringBuilder sb = new StringBuilder(value.length() + 8);
+        appendField(sb, value);
+        return sb.toString();
+    }
+    
+    private static boolean needsQuotes(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static void appendField(StringBuilder sb, String value) {
+        if (value == null) {
+            return;
+        }
+        if (!needsQuotes(value)) {
+            sb.append(value);
+            return;
+        }
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                sb.append('"');
+            }
+            sb.append(c);
+        }
+        sb.append('"');
+    }
+    
+    private void encode(CharBuffer chars) throws IOException {
+        // Every row ends with CRLF, so a surrogate pair never spans two calls
+        while (true) {
+            CoderResult result = encoder.encode(chars, buffer, false);
+            if (result.isOverflow()) {
+                drain();
+            } else if (result.isError()) {
+                result.throwException();
+            } else {
+                return;
+            }
+        }
+    }
+    
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            bytes += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+    
+    /**
+     * Gets the number of rows written, including a header row
+     * 
+     * @return The row count
+     */
+    public long getRowCount() {
+        return rows;
+    }
+    
+    /**
+     * Gets the number of bytes handed to the channel so far, before gzip compression
+     * 
+     * @return The byte count
+     */
+    public long getByteCount() {
+        return bytes + buffer.position();
+    }
+    
+    /**
+     * Writes out buffered rows and closes the file
+     * 
+     * @throws IOException If the rows cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            drain();
+        } finally {
+            channel.close();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,181 @@
+package com.moscat.utils;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.Socket;
+import java.sql.SQLException;
+
+import org.h2.tools.Server;
+
+/**
+ * Database deployment settings, read from -Dmoscat.db.* system properties.
+ * 
+ * Three modes are supported:
+ * EMBEDDED opens the local database file with AUTO_SERVER (single PC);
+ * SERVER opens the file in-process and also starts an H2 TCP server so other terminals can connect;
+ * CLIENT connects to the TCP server of the designated node.
+ * A fourth, MEMORY, keeps a private in-memory database for tests; it is never auto-detected.
+ * 
+ * With moscat.db.mode=auto (the default) the mode is detected at startup: if a server is
+ * already listening on moscat.db.host:moscat.db.port this node is a client; otherwise, if
+ * moscat.db.host names this machine it becomes the server; if no host is configured it
+ * falls back to embedded.
+ */
+public class DatabaseConfig {
+    
+    /**
+     * Database deployment mode
+     */
+    public enum Mode {
+        EMBEDDED, SERVER, CLIENT, MEMORY
+    }
+    
+    private static final int PROBE_TIMEOUT_MS = 500;
+    
+    private final String configuredMode;
+    private final String host;
+    private final int port;
+    private final String dataDir;
+    private final String databaseName;
+    private final int cacheSizeKb;
+    private final int lockTimeoutMs;
+    private final boolean allowOthers;
+    
+    private Mode mode;
+    
+    private DatabaseConfig() {
+        configuredMode = System.getProperty("moscat.db.mode", "auto").trim().toLowerCase();
+        host = System.getProperty("moscat.db.host", "").trim();
+        port = Integer.getInteger("moscat.db.port", 9092);
+        dataDir = System.getProperty("moscat.db.dataDir", "./data");
+        databaseName = System.getProperty("moscat.db.name", "moscatdb");
+        cacheSizeKb = Integer.getInteger("moscat.db.cacheSizeKb", 65536);
+        lockTimeoutMs = Integer.getInteger("moscat.db.lockTimeoutMs", 10000);
+        allowOthers = Boolean.parseBoolean(System.getProperty("moscat.db.server.allowOthers", "true"));
+    }
+    
+    /**
+     * Loads the settings and resolves the deployment mode
+     * 
+     * @return The database configuration
+     */
+    public static DatabaseConfig load() {
+        DatabaseConfig config = new DatabaseConfig();
+        config.mode = config.resolveMode();
+        return config;
+    }
+    
+    private Mode resolveMode() {
+        switch (configuredMode) {
+            case "embedded":
+                return Mode.EMBEDDED;
+            case "server":
+                return Mode.SERVER;
+            case "memory":
+                return Mode.MEMORY;
+            case "client":
+                if (host.isEmpty()) {
+                    throw new IllegalStateException("moscat.db.mode=client requires moscat.db.host");
+                }
+                return Mode.CLIENT;
+            case "auto":
+                break;
+            default:
+                throw new IllegalStateException("Unknown moscat.db.mode: " + configuredMode);
+        }
+        
+        if (isListening(getHost(), port)) {
+            return Mode.CLIENT;
+        }
+        if (host.isEmpty()) {
+            return Mode.EMBEDDED;
+        }
+        if (isLocalHost(host)) {
+            return Mode.SERVER;
+        }
+        
+        // Designated server is down; connecting will fail with a clear error rather than
+        // silently opening a separate local database
+        System.err.println("Database server " + host + ":" + port + " is not reachable");
+        return Mode.CLIENT;
+    }
+    
+    private static boolean isListening(String host, int port) {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(host, port), PROBE_TIMEOUT_MS);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+    
+    private static boolean isLocalHost(String host) {
+        try {
+            InetAddress address = InetAddress.getByName(host);
+            return address.isLoopbackAddress() || address.isAnyLocalAddress()
+                    || NetworkInterface.getByInetAddress(address) != null;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+    
+    /**
+     * Starts the in-process TCP server when running in SERVER mode
+     * 
+     * @return The started server, or null in other modes
+     * @throws SQLException If the server cannot be started
+     */
+    public Server startServer() throws SQLException {
+        if (mode != Mode.SERVER) {
+            return null;
+        }
+        
+        Server server = allowOthers
+                ? Server.createTcpServer("-tcpPort", String.valueOf(port), "-baseDir", dataDir, "-tcpAllowOthers")
+                : Server.createTcpServer("-tcpPort", String.valueOf(port), "-baseDir", dataDir);
+        server.start();
+        System.out.println("H2 TCP server started at " + server.getURL());
+        return server;
+    }
+    
+    /**
+     * Gets the JDBC URL for this node
+     * 
+     * @return The JDBC URL
+     */
+    public String getJdbcUrl() {
+        String filePath = dataDir + "/" + databaseName;
+        switch (mode) {
+            case SERVER:
+                // Same file the TCP server serves, opened in-process without the TCP hop
+                return "jdbc:h2:" + filePath + ";CACHE_SIZE=" + cacheSizeKb + ";LOCK_TIMEOUT=" + lockTimeoutMs;
+            case CLIENT:
+                // Cache size is a server-side setting
+                return "jdbc:h2:tcp://" + getHost() + ":" + port + "/" + databaseName + ";LOCK_TIMEOUT=" + lockTimeoutMs;
+            case MEMORY:
+                // Kept until the JVM exits, not until the last pooled connection closes
+                return "jdbc:h2:mem:" + databaseName + ";DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=" + lockTimeoutMs;
+            default:
+                return "jdbc:h2:" + filePath + ";AUTO_SERVER=TRUE;CACHE_SIZE=" + cacheSizeKb + ";LOCK_TIMEOUT=" + lockTimeoutMs;
+        }
+    }
+    
+    public Mode getMode() {
+        return mode;
+    }
+    
+    public String getHost() {
+        return host.isEmpty() ? "localhost" : host;
+    }
+    
+    public int getPort() {
+        return port;
+    }
+    
+    @Override
+    public String toString() {
+        return mode + " " + getJdbcUrl();
+    }
+}
\ No newline at end of file
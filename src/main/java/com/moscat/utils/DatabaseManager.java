@@ -1,18 +1,33 @@
 package com.moscat.utils;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.List;
+
+import org.h2.jdbc.JdbcConnection;
+import org.h2.tools.Server;
 
 /**
- * Singleton class for managing database connections
+ * Singleton class for managing database connections.
+ * Connections are served from a bounded pool (see ConnectionPool).
  */
 public class DatabaseManager {
     private static DatabaseManager instance;
-    private static final String DB_URL = "jdbc:h2:./data/moscatdb;AUTO_SERVER=TRUE";
     private static final String DB_USER = "sa";
     private static final String DB_PASSWORD = "";
     
+    // Connection pool settings, overridable with -Dmoscat.db.pool.* system properties
+    private static final int POOL_MAX_SIZE = Integer.getInteger("moscat.db.pool.maxSize", 10);
+    private static final int POOL_MIN_IDLE = Integer.getInteger("moscat.db.pool.minIdle", 2);
+    private static final long POOL_WAIT_TIMEOUT_MS = Long.getLong("moscat.db.pool.waitTimeoutMs", 10000L);
+    private static final long POOL_IDLE_TIMEOUT_MS = Long.getLong("moscat.db.pool.idleTimeoutMs", 300000L);
+    private static final long POOL_MAX_LIFETIME_MS = Long.getLong("moscat.db.pool.maxLifetimeMs", 1800000L);
+    private static final int STATEMENT_CACHE_SIZE = Integer.getInteger("moscat.db.pool.statementCacheSize", 64);
+    
+    private final DatabaseConfig config;
+    private final Server tcpServer;
+    private final ConnectionPool pool;
+    
     // Private constructor to enforce singleton pattern
     private DatabaseManager() {
         try {
@@ -22,6 +37,21 @@ public class DatabaseManager {
             System.err.println("H2 JDBC Driver not found: " + e.getMessage());
             throw new RuntimeException("H2 JDBC Driver not found", e);
         }
+        
+        config = DatabaseConfig.load();
+        try {
+            tcpServer = config.startServer();
+        } catch (SQLException e) {
+            System.err.println("Error starting database server: " + e.getMessage());
+            throw new RuntimeException("Could not start database server on port " + config.getPort(), e);
+        }
+        System.out.println("Database mode: " + config);
+        
+        pool = new ConnectionPool(config.getJdbcUrl(), DB_USER, DB_PASSWORD, POOL_MAX_SIZE, POOL_MIN_IDLE,
+                POOL_WAIT_TIMEOUT_MS, POOL_IDLE_TIMEOUT_MS, POOL_MAX_LIFETIME_MS, STATEMENT_CACHE_SIZE);
+        
+        // Close pooled connections cleanly so the H2 file is released on exit
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "moscat-pool-shutdown"));
     }
     
     /**
@@ -37,15 +67,111 @@ public class DatabaseManager {
     }
     
     /**
-     * Gets a connection to the database
+     * Gets a connection to the database. The connection is leased from the pool
+     * and is returned to it when closed. Inside a UnitOfWork the shared
+     * connection of that unit is returned instead.
      * 
      * @return A database connection
-     * @throws SQLException If a database error occurs
+     * @throws SQLException If a database error occurs or no connection becomes free in time
      */
     public static Connection getConnection() throws SQLException {
-        // Ensure the instance is initialized
-        getInstance();
-        return DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
+        Connection shared = UnitOfWork.currentConnection();
+        if (shared != null) {
+            return shared;
+        }
+        return leaseConnection();
+    }
+    
+    /**
+     * Leases a connection from the pool, ignoring any active unit of work
+     * 
+     * @return A pooled database connection
+     * @throws SQLException If a database error occurs or no connection becomes free in time
+     */
+    static Connection leaseConnection() throws SQLException {
+        return getInstance().pool.getConnection();
+    }
+    
+    /**
+     * Gets the connection pool statistics
+     * 
+     * @return Snapshot of active, idle and waiting counts and lease times
+     */
+    public static ConnectionPool.PoolStatistics getPoolStatistics() {
+        return getInstance().pool.getStatistics();
+    }
+    
+    /**
+     * Gets the prepared statement cache statistics across all pooled connections
+     * 
+     * @return Snapshot of hits, misses, evictions and prepare time
+     */
+    public static StatementCache.Statistics getStatementCacheStatistics() {
+        return StatementCache.getStatistics();
+    }
+    
+    /**
+     * Gets the statements with the highest total execution time
+     * 
+     * @param limit Maximum number of statements to return
+     * @return Per-statement latency, row and error statistics, slowest total first
+     */
+    public static List<SqlMetrics.StatementStatistics> getTopStatements(int limit) {
+        return SqlMetrics.getTopStatements(limit);
+    }
+    
+    /**
+     * Formats the top statements by total time, lease times and rollbacks as text
+     * 
+     * @param limit Maximum number of statements to include
+     * @return The report
+     */
+    public static String dumpStatementStatistics(int limit) {
+        return SqlMetrics.dump(limit);
+    }
+    
+    /**
+     * Gets the resolved database deployment mode
+     * 
+     * @return The database mode
+     */
+    public static DatabaseConfig.Mode getMode() {
+        return getInstance().config.getMode();
+    }
+    
+    /**
+     * Checks whether this process has the database file open itself rather than through
+     * a TCP server: always for SERVER and MEMORY, never for CLIENT, and for EMBEDDED only
+     * in the process that opened the file first (the others connect through AUTO_SERVER)
+     * 
+     * @return true if this process owns the database
+     */
+    public static boolean ownsDatabase() {
+        switch (getMode()) {
+            case CLIENT:
+                return false;
+            case SERVER:
+            case MEMORY:
+                return true;
+            default:
+                break;
+        }
+        try (Connection conn = leaseConnection()) {
+            return !conn.unwrap(JdbcConnection.class).getSession().isRemote();
+        } catch (SQLException e) {
+            System.err.println("Error checking database ownership: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * Closes all pooled connections and stops the TCP server if this node runs one
+     */
+    public void shutdown() {
+        pool.shutdown();
+        if (tcpServer != null) {
+            tcpServer.stop();
+        }
     }
     
     /**
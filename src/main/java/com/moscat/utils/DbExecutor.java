@@ -0,0 +1,255 @@
+package com.moscat.utils;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Bounded executor for database work started from the user interface.
+ * 
+ * Tasks run on a small fixed set of daemon threads (moscat.db.async.threads, default 4,
+ * kept below the connection pool size) with a bounded queue (moscat.db.async.queueSize,
+ * default 64); when the queue is full the returned future fails with a
+ * RejectedExecutionException instead of piling up work. Cancelling the returned future
+ * skips a task that has not started and makes TaskContext.isCancelled() return true so a
+ * running task can stop between steps. Workers are not interrupted, because interrupting
+ * a thread during H2 file I/O closes the embedded database file. Progress listeners are
+ * always called on the Event Dispatch Thread.
+ */
+public final class DbExecutor {
+    
+    private static final int THREADS = Integer.getInteger("moscat.db.async.threads", 4);
+    private static final int QUEUE_SIZE = Integer.getInteger("moscat.db.async.queueSize", 64);
+    
+    private static final AtomicLong SUBMITTED = new AtomicLong();
+    private static final AtomicLong COMPLETED = new AtomicLong();
+    private static final AtomicLong FAILED = new AtomicLong();
+    private static final AtomicLong CANCELLED = new AtomicLong();
+    private static final AtomicLong REJECTED = new AtomicLong();
+    
+    private static final ThreadPoolExecutor EXECUTOR = createExecutor();
+    
+    private DbExecutor() {
+    }
+    
+    /**
+     * Database work run on the executor
+     * 
+     * @param <T> The result type
+     */
+    public interface Task<T> {
+        /**
+         * Runs the task
+         * 
+         * @param context Progress and cancellation hooks
+         * @return The result
+         * @throws Exception If the task fails
+         */
+        T run(TaskContext context) throws Exception;
+    }
+    
+    /**
+     * Receives progress updates on the Event Dispatch Thread
+     */
+    public interface ProgressListener {
+        /**
+         * Called when a task reports progress
+         * 
+         * @param done Units of work completed
+         * @param total Total units of work, or -1 if unknown
+         * @param message Short description of the current step
+         */
+        void onProgress(int done, int total, String message);
+    }
+    
+    private static ThreadPoolExecutor createExecutor() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "moscat-db-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(THREADS, THREADS, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(QUEUE_SIZE), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+    
+    /**
+     * Submits database work
+     * 
+     * @param name Task name, used in error messages
+     * @param task The task
+     * @param <T> The result type
+     * @return A future completed with the task result
+     */
+    public static <T> CompletableFuture<T> submit(String name, Task<T> task) {
+        return submit(name, task, null);
+    }
+    
+    /**
+     * Submits database work with a progress listener
+     * 
+     * @param name Task name, used in error messages
+     * @param task The task
+     * @param listener Progress listener called on the Event Dispatch Thread, or null
+     * @param <T> The result type
+     * @return A future completed with the task result; cancel it to stop the task
+     */
+    public static <T> CompletableFuture<T> submit(String name, Task<T> task, ProgressListener listener) {
+        TaskFuture<T> future = new TaskFuture<>();
+        TaskContext context = new TaskContext(future, listener);
+        SUBMITTED.incrementAndGet();
+        
+        try {
+            EXECUTOR.execute(() -> future.runTask(name, task, context));
+        } catch (RejectedExecutionException e) {
+            REJECTED.incrementAndGet();
+            future.completeExceptionally(new RejectedExecutionException(
+                    "Database is busy, " + name + " was not started", e));
+        }
+        
+        return future;
+    }
+    
+    /**
+     * Gets the executor statistics
+     * 
+     * @return Snapshot of queued, active and completed task counts
+     */
+    public static Statistics getStatistics() {
+        Statistics stats = new Statistics();
+        stats.active = EXECUTOR.getActiveCount();
+        stats.queued = EXECUTOR.getQueue().size();
+        stats.submitted = SUBMITTED.get();
+        stats.completed = COMPLETED.get();
+        stats.failed = FAILED.get();
+        stats.cancelled = CANCELLED.get();
+        stats.rejected = REJECTED.get();
+        return stats;
+    }
+    
+    /**
+     * Stops accepting tasks; queued and running tasks still complete
+     */
+    public static void shutdown() {
+        EXECUTOR.shutdown();
+    }
+    
+    /**
+     * Progress and cancellation hooks passed to a running task
+     */
+    public static final class TaskContext {
+        private static final TaskContext NONE = new TaskContext(null, null);
+        
+        private final CompletableFuture<?> future;
+        private final ProgressListener listener;
+        
+        private TaskContext(CompletableFuture<?> future, ProgressListener listener) {
+            this.future = future;
+            this.listener = listener;
+        }
+        
+        /**
+         * Gets a context for work run synchronously, without progress or cancellation
+         * 
+         * @return A no-op context
+         */
+        public static TaskContext none() {
+            return NONE;
+        }
+        
+        /**
+         * Checks whether the task was cancelled
+         * 
+         * @return True if cancelled, false otherwise
+         */
+        public boolean isCancelled() {
+            return future != null && future.isCancelled();
+        }
+        
+        /**
+         * Stops the task if it was cancelled
+         * 
+         * @throws CancellationException If the task was cancelled
+         */
+        public void checkCancelled() {
+            if (isCancelled()) {
+                throw new CancellationException();
+            }
+        }
+        
+        /**
+         * Reports progress to the listener on the Event Dispatch Thread
+         * 
+         * @param done Units of work completed
+         * @param total Total units of work, or -1 if unknown
+         * @param message Short description of the current step
+         */
+        public void progress(int done, int total, String message) {
+            if (listener != null) {
+                SwingUtilities.invokeLater(() -> listener.onProgress(done, total, message));
+            }
+        }
+    }
+    
+    /**
+     * Future completed by a task running on the executor
+     */
+    private static final class TaskFuture<T> extends CompletableFuture<T> {
+        void runTask(String name, Task<T> task, TaskContext context) {
+            if (isCancelled()) {
+                // Cancelled while queued
+                CANCELLED.incrementAndGet();
+                return;
+            }
+            
+            try {
+                T result = task.run(context);
+                if (complete(result)) {
+                    COMPLETED.incrementAndGet();
+                } else {
+                    CANCELLED.incrementAndGet();
+                }
+            } catch (CancellationException e) {
+                cancel(false);
+                CANCELLED.incrementAndGet();
+            } catch (Exception e) {
+                if (isCancelled()) {
+                    CANCELLED.incrementAndGet();
+                } else {
+                    FAILED.incrementAndGet();
+                    System.err.println("Error in " + name + ": " + e.getMessage());
+                    completeExceptionally(e);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Snapshot of executor statistics
+     */
+    public static class Statistics {
+        public int active;
+        public int queued;
+        public long submitted;
+        public long completed;
+        public long failed;
+        public long cancelled;
+        public long rejected;
+        
+        @Override
+        public String toString() {
+            return String.format("active=%d queued=%d submitted=%d completed=%d failed=%d cancelled=%d rejected=%d",
+                    active, queued, submitted, completed, failed, cancelled, rejected);
+        }
+    }
+}
\ No newline at end of file
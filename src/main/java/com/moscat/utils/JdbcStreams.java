@@ -0,0 +1,216 @@
+package com.moscat.utils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Constant-memory iteration over query results.
+ * 
+ * Rows are mapped and handed over one at a time instead of being collected into a list.
+ * Statements are forward-only and read-only, with a fetch size of moscat.db.fetchSize
+ * (default 500). The fetch size bounds how many rows an H2 TCP client buffers per round
+ * trip. Outside a unit of work the query also runs with H2 lazy query execution, so the
+ * engine produces rows as they are read instead of building the whole result first.
+ * Inside a unit of work lazy execution stays off, because the consumer may run other
+ * statements on the shared connection; H2 then spills large results to disk instead of
+ * keeping them on the heap.
+ */
+public final class JdbcStreams {
+    
+    private static final int FETCH_SIZE = Integer.getInteger("moscat.db.fetchSize", 500);
+    
+    private JdbcStreams() {
+    }
+    
+    /**
+     * Binds the parameters of a query
+     */
+    public interface Binder {
+        /**
+         * Sets the statement parameters
+         * 
+         * @param stmt The statement
+         * @throws SQLException If a parameter cannot be set
+         */
+        void bind(PreparedStatement stmt) throws SQLException;
+    }
+    
+    /**
+     * Maps the current row of a result set
+     * 
+     * @param <T> The row type
+     */
+    public interface RowMapper<T> {
+        /**
+         * Maps the current row
+         * 
+         * @param rs The result set, positioned on a row
+         * @return The mapped row
+         * @throws SQLException If a column cannot be read
+         */
+        T map(ResultSet rs) throws SQLException;
+    }
+    
+    /**
+     * Runs a query and passes each mapped row to a consumer
+     * 
+     * @param sql The query
+     * @param binder Sets the query parameters, or null if there are none
+     * @param mapper Maps each row
+     * @param consumer Receives each row; a RuntimeException it throws stops the query
+     * @param <T> The row type
+     * @return The number of rows passed to the consumer
+     * @throws SQLException If the query fails
+     */
+    public static <T> long forEach(String sql, Binder binder, RowMapper<T> mapper, Consumer<? super T> consumer)
+            throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            boolean lazy = enableLazyExecution(conn);
+            try (PreparedStatement stmt = prepare(conn, sql, binder);
+                 ResultSet rs = stmt.executeQuery()) {
+                long count = 0;
+                while (rs.next()) {
+                    consumer.accept(mapper.map(rs));
+                    count++;
+                }
+                return count;
+            } finally {
+                if (lazy) {
+                    disableLazyExecution(conn);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Runs a query and returns its mapped rows as a stream. The stream holds a connection
+     * until it is closed, so always use it in a try-with-resources block. A SQLException
+     * while reading is rethrown as an IllegalStateException with the SQLException as cause.
+     * 
+     * @param sql The query
+     * @param binder Sets the query parameters, or null if there are none
+     * @param mapper Maps each row
+     * @param <T> The row type
+     * @return A sequential stream of rows that must be closed
+     * @throws SQLException If the query fails
+     */
+    public static <T> Stream<T> stream(String sql, Binder binder, RowMapper<T> mapper) throws SQLException {
+        Connection conn = DatabaseManager.getConnection();
+        boolean lazy = false;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            lazy = enableLazyExecution(conn);
+            stmt = prepare(conn, sql, binder);
+            rs = stmt.executeQuery();
+        } catch (SQLException | RuntimeException e) {
+            close(rs, stmt, conn, lazy, e);
+            throw e;
+        }
+        
+        ResultSet results = rs;
+        Spliterator<T> rows = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                try {
+                    if (!results.next()) {
+                        return false;
+                    }
+                    action.accept(mapper.map(results));
+                    return true;
+                } catch (SQLException e) {
+                    throw new IllegalStateException("Error reading query results: " + e.getMessage(), e);
+                }
+            }
+        };
+        
+        PreparedStatement statement = stmt;
+        boolean lazyExecution = lazy;
+        return StreamSupport.stream(rows, false).onClose(() -> {
+            SQLException error = close(results, statement, conn, lazyExecution, null);
+            if (error != null) {
+                throw new IllegalStateException("Error closing query results: " + error.getMessage(), error);
+            }
+        });
+    }
+    
+    private static PreparedStatement prepare(Connection conn, String sql, Binder binder) throws SQLException {
+        PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        try {
+            stmt.setFetchSize(FETCH_SIZE);
+            if (binder != null) {
+                binder.bind(stmt);
+            }
+            return stmt;
+        } catch (SQLException | RuntimeException e) {
+            stmt.close();
+            throw e;
+        }
+    }
+    
+    private static boolean enableLazyExecution(Connection conn) throws SQLException {
+        if (UnitOfWork.isActive()) {
+            return false;
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("SET LAZY_QUERY_EXECUTION TRUE");
+        }
+        return true;
+    }
+    
+    private static void disableLazyExecution(Connection conn) throws SQLException {
+        // The connection goes back to the pool; later users expect the default
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("SET LAZY_QUERY_EXECUTION FALSE");
+        }
+    }
+    
+    /**
+     * Closes everything opened for a stream, keeping the first error
+     */
+    private static SQLException close(ResultSet rs, Statement stmt, Connection conn, boolean lazy, Exception primary) {
+        SQLException first = null;
+        AutoCloseable[] resources = { rs, stmt };
+        for (AutoCloseable resource : resources) {
+            if (resource == null) {
+                continue;
+            }
+            try {
+                resource.close();
+            } catch (Exception e) {
+                if (first == null && e instanceof SQLException) {
+                    first = (SQLException) e;
+                }
+            }
+        }
+        try {
+            if (lazy) {
+                disableLazyExecution(conn);
+            }
+        } catch (SQLException e) {
+            if (first == null) {
+                first = e;
+            }
+        }
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            if (first == null) {
+                first = e;
+            }
+        }
+        if (first != null && primary != null) {
+            primary.addSuppressed(first);
+        }
+        return first;
+    }
+}
@@ -0,0 +1,262 @@
+package com.moscat.utils;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Fixed-point money arithmetic on long centavos.
+ * 
+ * Amounts are carried as primitive longs holding centavos, so sums over many rows are
+ * exact and the arithmetic does not allocate. Percentages are computed exactly in
+ * integer arithmetic and rounded half away from zero to the centavo. Conversions from
+ * double and BigDecimal belong at the edges (user input, JDBC); everything in between
+ * should stay in centavos. Overflowing results throw ArithmeticException rather than
+ * wrapping around.
+ */
+public final class Money {
+    
+    /**
+     * Centavos per peso
+     */
+    public static final long CENTS_PER_UNIT = 100L;
+    
+    /**
+     * Rates are scaled to millionths of a percent for exact percentage arithmetic
+     */
+    private static final long RATE_SCALE = 1_000_000L;
+    
+    private Money() {
+    }
+    
+    /**
+     * Converts a decimal amount to centavos
+     * 
+     * @param amount The amount in pesos
+     * @return The amount in centavos, rounded half away from zero
+     */
+    public static long ofDouble(double amount) {
+        if (Double.isNaN(amount) || Double.isInfinite(amount)) {
+            throw new ArithmeticException("Not a valid amount: " + amount);
+        }
+        // Rounds on the shortest decimal representation, so 1.005 becomes 101 rather than 100
+        return toCents(BigDecimal.valueOf(amount));
+    }
+    
+    /**
+     * Converts centavos to a decimal amount for display or legacy double APIs
+     * 
+     * @param cents The amount in centavos
+     * @return The amount in pesos
+     */
+    public static double toDouble(long cents) {
+        return cents / (double) CENTS_PER_UNIT;
+    }
+    
+    /**
+     * Converts a BigDecimal amount to centavos
+     * 
+     * @param amount The amount in pesos, or null
+     * @return The amount in centavos rounded half away from zero, or 0 if null
+     */
+    public static long toCents(BigDecimal amount) {
+        if (amount == null) {
+            return 0L;
+        }
+        return amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+    
+    /**
+     * Converts centavos to a BigDecimal with scale 2
+     * 
+     * @param cents The amount in centavos
+     * @return The amount in pesos
+     */
+    public static BigDecimal toBigDecimal(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+    
+    /**
+     * Parses a user-entered amount such as "1,234.50"
+     * 
+     * @param text The amount text
+     * @return The amount in centavos
+     * @throws NumberFormatException If the text is not a valid amount
+     */
+    public static long parse(String text) {
+        if (text == null || text.trim().isEmpty()) {
+            throw new NumberFormatException("Amount is required");
+        }
+        return toCents(new BigDecimal(text.trim().replace(",", "")));
+    }
+    
+    /**
+     * Adds two amounts
+     * 
+     * @param a First amount in centavos
+     * @param b Second amount in centavos
+     * @return The sum in centavos
+     */
+    public static long add(long a, long b) {
+        return Math.addExact(a, b);
+    }
+    
+    /**
+     * Subtracts one amount from another
+     * 
+     * @param a Amount in centavos
+     * @param b Amount to subtract in centavos
+     * @return The difference in centavos
+     */
+    public static long subtract(long a, long b) {
+        return Math.subtractExact(a, b);
+    }
+    
+    /**
+     * Multiplies an amount by a whole quantity
+     * 
+     * @param cents Amount in centavos
+     * @param quantity The quantity
+     * @return The product in centavos
+     */
+    public static long multiply(long cents, long quantity) {
+        return Math.multiplyExact(cents, quantity);
+    }
+    
+    /**
+     * Computes a percentage of an amount, e.g. interest at an annual rate
+     * 
+     * @param cents Amount in centavos
+     * @param ratePercent Rate in percent (2.5 means 2.5%), up to six decimal places
+     * @return The percentage in centavos, rounded half away from zero
+     */
+    public static long percent(long cents, double ratePercent) {
+        return fraction(cents, Math.round(ratePercent * RATE_SCALE), 100L * RATE_SCALE);
+    }
+    
+    /**
+     * Computes a percentage of an amount for one of several periods, e.g. one month of
+     * interest at an annual rate
+     * 
+     * @param cents Amount in centavos
+     * @param ratePercent Rate per whole term in percent, up to six decimal places
+     * @param periods Number of periods in the term, positive
+     * @return The percentage for one period in centavos, rounded half away from zero
+     */
+    public static long percent(long cents, double ratePercent, long periods) {
+        return fraction(cents, Math.round(ratePercent * RATE_SCALE), Math.multiplyExact(100L * RATE_SCALE, periods));
+    }
+    
+    /**
+     * Computes an exact fraction of an amount, e.g. one month of an annual figure
+     * 
+     * @param cents Amount in centavos
+     * @param numerator Fraction numerator
+     * @param denominator Fraction denominator, positive
+     * @return cents * numerator / denominator in centavos, rounded half away from zero
+     */
+    public static long fraction(long cents, long numerator, long denominator) {
+        if (denominator <= 0) {
+            throw new ArithmeticException("Denominator must be positive: " + denominator);
+        }
+        long product;
+        try {
+            product = Math.multiplyExact(cents, numerator);
+        } catch (ArithmeticException e) {
+            // Very large amount; fall back to exact decimal arithmetic
+            return BigDecimal.valueOf(cents).multiply(BigDecimal.valueOf(numerator))
+                    .divide(BigDecimal.valueOf(denominator), 0, RoundingMode.HALF_UP).longValueExact();
+        }
+        return divideRounded(product, denominator);
+    }
+    
+    /**
+     * Rounds an amount to a multiple of an increment, e.g. 100 to round to whole pesos
+     * 
+     * @param cents Amount in centavos
+     * @param increment Rounding increment in centavos, positive
+     * @return The rounded amount in centavos, rounded half away from zero
+     */
+    public static long round(long cents, long increment) {
+        if (increment <= 0) {
+            throw new ArithmeticException("Increment must be positive: " + increment);
+        }
+        return Math.multiplyExact(divideRounded(cents, increment), increment);
+    }
+    
+    private static long divideRounded(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        long remainder = dividend % divisor;
+        // Compare 2 * |remainder| with divisor without overflowing
+        if (Math.abs(remainder) >= divisor - Math.abs(remainder)) {
+            quotient += dividend < 0 ? -1 : 1;
+        }
+        return quotient;
+    }
+    
+    /**
+     * Formats an amount with two decimals and thousands separators, e.g. "-1,234.50"
+     * 
+     * @param cents Amount in centavos
+     * @return The formatted amount without a currency symbol
+     */
+    public static String format(long cents) {
+        StringBuilder text = new StringBuilder(24);
+        long units = Math.abs(cents / CENTS_PER_UNIT);
+        long fraction = Math.abs(cents % CENTS_PER_UNIT);
+        
+        String digits = Long.toString(units);
+        int firstGroup = digits.length() % 3 == 0 ? 3 : digits.length() % 3;
+        if (cents < 0) {
+            text.append('-');
+        }
+        text.append(digits, 0, firstGroup);
+        for (int i = firstGroup; i < digits.length(); i += 3) {
+            text.append(',').append(digits, i, i + 3);
+        }
+        text.append('.');
+        if (fraction < 10) {
+            text.append('0');
+        }
+        text.append(fraction);
+        return text.toString();
+    }
+    
+    /**
+     * Reads a DECIMAL column as centavos
+     * 
+     * @param rs The result set
+     * @param column The column label
+     * @return The amount in centavos, or 0 if NULL
+     * @throws SQLException If the column cannot be read
+     */
+    public static long getCents(ResultSet rs, String column) throws SQLException {
+        return toCents(rs.getBigDecimal(column));
+    }
+    
+    /**
+     * Reads a DECIMAL column as centavos
+     * 
+     * @param rs The result set
+     * @param columnIndex The column index, starting at 1
+     * @return The amount in centavos, or 0 if NULL
+     * @throws SQLException If the column cannot be read
+     */
+    public static long getCents(ResultSet rs, int columnIndex) throws SQLException {
+        return toCents(rs.getBigDecimal(columnIndex));
+    }
+    
+    /**
+     * Binds centavos to a DECIMAL parameter as an exact scale-2 value
+     * 
+     * @param stmt The statement
+     * @param parameterIndex The parameter index, starting at 1
+     * @param cents The amount in centavos
+     * @throws SQLException If the parameter cannot be set
+     */
+    public static void setCents(PreparedStatement stmt, int parameterIndex, long cents) throws SQLException {
+        stmt.setBigDecimal(parameterIndex, toBigDecimal(cents));
+    }
+}
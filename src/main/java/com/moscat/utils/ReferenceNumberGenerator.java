@@ -0,0 +1,160 @@
+package com.moscat.utils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Generates transaction reference numbers from blocks reserved in a database sequence.
+ * 
+ * Each call to NEXT VALUE FOR transaction_reference_seq reserves BLOCK_SIZE numbers.
+ * They are handed out from memory with a single atomic increment, and the database is
+ * touched again only when the block runs out. Numbers from a block that is not used up
+ * before shutdown are skipped, never reused.
+ * 
+ * A reference such as TR010100000042179 is "TR", the branch code (moscat.branch.code,
+ * default 01), the terminal id (moscat.terminal.id, default 01), a ten-digit sequence
+ * number and a Luhn mod 36 check character, which catches any single mistyped character
+ * and most swaps of adjacent characters.
+ */
+public final class ReferenceNumberGenerator {
+    
+    /**
+     * Numbers reserved per sequence call; must match INCREMENT BY in the V5 migration
+     */
+    public static final int BLOCK_SIZE = 1000;
+    
+    private static final String PREFIX = "TR";
+    private static final int SEQUENCE_DIGITS = 10;
+    private static final int RADIX = 36;
+    
+    private static final String BRANCH_CODE = code("moscat.branch.code");
+    private static final String TERMINAL_ID = code("moscat.terminal.id");
+    
+    private static final AtomicReference<Block> CURRENT = new AtomicReference<>(new Block(0, 0));
+    private static final Object REFILL_LOCK = new Object();
+    private static final AtomicLong BLOCKS_RESERVED = new AtomicLong();
+    
+    private ReferenceNumberGenerator() {
+    }
+    
+    private static String code(String property) {
+        String value = System.getProperty(property, "01").trim().toUpperCase();
+        if (value.length() == 1) {
+            value = "0" + value;
+        }
+        if (!value.matches("[0-9A-Z]{2}")) {
+            throw new IllegalStateException(property + " must be one or two letters or digits: " + value);
+        }
+        return value;
+    }
+    
+    /**
+     * Gets the next reference number
+     * 
+     * @return The reference number
+     * @throws SQLException If a new block could not be reserved
+     */
+    public static String next() throws SQLException {
+        while (true) {
+            Block block = CURRENT.get();
+            long number = block.next.getAndIncrement();
+            if (number < block.end) {
+                return format(number);
+            }
+            
+            synchronized (REFILL_LOCK) {
+                // Another thread may have refilled while we waited
+                if (CURRENT.get() == block) {
+                    CURRENT.set(reserveBlock());
+                }
+            }
+        }
+    }
+    
+    private static Block reserveBlock() throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            try (PreparedStatement stmt = conn.prepareStatement("SELECT NEXT VALUE FOR transaction_reference_seq")) {
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (!rs.next()) {
+                        throw new SQLException("Sequence transaction_reference_seq returned no value");
+                    }
+                    long start = rs.getLong(1);
+                    BLOCKS_RESERVED.incrementAndGet();
+                    return new Block(start, start + BLOCK_SIZE);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Formats a sequence number as a reference number for this branch and terminal
+     * 
+     * @param number The sequence number
+     * @return The reference number
+     */
+    static String format(long number) {
+        StringBuilder body = new StringBuilder(BRANCH_CODE.length() + TERMINAL_ID.length() + SEQUENCE_DIGITS);
+        body.append(BRANCH_CODE).append(TERMINAL_ID);
+        String digits = Long.toString(number);
+        for (int i = digits.length(); i < SEQUENCE_DIGITS; i++) {
+            body.append('0');
+        }
+        body.append(digits);
+        return PREFIX + body + checkCharacter(body);
+    }
+    
+    /**
+     * Checks the format and check character of a reference number
+     * 
+     * @param reference The reference number
+     * @return True if it could have been generated by this class, false otherwise
+     */
+    public static boolean isValid(String reference) {
+        if (reference == null || !reference.matches(PREFIX + "[0-9A-Z]{4}[0-9]{" + SEQUENCE_DIGITS + ",}[0-9A-Z]")) {
+            return false;
+        }
+        String body = reference.substring(PREFIX.length(), reference.length() - 1);
+        return checkCharacter(body) == reference.charAt(reference.length() - 1);
+    }
+    
+    /**
+     * Computes the Luhn mod 36 check character of a string of digits and upper-case letters
+     */
+    private static char checkCharacter(CharSequence body) {
+        int factor = 2;
+        int sum = 0;
+        for (int i = body.length() - 1; i >= 0; i--) {
+            int addend = factor * Character.digit(body.charAt(i), RADIX);
+            sum += addend / RADIX + addend % RADIX;
+            factor = factor == 2 ? 1 : 2;
+        }
+        int check = (RADIX - sum % RADIX) % RADIX;
+        return Character.toUpperCase(Character.forDigit(check, RADIX));
+    }
+    
+    /**
+     * Gets the number of blocks reserved from the database since startup
+     * 
+     * @return Number of sequence calls
+     */
+    public static long getBlocksReserved() {
+        return BLOCKS_RESERVED.get();
+    }
+    
+    /**
+     * A reserved range of sequence numbers, [next, end)
+     */
+    private static final class Block {
+        private final AtomicLong next;
+        private final long end;
+        
+        Block(long start, long end) {
+            this.next = new AtomicLong(start);
+            this.end = end;
+        }
+    }
+}
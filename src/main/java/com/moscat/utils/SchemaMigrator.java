@@ -0,0 +1,261 @@
+package com.moscat.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Applies versioned, checksummed schema migrations from db/migration on the classpath.
+ * 
+ * Applied migrations are recorded in the schema_version table. A migration that was
+ * already applied is never run again, and startup fails if its script has been edited
+ * since, so a schema change always needs a new version.
+ */
+public class SchemaMigrator {
+    
+    private static final String MIGRATION_PATH = "/db/migration/";
+    
+    /**
+     * Migrations in the order they are applied. Append new entries; never edit or reorder.
+     */
+    private static final Migration[] MIGRATIONS = {
+        new Migration(1, "baseline", "V1__baseline.sql"),
+        new Migration(2, "indexes", "V2__indexes.sql"),
+        new Migration(3, "align columns", "V3__align_columns.sql"),
+        new Migration(4, "idempotency keys", "V4__idempotency_keys.sql"),
+        new Migration(5, "reference sequence", "V5__reference_sequence.sql"),
+        new Migration(6, "transaction keyset index", "V6__transaction_keyset_index.sql"),
+        new Migration(7, "transaction daily totals", "V7__transaction_daily_totals.sql"),
+        new Migration(8, "member balance snapshots", "V8__member_balance_snapshots.sql"),
+        new Migration(9, "transactions archive", "V9__transactions_archive.sql"),
+        new Migration(10, "import checkpoints", "V10__import_checkpoints.sql"),
+        new Migration(11, "archive idempotency keys", "V11__archive_idempotency_keys.sql")
+    };
+    
+    /**
+     * Brings the schema up to the latest version
+     * 
+     * @param conn Database connection
+     * @return The number of migrations applied
+     * @throws SQLException If a migration fails or an applied migration was modified
+     */
+    public static int migrate(Connection conn) throws SQLException {
+        createVersionTable(conn);
+        Map<Integer, AppliedMigration> applied = getAppliedMigrations(conn);
+        
+        int count = 0;
+        for (Migration migration : MIGRATIONS) {
+            String script = loadScript(migration.script);
+            long checksum = checksum(script);
+            
+            AppliedMigration existing = applied.get(migration.version);
+            if (existing != null) {
+                if (!existing.success) {
+                    throw new SQLException("Migration V" + migration.version + " previously failed; "
+                            + "repair the schema and delete its schema_version row before restarting");
+                }
+                if (existing.checksum != checksum) {
+                    throw new SQLException("Checksum mismatch for migration V" + migration.version
+                            + " (" + migration.script + "): applied " + existing.checksum + ", found " + checksum);
+                }
+                continue;
+            }
+            
+            apply(conn, migration, script, checksum);
+            count++;
+        }
+        
+        return count;
+    }
+    
+    /**
+     * Gets the current schema version
+     * 
+     * @param conn Database connection
+     * @return The highest successfully applied version, or 0 if none
+     * @throws SQLException If a database error occurs
+     */
+    public static int getCurrentVersion(Connection conn) throws SQLException {
+        createVersionTable(conn);
+        String query = "SELECT MAX(version) FROM schema_version WHERE success = TRUE";
+        try (PreparedStatement stmt = conn.prepareStatement(query);
+             ResultSet rs = stmt.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+    
+    private static void createVersionTable(Connection conn) throws SQLException {
+        String createVersionTable = "CREATE TABLE IF NOT EXISTS schema_version ("
+                + "version INT PRIMARY KEY, "
+                + "description VARCHAR(200) NOT NULL, "
+                + "script VARCHAR(200) NOT NULL, "
+                + "checksum BIGINT NOT NULL, "
+                + "installed_on TIMESTAMP NOT NULL, "
+                + "execution_ms BIGINT NOT NULL, "
+                + "success BOOLEAN NOT NULL"
+                + ")";
+        
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate(createVersionTable);
+        }
+    }
+    
+    private static Map<Integer, AppliedMigration> getAppliedMigrations(Connection conn) throws SQLException {
+        Map<Integer, AppliedMigration> applied = new HashMap<>();
+        String query = "SELECT version, checksum, success FROM schema_version";
+        try (PreparedStatement stmt = conn.prepareStatement(query);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                AppliedMigration migration = new AppliedMigration();
+                migration.checksum = rs.getLong("checksum");
+                migration.success = rs.getBoolean("success");
+                applied.put(rs.getInt("version"), migration);
+            }
+        }
+        return applied;
+    }
+    
+    private static void apply(Connection conn, Migration migration, String script, long checksum) throws SQLException {
+        long start = System.currentTimeMillis();
+        boolean autoCommit = conn.getAutoCommit();
+        boolean success = false;
+        
+        try {
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                for (String sql : splitStatements(script)) {
+                    stmt.execute(sql);
+                }
+            }
+            conn.commit();
+            success = true;
+            System.out.println("Applied schema migration V" + migration.version + " (" + migration.description + ")");
+        } catch (SQLException e) {
+            // DDL commits implicitly in H2, so record the failure for manual repair
+            conn.rollback();
+            throw new SQLException("Migration V" + migration.version + " failed: " + e.getMessage(), e);
+        } finally {
+            recordMigration(conn, migration, checksum, System.currentTimeMillis() - start, success);
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+    
+    private static void recordMigration(Connection conn, Migration migration, long checksum,
+            long executionMs, boolean success) throws SQLException {
+        String insertQuery = "INSERT INTO schema_version (version, description, script, checksum, installed_on, execution_ms, success) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?)";
+        try (PreparedStatement stmt = conn.prepareStatement(insertQuery)) {
+            stmt.setInt(1, migration.version);
+            stmt.setString(2, migration.description);
+            stmt.setString(3, migration.script);
+            stmt.setLong(4, checksum);
+            stmt.setTimestamp(5, Timestamp.valueOf(LocalDateTime.now()));
+            stmt.setLong(6, executionMs);
+            stmt.setBoolean(7, success);
+            stmt.executeUpdate();
+            conn.commit();
+        }
+    }
+    
+    private static String loadScript(String name) throws SQLException {
+        try (InputStream in = SchemaMigrator.class.getResourceAsStream(MIGRATION_PATH + name)) {
+            if (in == null) {
+                throw new SQLException("Migration script not found: " + MIGRATION_PATH + name);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            // Normalize line endings so checkouts on different platforms agree
+            return new String(out.toByteArray(), StandardCharsets.UTF_8).replace("\r\n", "\n");
+        } catch (IOException e) {
+            throw new SQLException("Error reading migration script " + name + ": " + e.getMessage(), e);
+        }
+    }
+    
+    private static long checksum(String script) {
+        CRC32 crc = new CRC32();
+        crc.update(script.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+    
+    /**
+     * Splits a script into statements on semicolons outside quotes, dropping -- comments
+     * 
+     * @param script The script text
+     * @return The statements
+     */
+    static List<String> splitStatements(String script) {
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean inQuote = false;
+        
+        for (int i = 0; i < script.length(); i++) {
+            char c = script.charAt(i);
+            if (!inQuote && c == '-' && i + 1 < script.length() && script.charAt(i + 1) == '-') {
+                while (i < script.length() && script.charAt(i) != '\n') {
+                    i++;
+                }
+                current.append('\n');
+                continue;
+            }
+            if (c == '\'') {
+                inQuote = !inQuote;
+            }
+            if (c == ';' && !inQuote) {
+                addStatement(statements, current);
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        addStatement(statements, current);
+        
+        return statements;
+    }
+    
+    private static void addStatement(List<String> statements, StringBuilder sql) {
+        String statement = sql.toString().trim();
+        if (!statement.isEmpty()) {
+            statements.add(statement);
+        }
+    }
+    
+    /**
+     * A migration script known to this version of the application
+     */
+    private static class Migration {
+        private final int version;
+        private final String description;
+        private final String script;
+        
+        Migration(int version, String description, String script) {
+            this.version = version;
+            this.description = description;
+            this.script = script;
+        }
+    }
+    
+    /**
+     * A row of the schema_version table
+     */
+    private static class AppliedMigration {
+        private long checksum;
+        private boolean success;
+    }
+}
\ No newline at end of file
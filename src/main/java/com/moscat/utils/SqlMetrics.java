@@ -0,0 +1,585 @@
+package com.moscat.utils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.sql.CallableStatement;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-statement JDBC metrics collected by the connection pool.
+ * 
+ * Statements handed out by ConnectionPool are wrapped so every execute call records
+ * its latency in a histogram keyed by the normalized SQL (literals replaced by ?,
+ * whitespace collapsed), together with the rows fetched and the errors raised.
+ * Connection lease times and rollbacks are recorded too. Executions slower than
+ * moscat.db.slowQueryMs (default 250) and failed executions are appended to a rolling
+ * log in moscat.db.logDir (default ./data/logs), rotated at
+ * moscat.db.slowQueryLog.maxBytes (default 5 MB) keeping moscat.db.slowQueryLog.files
+ * files (default 5). Set moscat.db.metrics=false to hand out unwrapped statements.
+ */
+public final class SqlMetrics {
+    
+    private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("moscat.db.metrics", "true"));
+    private static final long SLOW_QUERY_NANOS = Long.getLong("moscat.db.slowQueryMs", 250L) * 1_000_000L;
+    private static final int MAX_STATEMENTS = 1000;
+    private static final int MAX_SQL_LENGTH = 2000;
+    
+    /**
+     * Upper bounds of the latency histogram buckets in milliseconds; the last bucket is unbounded.
+     * Declared before LEASES, whose histogram sizes its buckets from it during class initialization.
+     */
+    private static final long[] BUCKET_BOUNDS_MS = { 1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000 };
+    
+    private static final ConcurrentHashMap<String, Metrics> STATEMENTS = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, String> NORMALIZED = new ConcurrentHashMap<>();
+    private static final Histogram LEASES = new Histogram();
+    private static final LongAdder ROLLBACKS = new LongAdder();
+    private static final SlowQueryLog SLOW_QUERY_LOG = new SlowQueryLog(
+            System.getProperty("moscat.db.logDir", "./data/logs"),
+            Long.getLong("moscat.db.slowQueryLog.maxBytes", 5L * 1024 * 1024),
+            Integer.getInteger("moscat.db.slowQueryLog.files", 5));
+    
+    private SqlMetrics() {
+    }
+    
+    /**
+     * Checks whether statement instrumentation is enabled
+     * 
+     * @return True if statements are wrapped
+     */
+    static boolean isEnabled() {
+        return ENABLED;
+    }
+    
+    /**
+     * Wraps a statement so its executions are measured
+     * 
+     * @param statement The statement to wrap
+     * @param sql The SQL text of a prepared statement, or null for a plain statement
+     * @return The instrumented statement
+     */
+    static Statement instrument(Statement statement, String sql) {
+        Class<?> type = statement instanceof CallableStatement ? CallableStatement.class
+                : statement instanceof PreparedStatement ? PreparedStatement.class
+                : Statement.class;
+        return (Statement) Proxy.newProxyInstance(
+                Statement.class.getClassLoader(),
+                new Class<?>[] { type },
+                new InstrumentedStatement(statement, sql));
+    }
+    
+    /**
+     * Records how long a connection was leased
+     * 
+     * @param nanos The lease time in nanoseconds
+     */
+    static void recordLease(long nanos) {
+        LEASES.record(nanos);
+    }
+    
+    /**
+     * Records a rollback on a leased connection
+     */
+    static void recordRollback() {
+        ROLLBACKS.increment();
+    }
+    
+    /**
+     * Normalizes SQL so statements differing only in literals or whitespace share metrics
+     * 
+     * @param sql The SQL text
+     * @return The SQL with string and numeric literals replaced by ? and whitespace collapsed
+     */
+    public static String normalize(String sql) {
+        if (sql == null) {
+            return "";
+        }
+        
+        StringBuilder normalized = new StringBuilder(Math.min(sql.length(), MAX_SQL_LENGTH));
+        boolean pendingSpace = false;
+        int i = 0;
+        while (i < sql.length() && normalized.length() < MAX_SQL_LENGTH) {
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c)) {
+                pendingSpace = normalized.length() > 0;
+                i++;
+                continue;
+            }
+            if (pendingSpace) {
+                normalized.append(' ');
+                pendingSpace = false;
+            }
+            
+            if (c == '\'') {
+                // String literal, with '' as an escaped quote
+                i++;
+                while (i < sql.length()) {
+                    if (sql.charAt(i) == '\'') {
+                        if (i + 1 < sql.length() && sql.charAt(i + 1) == '\'') {
+                            i += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    i++;
+                }
+                normalized.append('?');
+                i++;
+            } else if (Character.isDigit(c) && !isIdentifierPart(normalized)) {
+                while (i < sql.length() && (Character.isDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+                    i++;
+                }
+                normalized.append('?');
+            } else if (Character.isLetter(c) || c == '_') {
+                // Keywords and identifiers, upper-cased so case differences share metrics
+                while (i < sql.length() && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '_')) {
+                    normalized.append(Character.toUpperCase(sql.charAt(i)));
+                    i++;
+                }
+            } else {
+                normalized.append(c);
+                i++;
+            }
+        }
+        
+        return normalized.toString();
+    }
+    
+    private static boolean isIdentifierPart(StringBuilder normalized) {
+        if (normalized.length() == 0) {
+            return false;
+        }
+        char previous = normalized.charAt(normalized.length() - 1);
+        return Character.isLetterOrDigit(previous) || previous == '_';
+    }
+    
+    private static Metrics metricsFor(String sql) {
+        String normalized = NORMALIZED.get(sql);
+        if (normalized == null) {
+            if (NORMALIZED.size() >= MAX_STATEMENTS * 4) {
+                // Dynamically built SQL; drop the lookup cache rather than grow without bound
+                NORMALIZED.clear();
+            }
+            normalized = normalize(sql);
+            NORMALIZED.put(sql, normalized);
+        }
+        
+        Metrics metrics = STATEMENTS.get(normalized);
+        if (metrics == null) {
+            String key = STATEMENTS.size() >= MAX_STATEMENTS ? "(other statements)" : normalized;
+            metrics = STATEMENTS.computeIfAbsent(key, Metrics::new);
+        }
+        return metrics;
+    }
+    
+    private static void recordExecution(String sql, long nanos, SQLException error) {
+        Metrics metrics = metricsFor(sql);
+        metrics.latency.record(nanos);
+        if (error != null) {
+            metrics.errors.increment();
+            SLOW_QUERY_LOG.write("ERROR", nanos, metrics.sql, error.getSQLState() + " " + error.getMessage());
+        } else if (nanos >= SLOW_QUERY_NANOS) {
+            SLOW_QUERY_LOG.write("SLOW", nanos, metrics.sql, null);
+        }
+    }
+    
+    /**
+     * Gets the statements with the highest total execution time
+     * 
+     * @param limit Maximum number of statements to return
+     * @return Statement statistics, slowest total first
+     */
+    public static List<StatementStatistics> getTopStatements(int limit) {
+        List<StatementStatistics> all = new ArrayList<>();
+        for (Metrics metrics : STATEMENTS.values()) {
+            all.add(metrics.snapshot());
+        }
+        all.sort((a, b) -> Double.compare(b.totalMillis, a.totalMillis));
+        return all.size() > limit ? new ArrayList<>(all.subList(0, limit)) : all;
+    }
+    
+    /**
+     * Formats the top statements, connection lease times and rollbacks as a text report
+     * 
+     * @param limit Maximum number of statements to include
+     * @return The report
+     */
+    public static String dump(int limit) {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%-10s %-10s %-8s %-10s %-10s %-10s %-10s %-10s %s%n",
+                "total(ms)", "calls", "errors", "avg(ms)", "p95(ms)", "max(ms)", "rows", "rows/call", "statement"));
+        for (StatementStatistics stats : getTopStatements(limit)) {
+            report.append(stats).append(System.lineSeparator());
+        }
+        
+        HistogramSnapshot leases = LEASES.snapshot();
+        report.append(String.format("Connection leases: count=%d avg=%.2fms p95=%.0fms max=%.2fms rollbacks=%d%n",
+                leases.count, leases.getAverageMillis(), leases.getPercentileMillis(0.95), leases.maxMillis,
+                ROLLBACKS.sum()));
+        return report.toString();
+    }
+    
+    /**
+     * Gets the connection lease time histogram
+     * 
+     * @return Snapshot of lease times
+     */
+    public static HistogramSnapshot getLeaseHistogram() {
+        return LEASES.snapshot();
+    }
+    
+    /**
+     * Gets the number of rollbacks issued on leased connections
+     * 
+     * @return The rollback count
+     */
+    public static long getRollbackCount() {
+        return ROLLBACKS.sum();
+    }
+    
+    /**
+     * Clears all collected metrics
+     */
+    public static void reset() {
+        STATEMENTS.clear();
+        NORMALIZED.clear();
+        LEASES.reset();
+        ROLLBACKS.reset();
+    }
+    
+    /**
+     * Gets the upper bounds of the histogram buckets
+     * 
+     * @return Bucket bounds in milliseconds; the last bucket has no upper bound
+     */
+    public static long[] getBucketBoundsMillis() {
+        return BUCKET_BOUNDS_MS.clone();
+    }
+    
+    /**
+     * Invocation handler timing the execute calls of one statement
+     */
+    private static class InstrumentedStatement implements InvocationHandler {
+        private final Statement statement;
+        private final String sql;
+        private String lastBatchSql;
+        
+        InstrumentedStatement(Statement statement, String sql) {
+            this.statement = statement;
+            this.sql = sql;
+        }
+        
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "addBatch":
+                    if (args != null && args.length == 1) {
+                        lastBatchSql = (String) args[0];
+                    }
+                    break;
+                default:
+                    break;
+            }
+            
+            if (!name.startsWith("execute")) {
+                Object result = invokeTarget(method, args);
+                if ("getResultSet".equals(name) && result != null) {
+                    return countRows((ResultSet) result, metricsFor(executedSql(name, args)));
+                }
+                return result;
+            }
+            
+            String executedSql = executedSql(name, args);
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = invokeTarget(method, args);
+            } catch (SQLException e) {
+                recordExecution(executedSql, System.nanoTime() - start, e);
+                throw e;
+            }
+            recordExecution(executedSql, System.nanoTime() - start, null);
+            
+            if (result instanceof ResultSet) {
+                return countRows((ResultSet) result, metricsFor(executedSql));
+            }
+            return result;
+        }
+        
+        private Object invokeTarget(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+        
+        /**
+         * Gets the SQL an execute call runs: the prepared SQL, the SQL argument of a
+         * plain statement, or the last SQL added to a plain statement's batch
+         */
+        private String executedSql(String name, Object[] args) {
+            if (sql != null) {
+                return sql;
+            }
+            if (args != null && args.length > 0 && args[0] instanceof String) {
+                return (String) args[0];
+            }
+            if (name.contains("Batch") && lastBatchSql != null) {
+                return lastBatchSql;
+            }
+            return "(unknown statement)";
+        }
+    }
+    
+    /**
+     * Wraps a result set so the rows read from it are counted against a statement
+     */
+    private static ResultSet countRows(ResultSet resultSet, Metrics metrics) {
+        return (ResultSet) Proxy.newProxyInstance(
+                ResultSet.class.getClassLoader(),
+                new Class<?>[] { ResultSet.class },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        default:
+                            break;
+                    }
+                    try {
+                        Object result = method.invoke(resultSet, args);
+                        if (Boolean.TRUE.equals(result) && "next".equals(method.getName())) {
+                            metrics.rows.increment();
+                        }
+                        return result;
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+    
+    /**
+     * Metrics of one normalized statement
+     */
+    private static class Metrics {
+        private final String sql;
+        private final Histogram latency = new Histogram();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        
+        Metrics(String sql) {
+            this.sql = sql;
+        }
+        
+        StatementStatistics snapshot() {
+            StatementStatistics stats = new StatementStatistics();
+            stats.sql = sql;
+            stats.latency = latency.snapshot();
+            stats.executions = stats.latency.count;
+            stats.errors = errors.sum();
+            stats.rowsFetched = rows.sum();
+            stats.totalMillis = stats.latency.totalMillis;
+            return stats;
+        }
+    }
+    
+    /**
+     * Lock-free latency histogram with fixed buckets
+     */
+    private static class Histogram {
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_BOUNDS_MS.length + 1);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        
+        void record(long nanos) {
+            long millis = nanos / 1_000_000L;
+            int bucket = 0;
+            while (bucket < BUCKET_BOUNDS_MS.length && millis >= BUCKET_BOUNDS_MS[bucket]) {
+                bucket++;
+            }
+            buckets.incrementAndGet(bucket);
+            count.increment();
+            totalNanos.add(nanos);
+            if (nanos > maxNanos.get()) {
+                maxNanos.accumulateAndGet(nanos, Math::max);
+            }
+        }
+        
+        HistogramSnapshot snapshot() {
+            HistogramSnapshot snapshot = new HistogramSnapshot();
+            snapshot.buckets = new long[buckets.length()];
+            for (int i = 0; i < snapshot.buckets.length; i++) {
+                snapshot.buckets[i] = buckets.get(i);
+            }
+            snapshot.count = count.sum();
+            snapshot.totalMillis = totalNanos.sum() / 1_000_000.0;
+            snapshot.maxMillis = maxNanos.get() / 1_000_000.0;
+            return snapshot;
+        }
+        
+        void reset() {
+            for (int i = 0; i < buckets.length(); i++) {
+                buckets.set(i, 0);
+            }
+            count.reset();
+            totalNanos.reset();
+            maxNanos.set(0);
+        }
+    }
+    
+    /**
+     * Size-capped log of slow and failed statements, rotated to numbered files
+     */
+    private static class SlowQueryLog {
+        private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+        
+        private final File directory;
+        private final long maxBytes;
+        private final int files;
+        private Writer writer;
+        private long size;
+        private boolean failed;
+        
+        SlowQueryLog(String directory, long maxBytes, int files) {
+            this.directory = new File(directory);
+            this.maxBytes = maxBytes;
+            this.files = Math.max(1, files);
+        }
+        
+        synchronized void write(String kind, long nanos, String sql, String detail) {
+            if (failed) {
+                return;
+            }
+            
+            String line = String.format("%s %s %.1fms [%s] %s%s%n", LocalDateTime.now().format(TIMESTAMP), kind,
+                    nanos / 1_000_000.0, Thread.currentThread().getName(), sql, detail != null ? " -- " + detail : "");
+            byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+            try {
+                if (writer == null || size + bytes.length > maxBytes) {
+                    open(writer != null);
+                }
+                writer.write(line);
+                writer.flush();
+                size += bytes.length;
+            } catch (IOException e) {
+                // Never fail a database call because the log cannot be written
+                failed = true;
+                System.err.println("Error writing slow query log, disabling it: " + e.getMessage());
+            }
+        }
+        
+        private void open(boolean rotate) throws IOException {
+            if (writer != null) {
+                writer.close();
+                writer = null;
+            }
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Cannot create log directory " + directory);
+            }
+            
+            File current = new File(directory, "slow-queries.log");
+            if (rotate) {
+                new File(directory, "slow-queries." + (files - 1) + ".log").delete();
+                for (int i = files - 2; i >= 1; i--) {
+                    new File(directory, "slow-queries." + i + ".log")
+                            .renameTo(new File(directory, "slow-queries." + (i + 1) + ".log"));
+                }
+                if (files > 1) {
+                    current.renameTo(new File(directory, "slow-queries.1.log"));
+                } else {
+                    current.delete();
+                }
+            }
+            
+            size = current.length();
+            writer = new OutputStreamWriter(new FileOutputStream(current, true), StandardCharsets.UTF_8);
+        }
+    }
+    
+    /**
+     * Snapshot of a latency histogram
+     */
+    public static class HistogramSnapshot {
+        public long[] buckets;
+        public long count;
+        public double totalMillis;
+        public double maxMillis;
+        
+        /**
+         * Gets the average latency
+         * 
+         * @return Average in milliseconds
+         */
+        public double getAverageMillis() {
+            return count == 0 ? 0.0 : totalMillis / count;
+        }
+        
+        /**
+         * Estimates a latency percentile from the bucket bounds
+         * 
+         * @param percentile Percentile between 0 and 1
+         * @return Upper bound of the bucket holding the percentile in milliseconds,
+         *         or the maximum if it falls in the unbounded bucket
+         */
+        public double getPercentileMillis(double percentile) {
+            if (count == 0) {
+                return 0.0;
+            }
+            long target = (long) Math.ceil(count * percentile);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= target) {
+                    return i < BUCKET_BOUNDS_MS.length ? Math.min(BUCKET_BOUNDS_MS[i], maxMillis) : maxMillis;
+                }
+            }
+            return maxMillis;
+        }
+    }
+    
+    /**
+     * Snapshot of the metrics of one normalized statement
+     */
+    public static class StatementStatistics {
+        public String sql;
+        public long executions;
+        public long errors;
+        public long rowsFetched;
+        public double totalMillis;
+        public HistogramSnapshot latency;
+        
+        @Override
+        public String toString() {
+            return String.format("%-10.1f %-10d %-8d %-10.2f %-10.0f %-10.2f %-10d %-10.1f %s",
+                    totalMillis, executions, errors, latency.getAverageMillis(), latency.getPercentileMillis(0.95),
+                    latency.maxMillis, rowsFetched, executions == 0 ? 0.0 : (double) rowsFetched / executions, sql);
+        }
+    }
+}
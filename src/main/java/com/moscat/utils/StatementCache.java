@@ -0,0 +1,271 @@
+package com.moscat.utils;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LRU cache of prepared statements for one pooled connection, keyed by SQL text.
+ * 
+ * Callers receive a handle to the cached statement; closing the handle closes its open
+ * result set, clears its parameters, resets fetch size, max rows and query timeout to
+ * their values when prepared, and returns the statement to the cache instead of closing
+ * it, so settings made by one caller never reach the next. When the
+ * same SQL is already checked out on the connection a plain, uncached statement is
+ * prepared. Statements evicted from the cache are closed.
+ */
+public class StatementCache {
+    
+    // Shared counters across all pooled connections
+    private static final AtomicLong HITS = new AtomicLong();
+    private static final AtomicLong MISSES = new AtomicLong();
+    private static final AtomicLong BUSY = new AtomicLong();
+    private static final AtomicLong EVICTIONS = new AtomicLong();
+    private static final AtomicLong PREPARE_COUNT = new AtomicLong();
+    private static final AtomicLong PREPARE_NANOS = new AtomicLong();
+    
+    private final Connection physical;
+    private final int capacity;
+    private final LinkedHashMap<String, Entry> entries;
+    
+    /**
+     * Creates a statement cache
+     * 
+     * @param physical The physical connection statements are prepared on
+     * @param capacity Maximum number of cached statements
+     */
+    StatementCache(Connection physical, int capacity) {
+        this.physical = physical;
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+    
+    /**
+     * Gets a prepared statement for the SQL text, from the cache when possible
+     * 
+     * @param sql The SQL text
+     * @param autoGeneratedKeys Statement.RETURN_GENERATED_KEYS, Statement.NO_GENERATED_KEYS or -1 if not specified
+     * @return A prepared statement handle
+     * @throws SQLException If the statement cannot be prepared
+     */
+    PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException {
+        String key = autoGeneratedKeys == Statement.RETURN_GENERATED_KEYS ? "K:" + sql : sql;
+        
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            if (!entry.inUse) {
+                HITS.incrementAndGet();
+                entry.inUse = true;
+                return entry.handle();
+            }
+            // Same SQL already checked out on this connection
+            BUSY.incrementAndGet();
+            return doPrepare(sql, autoGeneratedKeys);
+        }
+        
+        MISSES.incrementAndGet();
+        PreparedStatement statement = doPrepare(sql, autoGeneratedKeys);
+        try {
+            entry = new Entry(key, statement);
+        } catch (SQLException e) {
+            closeQuietly(statement);
+            throw e;
+        }
+        entry.inUse = true;
+        entries.put(key, entry);
+        evictOverflow();
+        return entry.handle();
+    }
+    
+    private PreparedStatement doPrepare(String sql, int autoGeneratedKeys) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return autoGeneratedKeys < 0
+                    ? physical.prepareStatement(sql)
+                    : physical.prepareStatement(sql, autoGeneratedKeys);
+        } finally {
+            PREPARE_COUNT.incrementAndGet();
+            PREPARE_NANOS.addAndGet(System.nanoTime() - start);
+        }
+    }
+    
+    private void evictOverflow() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (entries.size() > capacity && iterator.hasNext()) {
+            Entry eldest = iterator.next();
+            if (eldest.inUse) {
+                continue;
+            }
+            iterator.remove();
+            EVICTIONS.incrementAndGet();
+            closeQuietly(eldest.statement);
+        }
+    }
+    
+    /**
+     * Closes all cached statements
+     */
+    void clear() {
+        for (Entry entry : entries.values()) {
+            closeQuietly(entry.statement);
+        }
+        entries.clear();
+    }
+    
+    private static void closeQuietly(Statement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            System.err.println("Error closing cached statement: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Gets the statement cache statistics across all pooled connections
+     * 
+     * @return The statistics
+     */
+    static Statistics getStatistics() {
+        Statistics stats = new Statistics();
+        stats.hits = HITS.get();
+        stats.misses = MISSES.get();
+        stats.busy = BUSY.get();
+        stats.evictions = EVICTIONS.get();
+        stats.prepareCount = PREPARE_COUNT.get();
+        stats.totalPrepareMillis = PREPARE_NANOS.get() / 1_000_000.0;
+        return stats;
+    }
+    
+    /**
+     * A cached statement
+     */
+    private class Entry {
+        private final String key;
+        private final PreparedStatement statement;
+        private final int fetchSize;
+        private final int maxRows;
+        private final int queryTimeout;
+        private boolean inUse;
+        
+        Entry(String key, PreparedStatement statement) throws SQLException {
+            this.key = key;
+            this.statement = statement;
+            this.fetchSize = statement.getFetchSize();
+            this.maxRows = statement.getMaxRows();
+            this.queryTimeout = statement.getQueryTimeout();
+        }
+        
+        /**
+         * Creates a handle that returns the statement to the cache when closed
+         */
+        PreparedStatement handle() {
+            boolean[] closed = new boolean[1];
+            return (PreparedStatement) Proxy.newProxyInstance(
+                    PreparedStatement.class.getClassLoader(),
+                    new Class<?>[] { PreparedStatement.class },
+                    (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "close":
+                                if (!closed[0]) {
+                                    closed[0] = true;
+                                    checkIn();
+                                }
+                                return null;
+                            case "isClosed":
+                                return closed[0] || statement.isClosed();
+                            case "equals":
+                                return proxy == args[0];
+                            case "hashCode":
+                                return System.identityHashCode(proxy);
+                            default:
+                                break;
+                        }
+                        if (closed[0]) {
+                            throw new SQLException("Statement is closed");
+                        }
+                        try {
+                            return method.invoke(statement, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    });
+        }
+        
+        private void checkIn() throws SQLException {
+            inUse = false;
+            if (entries.get(key) != this) {
+                // Evicted or replaced while checked out
+                statement.close();
+                return;
+            }
+            try {
+                ResultSet open = statement.getResultSet();
+                if (open != null) {
+                    open.close();
+                }
+                statement.clearParameters();
+                statement.clearBatch();
+                statement.clearWarnings();
+                // Max rows first: the driver rejects a fetch size above a max rows limit
+                if (statement.getMaxRows() != maxRows) {
+                    statement.setMaxRows(maxRows);
+                }
+                if (statement.getFetchSize() != fetchSize) {
+                    statement.setFetchSize(fetchSize);
+                }
+                if (statement.getQueryTimeout() != queryTimeout) {
+                    statement.setQueryTimeout(queryTimeout);
+                }
+            } catch (SQLException e) {
+                entries.remove(key);
+                closeQuietly(statement);
+                return;
+            }
+            evictOverflow();
+        }
+    }
+    
+    /**
+     * Snapshot of statement cache statistics
+     */
+    public static class Statistics {
+        public long hits;
+        public long misses;
+        public long busy;
+        public long evictions;
+        public long prepareCount;
+        public double totalPrepareMillis;
+        
+        /**
+         * Gets the share of cacheable prepares served from the cache
+         * 
+         * @return Hit ratio between 0 and 1
+         */
+        public double getHitRatio() {
+            long lookups = hits + misses + busy;
+            return lookups == 0 ? 0.0 : (double) hits / lookups;
+        }
+        
+        /**
+         * Gets the average time spent preparing a statement on the database
+         * 
+         * @return Average prepare time in milliseconds
+         */
+        public double getAveragePrepareMillis() {
+            return prepareCount == 0 ? 0.0 : totalPrepareMillis / prepareCount;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("hits=%d misses=%d busy=%d hitRatio=%.1f%% evictions=%d prepares=%d avgPrepare=%.3fms",
+                    hits, misses, busy, getHitRatio() * 100, evictions, prepareCount, getAveragePrepareMillis());
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,178 @@
+package com.moscat.utils;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.YearMonth;
+
+/**
+ * Half-open time range [start, end) for filtering timestamp columns.
+ * 
+ * Queries should use predicate() and bind() instead of wrapping the column in
+ * DATE(), YEAR() or MONTH(), so the database can seek the column's index rather
+ * than scanning the whole table.
+ */
+public final class TimeRange {
+    
+    private final LocalDateTime start;
+    private final LocalDateTime end;
+    
+    private TimeRange(LocalDateTime start, LocalDateTime end) {
+        if (start == null || end == null) {
+            throw new IllegalArgumentException("Time range bounds are required");
+        }
+        if (end.isBefore(start)) {
+            throw new IllegalArgumentException("Time range end " + end + " is before start " + start);
+        }
+        this.start = start;
+        this.end = end;
+    }
+    
+    /**
+     * Creates a range covering one calendar day
+     * 
+     * @param day The day
+     * @return The range from midnight to the next midnight
+     */
+    public static TimeRange ofDay(LocalDate day) {
+        return new TimeRange(day.atStartOfDay(), day.plusDays(1).atStartOfDay());
+    }
+    
+    /**
+     * Creates a range covering one calendar day
+     * 
+     * @param day The day in format "yyyy-MM-dd"
+     * @return The range from midnight to the next midnight
+     */
+    public static TimeRange ofDay(String day) {
+        return ofDay(DateUtils.parseLocalDate(day));
+    }
+    
+    /**
+     * Creates a range covering today
+     * 
+     * @return The range for the current day
+     */
+    public static TimeRange today() {
+        return ofDay(LocalDate.now());
+    }
+    
+    /**
+     * Creates a range covering whole calendar days
+     * 
+     * @param firstDay The first day, inclusive
+     * @param lastDay The last day, inclusive
+     * @return The range from the first day's midnight to the midnight after the last day
+     */
+    public static TimeRange ofDays(LocalDate firstDay, LocalDate lastDay) {
+        return new TimeRange(firstDay.atStartOfDay(), lastDay.plusDays(1).atStartOfDay());
+    }
+    
+    /**
+     * Creates a range covering one calendar month
+     * 
+     * @param year The year
+     * @param month The month (1-12)
+     * @return The range from the first of the month to the first of the next month
+     */
+    public static TimeRange ofMonth(int year, int month) {
+        return ofMonth(YearMonth.of(year, month));
+    }
+    
+    /**
+     * Creates a range covering one calendar month
+     * 
+     * @param month The month
+     * @return The range from the first of the month to the first of the next month
+     */
+    public static TimeRange ofMonth(YearMonth month) {
+        return new TimeRange(month.atDay(1).atStartOfDay(), month.plusMonths(1).atDay(1).atStartOfDay());
+    }
+    
+    /**
+     * Creates an arbitrary half-open range
+     * 
+     * @param start The start, inclusive
+     * @param end The end, exclusive
+     * @return The range
+     */
+    public static TimeRange between(LocalDateTime start, LocalDateTime end) {
+        return new TimeRange(start, end);
+    }
+    
+    /**
+     * Gets the SQL predicate restricting a column to this range
+     * 
+     * @param column The column name
+     * @return "column >= ? AND column < ?"
+     */
+    public String predicate(String column) {
+        return column + " >= ? AND " + column + " < ?";
+    }
+    
+    /**
+     * Binds the range bounds to the two parameters of predicate()
+     * 
+     * @param stmt The statement
+     * @param index The index of the first parameter
+     * @return The index of the parameter after the range
+     * @throws SQLException If a database error occurs
+     */
+    public int bind(PreparedStatement stmt, int index) throws SQLException {
+        stmt.setTimestamp(index, Timestamp.valueOf(start));
+        stmt.setTimestamp(index + 1, Timestamp.valueOf(end));
+        return index + 2;
+    }
+    
+    /**
+     * Checks whether a timestamp falls within this range
+     * 
+     * @param dateTime The timestamp
+     * @return True if start <= dateTime < end
+     */
+    public boolean contains(LocalDateTime dateTime) {
+        return !dateTime.isBefore(start) && dateTime.isBefore(end);
+    }
+    
+    /**
+     * Checks whether this range starts and ends at midnight
+     * 
+     * @return True if the range covers whole calendar days only
+     */
+    public boolean isWholeDays() {
+        return start.toLocalTime().equals(LocalTime.MIDNIGHT) && end.toLocalTime().equals(LocalTime.MIDNIGHT);
+    }
+    
+    public LocalDateTime getStart() {
+        return start;
+    }
+    
+    public LocalDateTime getEnd() {
+        return end;
+    }
+    
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof TimeRange)) {
+            return false;
+        }
+        TimeRange other = (TimeRange) obj;
+        return start.equals(other.start) && end.equals(other.end);
+    }
+    
+    @Override
+    public int hashCode() {
+        return 31 * start.hashCode() + end.hashCode();
+    }
+    
+    @Override
+    public String toString() {
+        return "[" + start + ", " + end + ")";
+    }
+}
\ No newline at end of file
@@ -0,0 +1,372 @@
+package com.moscat.utils;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thread-bound unit of work that lets nested controller calls share one
+ * connection and one database transaction.
+ * 
+ * While a unit of work is active on the current thread, DatabaseManager.getConnection()
+ * returns a shared handle to its connection instead of leasing a new one. On that
+ * handle close(), commit() and setAutoCommit() are no-ops and rollback() marks the
+ * unit as rollback-only, so existing controller code that manages its own
+ * transaction joins the outer one unchanged. The outermost execute() commits once,
+ * or rolls back if any participant failed. Resources that must be held until the
+ * transaction ends, such as account locks, are released with afterCompletion(); caches
+ * that must only see committed rows are updated with afterCommit().
+ */
+public final class UnitOfWork {
+    
+    private static final ThreadLocal<UnitOfWork> CURRENT = new ThreadLocal<>();
+    private static final ThreadLocal<Statistics> LAST = new ThreadLocal<>();
+    private static final Map<String, Totals> TOTALS = new ConcurrentHashMap<>();
+    
+    private final String name;
+    private final Connection connection;
+    private final Connection handle;
+    private final long startedAt = System.nanoTime();
+    private boolean rollbackOnly;
+    private int connectionRequests = 1;
+    private int roundTrips;
+    private List<Runnable> commitCallbacks;
+    private List<Runnable> completionCallbacks;
+    
+    /**
+     * Work executed inside a unit of work
+     * 
+     * @param <T> The result type
+     */
+    public interface Work<T> {
+        /**
+         * Runs the work
+         * 
+         * @param conn The shared connection; do not commit or close it
+         * @return The result
+         * @throws SQLException If a database error occurs
+         */
+        T run(Connection conn) throws SQLException;
+    }
+    
+    private UnitOfWork(String name, Connection connection) {
+        this.name = name;
+        this.connection = connection;
+        this.handle = (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class },
+                new SharedConnectionHandler());
+    }
+    
+    /**
+     * Runs work in the current unit of work, or in a new one if none is active.
+     * A new unit commits when the work returns normally and rolls back when it
+     * throws or when a participant called rollback(). A unit that rolls back never
+     * returns a result, so callers cannot mistake it for a committed one.
+     * 
+     * @param name Name used for the per-unit statistics
+     * @param work The work to run
+     * @param <T> The result type
+     * @return The result of the work
+     * @throws SQLException If a database error occurs, or the unit was marked rollback-only
+     *         and has been rolled back
+     */
+    public static <T> T execute(String name, Work<T> work) throws SQLException {
+        UnitOfWork current = CURRENT.get();
+        if (current != null) {
+            try {
+                return work.run(current.handle);
+            } catch (SQLException | RuntimeException | Error e) {
+                current.rollbackOnly = true;
+                throw e;
+            }
+        }
+        
+        Connection conn = DatabaseManager.leaseConnection();
+        UnitOfWork unit = new UnitOfWork(name, conn);
+        CURRENT.set(unit);
+        boolean committed = false;
+        try {
+            conn.setAutoCommit(false);
+            T result = work.run(unit.handle);
+            unit.roundTrips++;
+            if (unit.rollbackOnly) {
+                throw new SQLException("Unit of work " + name + " rolled back: marked rollback-only");
+            }
+            conn.commit();
+            committed = true;
+            return result;
+        } catch (SQLException | RuntimeException | Error e) {
+            try {
+                conn.rollback();
+            } catch (SQLException rollbackError) {
+                e.addSuppressed(rollbackError);
+            }
+            throw e;
+        } finally {
+            CURRENT.remove();
+            unit.complete(committed);
+            try {
+                conn.close();
+            } finally {
+                if (committed) {
+                    unit.runCallbacks(unit.commitCallbacks, false);
+                }
+                unit.runCallbacks(unit.completionCallbacks, true);
+            }
+        }
+    }
+    
+    /**
+     * Registers a callback to run on this thread after the outermost unit of work has
+     * committed; it is dropped if the unit rolls back. Commit callbacks run in order of
+     * registration, before completion callbacks. If no unit is active the callback runs
+     * immediately.
+     * 
+     * @param callback The callback
+     */
+    public static void afterCommit(Runnable callback) {
+        UnitOfWork current = CURRENT.get();
+        if (current == null) {
+            callback.run();
+            return;
+        }
+        if (current.commitCallbacks == null) {
+            current.commitCallbacks = new ArrayList<>();
+        }
+        current.commitCallbacks.add(callback);
+    }
+    
+    /**
+     * Registers a callback to run on this thread when the outermost unit of work has
+     * committed or rolled back. Callbacks run in reverse order of registration. If no
+     * unit is active the callback runs immediately.
+     * 
+     * @param callback The callback
+     */
+    public static void afterCompletion(Runnable callback) {
+        UnitOfWork current = CURRENT.get();
+        if (current == null) {
+            callback.run();
+            return;
+        }
+        if (current.completionCallbacks == null) {
+            current.completionCallbacks = new ArrayList<>();
+        }
+        current.completionCallbacks.add(callback);
+    }
+    
+    /**
+     * Checks whether a unit of work is active on the current thread
+     * 
+     * @return True if active, false otherwise
+     */
+    public static boolean isActive() {
+        return CURRENT.get() != null;
+    }
+    
+    /**
+     * Marks the current unit of work so that it rolls back instead of committing
+     */
+    public static void setRollbackOnly() {
+        UnitOfWork current = CURRENT.get();
+        if (current != null) {
+            current.rollbackOnly = true;
+        }
+    }
+    
+    /**
+     * Gets the shared connection handle of the active unit of work
+     * 
+     * @return The shared handle, or null if no unit is active
+     */
+    static Connection currentConnection() {
+        UnitOfWork current = CURRENT.get();
+        if (current == null) {
+            return null;
+        }
+        current.connectionRequests++;
+        return current.handle;
+    }
+    
+    /**
+     * Gets the statistics of the last unit of work completed on this thread
+     * 
+     * @return The statistics, or null if none has completed
+     */
+    public static Statistics lastStatistics() {
+        return LAST.get();
+    }
+    
+    /**
+     * Gets the aggregated statistics per unit-of-work name
+     * 
+     * @return Map of unit name to totals
+     */
+    public static Map<String, Totals> getTotals() {
+        return new TreeMap<>(TOTALS);
+    }
+    
+    private void runCallbacks(List<Runnable> callbacks, boolean reverse) {
+        if (callbacks == null) {
+            return;
+        }
+        for (int n = 0; n < callbacks.size(); n++) {
+            try {
+                callbacks.get(reverse ? callbacks.size() - 1 - n : n).run();
+            } catch (RuntimeException e) {
+                System.err.println("Error in " + name + " callback: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+    }
+    
+    private void complete(boolean committed) {
+        Statistics stats = new Statistics();
+        stats.name = name;
+        stats.committed = committed;
+        stats.roundTrips = roundTrips;
+        stats.connectionRequests = connectionRequests;
+        stats.elapsedMillis = (System.nanoTime() - startedAt) / 1_000_000.0;
+        LAST.set(stats);
+        TOTALS.computeIfAbsent(name, key -> new Totals()).add(stats);
+    }
+    
+    /**
+     * Invocation handler for the shared connection handle
+     */
+    private class SharedConnectionHandler implements InvocationHandler {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                case "commit":
+                case "setAutoCommit":
+                    // Owned by the unit of work
+                    return null;
+                case "getAutoCommit":
+                    return false;
+                case "rollback":
+                    if (args == null || !(args[0] instanceof Savepoint)) {
+                        rollbackOnly = true;
+                        return null;
+                    }
+                    break;
+                case "isClosed":
+                    return connection.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "UnitOfWork[" + name + "]";
+                default:
+                    break;
+            }
+            
+            try {
+                Object result = method.invoke(connection, args);
+                if (result instanceof Statement) {
+                    return countingStatement((Statement) result, method.getReturnType());
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+    
+    /**
+     * Wraps a statement so that every execution counts as a database round trip
+     * 
+     * @param statement The statement
+     * @param type The statement interface returned to the caller
+     * @return The wrapped statement
+     */
+    private Object countingStatement(Statement statement, Class<?> type) {
+        return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, (proxy, method, args) -> {
+            if (method.getName().startsWith("execute")) {
+                roundTrips++;
+            }
+            try {
+                return method.invoke(statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        });
+    }
+    
+    /**
+     * Statistics of one completed unit of work
+     */
+    public static class Statistics {
+        public String name;
+        public boolean committed;
+        public int roundTrips;
+        public int connectionRequests;
+        public double elapsedMillis;
+        
+        @Override
+        public String toString() {
+            return String.format("%s: %s, %d round trips, %d connection requests on 1 connection, %.2fms",
+                    name, committed ? "committed" : "rolled back", roundTrips, connectionRequests, elapsedMillis);
+        }
+    }
+    
+    /**
+     * Aggregated statistics for all units of work with the same name
+     */
+    public static class Totals {
+        private long units;
+        private long rolledBack;
+        private long roundTrips;
+        private long connectionRequests;
+        private int maxRoundTrips;
+        
+        synchronized void add(Statistics stats) {
+            units++;
+            if (!stats.committed) {
+                rolledBack++;
+            }
+            roundTrips += stats.roundTrips;
+            connectionRequests += stats.connectionRequests;
+            maxRoundTrips = Math.max(maxRoundTrips, stats.roundTrips);
+        }
+        
+        public synchronized long getUnits() {
+            return units;
+        }
+        
+        public synchronized long getRolledBack() {
+            return rolledBack;
+        }
+        
+        public synchronized double getAverageRoundTrips() {
+            return units == 0 ? 0.0 : (double) roundTrips / units;
+        }
+        
+        public synchronized double getAverageConnectionRequests() {
+            return units == 0 ? 0.0 : (double) connectionRequests / units;
+        }
+        
+        public synchronized int getMaxRoundTrips() {
+            return maxRoundTrips;
+        }
+        
+        @Override
+        public synchronized String toString() {
+            return String.format("units=%d rolledBack=%d avgRoundTrips=%.1f maxRoundTrips=%d avgConnectionRequests=%.1f",
+                    units, rolledBack, getAverageRoundTrips(), maxRoundTrips, getAverageConnectionRequests());
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,193 @@
+package com.moscat.views;
+
+import com.moscat.controllers.AsyncController;
+import com.moscat.controllers.TransactionController;
+import com.moscat.models.Transaction;
+import com.moscat.utils.DateUtils;
+import com.moscat.utils.Money;
+
+import javax.swing.SwingUtilities;
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Table model that loads a member's transaction history one page at a time as the user
+ * scrolls.
+ * 
+ * Only the pages scrolled through so far are held in memory. While more history exists,
+ * the last row is a placeholder. Painting the placeholder requests the next page
+ * (moscat.history.pageSize rows, default 100) on DbExecutor, and the rows are appended on
+ * the Event Dispatch Thread when the page arrives. Opening a history therefore costs one
+ * page, however long the history is. Call dispose() when the model is replaced, so that
+ * a page still loading is dropped.
+ */
+public class LazyTransactionTableModel extends AbstractTableModel {
+    
+    private static final long serialVersionUID = 1L;
+    
+    private static final String[] COLUMNS = {"Date", "Reference", "Type", "Amount", "Balance", "Description"};
+    private static final int PAGE_SIZE = Integer.getInteger("moscat.history.pageSize", 100);
+    
+    private final int memberId;
+    private final List<Transaction> rows = new ArrayList<>();
+    private TransactionController.Cursor cursor;
+    private boolean hasMore = true;
+    private String error;
+    private CompletableFuture<TransactionController.Page> pending;
+    private boolean disposed;
+    private Runnable pageListener;
+    
+    /**
+     * Constructor
+     * 
+     * @param memberId The member whose history is shown
+     */
+    public LazyTransactionTableModel(int memberId) {
+        this.memberId = memberId;
+    }
+    
+    /**
+     * Sets a listener called on the Event Dispatch Thread after each page loads or fails
+     * 
+     * @param pageListener The listener, or null
+     */
+    public void setPageListener(Runnable pageListener) {
+        this.pageListener = pageListener;
+    }
+    
+    /**
+     * Requests the next page unless one is loading or the history is complete
+     */
+    public void loadNextPage() {
+        if (disposed || pending != null || !hasMore || error != null) {
+            return;
+        }
+        pending = AsyncController.loadTransactionPage(memberId, cursor, PAGE_SIZE);
+        pending.whenComplete((page, failure) -> SwingUtilities.invokeLater(() -> pageLoaded(page, failure)));
+    }
+    
+    private void pageLoaded(TransactionController.Page page, Throwable failure) {
+        if (disposed) {
+            return;
+        }
+        pending = null;
+        int oldCount = getRowCount();
+        
+        if (failure != null) {
+            error = "Could not load more transactions";
+        } else {
+            rows.addAll(page.transactions);
+            if (page.next != null) {
+                cursor = page.next;
+            }
+            hasMore = page.hasMore && page.next != null;
+        }
+        
+        int newCount = getRowCount();
+        int changed = Math.min(oldCount, newCount);
+        if (changed > 0) {
+            fireTableRowsUpdated(changed - 1, changed - 1);
+        }
+        if (newCount > oldCount) {
+            fireTableRowsInserted(oldCount, newCount - 1);
+        } else if (newCount < oldCount) {
+            fireTableRowsDeleted(newCount, oldCount - 1);
+        }
+        
+        if (pageListener != null) {
+            pageListener.run();
+        }
+    }
+    
+    /**
+     * Stops loading; a page still in flight is discarded
+     */
+    public void dispose() {
+        disposed = true;
+        if (pending != null) {
+            pending.cancel(false);
+            pending = null;
+        }
+    }
+    
+    /**
+     * Gets the number of transactions loaded so far
+     * 
+     * @return Loaded transaction count
+     */
+    public int getLoadedCount() {
+        return rows.size();
+    }
+    
+    /**
+     * Checks whether the whole history has been loaded
+     * 
+     * @return True if no more pages exist, false otherwise
+     */
+    public boolean isComplete() {
+        return !hasMore;
+    }
+    
+    /**
+     * Gets the loaded transaction shown in a row
+     * 
+     * @param row The row index
+     * @return The transaction, or null for the placeholder row
+     */
+    public Transaction getTransactionAt(int row) {
+        return row < rows.size() ? rows.get(row) : null;
+    }
+    
+    @Override
+    public int getRowCount() {
+        return rows.size() + (hasMore ? 1 : 0);
+    }
+    
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+    
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+    
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return String.class;
+    }
+    
+    @Override
+    public Object getValueAt(int row, int column) {
+        if (row >= rows.size()) {
+            // Placeholder row: it is only painted once the user scrolls to the end
+            loadNextPage();
+            if (column != 0) {
+                return "";
+            }
+            return error != null ? error : "Loading...";
+        }
+        
+        Transaction transaction = rows.get(row);
+        switch (column) {
+            case 0:
+                return transaction.getTransactionDate() != null
+                        ? DateUtils.formatDateForDisplay(transaction.getTransactionDate()) : "";
+            case 1:
+                return transaction.getReferenceNumber();
+            case 2:
+                return transaction.getTransactionType();
+            case 3:
+                return Money.format(transaction.getAmountCents());
+            case 4:
+                return Money.format(transaction.getRunningBalanceCents());
+            case 5:
+                return transaction.getDescription();
+            default:
+                return null;
+        }
+    }
+}
\ No newline at end of file
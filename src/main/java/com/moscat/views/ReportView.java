@@ -1,8 +1,12 @@
 package com.moscat.views;
 
-import com.moscat.controllers.MemberController;
+import com.moscat.controllers.AsyncController;
+import com.moscat.controllers.CsvExporter;
 import com.moscat.controllers.ReportController;
 import com.moscat.models.Member;
+import com.moscat.utils.DateUtils;
+import com.moscat.utils.DbExecutor;
+import com.moscat.utils.TimeRange;
 import com.moscat.views.components.CustomButton;
 import com.moscat.views.components.CustomTextField;
 
@@ -13,9 +17,13 @@ import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.File;
+import java.nio.file.Paths;
+import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
  * View for generating and exporting reports
@@ -142,6 +150,17 @@ public class ReportView extends JPanel {
             }
         });
         
+        // Transaction export button
+        JButton transactionExportButton = new CustomButton("Transaction Export");
+        transactionExportButton.setAlignmentX(Component.LEFT_ALIGNMENT);
+        transactionExportButton.setMaximumSize(new Dimension(180, 35));
+        transactionExportButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                showTransactionExportOptions();
+            }
+        });
+        
         // Add buttons to panel with spacing
         panel.add(Box.createVerticalStrut(10));
         panel.add(memberReportButton);
@@ -153,6 +172,8 @@ public class ReportView extends JPanel {
         panel.add(loanReportButton);
         panel.add(Box.createVerticalStrut(10));
         panel.add(savingsReportButton);
+        panel.add(Box.createVerticalStrut(10));
+        panel.add(transactionExportButton);
         panel.add(Box.createVerticalGlue());
         
         return panel;
@@ -228,14 +249,18 @@ public class ReportView extends JPanel {
             public void actionPerformed(ActionEvent e) {
                 String memberNumber = memberNumberField.getText().trim();
                 if (!memberNumber.isEmpty()) {
-                    Member member = MemberController.getMemberByNumber(memberNumber);
-                    if (member != null) {
-                        memberNameLabel.setText(member.getFullName());
-                        generateButton.setEnabled(true);
-                    } else {
-                        memberNameLabel.setText("Member not found");
-                        generateButton.setEnabled(false);
-                    }
+                    memberNameLabel.setText("Searching...");
+                    generateButton.setEnabled(false);
+                    AsyncController.findMemberByNumber(memberNumber).whenComplete((member, error) ->
+                            SwingUtilities.invokeLater(() -> {
+                                if (member != null) {
+                                    memberNameLabel.setText(member.getFullName());
+                                    generateButton.setEnabled(true);
+                                } else {
+                                    memberNameLabel.setText(error != null ? "Search failed" : "Member not found");
+                                    generateButton.setEnabled(false);
+                                }
+                            }));
                 }
             }
         });
@@ -246,10 +271,16 @@ public class ReportView extends JPanel {
             public void actionPerformed(ActionEvent e) {
                 String memberNumber = memberNumberField.getText().trim();
                 if (!memberNumber.isEmpty()) {
-                    Member member = MemberController.getMemberByNumber(memberNumber);
-                    if (member != null) {
+                    ReportLoader loader = new ReportLoader(resultPanel, generateButton);
+                    loader.load(AsyncController.loadMemberReport(memberNumber, loader), data -> {
+                        Member member = data.member;
+                        if (member == null) {
+                            loader.showMessage("Member not found.");
+                            return;
+                        }
+                        
                         // Generate report
-                        JPanel reportPanel = ReportController.generateMemberReport(member);
+                        JPanel reportPanel = ReportController.buildMemberReport(data);
                         
                         // Clear result panel and add report
                         resultPanel.removeAll();
@@ -271,7 +302,7 @@ public class ReportView extends JPanel {
                         
                         resultPanel.revalidate();
                         resultPanel.repaint();
-                    }
+                    });
                 }
             }
         });
@@ -344,41 +375,44 @@ public class ReportView extends JPanel {
                     dateFormat.parse(date);
                     
                     // Generate report
-                    JPanel reportPanel = ReportController.generateDailyTransactionReport(date);
-                    
-                    // Clear result panel and add report
-                    resultPanel.removeAll();
-                    
-                    // Add export button
-                    JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
-                    JButton exportButton = new JButton("Export to PDF");
-                    JButton exportCsvButton = new JButton("Export to CSV");
-                    
-                    exportButton.addActionListener(new ActionListener() {
-                        @Override
-                        public void actionPerformed(ActionEvent e) {
-                            exportReport(reportPanel, "daily_transactions_" + date);
-                        }
-                    });
-                    
-                    exportCsvButton.addActionListener(new ActionListener() {
-                        @Override
-                        public void actionPerformed(ActionEvent e) {
-                            exportToCsv(reportPanel, "daily_transactions_" + date);
-                        }
+                    ReportLoader loader = new ReportLoader(resultPanel, generateButton);
+                    loader.load(AsyncController.loadDailyTransactionReport(date, loader), data -> {
+                        JPanel reportPanel = ReportController.buildDailyTransactionReport(data);
+                        
+                        // Clear result panel and add report
+                        resultPanel.removeAll();
+                        
+                        // Add export button
+                        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+                        JButton exportButton = new JButton("Export to PDF");
+                        JButton exportCsvButton = new JButton("Export to CSV");
+                        
+                        exportButton.addActionListener(new ActionListener() {
+                            @Override
+                            public void actionPerformed(ActionEvent e) {
+                                exportReport(reportPanel, "daily_transactions_" + date);
+                            }
+                        });
+                        
+                        exportCsvButton.addActionListener(new ActionListener() {
+                            @Override
+                            public void actionPerformed(ActionEvent e) {
+                                exportToCsv(reportPanel, "daily_transactions_" + date);
+                            }
+                        });
+                        
+                        buttonPanel.add(exportCsvButton);
+                        buttonPanel.add(exportButton);
+                        
+                        // Add to result panel
+                        resultPanel.add(new JScrollPane(reportPanel), BorderLayout.CENTER);
+                        resultPanel.add(buttonPanel, BorderLayout.SOUTH);
+                        
+                        resultPanel.revalidate();
+                        resultPanel.repaint();
                     });
                     
-                    buttonPanel.add(exportCsvButton);
-                    buttonPanel.add(exportButton);
-                    
-                    // Add to result panel
-                    resultPanel.add(new JScrollPane(reportPanel), BorderLayout.CENTER);
-                    resultPanel.add(buttonPanel, BorderLayout.SOUTH);
-                    
-                    resultPanel.revalidate();
-                    resultPanel.repaint();
-                    
-                } catch (Exception ex) {
+                } catch (ParseException ex) {
                     JOptionPane.showMessageDialog(parentFrame, 
                             "Invalid date format. Please use yyyy-MM-dd format.", 
                             "Date Error", 
@@ -476,39 +510,42 @@ public class ReportView extends JPanel {
                 int year = Integer.parseInt((String) yearComboBox.getSelectedItem());
                 
                 // Generate report
-                JPanel reportPanel = ReportController.generateMonthlyTransactionReport(year, month);
-                
-                // Clear result panel and add report
-                resultPanel.removeAll();
-                
-                // Add export button
-                JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
-                JButton exportButton = new JButton("Export to PDF");
-                JButton exportCsvButton = new JButton("Export to CSV");
-                
-                exportButton.addActionListener(new ActionListener() {
-                    @Override
-                    public void actionPerformed(ActionEvent e) {
-                        exportReport(reportPanel, "monthly_transactions_" + year + "_" + month);
-                    }
-                });
-                
-                exportCsvButton.addActionListener(new ActionListener() {
-                    @Override
-                    public void actionPerformed(ActionEvent e) {
-                        exportToCsv(reportPanel, "monthly_transactions_" + year + "_" + month);
-                    }
+                ReportLoader loader = new ReportLoader(resultPanel, generateButton);
+                loader.load(AsyncController.loadMonthlyTransactionReport(year, month, loader), data -> {
+                    JPanel reportPanel = ReportController.buildMonthlyTransactionReport(data);
+                    
+                    // Clear result panel and add report
+                    resultPanel.removeAll();
+                    
+                    // Add export button
+                    JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+                    JButton exportButton = new JButton("Export to PDF");
+                    JButton exportCsvButton = new JButton("Export to CSV");
+                    
+                    exportButton.addActionListener(new ActionListener() {
+                        @Override
+                        public void actionPerformed(ActionEvent e) {
+                            exportReport(reportPanel, "monthly_transactions_" + year + "_" + month);
+                        }
+                    });
+                    
+                    exportCsvButton.addActionListener(new ActionListener() {
+                        @Override
+                        public void actionPerformed(ActionEvent e) {
+                            exportToCsv(reportPanel, "monthly_transactions_" + year + "_" + month);
+                        }
+                    });
+                    
+                    buttonPanel.add(exportCsvButton);
+                    buttonPanel.add(exportButton);
+                    
+                    // Add to result panel
+                    resultPanel.add(new JScrollPane(reportPanel), BorderLayout.CENTER);
+                    resultPanel.add(buttonPanel, BorderLayout.SOUTH);
+                    
+                    resultPanel.revalidate();
+                    resultPanel.repaint();
                 });
-                
-                buttonPanel.add(exportCsvButton);
-                buttonPanel.add(exportButton);
-                
-                // Add to result panel
-                resultPanel.add(new JScrollPane(reportPanel), BorderLayout.CENTER);
-                resultPanel.add(buttonPanel, BorderLayout.SOUTH);
-                
-                resultPanel.revalidate();
-                resultPanel.repaint();
             }
         });
         
@@ -708,45 +745,165 @@ public class ReportView extends JPanel {
                 String period = (String) periodComboBox.getSelectedItem();
                 
                 // Generate report
-                JPanel reportPanel = ReportController.generateSavingsSummaryReport(reportType, period);
-                
-                // Clear result panel and add report
-                resultPanel.removeAll();
-                
-                // Add export button
-                JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
-                JButton exportButton = new JButton("Export to PDF");
-                JButton exportCsvButton = new JButton("Export to CSV");
-                
-                exportButton.addActionListener(new ActionListener() {
-                    @Override
-                    public void actionPerformed(ActionEvent e) {
-                        String filename = "savings_summary_" + 
-                                reportType.toLowerCase().replace(" ", "_") + "_" + 
-                                dateFormat.format(new Date());
-                        exportReport(reportPanel, filename);
-                    }
-                });
-                
-                exportCsvButton.addActionListener(new ActionListener() {
-                    @Override
-                    public void actionPerformed(ActionEvent e) {
-                        String filename = "savings_summary_" + 
-                                reportType.toLowerCase().replace(" ", "_") + "_" + 
-                                dateFormat.format(new Date());
-                        exportToCsv(reportPanel, filename);
-                    }
+                ReportLoader loader = new ReportLoader(resultPanel, generateButton);
+                loader.load(AsyncController.loadSavingsSummaryReport(reportType, period, loader), data -> {
+                    JPanel reportPanel = ReportController.buildSavingsSummaryReport(data);
+                    
+                    // Clear result panel and add report
+                    resultPanel.removeAll();
+                    
+                    // Add export button
+                    JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+                    JButton exportButton = new JButton("Export to PDF");
+                    JButton exportCsvButton = new JButton("Export to CSV");
+                    
+                    exportButton.addActionListener(new ActionListener() {
+                        @Override
+                        public void actionPerformed(ActionEvent e) {
+                            String filename = "savings_summary_" + 
+                                    reportType.toLowerCase().replace(" ", "_") + "_" + 
+                                    dateFormat.format(new Date());
+                            exportReport(reportPanel, filename);
+                        }
+                    });
+                    
+                    exportCsvButton.addActionListener(new ActionListener() {
+                        @Override
+                        public void actionPerformed(ActionEvent e) {
+                            String filename = "savings_summary_" + 
+                                    reportType.toLowerCase().replace(" ", "_") + "_" + 
+                                    dateFormat.format(new Date());
+                            exportToCsv(reportPanel, filename);
+                        }
+                    });
+                    
+                    buttonPanel.add(exportCsvButton);
+                    buttonPanel.add(exportButton);
+                    
+                    // Add to result panel
+                    resultPanel.add(new JScrollPane(reportPanel), BorderLayout.CENTER);
+                    resultPanel.add(buttonPanel, BorderLayout.SOUTH);
+                    
+                    resultPanel.revalidate();
+                    resultPanel.repaint();
                 });
+            }
+        });
+        
+        // Combine panels
+        JPanel combinedPanel = new JPanel(new BorderLayout());
+        combinedPanel.add(optionsPanel, BorderLayout.NORTH);
+        combinedPanel.add(resultPanel, BorderLayout.CENTER);
+        
+        reportContentPanel.add(combinedPanel, BorderLayout.CENTER);
+        reportContentPanel.revalidate();
+        reportContentPanel.repaint();
+    }
+    
+    /**
+     * Shows options for exporting the transactions of a date range to CSV. The export
+     * reads straight from the database rather than from a report table, so it covers
+     * every transaction in the range, archived or not.
+     */
+    private void showTransactionExportOptions() {
+        // Clear content panel
+        reportContentPanel.removeAll();
+        
+        // Create options panel
+        JPanel optionsPanel = new JPanel(new GridBagLayout());
+        optionsPanel.setBorder(new EmptyBorder(20, 20, 20, 20));
+        
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.insets = new Insets(5, 5, 5, 5);
+        gbc.anchor = GridBagConstraints.WEST;
+        
+        // Title
+        gbc.gridx = 0;
+        gbc.gridy = 0;
+        gbc.gridwidth = 2;
+        JLabel titleLabel = new JLabel("Transaction Export");
+        titleLabel.setFont(new Font("Arial", Font.BOLD, 16));
+        optionsPanel.add(titleLabel, gbc);
+        
+        // Date range
+        Calendar cal = Calendar.getInstance();
+        cal.set(Calendar.DAY_OF_MONTH, 1);
+        
+        gbc.gridx = 0;
+        gbc.gridy = 1;
+        gbc.gridwidth = 1;
+        optionsPanel.add(new JLabel("From Date:"), gbc);
+        
+        gbc.gridx = 1;
+        CustomTextField fromField = new CustomTextField(dateFormat.format(cal.getTime()));
+        fromField.setPreferredSize(new Dimension(150, 25));
+        optionsPanel.add(fromField, gbc);
+        
+        gbc.gridx = 0;
+        gbc.gridy = 2;
+        optionsPanel.add(new JLabel("To Date:"), gbc);
+        
+        gbc.gridx = 1;
+        CustomTextField toField = new CustomTextField(dateFormat.format(new Date()));
+        toField.setPreferredSize(new Dimension(150, 25));
+        optionsPanel.add(toField, gbc);
+        
+        gbc.gridx = 1;
+        gbc.gridy = 3;
+        JCheckBox gzipCheckBox = new JCheckBox("Compress (.csv.gz)");
+        optionsPanel.add(gzipCheckBox, gbc);
+        
+        // Export button
+        gbc.gridx = 0;
+        gbc.gridy = 4;
+        gbc.gridwidth = 2;
+        gbc.anchor = GridBagConstraints.CENTER;
+        JButton exportButton = new CustomButton("Export to CSV");
+        optionsPanel.add(exportButton, gbc);
+        
+        // Result panel shows progress and the outcome
+        JPanel resultPanel = new JPanel(new BorderLayout());
+        resultPanel.setBorder(new TitledBorder("Export"));
+        
+        // Export button action
+        exportButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                String from = fromField.getText().trim();
+                String to = toField.getText().trim();
+                TimeRange range;
+                try {
+                    // Validate date format
+                    dateFormat.parse(from);
+                    dateFormat.parse(to);
+                    range = TimeRange.ofDays(DateUtils.parseLocalDate(from), DateUtils.parseLocalDate(to));
+                } catch (ParseException | RuntimeException ex) {
+                    JOptionPane.showMessageDialog(parentFrame, 
+                            "Invalid date range. Please use yyyy-MM-dd format, From Date first.", 
+                            "Date Error", 
+                            JOptionPane.WARNING_MESSAGE);
+                    return;
+                }
                 
-                buttonPanel.add(exportCsvButton);
-                buttonPanel.add(exportButton);
+                boolean gzip = gzipCheckBox.isSelected();
+                String extension = gzip ? ".csv.gz" : ".csv";
+                JFileChooser fileChooser = new JFileChooser();
+                fileChooser.setDialogTitle("Export Transactions to CSV");
+                fileChooser.setSelectedFile(new File("transactions_" + from + "_" + to + extension));
+                if (fileChooser.showSaveDialog(parentFrame) != JFileChooser.APPROVE_OPTION) {
+                    return;
+                }
                 
-                // Add to result panel
-                resultPanel.add(new JScrollPane(reportPanel), BorderLayout.CENTER);
-                resultPanel.add(buttonPanel, BorderLayout.SOUTH);
+                // Ensure file has the right extension
+                String filePath = fileChooser.getSelectedFile().getAbsolutePath();
+                if (!filePath.toLowerCase().endsWith(extension)) {
+                    filePath += extension;
+                }
                 
-                resultPanel.revalidate();
-                resultPanel.repaint();
+                ReportLoader loader = new ReportLoader(resultPanel, exportButton);
+                loader.load(AsyncController.exportTransactions(range, Paths.get(filePath), gzip, loader), result ->
+                        loader.showMessage(String.format("Exported %,d transactions to %s.", result.rows,
+                                result.file)));
             }
         });
         
@@ -760,6 +917,102 @@ public class ReportView extends JPanel {
         reportContentPanel.repaint();
     }
     
+    /**
+     * Shows loading progress in a result panel while report data is loaded off the
+     * Event Dispatch Thread, with a button to cancel the load
+     */
+    private class ReportLoader implements DbExecutor.ProgressListener {
+        private final JPanel resultPanel;
+        private final JButton generateButton;
+        private final JLabel statusLabel = new JLabel("Loading report...");
+        private final JProgressBar progressBar = new JProgressBar();
+        private CompletableFuture<?> loading;
+        
+        /**
+         * Replaces the result panel content with a progress indicator
+         * 
+         * @param resultPanel Panel that will show the report
+         * @param generateButton Button disabled while loading
+         */
+        ReportLoader(JPanel resultPanel, JButton generateButton) {
+            this.resultPanel = resultPanel;
+            this.generateButton = generateButton;
+            
+            progressBar.setIndeterminate(true);
+            progressBar.setPreferredSize(new Dimension(250, 20));
+            
+            JButton cancelButton = new JButton("Cancel");
+            cancelButton.addActionListener(new ActionListener() {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    if (loading != null) {
+                        loading.cancel(false);
+                    }
+                }
+            });
+            
+            JPanel progressPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 10, 20));
+            progressPanel.add(statusLabel);
+            progressPanel.add(progressBar);
+            progressPanel.add(cancelButton);
+            
+            generateButton.setEnabled(false);
+            resultPanel.removeAll();
+            resultPanel.add(progressPanel, BorderLayout.NORTH);
+            resultPanel.revalidate();
+            resultPanel.repaint();
+        }
+        
+        /**
+         * Shows the report once its data has loaded
+         * 
+         * @param future The data being loaded
+         * @param onLoaded Builds and shows the report; called on the Event Dispatch Thread
+         * @param <T> The report data type
+         */
+        <T> void load(CompletableFuture<T> future, Consumer<T> onLoaded) {
+            loading = future;
+            future.whenComplete((data, error) -> SwingUtilities.invokeLater(() -> {
+                generateButton.setEnabled(true);
+                if (future.isCancelled()) {
+                    showMessage("Report generation cancelled.");
+                } else if (error != null) {
+                    showMessage("Report could not be generated.");
+                    JOptionPane.showMessageDialog(parentFrame,
+                            "Error generating report: " + error.getMessage(),
+                            "Report Error",
+                            JOptionPane.ERROR_MESSAGE);
+                } else {
+                    onLoaded.accept(data);
+                }
+            }));
+        }
+        
+        /**
+         * Replaces the result panel content with a message
+         * 
+         * @param message The message
+         */
+        void showMessage(String message) {
+            resultPanel.removeAll();
+            resultPanel.add(new JLabel(message, SwingConstants.CENTER), BorderLayout.NORTH);
+            resultPanel.revalidate();
+            resultPanel.repaint();
+        }
+        
+        @Override
+        public void onProgress(int done, int total, String message) {
+            statusLabel.setText(message + "...");
+            if (total > 0) {
+                progressBar.setIndeterminate(false);
+                progressBar.setMaximum(total);
+                progressBar.setValue(done);
+            } else {
+                progressBar.setIndeterminate(true);
+            }
+        }
+    }
+    
     /**
      * Exports a report panel to PDF
      * 
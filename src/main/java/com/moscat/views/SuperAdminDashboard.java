@@ -27,14 +27,13 @@ import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
 import javax.swing.Timer;
 import javax.swing.border.EmptyBorder;
 import javax.swing.border.TitledBorder;
 
+import com.moscat.controllers.AsyncController;
 import com.moscat.controllers.AuthController;
-import com.moscat.controllers.DormantAccountController;
-import com.moscat.controllers.MemberController;
-import com.moscat.controllers.TransactionController;
 import com.moscat.models.User;
 import com.moscat.utils.Constants;
 
@@ -144,28 +143,44 @@ public class SuperAdminDashboard extends JFrame {
             TitledBorder.TOP
         ));
         
-        // Get statistics from controllers
-        int memberCount = MemberController.getMemberCount();
-        double totalSavingsBalance = MemberController.getTotalSavingsBalance();
-        int activeLoanCount = TransactionController.getActiveLoanCount();
-        int dormantAccountsCount = DormantAccountController.getDormantAccountCount();
+        // Values are filled in once the statistics have loaded
+        JLabel memberCountLabel = new JLabel("...");
+        JLabel totalSavingsLabel = new JLabel("...");
+        JLabel activeLoansLabel = new JLabel("...");
+        JLabel dormantAccountsLabel = new JLabel("...");
         
         // Members panel
-        JPanel membersPanel = createSummaryCard("Total Members", String.valueOf(memberCount), new Color(41, 128, 185));
+        JPanel membersPanel = createSummaryCard("Total Members", memberCountLabel, new Color(41, 128, 185));
         panel.add(membersPanel);
         
         // Total Savings panel
-        JPanel savingsPanel = createSummaryCard("Total Savings", String.format("₱%.2f", totalSavingsBalance), new Color(39, 174, 96));
+        JPanel savingsPanel = createSummaryCard("Total Savings", totalSavingsLabel, new Color(39, 174, 96));
         panel.add(savingsPanel);
         
         // Active Loans panel
-        JPanel loansPanel = createSummaryCard("Active Loans", String.valueOf(activeLoanCount), new Color(211, 84, 0));
+        JPanel loansPanel = createSummaryCard("Active Loans", activeLoansLabel, new Color(211, 84, 0));
         panel.add(loansPanel);
         
         // Dormant Accounts panel
-        JPanel dormantPanel = createSummaryCard("Dormant Accounts", String.valueOf(dormantAccountsCount), new Color(192, 57, 43));
+        JPanel dormantPanel = createSummaryCard("Dormant Accounts", dormantAccountsLabel, new Color(192, 57, 43));
         panel.add(dormantPanel);
         
+        // Load statistics off the Event Dispatch Thread
+        AsyncController.loadDashboardSummary().whenComplete((summary, error) -> SwingUtilities.invokeLater(() -> {
+            if (error != null) {
+                System.err.println("Error loading dashboard summary: " + error.getMessage());
+                memberCountLabel.setText("N/A");
+                totalSavingsLabel.setText("N/A");
+                activeLoansLabel.setText("N/A");
+                dormantAccountsLabel.setText("N/A");
+                return;
+            }
+            memberCountLabel.setText(String.valueOf(summary.memberCount));
+            totalSavingsLabel.setText(String.format("₱%.2f", summary.totalSavingsBalance));
+            activeLoansLabel.setText(String.valueOf(summary.activeLoanCount));
+            dormantAccountsLabel.setText(String.valueOf(summary.dormantAccountCount));
+        }));
+        
         return panel;
     }
     
@@ -173,11 +188,11 @@ public class SuperAdminDashboard extends JFrame {
      * Creates a summary card with title, value, and color
      * 
      * @param title The card title
-     * @param value The value to display
+     * @param valueLabel The label displaying the value
      * @param color The card color
      * @return The summary card panel
      */
-    private JPanel createSummaryCard(String title, String value, Color color) {
+    private JPanel createSummaryCard(String title, JLabel valueLabel, Color color) {
         JPanel panel = new JPanel();
         panel.setLayout(new BoxLayout(panel, BoxLayout.Y_AXIS));
         panel.setBorder(BorderFactory.createCompoundBorder(
@@ -190,7 +205,6 @@ public class SuperAdminDashboard extends JFrame {
         titleLabel.setFont(new Font("Arial", Font.BOLD, 14));
         titleLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
         
-        JLabel valueLabel = new JLabel(value);
         valueLabel.setFont(new Font("Arial", Font.BOLD, 24));
         valueLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
         valueLabel.setForeground(color);
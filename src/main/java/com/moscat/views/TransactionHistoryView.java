@@ -1,8 +1,15 @@
 package com.moscat.views;
 
+import com.moscat.controllers.AsyncController;
+import com.moscat.models.Member;
+import com.moscat.views.components.CustomButton;
+import com.moscat.views.components.CustomTextField;
+
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 
 /**
  * View for transaction history
@@ -10,6 +17,12 @@ import java.awt.*;
 public class TransactionHistoryView extends JPanel {
     
     private JFrame parentFrame;
+    private CustomTextField memberNumberField;
+    private JButton searchButton;
+    private JTable historyTable;
+    private JLabel statusLabel;
+    private LazyTransactionTableModel historyModel;
+    private String memberName;
     
     /**
      * Constructor
@@ -36,16 +49,92 @@ public class TransactionHistoryView extends JPanel {
         titleLabel.setFont(new Font("Arial", Font.BOLD, 18));
         headerPanel.add(titleLabel, BorderLayout.WEST);
         
-        // Create content panel with placeholder message
+        // Create search panel
+        JPanel searchPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        searchPanel.add(new JLabel("Member Number:"));
+        memberNumberField = new CustomTextField();
+        memberNumberField.setPreferredSize(new Dimension(150, 25));
+        searchPanel.add(memberNumberField);
+        searchButton = new CustomButton("Show History");
+        searchPanel.add(searchButton);
+        headerPanel.add(searchPanel, BorderLayout.EAST);
+        
+        ActionListener searchAction = new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                searchMember();
+            }
+        };
+        searchButton.addActionListener(searchAction);
+        memberNumberField.addActionListener(searchAction);
+        
+        // Create history table; rows are loaded page by page as the user scrolls
+        historyTable = new JTable();
+        historyTable.setFillsViewportHeight(true);
+        historyTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        
         JPanel contentPanel = new JPanel(new BorderLayout());
-        JLabel placeholderLabel = new JLabel("Transaction history functionality will be implemented in future updates.");
-        placeholderLabel.setHorizontalAlignment(SwingConstants.CENTER);
-        placeholderLabel.setFont(new Font("Arial", Font.PLAIN, 14));
+        contentPanel.add(new JScrollPane(historyTable), BorderLayout.CENTER);
         
-        contentPanel.add(placeholderLabel, BorderLayout.CENTER);
+        statusLabel = new JLabel("Enter a member number to view the transaction history.");
+        statusLabel.setBorder(new EmptyBorder(10, 0, 0, 0));
+        contentPanel.add(statusLabel, BorderLayout.SOUTH);
         
         // Add components to main panel
         add(headerPanel, BorderLayout.NORTH);
         add(contentPanel, BorderLayout.CENTER);
     }
+    
+    /**
+     * Looks up the member and shows the first page of their history
+     */
+    private void searchMember() {
+        String memberNumber = memberNumberField.getText().trim();
+        if (memberNumber.isEmpty()) {
+            return;
+        }
+        
+        statusLabel.setText("Searching...");
+        searchButton.setEnabled(false);
+        AsyncController.findMemberByNumber(memberNumber).whenComplete((member, error) ->
+                SwingUtilities.invokeLater(() -> {
+                    searchButton.setEnabled(true);
+                    if (member != null) {
+                        showHistory(member);
+                    } else {
+                        statusLabel.setText(error != null ? "Search failed" : "Member not found");
+                    }
+                }));
+    }
+    
+    /**
+     * Replaces the table contents with a member's history
+     * 
+     * @param member The member
+     */
+    private void showHistory(Member member) {
+        if (historyModel != null) {
+            historyModel.dispose();
+        }
+        
+        memberName = member.getFullName();
+        historyModel = new LazyTransactionTableModel(member.getId());
+        historyModel.setPageListener(this::updateStatus);
+        historyTable.setModel(historyModel);
+        historyModel.loadNextPage();
+        statusLabel.setText(memberName + ": loading...");
+    }
+    
+    /**
+     * Shows how much of the history has been loaded
+     */
+    private void updateStatus() {
+        int loaded = historyModel.getLoadedCount();
+        if (historyModel.isComplete()) {
+            statusLabel.setText(memberName + ": " + loaded + (loaded == 1 ? " transaction" : " transactions"));
+        } else {
+            statusLabel.setText(memberName + ": showing the latest " + loaded
+                    + " transactions, scroll down for older ones");
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,10 @@
+-- Progress of bulk history imports. A row is updated in the same database transaction as
+-- each committed chunk, so an interrupted import resumes after the last committed row.
+
+CREATE TABLE IF NOT EXISTS import_checkpoints (
+    source_name VARCHAR(255) PRIMARY KEY,
+    source_checksum VARCHAR(16) NOT NULL,
+    total_rows INT NOT NULL,
+    rows_committed INT NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
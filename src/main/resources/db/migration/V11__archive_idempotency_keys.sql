@@ -0,0 +1,4 @@
+-- Archived transactions keep their idempotency keys. The hot table's unique index does not
+-- cover them, so key lookups read all_transactions and this index answers the archive half.
+
+CREATE UNIQUE INDEX IF NOT EXISTS idx_transactions_archive_idempotency_key ON transactions_archive(idempotency_key);
@@ -0,0 +1,29 @@
+-- Secondary indexes for the hot query paths.
+
+-- Member statements, activity checks and last transaction date
+CREATE INDEX IF NOT EXISTS idx_transactions_member_date ON transactions(member_id, transaction_date);
+
+-- Account history ordered by date
+CREATE INDEX IF NOT EXISTS idx_transactions_account_date ON transactions(account_id, transaction_date);
+
+-- Daily and monthly summaries, date range reports
+CREATE INDEX IF NOT EXISTS idx_transactions_date ON transactions(transaction_date);
+
+-- Next unpaid installment, remaining balance and paid totals per loan
+CREATE INDEX IF NOT EXISTS idx_loan_amortization_loan_status_date ON loan_amortization(loan_id, payment_status, payment_date);
+
+-- Overdue installment scan
+CREATE INDEX IF NOT EXISTS idx_loan_amortization_status_date ON loan_amortization(payment_status, payment_date);
+
+-- Loan counts and balances by status, member loans by status
+CREATE INDEX IF NOT EXISTS idx_loans_status ON loans(status);
+CREATE INDEX IF NOT EXISTS idx_loans_member_status ON loans(member_id, status);
+
+-- Members by status and dormancy candidates
+CREATE INDEX IF NOT EXISTS idx_members_status_activity ON members(status, last_activity_date);
+
+-- Dormant account lists and counts
+CREATE INDEX IF NOT EXISTS idx_dormant_accounts_status ON dormant_accounts(dormant_status, dormant_since);
+
+-- Effective interest setting lookup
+CREATE INDEX IF NOT EXISTS idx_interest_settings_effective ON interest_settings(effective_date);
@@ -0,0 +1,34 @@
+-- Columns and tables the controllers use that the baseline schema did not create.
+
+-- User roles, status and salted passwords
+ALTER TABLE users ADD COLUMN IF NOT EXISTS salt VARCHAR(100);
+ALTER TABLE users ADD COLUMN IF NOT EXISTS role VARCHAR(30) DEFAULT 'Super Administrator';
+ALTER TABLE users ADD COLUMN IF NOT EXISTS status VARCHAR(20) DEFAULT 'Active';
+ALTER TABLE users ADD COLUMN IF NOT EXISTS is_active BOOLEAN DEFAULT TRUE;
+
+-- Who entered a transaction, separate from who processed it
+ALTER TABLE transactions ADD COLUMN IF NOT EXISTS transaction_by VARCHAR(50);
+
+-- Outstanding principal per loan
+ALTER TABLE loans ADD COLUMN IF NOT EXISTS remaining_balance DECIMAL(15,2) DEFAULT 0.00;
+
+-- Savings accounts, one per member
+CREATE TABLE IF NOT EXISTS savings_accounts (
+    id INT PRIMARY KEY AUTO_INCREMENT,
+    member_id INT NOT NULL,
+    account_number VARCHAR(50) UNIQUE,
+    savings_balance DECIMAL(15,2) DEFAULT 0.00,
+    interest_earned DECIMAL(15,2) DEFAULT 0.00,
+    status VARCHAR(20) DEFAULT 'Active',
+    open_date DATE,
+    last_activity_date DATE,
+    FOREIGN KEY (member_id) REFERENCES members(id) ON DELETE CASCADE
+);
+
+CREATE UNIQUE INDEX IF NOT EXISTS idx_savings_accounts_member ON savings_accounts(member_id);
+
+-- Open a savings account for every existing member, carrying over the balance
+INSERT INTO savings_accounts (member_id, account_number, savings_balance, interest_earned, status, open_date, last_activity_date)
+SELECT m.id, m.member_number, m.savings_balance, m.interest_earned, 'Active', m.join_date, m.last_activity_date
+FROM members m
+WHERE NOT EXISTS (SELECT 1 FROM savings_accounts s WHERE s.member_id = m.id);
@@ -0,0 +1,6 @@
+-- Client-supplied idempotency keys, so a retried posting is recorded only once.
+
+ALTER TABLE transactions ADD COLUMN IF NOT EXISTS idempotency_key VARCHAR(64);
+
+-- NULL keys are allowed any number of times; a non-NULL key only once
+CREATE UNIQUE INDEX IF NOT EXISTS idx_transactions_idempotency_key ON transactions(idempotency_key);
@@ -0,0 +1,7 @@
+-- Transaction reference numbers, reserved in blocks by ReferenceNumberGenerator.
+-- INCREMENT BY must match ReferenceNumberGenerator.BLOCK_SIZE.
+
+CREATE SEQUENCE IF NOT EXISTS transaction_reference_seq START WITH 1 INCREMENT BY 1000;
+
+-- Lookups of a posting by the reference printed on the passbook or receipt
+CREATE INDEX IF NOT EXISTS idx_transactions_reference_number ON transactions(reference_number);
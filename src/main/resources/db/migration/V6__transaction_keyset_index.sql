@@ -0,0 +1,3 @@
+-- Passbook history pages newest first, keyed on (transaction_date, id) per member.
+
+CREATE INDEX IF NOT EXISTS idx_transactions_member_date_id ON transactions(member_id, transaction_date DESC, id DESC);
@@ -0,0 +1,21 @@
+-- Per-day, per-type totals kept up to date by every posting, so daily and monthly
+-- summaries read at most one row per type and day instead of scanning transactions.
+
+CREATE TABLE IF NOT EXISTS transaction_daily_totals (
+    summary_date DATE NOT NULL,
+    transaction_type VARCHAR(20) NOT NULL,
+    total_amount DECIMAL(15,2) NOT NULL DEFAULT 0.00,
+    transaction_count INT NOT NULL DEFAULT 0,
+    min_amount DECIMAL(15,2),
+    max_amount DECIMAL(15,2),
+    PRIMARY KEY (summary_date, transaction_type)
+);
+
+-- Backfill from the transactions recorded before this version
+DELETE FROM transaction_daily_totals;
+
+INSERT INTO transaction_daily_totals (summary_date, transaction_type, total_amount, transaction_count,
+        min_amount, max_amount)
+    SELECT CAST(transaction_date AS DATE), transaction_type, SUM(amount), COUNT(*), MIN(amount), MAX(amount)
+    FROM transactions
+    GROUP BY CAST(transaction_date AS DATE), transaction_type;
@@ -0,0 +1,17 @@
+-- Month-end savings balance of every member, written by the month-end snapshot job.
+-- Historical balance queries start from the nearest snapshot and replay at most one
+-- month of transactions.
+
+CREATE TABLE IF NOT EXISTS member_balance_snapshots (
+    member_id INT NOT NULL,
+    period_end DATE NOT NULL,
+    closing_balance DECIMAL(15,2) NOT NULL,
+    interest_earned DECIMAL(15,2) NOT NULL DEFAULT 0.00,
+    transaction_count INT NOT NULL DEFAULT 0,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (member_id, period_end),
+    FOREIGN KEY (member_id) REFERENCES members(id) ON DELETE CASCADE
+);
+
+-- Dropping the snapshots of a month and every later month after a backdated posting
+CREATE INDEX IF NOT EXISTS idx_member_balance_snapshots_period_end ON member_balance_snapshots(period_end);
@@ -0,0 +1,41 @@
+-- Cold storage for transactions older than the archive horizon. Rows keep their IDs
+-- and are moved, never copied, so each transaction is in exactly one of the tables.
+
+CREATE TABLE IF NOT EXISTS transactions_archive (
+    id INT PRIMARY KEY,
+    member_id INT NOT NULL,
+    account_id INT DEFAULT 0,
+    reference_number VARCHAR(50),
+    transaction_type VARCHAR(20) NOT NULL,
+    amount DECIMAL(15,2) NOT NULL,
+    running_balance DECIMAL(15,2) DEFAULT 0.00,
+    transaction_date DATETIME,
+    description TEXT,
+    processed_by VARCHAR(50),
+    transaction_by VARCHAR(50),
+    idempotency_key VARCHAR(64),
+    archived_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    FOREIGN KEY (member_id) REFERENCES members(id) ON DELETE CASCADE
+);
+
+CREATE INDEX IF NOT EXISTS idx_transactions_archive_member_date_id ON transactions_archive(member_id, transaction_date DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_transactions_archive_account_date ON transactions_archive(account_id, transaction_date);
+CREATE INDEX IF NOT EXISTS idx_transactions_archive_date ON transactions_archive(transaction_date);
+
+-- Transactions dated before archived_before may be in the archive; NULL while nothing is
+CREATE TABLE IF NOT EXISTS transaction_archive_state (
+    id INT PRIMARY KEY,
+    archived_before TIMESTAMP
+);
+
+MERGE INTO transaction_archive_state KEY (id) VALUES (1, NULL);
+
+-- Hot and archived transactions together, for queries that reach past the watermark
+CREATE OR REPLACE VIEW all_transactions AS
+    SELECT id, member_id, account_id, reference_number, transaction_type, amount, running_balance,
+            transaction_date, description, processed_by, transaction_by, idempotency_key
+    FROM transactions
+    UNION ALL
+    SELECT id, member_id, account_id, reference_number, transaction_type, amount, running_balance,
+            transaction_date, description, processed_by, transaction_by, idempotency_key
+    FROM transactions_archive;
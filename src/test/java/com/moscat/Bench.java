@@ -0,0 +1,29 @@
+package com.moscat;
+
+import org.junit.Assume;
+
+/**
+ * Opt-in benchmarks. They build large tables or assert on wall-clock time, so the default
+ * build skips them; run with -Dmoscat.bench=true to include them.
+ */
+public final class Bench {
+    
+    private Bench() {
+    }
+    
+    /**
+     * Checks whether benchmarks are enabled, e.g. to size test data
+     * 
+     * @return True if run with -Dmoscat.bench=true
+     */
+    public static boolean isEnabled() {
+        return Boolean.getBoolean("moscat.bench");
+    }
+    
+    /**
+     * Skips the calling test unless benchmarks are enabled
+     */
+    public static void assumeEnabled() {
+        Assume.assumeTrue("Benchmark; run with -Dmoscat.bench=true", isEnabled());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,103 @@
+package com.moscat;
+
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.moscat.controllers.MemberController;
+import com.moscat.models.Member;
+import com.moscat.utils.DatabaseManager;
+
+/**
+ * Shared in-memory test database. Surefire runs the tests with moscat.db.mode=memory,
+ * so DatabaseManager serves a private H2 database migrated to the latest schema. Tests
+ * share it and keep apart by creating their own members.
+ */
+public final class TestDatabase {
+    
+    private static final AtomicInteger MEMBER_NUMBERS = new AtomicInteger();
+    private static boolean initialized;
+    
+    private TestDatabase() {
+    }
+    
+    /**
+     * Migrates the shared database on first use
+     */
+    public static synchronized void initialize() {
+        if (!initialized) {
+            DatabaseManager.getInstance().initializeDatabase();
+            initialized = true;
+        }
+    }
+    
+    /**
+     * Creates an active member with a savings account
+     * 
+     * @param lastName The member's last name
+     * @return The member ID
+     */
+    public static int createMember(String lastName) {
+        initialize();
+        Member member = new Member();
+        member.setMemberNumber(String.format("TEST-%06d", MEMBER_NUMBERS.incrementAndGet()));
+        member.setFirstName("Test");
+        member.setLastName(lastName);
+        member.setAge(30);
+        member.setBirthdate(LocalDate.of(1995, 1, 1));
+        member.setPresentAddress("La Trinidad");
+        member.setPermanentAddress("La Trinidad");
+        member.setContactNumber("09170000000");
+        member.setEmploymentStatus("Employed");
+        member.setGrossMonthlyIncomeCents(3_000_000);
+        member.setAverageNetMonthlyIncomeCents(2_500_000);
+        assertTrue("Member was not created", MemberController.createMember(member));
+        return member.getId();
+    }
+    
+    /**
+     * Gets the savings balance of a member's account
+     * 
+     * @param memberId The member ID
+     * @return The balance in centavos
+     * @throws SQLException If a database error occurs
+     */
+    public static long getSavingsBalanceCents(int memberId) throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(
+                     "SELECT savings_balance FROM savings_accounts WHERE member_id = ?")) {
+            stmt.setInt(1, memberId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    throw new SQLException("Member " + memberId + " has no savings account");
+                }
+                return rs.getBigDecimal(1).movePointRight(2).longValueExact();
+            }
+        }
+    }
+    
+    /**
+     * Gets the H2 query plan of a statement
+     * 
+     * @param sql The statement; parameters are left unbound
+     * @return The plan text
+     * @throws SQLException If the statement cannot be explained
+     */
+    public static String explain(String sql) throws SQLException {
+        initialize();
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("EXPLAIN " + sql);
+             ResultSet rs = stmt.executeQuery()) {
+            StringBuilder plan = new StringBuilder();
+            while (rs.next()) {
+                plan.append(rs.getString(1)).append('\n');
+            }
+            return plan.toString();
+        }
+    }
+}
\ No newline at end of file
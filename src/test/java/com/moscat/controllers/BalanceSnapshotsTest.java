@@ -0,0 +1,97 @@
+package com.moscat.controllers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.moscat.TestDatabase;
+import com.moscat.models.Transaction;
+
+/**
+ * Tests that a back-dated posting drops only its own member's snapshots and that the
+ * month-end job refills them from that member's last remaining month
+ */
+public class BalanceSnapshotsTest {
+    
+    private static Transaction deposit(int memberId, long amountCents, YearMonth month) {
+        Transaction transaction = new Transaction();
+        transaction.setMemberId(memberId);
+        transaction.setAccountId(memberId);
+        transaction.setTransactionType("SAVINGS_DEPOSIT");
+        transaction.setAmountCents(amountCents);
+        transaction.setDescription("Back-dated deposit");
+        transaction.setProcessedBy("test");
+        transaction.setTransactionDate(month.atDay(10).atTime(9, 0));
+        return transaction;
+    }
+    
+    private static void record(Transaction... transactions) {
+        TransactionController.BatchResult result = TransactionController.recordTransactions(Arrays.asList(transactions));
+        assertTrue("Failures: " + result.failures, result.isSuccessful());
+    }
+    
+    private static long[] closingBalances(int memberId, YearMonth from, YearMonth to) throws SQLException {
+        List<BalanceSnapshots.Snapshot> snapshots = BalanceSnapshots.getSnapshots(memberId, from, to);
+        long[] balances = new long[snapshots.size()];
+        for (int i = 0; i < balances.length; i++) {
+            balances[i] = snapshots.get(i).closingBalanceCents;
+        }
+        return balances;
+    }
+    
+    @Test
+    public void backDatedPostingInvalidatesOnlyItsMember() throws SQLException {
+        YearMonth first = YearMonth.now().minusMonths(3);
+        YearMonth second = first.plusMonths(1);
+        YearMonth last = YearMonth.now().minusMonths(1);
+        int memberId = TestDatabase.createMember("Snapshot");
+        int otherId = TestDatabase.createMember("Snapshot");
+        record(deposit(memberId, 10_000, first), deposit(otherId, 20_000, first));
+        
+        BalanceSnapshots.takeMonthEndSnapshots();
+        assertEquals(3, closingBalances(memberId, first, last).length);
+        assertEquals(10_000, closingBalances(memberId, first, last)[2]);
+        assertEquals(20_000, closingBalances(otherId, first, last)[2]);
+        
+        record(deposit(memberId, 5_000, second));
+        assertEquals("Snapshots from the posted month on are dropped", 1,
+                closingBalances(memberId, first, last).length);
+        assertEquals("Other members keep theirs", 3, closingBalances(otherId, first, last).length);
+        
+        assertTrue(BalanceSnapshots.takeMonthEndSnapshots() >= 2);
+        long[] balances = closingBalances(memberId, first, last);
+        assertEquals(3, balances.length);
+        assertEquals(10_000, balances[0]);
+        assertEquals(15_000, balances[1]);
+        assertEquals(15_000, balances[2]);
+        assertEquals(20_000, closingBalances(otherId, first, last)[2]);
+        assertEquals(15_000, BalanceSnapshots.getBalanceAsOfCents(memberId, last.atEndOfMonth()));
+    }
+    
+    @Test
+    public void memberWithoutSnapshotsIsFilledFromItsFirstTransaction() throws SQLException {
+        YearMonth first = YearMonth.now().minusMonths(3);
+        YearMonth last = YearMonth.now().minusMonths(1);
+        BalanceSnapshots.takeMonthEndSnapshots();
+        
+        // Joins after the snapshots were taken, with history imported back to the first month
+        int memberId = TestDatabase.createMember("Imported");
+        record(deposit(memberId, 7_500, first));
+        assertEquals(0, closingBalances(memberId, first, last).length);
+        
+        BalanceSnapshots.takeMonthEndSnapshots();
+        long[] balances = closingBalances(memberId, first, last);
+        assertEquals(3, balances.length);
+        for (long balance : balances) {
+            assertEquals(7_500, balance);
+        }
+        assertEquals(7_500, BalanceSnapshots.getBalanceAsOfCents(memberId, LocalDate.now()));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,112 @@
+package com.moscat.controllers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import com.moscat.TestDatabase;
+import com.moscat.utils.DatabaseManager;
+
+/**
+ * Tests that an interest run, credited in member-id chunks, loses no deposit or withdrawal
+ * posted while it runs. Surefire sets moscat.interest.chunkSize=50, so the run spans
+ * several chunks.
+ */
+public class InterestControllerTest {
+    
+    private static final int MEMBERS = 120;
+    private static final int TELLERS = 8;
+    
+    @Test
+    public void interestRunLosesNoConcurrentPostings() throws Exception {
+        List<Integer> members = new ArrayList<>(MEMBERS);
+        for (int n = 0; n < MEMBERS; n++) {
+            int memberId = TestDatabase.createMember("Interest");
+            PostingPipeline.post(PostingPipeline.Posting.deposit(memberId, 100_000, "Opening deposit", "test"));
+            members.add(memberId);
+        }
+        
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(TELLERS);
+        try {
+            List<Future<Integer>> tellers = new ArrayList<>();
+            for (int t = 0; t < TELLERS; t++) {
+                tellers.add(executor.submit(() -> {
+                    int posted = 0;
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (running.get() || posted < 50) {
+                        int memberId = members.get(random.nextInt(MEMBERS));
+                        PostingPipeline.Posting posting = random.nextBoolean()
+                                ? PostingPipeline.Posting.deposit(memberId, 100, "Deposit", "test")
+                                : PostingPipeline.Posting.withdrawal(memberId, 50, "Withdrawal", "test");
+                        if (PostingPipeline.post(posting) != null) {
+                            posted++;
+                        }
+                    }
+                    return posted;
+                }));
+            }
+            
+            int credited;
+            try {
+                credited = InterestController.calculateInterestForAllMembers("test");
+            } finally {
+                running.set(false);
+            }
+            assertTrue("Credited " + credited, credited >= MEMBERS);
+            for (Future<Integer> teller : tellers) {
+                assertTrue(teller.get(60, TimeUnit.SECONDS) > 0);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        
+        for (int memberId : members) {
+            long[] ledger = ledger(memberId);
+            assertEquals("Interest postings of member " + memberId, 1, ledger[1]);
+            assertEquals("Balance of member " + memberId + " against its ledger", ledger[0],
+                    TestDatabase.getSavingsBalanceCents(memberId));
+        }
+    }
+    
+    @Test
+    public void savingsInterestRunCreditsLockedAccounts() {
+        int memberId = TestDatabase.createMember("SavingsInterest");
+        Map<String, Object> result = SavingsController.calculateAndApplyInterest(2.5, 1);
+        assertTrue("Result " + result, (Integer) result.get("successCount") > 0);
+        assertEquals(0, SavingsController.getAccountById(memberId).getInterestEarnedCents());
+    }
+    
+    /**
+     * Sums a member's transactions
+     * 
+     * @return The net amount in centavos and the number of interest postings
+     */
+    private static long[] ledger(int memberId) throws SQLException {
+        String query = "SELECT SUM(CASE WHEN transaction_type = 'SAVINGS_WITHDRAWAL' THEN -amount ELSE amount END), "
+                + "SUM(CASE WHEN transaction_type = 'INTEREST_EARNED' THEN 1 ELSE 0 END) "
+                + "FROM transactions WHERE member_id = ?";
+        try (Connection conn = DatabaseManager.getConnection(); PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setInt(1, memberId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                return new long[] { rs.getBigDecimal(1).movePointRight(2).longValueExact(), rs.getLong(2) };
+            }
+        }
+    }
+}
\ No newline at end of file
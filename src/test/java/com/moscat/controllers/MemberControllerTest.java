@@ -0,0 +1,30 @@
+package com.moscat.controllers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.SQLException;
+
+import org.junit.Test;
+
+import com.moscat.TestDatabase;
+
+/**
+ * Tests that new members can take postings right away
+ */
+public class MemberControllerTest {
+    
+    @Test
+    public void createMemberOpensSavingsAccount() throws SQLException {
+        int memberId = TestDatabase.createMember("Account");
+        assertTrue(memberId > 0);
+        assertEquals(0, TestDatabase.getSavingsBalanceCents(memberId));
+    }
+    
+    @Test
+    public void newMemberAcceptsDeposit() throws SQLException {
+        int memberId = TestDatabase.createMember("Deposit");
+        assertTrue(TransactionController.processDeposit(memberId, 1500.25, "Initial deposit", "test"));
+        assertEquals(150_025, TestDatabase.getSavingsBalanceCents(memberId));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,153 @@
+package com.moscat.controllers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.moscat.TestDatabase;
+import com.moscat.models.Transaction;
+import com.moscat.utils.UnitOfWork;
+
+/**
+ * Tests group commit in the posting pipeline and measures postings per second at 1, 8
+ * and 32 concurrent submitters
+ */
+public class PostingPipelineTest {
+    
+    private static final int POSTINGS_PER_SUBMITTER = 200;
+    
+    private static List<Integer> createMembers(String lastName, int count) {
+        List<Integer> memberIds = new ArrayList<>(count);
+        for (int n = 0; n < count; n++) {
+            memberIds.add(TestDatabase.createMember(lastName));
+        }
+        return memberIds;
+    }
+    
+    @Test
+    public void postingsToOneAccountApplyInSubmissionOrder() throws Exception {
+        int memberId = TestDatabase.createMember("Order");
+        CompletableFuture<Transaction> overdraft = PostingPipeline.submit(
+                PostingPipeline.Posting.withdrawal(memberId, 5_000, "Withdrawal", "test"));
+        CompletableFuture<Transaction> deposit = PostingPipeline.submit(
+                PostingPipeline.Posting.deposit(memberId, 10_000, "Deposit", "test"));
+        CompletableFuture<Transaction> withdrawal = PostingPipeline.submit(
+                PostingPipeline.Posting.withdrawal(memberId, 3_000, "Withdrawal", "test"));
+        
+        assertNull("Withdrawal before any deposit is rejected", overdraft.get(10, TimeUnit.SECONDS));
+        assertEquals(10_000, deposit.get(10, TimeUnit.SECONDS).getRunningBalanceCents());
+        assertEquals(7_000, withdrawal.get(10, TimeUnit.SECONDS).getRunningBalanceCents());
+        assertEquals(7_000, TestDatabase.getSavingsBalanceCents(memberId));
+    }
+    
+    @Test
+    public void failingPostingIsRetriedAloneAndFailsOnlyItself() throws Exception {
+        int memberId = TestDatabase.createMember("Retry");
+        int otherId = TestDatabase.createMember("Retry");
+        // Beyond DECIMAL(15,2): the balance update of this posting fails in the database
+        long tooLarge = 10_000_000_000_000_00L;
+        
+        List<CompletableFuture<Transaction>> good = new ArrayList<>();
+        CompletableFuture<Transaction> bad;
+        good.add(PostingPipeline.submit(PostingPipeline.Posting.deposit(memberId, 1_000, "Deposit", "test")));
+        bad = PostingPipeline.submit(PostingPipeline.Posting.deposit(otherId, tooLarge, "Deposit", "test"));
+        good.add(PostingPipeline.submit(PostingPipeline.Posting.deposit(memberId, 2_000, "Deposit", "test")));
+        
+        for (CompletableFuture<Transaction> future : good) {
+            assertNotNull(future.get(10, TimeUnit.SECONDS));
+        }
+        try {
+            bad.get(10, TimeUnit.SECONDS);
+            fail("A posting the database rejects must fail its future");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof SQLException);
+        }
+        assertEquals(3_000, TestDatabase.getSavingsBalanceCents(memberId));
+        assertEquals(0, TestDatabase.getSavingsBalanceCents(otherId));
+    }
+    
+    @Test
+    public void concurrentPostingsShareCommits() throws Exception {
+        List<Integer> members = createMembers("Group", 32);
+        long unitsBefore = units();
+        
+        int postings = run(members, 32, 50);
+        
+        // Each batch is one unit of work; the unit is counted before its futures complete
+        long commits = units() - unitsBefore;
+        assertTrue(postings + " postings in " + commits + " commits", commits < postings);
+        for (int memberId : members) {
+            assertEquals(50 * 100, TestDatabase.getSavingsBalanceCents(memberId));
+        }
+    }
+    
+    @Test
+    public void throughputAtOneEightAndThirtyTwoSubmitters() throws Exception {
+        for (int submitters : new int[] { 1, 8, 32 }) {
+            List<Integer> members = createMembers("Throughput" + submitters, submitters);
+            PostingPipeline.Statistics before = PostingPipeline.getStatistics();
+            long started = System.nanoTime();
+            
+            int postings = run(members, submitters, POSTINGS_PER_SUBMITTER);
+            
+            double seconds = (System.nanoTime() - started) / 1e9;
+            PostingPipeline.Statistics after = PostingPipeline.getStatistics();
+            long batches = after.batches - before.batches;
+            System.out.printf("%2d submitters: %,d postings in %.2fs, %.0f postings/s, %.1f postings per commit%n",
+                    submitters, postings, seconds, postings / seconds, (double) postings / batches);
+            assertEquals(submitters * POSTINGS_PER_SUBMITTER, postings);
+        }
+    }
+    
+    private static long units() {
+        UnitOfWork.Totals totals = UnitOfWork.getTotals().get("applyPostings");
+        return totals == null ? 0 : totals.getUnits();
+    }
+    
+    /**
+     * Each submitter deposits 1.00 to its own member, one posting at a time, like a teller
+     * 
+     * @return The number of postings committed
+     */
+    private static int run(List<Integer> members, int submitters, int postingsEach) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(submitters);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int s = 0; s < submitters; s++) {
+                int memberId = members.get(s);
+                results.add(executor.submit(() -> {
+                    int posted = 0;
+                    for (int n = 0; n < postingsEach; n++) {
+                        if (PostingPipeline.post(PostingPipeline.Posting.deposit(memberId, 100, "Deposit", "test"))
+                                != null) {
+                            posted++;
+                        }
+                    }
+                    return posted;
+                }));
+            }
+            
+            int posted = 0;
+            for (Future<Integer> result : results) {
+                posted += result.get(60, TimeUnit.SECONDS);
+            }
+            return posted;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
\ No newline at end of file
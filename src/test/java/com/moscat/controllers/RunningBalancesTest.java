@@ -0,0 +1,132 @@
+package com.moscat.controllers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.moscat.TestDatabase;
+import com.moscat.models.Transaction;
+import com.moscat.utils.DatabaseManager;
+import com.moscat.utils.DateUtils;
+
+/**
+ * Tests that repairAll() catches a wrong first row and that imported history gets its
+ * running balances from the recompute alone, including rows dated today, and is recorded
+ * against the member's savings account
+ */
+public class RunningBalancesTest {
+    
+    private static Transaction deposit(int memberId, long amountCents, long runningBalanceCents) {
+        Transaction transaction = new Transaction();
+        transaction.setMemberId(memberId);
+        transaction.setAccountId(memberId);
+        transaction.setTransactionType("SAVINGS_DEPOSIT");
+        transaction.setAmountCents(amountCents);
+        transaction.setRunningBalanceCents(runningBalanceCents);
+        transaction.setDescription("Deposit");
+        transaction.setProcessedBy("test");
+        return transaction;
+    }
+    
+    /**
+     * Gets a member's running balances in ledger order
+     */
+    private static List<Long> runningBalances(int memberId) throws SQLException {
+        List<Long> balances = new ArrayList<>();
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT running_balance FROM transactions "
+                     + "WHERE member_id = ? ORDER BY transaction_date, id")) {
+            stmt.setInt(1, memberId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    balances.add(rs.getBigDecimal(1).movePointRight(2).longValueExact());
+                }
+            }
+        }
+        return balances;
+    }
+    
+    /**
+     * Counts a member's transactions not recorded against their savings account
+     */
+    private static int outsideSavingsAccount(int memberId) throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT COUNT(*) FROM transactions t "
+                     + "WHERE t.member_id = ? AND t.account_id <> "
+                     + "(SELECT s.id FROM savings_accounts s WHERE s.member_id = t.member_id)")) {
+            stmt.setInt(1, memberId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        }
+    }
+    
+    private static String memberNumber(int memberId) {
+        return MemberController.getMemberById(memberId).getMemberNumber();
+    }
+    
+    @Test
+    public void wrongFirstRowIsRepaired() throws SQLException {
+        int memberId = TestDatabase.createMember("FirstRow");
+        // The second row follows from the first, so only the first row is wrong
+        assertTrue(TransactionController.recordTransaction(deposit(memberId, 100_000, 999_999)));
+        assertTrue(TransactionController.recordTransaction(deposit(memberId, 50_000, 1_049_999)));
+        
+        RunningBalances.Result result = RunningBalances.repairAll();
+        assertNotNull(result);
+        assertTrue(result.toString(), result.membersBroken >= 1);
+        assertEquals(0, result.membersFailed);
+        assertEquals(Arrays.asList(100_000L, 150_000L), runningBalances(memberId));
+    }
+    
+    @Test
+    public void importedHistoryTakesRunningBalancesFromRecompute() throws IOException, SQLException {
+        int backDatedId = TestDatabase.createMember("Import");
+        int todayId = TestDatabase.createMember("Import");
+        // A live posting after which the imported rows land, so its running balance must move
+        PostingPipeline.post(PostingPipeline.Posting.deposit(backDatedId, 1_000, "Deposit", "test"));
+        PostingPipeline.post(PostingPipeline.Posting.deposit(todayId, 1_000, "Deposit", "test"));
+        
+        LocalDate lastMonth = LocalDate.now().minusMonths(1);
+        LocalDateTime earlierToday = LocalDateTime.now().minusSeconds(30).withNano(0);
+        Path file = Files.createTempFile("history", ".csv");
+        try {
+            Files.write(file, Arrays.asList(
+                    "member_number,transaction_date,transaction_type,amount,reference_number,description",
+                    memberNumber(backDatedId) + "," + lastMonth + ",SAVINGS_DEPOSIT,500.00,,Passbook",
+                    memberNumber(backDatedId) + "," + lastMonth.plusDays(1) + ",SAVINGS_WITHDRAWAL,200.00,,Passbook",
+                    memberNumber(todayId) + "," + DateUtils.formatLocalDateTime(earlierToday) + ",SAVINGS_DEPOSIT,300.00,,Passbook"),
+                    StandardCharsets.UTF_8);
+            
+            HistoryImporter.Result result = HistoryImporter.importFile(file, HistoryImporter.Format.CSV);
+            assertNotNull(result);
+            assertTrue("Errors: " + result.errors, result.errors.isEmpty());
+            assertEquals(3, result.rowsImported);
+        } finally {
+            Files.delete(file);
+        }
+        
+        assertEquals(Arrays.asList(50_000L, 30_000L, 31_000L), runningBalances(backDatedId));
+        // Just after midnight this row is back-dated instead; either path gives the same balances
+        assertEquals(Arrays.asList(30_000L, 31_000L), runningBalances(todayId));
+        assertEquals(0, outsideSavingsAccount(backDatedId));
+        assertEquals(0, outsideSavingsAccount(todayId));
+    }
+}
\ No newline at end of file
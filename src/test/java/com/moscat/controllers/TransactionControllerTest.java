@@ -0,0 +1,168 @@
+package com.moscat.controllers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import com.moscat.TestDatabase;
+import com.moscat.models.Transaction;
+import com.moscat.utils.DatabaseManager;
+import com.moscat.utils.DateUtils;
+
+/**
+ * Tests that recordTransaction records an idempotency key once, including when another
+ * terminal recorded it first and only the unique index knows, and after the original was
+ * archived
+ */
+public class TransactionControllerTest {
+    
+    private static Transaction deposit(int memberId, long amountCents, String key) {
+        Transaction transaction = new Transaction();
+        transaction.setMemberId(memberId);
+        transaction.setAccountId(memberId);
+        transaction.setTransactionType("SAVINGS_DEPOSIT");
+        transaction.setAmountCents(amountCents);
+        transaction.setRunningBalanceCents(amountCents);
+        transaction.setDescription("Deposit");
+        transaction.setProcessedBy("test");
+        transaction.setIdempotencyKey(key);
+        return transaction;
+    }
+    
+    /**
+     * Inserts a transaction the way another terminal would, bypassing this process's key filter
+     * 
+     * @return The transaction ID
+     */
+    private static int insertFromOtherTerminal(int memberId, long amountCents, String key) throws SQLException {
+        // Load the key filter first, so it cannot pick up the row inserted below
+        assertNull(IdempotencyKeys.findOriginal(UUID.randomUUID().toString()));
+        
+        String insert = "INSERT INTO transactions (member_id, account_id, transaction_type, amount, "
+                + "running_balance, transaction_date, description, processed_by, idempotency_key) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(insert, Statement.RETURN_GENERATED_KEYS)) {
+            stmt.setInt(1, memberId);
+            stmt.setInt(2, memberId);
+            stmt.setString(3, "SAVINGS_DEPOSIT");
+            stmt.setBigDecimal(4, BigDecimal.valueOf(amountCents, 2));
+            stmt.setBigDecimal(5, BigDecimal.valueOf(amountCents, 2));
+            stmt.setString(6, DateUtils.formatLocalDateTime(LocalDateTime.now()));
+            stmt.setString(7, "Deposit");
+            stmt.setString(8, "other terminal");
+            stmt.setString(9, key);
+            stmt.executeUpdate();
+            try (ResultSet keys = stmt.getGeneratedKeys()) {
+                keys.next();
+                return keys.getInt(1);
+            }
+        }
+    }
+    
+    /**
+     * Moves a transaction into the archive the way TransactionArchive does
+     */
+    private static void archive(int transactionId) throws SQLException {
+        String columns = "id, member_id, account_id, reference_number, transaction_type, amount, running_balance, "
+                + "transaction_date, description, processed_by, transaction_by, idempotency_key";
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement insert = conn.prepareStatement("INSERT INTO transactions_archive (" + columns
+                     + ") SELECT " + columns + " FROM transactions WHERE id = ?");
+             PreparedStatement delete = conn.prepareStatement("DELETE FROM transactions WHERE id = ?")) {
+            insert.setInt(1, transactionId);
+            assertEquals(1, insert.executeUpdate());
+            delete.setInt(1, transactionId);
+            assertEquals(1, delete.executeUpdate());
+        }
+    }
+    
+    private static int countByKey(String key) throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(
+                     "SELECT COUNT(*) FROM all_transactions WHERE idempotency_key = ?")) {
+            stmt.setString(1, key);
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        }
+    }
+    
+    @Test
+    public void retryReturnsOriginal() throws SQLException {
+        int memberId = TestDatabase.createMember("Retry");
+        String key = UUID.randomUUID().toString();
+        Transaction first = deposit(memberId, 2_500, key);
+        assertTrue(TransactionController.recordTransaction(first));
+        
+        Transaction retry = deposit(memberId, 2_500, key);
+        assertTrue(TransactionController.recordTransaction(retry));
+        assertEquals(first.getId(), retry.getId());
+        assertEquals(first.getReferenceNumber(), retry.getReferenceNumber());
+        assertEquals(1, countByKey(key));
+    }
+    
+    @Test
+    public void retryOfArchivedPostingReturnsOriginal() throws SQLException {
+        int memberId = TestDatabase.createMember("Archived");
+        String key = UUID.randomUUID().toString();
+        Transaction first = deposit(memberId, 3_000, key);
+        assertTrue(TransactionController.recordTransaction(first));
+        archive(first.getId());
+        
+        // The hot table's unique index no longer knows the key
+        Transaction retry = deposit(memberId, 3_000, key);
+        assertTrue(TransactionController.recordTransaction(retry));
+        assertEquals(first.getId(), retry.getId());
+        assertEquals(1, countByKey(key));
+    }
+    
+    @Test
+    public void keyRecordedByOtherTerminalIsFoundAfterUniqueViolation() throws SQLException {
+        int memberId = TestDatabase.createMember("OtherTerminal");
+        String key = UUID.randomUUID().toString();
+        int originalId = insertFromOtherTerminal(memberId, 4_000, key);
+        
+        Transaction retry = deposit(memberId, 4_000, key);
+        assertTrue(TransactionController.recordTransaction(retry));
+        assertEquals(originalId, retry.getId());
+        assertEquals(1, countByKey(key));
+    }
+    
+    @Test
+    public void keyReusedForAnotherAmountIsRejected() throws SQLException {
+        int memberId = TestDatabase.createMember("Mismatch");
+        String key = UUID.randomUUID().toString();
+        insertFromOtherTerminal(memberId, 4_000, key);
+        
+        // Found only through the unique violation
+        assertFalse(TransactionController.recordTransaction(deposit(memberId, 5_000, key)));
+        // Found through the key filter on the next attempt
+        assertFalse(TransactionController.recordTransaction(deposit(memberId, 5_000, key)));
+        assertEquals(1, countByKey(key));
+    }
+    
+    @Test
+    public void keyReusedForAnotherMemberIsRejected() throws SQLException {
+        int memberId = TestDatabase.createMember("Mismatch");
+        int otherId = TestDatabase.createMember("Mismatch");
+        String key = UUID.randomUUID().toString();
+        assertTrue(TransactionController.recordTransaction(deposit(memberId, 1_000, key)));
+        
+        assertFalse(TransactionController.recordTransaction(deposit(otherId, 1_000, key)));
+        assertEquals(1, countByKey(key));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,142 @@
+package com.moscat.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.junit.Test;
+
+import com.moscat.TestDatabase;
+
+/**
+ * Stress tests the account locks with read-modify-write postings and compares their
+ * throughput with one global lock, which is what moscat.db.lockStripes=1 gives
+ */
+public class AccountLocksTest {
+    
+    private static final ReentrantLock GLOBAL = new ReentrantLock();
+    
+    private static List<Integer> createMembers(String lastName, int count) {
+        List<Integer> memberIds = new ArrayList<>(count);
+        for (int n = 0; n < count; n++) {
+            memberIds.add(TestDatabase.createMember(lastName));
+        }
+        return memberIds;
+    }
+    
+    @Test
+    public void lockOutsideUnitOfWorkIsRejected() throws SQLException {
+        try {
+            AccountLocks.lock(1);
+        } catch (IllegalStateException e) {
+            return;
+        }
+        throw new AssertionError("A lock outside a unit of work must be rejected");
+    }
+    
+    @Test
+    public void contendedPostingsLoseNoUpdates() throws Exception {
+        // 16 threads on 4 accounts, so most units wait for another
+        List<Integer> members = createMembers("Contention", 4);
+        long contendedBefore = AccountLocks.getStatistics().contended;
+        
+        int units = run(members, 16, 100, false);
+        
+        assertEquals(16 * 100, units);
+        for (int memberId : members) {
+            assertEquals(4 * 100, TestDatabase.getSavingsBalanceCents(memberId));
+        }
+        assertTrue("Expected contention: " + AccountLocks.getStatistics(),
+                AccountLocks.getStatistics().contended > contendedBefore);
+    }
+    
+    @Test
+    public void stripedThroughputAgainstGlobalLock() throws Exception {
+        List<Integer> members = createMembers("Stripes", 64);
+        
+        // Warm up both paths before measuring
+        run(members, 16, 20, false);
+        run(members, 16, 20, true);
+        
+        double striped = postingsPerSecond(members, false);
+        double global = postingsPerSecond(members, true);
+        
+        System.out.printf("16 threads on 64 accounts: %.0f postings/s with %d stripes, %.0f with a global lock%n",
+                striped, AccountLocks.getStatistics().stripes, global);
+        for (int memberId : members) {
+            // Each account received an equal share of the 1-centavo units of the four runs
+            assertEquals((20 + 20 + 256 + 256) * 16 / 64, TestDatabase.getSavingsBalanceCents(memberId));
+        }
+    }
+    
+    private static double postingsPerSecond(List<Integer> members, boolean global) throws Exception {
+        long started = System.nanoTime();
+        int units = run(members, 16, 256, global);
+        return units / ((System.nanoTime() - started) / 1e9);
+    }
+    
+    /**
+     * Each thread adds 1 centavo per unit of work to the accounts in turn, reading the
+     * balance FOR UPDATE and writing it back, under its account lock or the global lock
+     * 
+     * @return The number of units committed
+     */
+    private static int run(List<Integer> members, int threads, int unitsEach, boolean global) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int first = t;
+                results.add(executor.submit(() -> {
+                    for (int n = 0; n < unitsEach; n++) {
+                        int memberId = members.get((first + n * threads) % members.size());
+                        UnitOfWork.execute("lockBenchmark", conn -> {
+                            if (global) {
+                                GLOBAL.lock();
+                                UnitOfWork.afterCompletion(GLOBAL::unlock);
+                            } else {
+                                AccountLocks.lock(memberId);
+                            }
+                            
+                            long balance;
+                            try (PreparedStatement stmt = conn.prepareStatement(
+                                    "SELECT savings_balance FROM savings_accounts WHERE member_id = ? FOR UPDATE")) {
+                                stmt.setInt(1, memberId);
+                                try (ResultSet rs = stmt.executeQuery()) {
+                                    rs.next();
+                                    balance = Money.getCents(rs, "savings_balance");
+                                }
+                            }
+                            try (PreparedStatement stmt = conn.prepareStatement(
+                                    "UPDATE savings_accounts SET savings_balance = ? WHERE member_id = ?")) {
+                                Money.setCents(stmt, 1, balance + 1);
+                                stmt.setInt(2, memberId);
+                                stmt.executeUpdate();
+                            }
+                            return null;
+                        });
+                    }
+                    return unitsEach;
+                }));
+            }
+            
+            int units = 0;
+            for (Future<Integer> result : results) {
+                units += result.get(120, TimeUnit.SECONDS);
+            }
+            return units;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,125 @@
+package com.moscat.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests lease, exhaustion and wait timeout of the bounded connection pool
+ */
+public class ConnectionPoolTest {
+    
+    private ConnectionPool pool;
+    
+    @After
+    public void tearDown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+    
+    private ConnectionPool newPool(int maxSize, long waitTimeoutMillis) {
+        pool = new ConnectionPool("jdbc:h2:mem:connectionPoolTest", "sa", "", maxSize, 0,
+                waitTimeoutMillis, 60000L, 60000L, 0);
+        return pool;
+    }
+    
+    @Test
+    public void closedLeaseReturnsConnectionToPool() throws SQLException {
+        newPool(1, 1000L);
+        for (int n = 0; n < 20; n++) {
+            try (Connection conn = pool.getConnection()) {
+                assertTrue(conn.isValid(1));
+            }
+        }
+        
+        ConnectionPool.PoolStatistics stats = pool.getStatistics();
+        assertEquals(20, stats.leaseCount);
+        assertEquals("Every lease reuses the one physical connection", 1, stats.createdCount);
+        assertEquals(0, stats.active);
+        assertEquals(1, stats.idle);
+    }
+    
+    @Test
+    public void exhaustedPoolTimesOutAfterWaitTimeout() throws SQLException {
+        newPool(2, 200L);
+        Connection first = pool.getConnection();
+        Connection second = pool.getConnection();
+        try {
+            long started = System.nanoTime();
+            try {
+                Connection third = pool.getConnection();
+                third.close();
+                fail("A third lease must not be granted by a pool of two");
+            } catch (SQLException e) {
+                assertTrue(e.getMessage(), e.getMessage().startsWith("Timed out after 200 ms"));
+            }
+            long waitedMillis = (System.nanoTime() - started) / 1_000_000;
+            assertTrue("Waited " + waitedMillis + " ms", waitedMillis >= 150);
+            
+            ConnectionPool.PoolStatistics stats = pool.getStatistics();
+            assertEquals(1, stats.timeoutCount);
+            assertEquals(2, stats.active);
+            assertEquals(0, stats.waiters);
+        } finally {
+            second.close();
+            first.close();
+        }
+        assertEquals("The failed lease leaked no permit", 2, pool.getStatistics().idle);
+        try (Connection again = pool.getConnection()) {
+            assertFalse(again.isClosed());
+        }
+    }
+    
+    @Test
+    public void waiterIsServedWhenLeaseIsReturned() throws Exception {
+        newPool(1, 5000L);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Connection held = pool.getConnection();
+            Future<Boolean> waiter = executor.submit(() -> {
+                try (Connection conn = pool.getConnection()) {
+                    return conn.isValid(1);
+                }
+            });
+            
+            long deadline = System.currentTimeMillis() + 2000;
+            while (pool.getStatistics().waiters == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(1, pool.getStatistics().waiters);
+            assertFalse(waiter.isDone());
+            
+            held.close();
+            assertTrue(waiter.get(2, TimeUnit.SECONDS));
+            assertEquals(0, pool.getStatistics().timeoutCount);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    @Test
+    public void returnedLeaseCannotBeUsed() throws SQLException {
+        newPool(1, 1000L);
+        Connection conn = pool.getConnection();
+        conn.close();
+        assertTrue(conn.isClosed());
+        try {
+            conn.createStatement();
+            fail("A returned lease must reject further use");
+        } catch (SQLException e) {
+            assertEquals("Connection has been returned to the pool", e.getMessage());
+        }
+    }
+}
\ No newline at end of file
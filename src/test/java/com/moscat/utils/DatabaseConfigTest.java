@@ -0,0 +1,337 @@
+package com.moscat.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.h2.jdbc.JdbcConnection;
+import org.h2.tools.Server;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.moscat.Bench;
+
+/**
+ * Tests deployment mode detection and that terminals can post in SERVER and AUTO_SERVER
+ * modes. The comparison against a second process holding the AUTO_SERVER file, including
+ * the stall when it dies, is a benchmark and runs only with -Dmoscat.bench=true.
+ */
+public class DatabaseConfigTest {
+    
+    private static final String[] PROPERTIES = {
+        "moscat.db.mode", "moscat.db.host", "moscat.db.port", "moscat.db.dataDir", "moscat.db.name"
+    };
+    
+    private final Map<String, String> saved = new HashMap<>();
+    private Path dataDir;
+    
+    @Before
+    public void setUp() throws IOException {
+        for (String property : PROPERTIES) {
+            saved.put(property, System.getProperty(property));
+        }
+        dataDir = Files.createDirectories(Paths.get(System.getProperty("java.io.tmpdir"),
+                "moscat-config-test-" + System.nanoTime()));
+        System.setProperty("moscat.db.dataDir", dataDir.toString());
+        System.clearProperty("moscat.db.host");
+    }
+    
+    @After
+    public void tearDown() {
+        for (Map.Entry<String, String> entry : saved.entrySet()) {
+            if (entry.getValue() == null) {
+                System.clearProperty(entry.getKey());
+            } else {
+                System.setProperty(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+    
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+    
+    private static DatabaseConfig load(String mode, String host, int port) {
+        System.setProperty("moscat.db.mode", mode);
+        if (host == null) {
+            System.clearProperty("moscat.db.host");
+        } else {
+            System.setProperty("moscat.db.host", host);
+        }
+        System.setProperty("moscat.db.port", String.valueOf(port));
+        return DatabaseConfig.load();
+    }
+    
+    @Test
+    public void autoWithoutHostFallsBackToEmbedded() throws IOException {
+        DatabaseConfig config = load("auto", null, freePort());
+        assertEquals(DatabaseConfig.Mode.EMBEDDED, config.getMode());
+        assertTrue(config.getJdbcUrl(), config.getJdbcUrl().contains(";AUTO_SERVER=TRUE"));
+    }
+    
+    @Test
+    public void autoWithLocalHostBecomesServer() throws IOException {
+        DatabaseConfig config = load("auto", "localhost", freePort());
+        assertEquals(DatabaseConfig.Mode.SERVER, config.getMode());
+        assertFalse(config.getJdbcUrl(), config.getJdbcUrl().contains("AUTO_SERVER"));
+    }
+    
+    @Test
+    public void autoWithListeningServerBecomesClient() throws IOException, SQLException {
+        int port = freePort();
+        DatabaseConfig server = load("server", "localhost", port);
+        Server tcpServer = server.startServer();
+        try {
+            DatabaseConfig client = load("auto", "localhost", port);
+            assertEquals(DatabaseConfig.Mode.CLIENT, client.getMode());
+            assertTrue(client.getJdbcUrl(), client.getJdbcUrl().startsWith("jdbc:h2:tcp://localhost:" + port + "/"));
+        } finally {
+            tcpServer.stop();
+        }
+    }
+    
+    @Test
+    public void clientModeRequiresHost() throws IOException {
+        try {
+            load("client", null, freePort());
+            fail("Client mode without a host must be rejected");
+        } catch (IllegalStateException e) {
+            assertEquals("moscat.db.mode=client requires moscat.db.host", e.getMessage());
+        }
+    }
+    
+    @Test
+    public void memoryModeIsNeverAutoDetectedAndStartsNoServer() throws IOException, SQLException {
+        DatabaseConfig config = load("memory", "localhost", freePort());
+        assertEquals(DatabaseConfig.Mode.MEMORY, config.getMode());
+        assertTrue(config.getJdbcUrl(), config.getJdbcUrl().startsWith("jdbc:h2:mem:"));
+        assertNull(config.startServer());
+    }
+    
+    /**
+     * Several terminals post through the TCP server of a designated node and through the
+     * AUTO_SERVER file URL. Both run in this JVM, where AUTO_SERVER opens the file in-process,
+     * so this only checks that both modes accept postings; see autoServerGuestAndHandoff for
+     * the measurement against a second process.
+     */
+    @Test
+    public void serverAndAutoServerModesAcceptConcurrentPostings() throws Exception {
+        int terminals = 4;
+        int postings = 50;
+        
+        System.setProperty("moscat.db.name", "serverload");
+        int port = freePort();
+        DatabaseConfig server = load("server", "localhost", port);
+        Server tcpServer = server.startServer();
+        try {
+            DatabaseConfig client = load("auto", "localhost", port);
+            assertEquals(DatabaseConfig.Mode.CLIENT, client.getMode());
+            // The designated node creates the database; clients may not create it remotely
+            postingsPerSecond(server.getJdbcUrl(), client.getJdbcUrl(), terminals, postings);
+        } finally {
+            tcpServer.stop();
+        }
+        
+        System.setProperty("moscat.db.name", "autoload");
+        DatabaseConfig embedded = load("auto", null, freePort());
+        assertEquals(DatabaseConfig.Mode.EMBEDDED, embedded.getMode());
+        postingsPerSecond(embedded.getJdbcUrl(), embedded.getJdbcUrl(), terminals, postings);
+    }
+    
+    /**
+     * A second JVM opens the database file first, as the first terminal to start would,
+     * so terminals in this JVM reach it through AUTO_SERVER as remote guests. Compares their
+     * posting rate with terminals on a designated TCP server, then kills the owning process
+     * mid-run and measures how long postings stall until a guest takes the file over.
+     */
+    @Test
+    public void autoServerGuestAndHandoff() throws Exception {
+        Bench.assumeEnabled();
+        int terminals = 4;
+        int postings = 500;
+        
+        System.setProperty("moscat.db.name", "serverbench");
+        int port = freePort();
+        DatabaseConfig server = load("server", "localhost", port);
+        Server tcpServer = server.startServer();
+        double serverRate;
+        try {
+            serverRate = postingsPerSecond(server.getJdbcUrl(), load("auto", "localhost", port).getJdbcUrl(),
+                    terminals, postings);
+        } finally {
+            tcpServer.stop();
+        }
+        
+        System.setProperty("moscat.db.name", "autobench");
+        String url = load("embedded", null, freePort()).getJdbcUrl();
+        Process owner = startOwner(url);
+        try {
+            try (Connection conn = DriverManager.getConnection(url, "sa", "")) {
+                assertTrue("This JVM must be an AUTO_SERVER guest",
+                        conn.unwrap(JdbcConnection.class).getSession().isRemote());
+            }
+            double guestRate = postingsPerSecond(url, url, terminals, postings);
+            System.out.printf("%d terminals x %d postings: TCP server %.0f/s, AUTO_SERVER guest %.0f/s%n",
+                    terminals, postings, serverRate, guestRate);
+            
+            long stallMillis = handoffStallMillis(url, owner);
+            System.out.printf("AUTO_SERVER handoff after the owning process died: postings stalled %d ms%n",
+                    stallMillis);
+        } finally {
+            owner.destroyForcibly().waitFor(10, TimeUnit.SECONDS);
+        }
+    }
+    
+    /**
+     * Starts a JVM that opens the database file and holds it until killed
+     */
+    private static Process startOwner(String url) throws IOException {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        Process owner = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                AutoServerOwner.class.getName(), url).redirectErrorStream(true).start();
+        BufferedReader output = new BufferedReader(new InputStreamReader(owner.getInputStream(),
+                StandardCharsets.UTF_8));
+        String line = output.readLine();
+        if (!AutoServerOwner.READY.equals(line)) {
+            owner.destroyForcibly();
+            throw new IOException("Database owner process did not start: " + line);
+        }
+        return owner;
+    }
+    
+    /**
+     * Posts one row at a time, kills the owning process after a while and returns the
+     * longest gap between two successful postings
+     */
+    private static long handoffStallMillis(String url, Process owner) throws Exception {
+        ConnectionPool pool = new ConnectionPool(url, "sa", "", 1, 0, 10000L, 60000L, 60000L, 0);
+        try {
+            long longestGap = 0;
+            long last = System.nanoTime();
+            long deadline = last + TimeUnit.SECONDS.toNanos(60);
+            int posted = 0;
+            while (posted < 400) {
+                if (posted == 200 && owner.isAlive()) {
+                    owner.destroyForcibly();
+                }
+                try (Connection conn = pool.getConnection();
+                     PreparedStatement stmt = conn.prepareStatement(
+                             "INSERT INTO postings (terminal, amount) VALUES (?, ?)")) {
+                    stmt.setInt(1, 0);
+                    stmt.setBigDecimal(2, BigDecimal.ONE);
+                    posted += stmt.executeUpdate();
+                } catch (SQLException e) {
+                    if (System.nanoTime() > deadline) {
+                        throw e;
+                    }
+                    continue;
+                }
+                long now = System.nanoTime();
+                longestGap = Math.max(longestGap, now - last);
+                last = now;
+            }
+            return longestGap / 1_000_000;
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    private static double postingsPerSecond(String setupUrl, String url, int terminals, int postings)
+            throws Exception {
+        ConnectionPool setupPool = new ConnectionPool(setupUrl, "sa", "", 1, 0, 10000L, 60000L, 60000L, 0);
+        try (Connection conn = setupPool.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS postings (id INT AUTO_INCREMENT PRIMARY KEY, "
+                    + "terminal INT NOT NULL, amount DECIMAL(15,2) NOT NULL)");
+        } finally {
+            setupPool.shutdown();
+        }
+        
+        // One pool per terminal, as each terminal runs its own process
+        List<ConnectionPool> pools = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(terminals);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            long started = System.nanoTime();
+            for (int t = 0; t < terminals; t++) {
+                ConnectionPool pool = new ConnectionPool(url, "sa", "", 1, 0, 10000L, 60000L, 60000L, 8);
+                pools.add(pool);
+                int terminal = t;
+                results.add(executor.submit(() -> {
+                    int posted = 0;
+                    for (int n = 0; n < postings; n++) {
+                        try (Connection conn = pool.getConnection();
+                             PreparedStatement stmt = conn.prepareStatement(
+                                     "INSERT INTO postings (terminal, amount) VALUES (?, ?)")) {
+                            stmt.setInt(1, terminal);
+                            stmt.setBigDecimal(2, BigDecimal.valueOf(n, 2));
+                            posted += stmt.executeUpdate();
+                        }
+                    }
+                    return posted;
+                }));
+            }
+            
+            int posted = 0;
+            for (Future<Integer> result : results) {
+                posted += result.get();
+            }
+            double seconds = (System.nanoTime() - started) / 1e9;
+            assertEquals(terminals * postings, posted);
+            return posted / seconds;
+        } finally {
+            executor.shutdownNow();
+            for (ConnectionPool pool : pools) {
+                pool.shutdown();
+            }
+        }
+    }
+    
+    /**
+     * Opens an AUTO_SERVER database file in its own process and holds it until killed
+     */
+    public static final class AutoServerOwner {
+        
+        static final String READY = "READY";
+        
+        public static void main(String[] args) throws Exception {
+            try (Connection conn = DriverManager.getConnection(args[0], "sa", "");
+                 Statement stmt = conn.createStatement()) {
+                stmt.execute("CREATE TABLE IF NOT EXISTS postings (id INT AUTO_INCREMENT PRIMARY KEY, "
+                        + "terminal INT NOT NULL, amount DECIMAL(15,2) NOT NULL)");
+                System.out.println(READY);
+                System.out.flush();
+                while (System.in.read() != -1) {
+                    // Hold the file until stdin closes or the process is killed
+                }
+            }
+        }
+    }
+}
\ No newline at end of file
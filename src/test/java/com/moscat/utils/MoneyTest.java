@@ -0,0 +1,208 @@
+package com.moscat.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+import com.moscat.Bench;
+import com.moscat.TestDatabase;
+import com.moscat.models.InterestSetting;
+
+/**
+ * Tests Money rounding, overflow and DECIMAL(15,2) round-trips. Halves round away from
+ * zero, never to even. The interest comparison against BigDecimal is a benchmark and runs
+ * only with -Dmoscat.bench=true.
+ */
+public class MoneyTest {
+    
+    private static final long MAX_DECIMAL_15_2 = 999_999_999_999_999L;
+    
+    @Test
+    public void halvesRoundAwayFromZeroNotToEven() {
+        // Banker's rounding would give 12, 2, 0 and 2
+        assertEquals(13, Money.fraction(25, 1, 2));
+        assertEquals(3, Money.percent(250, 1.0));
+        assertEquals(1, Money.percent(50, 1.0));
+        assertEquals(13, Money.ofDouble(0.125));
+        // Agrees with banker's rounding when the digit below is odd
+        assertEquals(18, Money.fraction(35, 1, 2));
+        assertEquals(2, Money.percent(150, 1.0));
+        // Just below and above a half
+        assertEquals(0, Money.fraction(49, 1, 100));
+        assertEquals(1, Money.fraction(51, 1, 100));
+    }
+    
+    @Test
+    public void ofDoubleRoundsTheShortestDecimal() {
+        // 1.005 and 2.675 are just below the half as binary doubles
+        assertEquals(101, Money.ofDouble(1.005));
+        assertEquals(268, Money.ofDouble(2.675));
+        assertEquals(10, Money.ofDouble(0.1));
+        assertEquals(30, Money.ofDouble(0.1 + 0.2));
+        assertEquals(123_456, Money.ofDouble(1234.56));
+    }
+    
+    @Test
+    public void negativeAmountsRoundSymmetrically() {
+        assertEquals(-13, Money.fraction(-25, 1, 2));
+        assertEquals(-13, Money.fraction(25, -1, 2));
+        assertEquals(-3, Money.percent(-250, 1.0));
+        assertEquals(-101, Money.percent(-10_050, 1.0));
+        assertEquals(-101, Money.ofDouble(-1.005));
+        assertEquals(-13, Money.ofDouble(-0.125));
+        assertEquals(-200, Money.round(-150, 100));
+        assertEquals(-100, Money.round(-149, 100));
+        assertEquals("-1,234.50", Money.format(-123_450));
+        assertEquals("-0.05", Money.format(-5));
+    }
+    
+    @Test
+    public void percentMatchesBigDecimalHalfUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        double[] rates = { 0.25, 1.0, 2.5, 3.125, 12.0 };
+        for (int n = 0; n < 100_000; n++) {
+            long cents = random.nextLong(-MAX_DECIMAL_15_2, MAX_DECIMAL_15_2);
+            double rate = rates[n % rates.length];
+            long periods = n % 2 == 0 ? 12 : 365;
+            assertEquals(cents + " at " + rate + "% / " + periods, referenceInterest(cents, rate, periods),
+                    Money.percent(cents, rate, periods));
+        }
+    }
+    
+    @Test
+    public void overflowThrowsInsteadOfWrapping() {
+        expectOverflow(() -> Money.add(Long.MAX_VALUE, 1));
+        expectOverflow(() -> Money.add(Long.MIN_VALUE, -1));
+        expectOverflow(() -> Money.subtract(Long.MIN_VALUE, 1));
+        expectOverflow(() -> Money.multiply(Long.MAX_VALUE / 2 + 1, 2));
+        expectOverflow(() -> Money.fraction(Long.MAX_VALUE, 3, 1));
+        expectOverflow(() -> Money.round(Long.MAX_VALUE, 1000));
+        expectOverflow(() -> Money.ofDouble(1e30));
+        expectOverflow(() -> Money.ofDouble(Double.NaN));
+        expectOverflow(() -> Money.toCents(new BigDecimal("1e30")));
+    }
+    
+    @Test
+    public void fractionFallsBackToExactArithmeticWhenTheProductOverflows() {
+        long cents = Long.MAX_VALUE / 2;
+        long expected = BigDecimal.valueOf(cents).multiply(BigDecimal.valueOf(3))
+                .divide(BigDecimal.valueOf(4), 0, RoundingMode.HALF_UP).longValueExact();
+        assertEquals(expected, Money.fraction(cents, 3, 4));
+        assertEquals(-expected, Money.fraction(-cents, 3, 4));
+    }
+    
+    @Test
+    public void centsRoundTripThroughDecimal15Scale2() throws SQLException {
+        TestDatabase.initialize();
+        long[] amounts = { 0, 1, -1, 99, -99, 100, 123_456_789, -123_456_789, MAX_DECIMAL_15_2, -MAX_DECIMAL_15_2 };
+        try (Connection conn = DatabaseManager.getConnection()) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("CREATE TABLE IF NOT EXISTS money_round_trip (id INT PRIMARY KEY, amount DECIMAL(15,2))");
+                stmt.execute("DELETE FROM money_round_trip");
+            }
+            try (PreparedStatement stmt = conn.prepareStatement("INSERT INTO money_round_trip VALUES (?, ?)")) {
+                for (int i = 0; i < amounts.length; i++) {
+                    stmt.setInt(1, i);
+                    Money.setCents(stmt, 2, amounts[i]);
+                    stmt.executeUpdate();
+                }
+            }
+            try (PreparedStatement stmt = conn.prepareStatement("SELECT id, amount FROM money_round_trip ORDER BY id");
+                 ResultSet rs = stmt.executeQuery()) {
+                int i = 0;
+                while (rs.next()) {
+                    assertEquals(amounts[rs.getInt("id")], Money.getCents(rs, "amount"));
+                    assertEquals(amounts[rs.getInt(1)], Money.getCents(rs, 2));
+                    i++;
+                }
+                assertEquals(amounts.length, i);
+            }
+            
+            // One centavo past the column's precision is rejected, not truncated
+            try (PreparedStatement stmt = conn.prepareStatement("INSERT INTO money_round_trip VALUES (?, ?)")) {
+                stmt.setInt(1, amounts.length);
+                Money.setCents(stmt, 2, MAX_DECIMAL_15_2 + 1);
+                stmt.executeUpdate();
+                fail("An amount beyond DECIMAL(15,2) must be rejected");
+            } catch (SQLException e) {
+                // Expected
+            }
+        }
+    }
+    
+    @Test
+    public void getCentsRoundsExtraDecimalsHalfUp() throws SQLException {
+        TestDatabase.initialize();
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(
+                     "SELECT CAST(1.005 AS DECIMAL(15,3)), CAST(-1.005 AS DECIMAL(15,3)), CAST(NULL AS DECIMAL(15,2))");
+             ResultSet rs = stmt.executeQuery()) {
+            rs.next();
+            assertEquals(101, Money.getCents(rs, 1));
+            assertEquals(-101, Money.getCents(rs, 2));
+            assertEquals(0, Money.getCents(rs, 3));
+        }
+    }
+    
+    @Test
+    public void interestRunMatchesBigDecimal() {
+        Bench.assumeEnabled();
+        int accounts = 2_000_000;
+        SplittableRandom random = new SplittableRandom(7);
+        long[] balances = new long[accounts];
+        for (int i = 0; i < accounts; i++) {
+            balances[i] = random.nextLong(0, 10_000_000_000L);
+        }
+        InterestSetting setting = new InterestSetting();
+        setting.setInterestRate(2.75);
+        setting.setMinimumBalanceRequiredCents(0);
+        setting.setComputationBasis("Monthly");
+        
+        for (int run = 0; run < 3; run++) {
+            long started = System.nanoTime();
+            long centsTotal = 0;
+            for (long balance : balances) {
+                centsTotal = Money.add(centsTotal, setting.calculateInterestCents(balance));
+            }
+            long centsNanos = System.nanoTime() - started;
+            
+            started = System.nanoTime();
+            BigDecimal rate = BigDecimal.valueOf(2.75);
+            BigDecimal divisor = BigDecimal.valueOf(100 * 12);
+            BigDecimal decimalTotal = BigDecimal.ZERO;
+            for (long balance : balances) {
+                decimalTotal = decimalTotal.add(BigDecimal.valueOf(balance, 2).multiply(rate)
+                        .divide(divisor, 2, RoundingMode.HALF_UP));
+            }
+            long decimalNanos = System.nanoTime() - started;
+            
+            assertEquals(decimalTotal, Money.toBigDecimal(centsTotal));
+            System.out.printf("Interest on %,d accounts: long centavos %d ms, BigDecimal %d ms%n",
+                    accounts, centsNanos / 1_000_000, decimalNanos / 1_000_000);
+        }
+    }
+    
+    private static long referenceInterest(long cents, double ratePercent, long periods) {
+        return BigDecimal.valueOf(cents).multiply(BigDecimal.valueOf(ratePercent))
+                .divide(BigDecimal.valueOf(100 * periods), 0, RoundingMode.HALF_UP).longValueExact();
+    }
+    
+    private static void expectOverflow(Runnable operation) {
+        try {
+            operation.run();
+            fail("Expected ArithmeticException");
+        } catch (ArithmeticException e) {
+            // Expected
+        }
+    }
+}
\ No newline at end of file
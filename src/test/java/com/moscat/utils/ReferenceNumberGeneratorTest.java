@@ -0,0 +1,178 @@
+package com.moscat.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.moscat.Bench;
+import com.moscat.TestDatabase;
+
+/**
+ * Tests the check character of reference numbers and that concurrent terminals never
+ * receive the same number. With -Dmoscat.bench=true it also compares them with the
+ * "TR" + 8 UUID characters they replaced.
+ */
+public class ReferenceNumberGeneratorTest {
+    
+    private static final String ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+    
+    @BeforeClass
+    public static void setUpClass() {
+        TestDatabase.initialize();
+    }
+    
+    @Test
+    public void formattedNumbersAreValid() {
+        assertTrue(ReferenceNumberGenerator.format(42).startsWith("TR01010000000042"));
+        assertTrue(ReferenceNumberGenerator.isValid("TR010100000042179"));
+        for (long number = 0; number < 100_000; number += 7) {
+            String reference = ReferenceNumberGenerator.format(number);
+            assertEquals(17, reference.length());
+            assertTrue(reference, ReferenceNumberGenerator.isValid(reference));
+        }
+    }
+    
+    @Test
+    public void malformedReferencesAreInvalid() {
+        assertFalse(ReferenceNumberGenerator.isValid(null));
+        assertFalse(ReferenceNumberGenerator.isValid(""));
+        assertFalse(ReferenceNumberGenerator.isValid("TR01010000004217"));
+        assertFalse(ReferenceNumberGenerator.isValid("tr010100000042179"));
+        assertFalse(ReferenceNumberGenerator.isValid("TX010100000042179"));
+    }
+    
+    @Test
+    public void everySingleCharacterSubstitutionIsDetected() {
+        for (long number = 1; number < 5_000; number += 13) {
+            String reference = ReferenceNumberGenerator.format(number);
+            // Every character after the prefix, including the check character itself
+            for (int i = 2; i < reference.length(); i++) {
+                for (char c : ALPHABET.toCharArray()) {
+                    if (c == reference.charAt(i)) {
+                        continue;
+                    }
+                    String mistyped = reference.substring(0, i) + c + reference.substring(i + 1);
+                    assertFalse(mistyped + " for " + reference, ReferenceNumberGenerator.isValid(mistyped));
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void mostAdjacentTranspositionsAreDetected() {
+        int swaps = 0;
+        int detected = 0;
+        for (long number = 1; number < 50_000; number += 37) {
+            String reference = ReferenceNumberGenerator.format(number);
+            for (int i = 2; i < reference.length() - 1; i++) {
+                char a = reference.charAt(i);
+                char b = reference.charAt(i + 1);
+                if (a == b) {
+                    continue;
+                }
+                String swapped = reference.substring(0, i) + b + a + reference.substring(i + 2);
+                swaps++;
+                if (!ReferenceNumberGenerator.isValid(swapped)) {
+                    detected++;
+                }
+            }
+        }
+        double rate = (double) detected / swaps;
+        assertTrue("Detected " + detected + " of " + swaps + " transpositions", rate > 0.95);
+    }
+    
+    @Test
+    public void concurrentTerminalsGetUniqueNumbers() throws Exception {
+        int threads = 16;
+        int each = 5_000;
+        Set<String> references = ConcurrentHashMap.newKeySet();
+        long blocksBefore = ReferenceNumberGenerator.getBlocksReserved();
+        
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                results.add(executor.submit(() -> {
+                    for (int n = 0; n < each; n++) {
+                        String reference = ReferenceNumberGenerator.next();
+                        assertTrue(reference, ReferenceNumberGenerator.isValid(reference));
+                        assertTrue("Duplicate " + reference, references.add(reference));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        
+        assertEquals(threads * each, references.size());
+        long blocks = ReferenceNumberGenerator.getBlocksReserved() - blocksBefore;
+        assertTrue("Reserved " + blocks + " blocks", blocks <= threads * each / ReferenceNumberGenerator.BLOCK_SIZE + 2);
+    }
+    
+    /**
+     * The reference format before sequence blocks
+     */
+    private static String uuidReference() {
+        return "TR" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
+    }
+    
+    @Test
+    public void uuidReferencesCollideWhereSequenceDoesNot() throws SQLException {
+        Bench.assumeEnabled();
+        int count = 300_000;
+        Set<String> uuids = new HashSet<>(count * 2);
+        Set<String> sequence = new HashSet<>(count * 2);
+        for (int n = 0; n < count; n++) {
+            uuids.add(uuidReference());
+            sequence.add(ReferenceNumberGenerator.next());
+        }
+        // 32 random bits: about count^2 / 2^33, so 10 expected collisions
+        System.out.printf("%,d references: %d collisions as UUID prefixes, %d from sequence blocks%n",
+                count, count - uuids.size(), count - sequence.size());
+        assertEquals(count, sequence.size());
+    }
+    
+    @Test
+    public void throughputAgainstRandomUuid() throws SQLException {
+        Bench.assumeEnabled();
+        int count = 200_000;
+        // Warm up both generators
+        for (int n = 0; n < 20_000; n++) {
+            ReferenceNumberGenerator.next();
+            uuidReference();
+        }
+        
+        long started = System.nanoTime();
+        for (int n = 0; n < count; n++) {
+            ReferenceNumberGenerator.next();
+        }
+        double sequence = count / ((System.nanoTime() - started) / 1e9);
+        
+        started = System.nanoTime();
+        for (int n = 0; n < count; n++) {
+            uuidReference();
+        }
+        double uuid = count / ((System.nanoTime() - started) / 1e9);
+        
+        System.out.printf("Reference numbers: %,.0f/s from sequence blocks, %,.0f/s as random UUIDs%n", sequence, uuid);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,113 @@
+package com.moscat.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.moscat.TestDatabase;
+
+/**
+ * Tests that the migrations apply once and that the hot queries of TransactionController
+ * and LoanController are answered from the V2 and V6 indexes rather than table scans
+ */
+public class SchemaMigratorTest {
+    
+    @BeforeClass
+    public static void setUpClass() {
+        TestDatabase.initialize();
+    }
+    
+    /**
+     * Asserts that the plan reads through the named index
+     */
+    private static void assertUsesIndex(String index, String sql) throws SQLException {
+        String plan = TestDatabase.explain(sql);
+        assertTrue("Expected " + index + " in:\n" + plan, plan.toUpperCase().contains(index.toUpperCase()));
+        assertFalse("Unexpected table scan in:\n" + plan, plan.contains("tableScan"));
+    }
+    
+    /**
+     * Asserts that the plan reads through some index. On an empty table the optimizer may
+     * prefer a narrower index than the one the statement was designed for.
+     */
+    private static void assertIndexed(String sql) throws SQLException {
+        String plan = TestDatabase.explain(sql);
+        assertTrue("Expected an index lookup in:\n" + plan, plan.contains("/* PUBLIC.") && plan.contains(" = ?1"));
+        assertFalse("Unexpected table scan in:\n" + plan, plan.contains("tableScan"));
+    }
+    
+    @Test
+    public void migrationsAreAppliedOnce() throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            int version = SchemaMigrator.getCurrentVersion(conn);
+            assertTrue("Schema version " + version, version >= 11);
+            assertEquals(0, SchemaMigrator.migrate(conn));
+            assertEquals(version, SchemaMigrator.getCurrentVersion(conn));
+        }
+    }
+    
+    @Test
+    public void archivedIdempotencyKeyLookupUsesIndex() throws SQLException {
+        assertUsesIndex("idx_transactions_archive_idempotency_key",
+                "SELECT * FROM transactions_archive WHERE idempotency_key = ?");
+    }
+    
+    @Test
+    public void memberHistoryPageUsesIndex() throws SQLException {
+        assertIndexed("SELECT * FROM transactions WHERE member_id = ?"
+                + " AND transaction_date <= ? AND (transaction_date < ? OR id < ?)"
+                + " ORDER BY transaction_date DESC, id DESC LIMIT ?");
+    }
+    
+    @Test
+    public void memberActivityCheckUsesMemberDateIndex() throws SQLException {
+        assertUsesIndex("idx_transactions_member_date",
+                "SELECT COUNT(*) FROM transactions WHERE member_id = ? AND transaction_date >= ?");
+        assertUsesIndex("idx_transactions_member_date",
+                "SELECT MAX(transaction_date) FROM transactions WHERE member_id = ?");
+    }
+    
+    @Test
+    public void dateRangeReportUsesDateIndex() throws SQLException {
+        assertUsesIndex("idx_transactions_date", "SELECT COUNT(*) FROM transactions WHERE "
+                + TimeRange.today().predicate("transaction_date"));
+    }
+    
+    @Test
+    public void accountHistoryUsesAccountDateIndex() throws SQLException {
+        assertUsesIndex("idx_transactions_account_date",
+                "SELECT * FROM transactions WHERE account_id = ? ORDER BY transaction_date DESC, id DESC");
+    }
+    
+    @Test
+    public void installmentLookupsUseIndex() throws SQLException {
+        assertIndexed("SELECT SUM(total_payment) FROM loan_amortization WHERE loan_id = ? AND payment_status = ?");
+        assertIndexed("SELECT COUNT(*) FROM loan_amortization WHERE loan_id = ? AND payment_status = ?");
+    }
+    
+    @Test
+    public void overdueScanUsesStatusDateIndex() throws SQLException {
+        assertUsesIndex("idx_loan_amortization_status_date", "SELECT la.* FROM loan_amortization la "
+                + "JOIN loans l ON la.loan_id = l.id "
+                + "WHERE la.payment_date < ? AND la.payment_status = ? AND l.status = ? "
+                + "ORDER BY la.payment_date");
+    }
+    
+    @Test
+    public void memberLoansUseMemberStatusIndex() throws SQLException {
+        assertUsesIndex("idx_loans_member_status",
+                "SELECT * FROM loans WHERE member_id = ? AND status = ? ORDER BY application_date DESC");
+    }
+    
+    @Test
+    public void dormantAccountsUseStatusIndex() throws SQLException {
+        assertUsesIndex("idx_dormant_accounts_status",
+                "SELECT COUNT(*) FROM dormant_accounts WHERE dormant_status = ?");
+    }
+}
\ No newline at end of file
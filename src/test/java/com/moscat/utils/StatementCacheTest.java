@@ -0,0 +1,66 @@
+package com.moscat.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that statements returned to the cache carry nothing over to the next caller
+ */
+public class StatementCacheTest {
+    
+    private static final String SQL = "SELECT X FROM SYSTEM_RANGE(1, 100)";
+    
+    private ConnectionPool pool;
+    
+    @Before
+    public void setUp() {
+        pool = new ConnectionPool("jdbc:h2:mem:statementCacheTest", "sa", "", 1, 0, 1000L, 60000L, 60000L, 8);
+    }
+    
+    @After
+    public void tearDown() {
+        pool.shutdown();
+    }
+    
+    @Test
+    public void checkInResetsSettingsAndClosesOpenResultSet() throws Exception {
+        int defaultFetchSize;
+        ResultSet leftOpen;
+        try (Connection conn = pool.getConnection()) {
+            PreparedStatement stmt = conn.prepareStatement(SQL);
+            defaultFetchSize = stmt.getFetchSize();
+            stmt.setFetchSize(defaultFetchSize + 500);
+            stmt.setMaxRows(3);
+            stmt.setQueryTimeout(5);
+            leftOpen = stmt.executeQuery();
+            assertTrue(leftOpen.next());
+            stmt.close();
+        }
+        assertTrue("Result set left open by the caller is closed at check-in", leftOpen.isClosed());
+        
+        long hits = StatementCache.getStatistics().hits;
+        try (Connection conn = pool.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(SQL)) {
+            assertEquals("Statement is served from the cache", hits + 1, StatementCache.getStatistics().hits);
+            assertEquals(defaultFetchSize, stmt.getFetchSize());
+            assertEquals(0, stmt.getMaxRows());
+            assertEquals(0, stmt.getQueryTimeout());
+            
+            int rows = 0;
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    rows++;
+                }
+            }
+            assertEquals(100, rows);
+        }
+    }
+}
\ No newline at end of file
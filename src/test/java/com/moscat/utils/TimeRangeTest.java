@@ -0,0 +1,210 @@
+package com.moscat.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.moscat.Bench;
+
+/**
+ * Tests the half-open bounds of TimeRange and that its predicate is answered from the
+ * transaction_date index. With -Dmoscat.bench=true it also measures report latency against
+ * the DATE() and YEAR()/MONTH() filters it replaced.
+ * 
+ * The table holds 20,000 rows spread evenly over two years, enough for the plans. With
+ * benchmarks enabled it holds moscat.test.benchmarkRows rows (default 500,000); add
+ * -Dmoscat.test.benchmarkRows=5000000 for the multi-million-row figures.
+ */
+public class TimeRangeTest {
+    
+    private static final int ROWS = Bench.isEnabled() ? Integer.getInteger("moscat.test.benchmarkRows", 500_000)
+            : 20_000;
+    private static final LocalDate FIRST_DAY = LocalDate.of(2024, 1, 1);
+    private static final int DAYS = 730;
+    private static final int RUNS = 20;
+    
+    private static ConnectionPool pool;
+    
+    @BeforeClass
+    public static void setUpClass() throws SQLException {
+        pool = new ConnectionPool("jdbc:h2:mem:timeRangeBenchmark;DB_CLOSE_DELAY=-1", "sa", "", 1, 0,
+                10000L, 600000L, 600000L, 16);
+        try (Connection conn = pool.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE transactions (id INT PRIMARY KEY, member_id INT NOT NULL, "
+                    + "transaction_type VARCHAR(20) NOT NULL, amount DECIMAL(15,2) NOT NULL, "
+                    + "transaction_date DATETIME NOT NULL)");
+            stmt.execute("INSERT INTO transactions SELECT X, MOD(X, 5000), "
+                    + "CASE MOD(X, 3) WHEN 0 THEN 'SAVINGS_DEPOSIT' WHEN 1 THEN 'SAVINGS_WITHDRAWAL' "
+                    + "ELSE 'LOAN_PAYMENT' END, MOD(X, 100000) / 100.0, "
+                    + "DATEADD(SECOND, X * " + (DAYS * 86400L / ROWS) + ", TIMESTAMP '" + FIRST_DAY + " 00:00:00') "
+                    + "FROM SYSTEM_RANGE(1, " + ROWS + ")");
+            // Same index as V2
+            stmt.execute("CREATE INDEX idx_transactions_date ON transactions(transaction_date)");
+            stmt.execute("ANALYZE");
+        }
+    }
+    
+    @AfterClass
+    public static void tearDownClass() {
+        pool.shutdown();
+    }
+    
+    @Test
+    public void dayIsHalfOpen() {
+        TimeRange day = TimeRange.ofDay(LocalDate.of(2025, 3, 31));
+        assertEquals(LocalDateTime.of(2025, 3, 31, 0, 0), day.getStart());
+        assertEquals(LocalDateTime.of(2025, 4, 1, 0, 0), day.getEnd());
+        assertTrue(day.contains(LocalDateTime.of(2025, 3, 31, 23, 59, 59, 999_999_999)));
+        assertFalse(day.contains(LocalDateTime.of(2025, 4, 1, 0, 0)));
+        assertTrue(day.isWholeDays());
+    }
+    
+    @Test
+    public void monthCoversLeapFebruary() {
+        TimeRange february = TimeRange.ofMonth(2024, 2);
+        assertEquals(TimeRange.ofDays(LocalDate.of(2024, 2, 1), LocalDate.of(2024, 2, 29)), february);
+        assertEquals(TimeRange.ofMonth(YearMonth.of(2024, 2)), february);
+    }
+    
+    @Test
+    public void endBeforeStartIsRejected() {
+        try {
+            TimeRange.between(LocalDateTime.of(2025, 1, 2, 0, 0), LocalDateTime.of(2025, 1, 1, 0, 0));
+            fail("An inverted range must be rejected");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("is before start"));
+        }
+    }
+    
+    @Test
+    public void predicateIsSargable() throws SQLException {
+        TimeRange range = TimeRange.ofDay(FIRST_DAY);
+        assertEquals("transaction_date >= ? AND transaction_date < ?", range.predicate("transaction_date"));
+        
+        // An index condition shows as "index: condition"; a bare index name is a full index scan
+        String plan = explain("SELECT COUNT(*) FROM transactions WHERE " + range.predicate("transaction_date"));
+        assertTrue(plan, plan.contains("IDX_TRANSACTIONS_DATE: TRANSACTION_DATE >= ?1"));
+        
+        String wrapped = explain("SELECT COUNT(*) FROM transactions WHERE CAST(transaction_date AS DATE) = ?");
+        assertFalse("The function-wrapped filter it replaced reads every row: " + wrapped,
+                wrapped.contains("IDX_TRANSACTIONS_DATE:"));
+    }
+    
+    @Test
+    public void boundRangeMatchesDateFunction() throws SQLException {
+        LocalDate day = FIRST_DAY.plusDays(100);
+        TimeRange range = TimeRange.ofDay(day);
+        long sargable = count("SELECT COUNT(*) FROM transactions WHERE " + range.predicate("transaction_date"),
+                (stmt, run) -> range.bind(stmt, 1));
+        long wrapped = count("SELECT COUNT(*) FROM transactions WHERE CAST(transaction_date AS DATE) = ?",
+                (stmt, run) -> {
+                    stmt.setDate(1, java.sql.Date.valueOf(day));
+                    return 2;
+                });
+        assertTrue(sargable > 0);
+        assertEquals(wrapped, sargable);
+    }
+    
+    @Test
+    public void reportLatencyAgainstFunctionFilters() throws SQLException {
+        Bench.assumeEnabled();
+        String summary = "SELECT transaction_type, SUM(amount), COUNT(*) FROM transactions WHERE %s "
+                + "GROUP BY transaction_type";
+        String predicate = TimeRange.today().predicate("transaction_date");
+        
+        // Every run reads another day or month: H2 reuses the result of a repeated query
+        double dailyRange = averageMillis(String.format(summary, predicate),
+                (stmt, run) -> TimeRange.ofDay(day(run)).bind(stmt, 1));
+        double dailyFunction = averageMillis(String.format(summary, "CAST(transaction_date AS DATE) = ?"),
+                (stmt, run) -> {
+                    stmt.setDate(1, java.sql.Date.valueOf(day(run)));
+                    return 2;
+                });
+        double monthlyRange = averageMillis(String.format(summary, predicate),
+                (stmt, run) -> TimeRange.ofMonth(month(run)).bind(stmt, 1));
+        double monthlyFunction = averageMillis(String.format(summary,
+                "YEAR(transaction_date) = ? AND MONTH(transaction_date) = ?"),
+                (stmt, run) -> {
+                    stmt.setInt(1, month(run).getYear());
+                    stmt.setInt(2, month(run).getMonthValue());
+                    return 3;
+                });
+        
+        System.out.printf("%,d rows: daily summary %.2fms (range) vs %.2fms (DATE); "
+                + "monthly summary %.2fms (range) vs %.2fms (YEAR/MONTH)%n",
+                ROWS, dailyRange, dailyFunction, monthlyRange, monthlyFunction);
+        assertTrue("Daily range " + dailyRange + "ms, DATE() " + dailyFunction + "ms", dailyRange < dailyFunction);
+        assertTrue("Monthly range " + monthlyRange + "ms, YEAR/MONTH " + monthlyFunction + "ms",
+                monthlyRange < monthlyFunction);
+    }
+    
+    private static LocalDate day(int run) {
+        return FIRST_DAY.plusDays(200 + run);
+    }
+    
+    private static YearMonth month(int run) {
+        return YearMonth.from(FIRST_DAY).plusMonths(3 + run);
+    }
+    
+    /**
+     * Binds the parameters of one run
+     */
+    private interface Binder {
+        int bind(PreparedStatement stmt, int run) throws SQLException;
+    }
+    
+    private static String explain(String sql) throws SQLException {
+        try (Connection conn = pool.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("EXPLAIN " + sql);
+             ResultSet rs = stmt.executeQuery()) {
+            rs.next();
+            return rs.getString(1);
+        }
+    }
+    
+    private static long count(String sql, Binder binder) throws SQLException {
+        try (Connection conn = pool.getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
+            binder.bind(stmt, 0);
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        }
+    }
+    
+    private static double averageMillis(String sql, Binder binder) throws SQLException {
+        try (Connection conn = pool.getConnection()) {
+            long total = 0;
+            // The first two runs warm up the statement and the page cache
+            for (int run = -2; run < RUNS; run++) {
+                long started = System.nanoTime();
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    binder.bind(stmt, run + 2);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            rs.getBigDecimal(2);
+                        }
+                    }
+                }
+                if (run >= 0) {
+                    total += System.nanoTime() - started;
+                }
+            }
+            return total / 1e6 / RUNS;
+        }
+    }
+}
\ No newline at end of file